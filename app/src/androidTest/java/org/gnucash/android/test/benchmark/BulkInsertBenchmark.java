@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.benchmark;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.DatabaseSchema.CommodityEntry;
+import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
+import org.gnucash.android.model.Commodity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark for adding records with multi-row statements.
+ * <p>It runs on the device with the instrumentation tests, outside of the unit tests.
+ * The timings are logged; only the results are asserted, as timings vary between devices.</p>
+ */
+@RunWith(AndroidJUnit4.class)
+public class BulkInsertBenchmark {
+
+    private static final String TAG = "BulkInsertBenchmark";
+
+    private static final int COUNT = 2000;
+
+    private CommoditiesDbAdapter mCommoditiesDbAdapter;
+
+    private List<Commodity> mLoopCommodities;
+    private List<Commodity> mBulkCommodities;
+
+    @Before
+    public void setUp() {
+        mCommoditiesDbAdapter = CommoditiesDbAdapter.getInstance();
+        mLoopCommodities = createCommodities("LOOP", COUNT);
+        mBulkCommodities = createCommodities("BULK", COUNT);
+    }
+
+    /**
+     * Compares adding records one statement per row, as before, with multi-row statements
+     */
+    @Test
+    public void benchmark_multiRowInsertAgainstSingleRowLoop() {
+        long initialCount = mCommoditiesDbAdapter.getRecordsCount();
+
+        long start = System.nanoTime();
+        mCommoditiesDbAdapter.beginTransaction();
+        try {
+            for (Commodity commodity : mLoopCommodities) {
+                mCommoditiesDbAdapter.addRecord(commodity, DatabaseAdapter.UpdateMethod.insert);
+            }
+            mCommoditiesDbAdapter.setTransactionSuccessful();
+        } finally {
+            mCommoditiesDbAdapter.endTransaction();
+        }
+        long loopTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long inserted = mCommoditiesDbAdapter.bulkAddRecords(mBulkCommodities, DatabaseAdapter.UpdateMethod.insert);
+        long bulkTime = System.nanoTime() - start;
+
+        Log.i(TAG, String.format("Inserting %d commodities: single-row loop %d ms, multi-row %d ms",
+                COUNT, TimeUnit.NANOSECONDS.toMillis(loopTime), TimeUnit.NANOSECONDS.toMillis(bulkTime)));
+
+        assertThat(inserted).isEqualTo(COUNT);
+        assertThat(mCommoditiesDbAdapter.getRecordsCount()).isEqualTo(initialCount + 2 * COUNT);
+        Commodity last = mBulkCommodities.get(COUNT - 1);
+        assertThat(mCommoditiesDbAdapter.getRecord(last.getUID()).getMnemonic()).isEqualTo(last.getMnemonic());
+    }
+
+    private static List<Commodity> createCommodities(String prefix, int count) {
+        List<Commodity> commodities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Commodity commodity = new Commodity(prefix + " commodity " + i, prefix + i, 100);
+            commodity.setCusip(prefix + i);
+            commodities.add(commodity);
+        }
+        return commodities;
+    }
+
+    @After
+    public void tearDown() {
+        //only the benchmark commodities are deleted, the book keeps its own
+        GnuCashApplication.getActiveDb().delete(CommodityEntry.TABLE_NAME,
+                CommodityEntry.COLUMN_CUSIP + " LIKE 'LOOP%' OR " + CommodityEntry.COLUMN_CUSIP + " LIKE 'BULK%'", null);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.benchmark;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.MoneyAccumulator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark for summing money amounts with the {@link MoneyAccumulator}.
+ * <p>It runs on the device with the instrumentation tests, outside of the unit tests.
+ * The timings are logged; only the results are asserted, as timings vary between devices.</p>
+ */
+@RunWith(AndroidJUnit4.class)
+public class MoneyAccumulatorBenchmark {
+
+    private static final String TAG = "MoneyAccumulatorBenchmark";
+
+    private static final String CURRENCY_CODE = "EUR";
+
+    /**
+     * Compares summing with {@link Money#add(Money)} before, with {@link BigDecimal}s only,
+     * against the {@code long} arithmetic of {@link Money} and the {@link MoneyAccumulator}.
+     * Each variant is warmed up before it is measured.
+     */
+    @Test
+    public void benchmark_summingAmounts() {
+        final int count = 100000;
+        final int warmups = 3;
+        List<Money> amounts = createAmounts(count);
+        Commodity commodity = Commodity.getInstance(CURRENCY_CODE);
+        List<BigDecimal> decimals = new ArrayList<>(count);
+        for (Money amount : amounts) {
+            decimals.add(amount.asBigDecimal());
+        }
+
+        BigDecimal decimalSum = null;
+        long decimalTime = 0;
+        for (int run = 0; run <= warmups; run++) {
+            long start = System.nanoTime();
+            decimalSum = BigDecimal.ZERO;
+            for (BigDecimal decimal : decimals) {
+                decimalSum = decimalSum.add(decimal).setScale(commodity.getSmallestFractionDigits(), BigDecimal.ROUND_HALF_EVEN);
+            }
+            decimalTime = System.nanoTime() - start;
+        }
+
+        Money moneySum = null;
+        long moneyTime = 0;
+        for (int run = 0; run <= warmups; run++) {
+            long start = System.nanoTime();
+            moneySum = Money.createZeroInstance(CURRENCY_CODE);
+            for (Money amount : amounts) {
+                moneySum = moneySum.add(amount);
+            }
+            moneyTime = System.nanoTime() - start;
+        }
+
+        MoneyAccumulator accumulator = new MoneyAccumulator(commodity);
+        long accumulatorTime = 0;
+        for (int run = 0; run <= warmups; run++) {
+            long start = System.nanoTime();
+            accumulator.reset();
+            for (Money amount : amounts) {
+                accumulator.add(amount);
+            }
+            accumulatorTime = System.nanoTime() - start;
+        }
+
+        Log.i(TAG, String.format("Summing %d amounts: BigDecimal %d ms, Money.add %d ms, MoneyAccumulator %d ms",
+                count, TimeUnit.NANOSECONDS.toMillis(decimalTime), TimeUnit.NANOSECONDS.toMillis(moneyTime),
+                TimeUnit.NANOSECONDS.toMillis(accumulatorTime)));
+        assertThat(moneySum.asBigDecimal()).isEqualTo(decimalSum);
+        assertThat(accumulator.toMoney()).isEqualTo(moneySum);
+    }
+
+    private static List<Money> createAmounts(int count) {
+        Random random = new Random(42);
+        List<Money> amounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            amounts.add(new Money(random.nextInt(1000000) - 500000, 100, CURRENCY_CODE));
+        }
+        return amounts;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.benchmark;
+
+import android.database.Cursor;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.DatabaseSchema.AccountEntry;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.Commodity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark for the single-value lookups through cached statements.
+ * <p>It runs on the device with the instrumentation tests, outside of the unit tests.
+ * The timings are logged; only the results are asserted, as timings vary between devices.</p>
+ */
+@RunWith(AndroidJUnit4.class)
+public class StatementCacheBenchmark {
+
+    private static final String TAG = "StatementCacheBenchmark";
+
+    private AccountsDbAdapter mAccountsDbAdapter;
+    private Account mAccount;
+
+    @Before
+    public void setUp() {
+        mAccountsDbAdapter = AccountsDbAdapter.getInstance();
+        mAccount = new Account("Benchmark", Commodity.getInstance("EUR"));
+        mAccountsDbAdapter.addRecord(mAccount);
+    }
+
+    /**
+     * Compares looking up a value with a cursor query, as before, with a cached statement
+     */
+    @Test
+    public void benchmark_cachedStatementAgainstCursorQuery() {
+        final int count = 2000;
+        String uid = mAccount.getUID();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Cursor cursor = GnuCashApplication.getActiveDb().query(AccountEntry.TABLE_NAME,
+                    new String[]{AccountEntry.COLUMN_CURRENCY}, AccountEntry.COLUMN_UID + "= ?",
+                    new String[]{uid}, null, null, null);
+            try {
+                assertThat(cursor.moveToFirst()).isTrue();
+            } finally {
+                cursor.close();
+            }
+        }
+        long cursorTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            mAccountsDbAdapter.getAccountCurrencyCode(uid);
+        }
+        long cachedTime = System.nanoTime() - start;
+
+        Log.i(TAG, String.format("Looking up %d account currencies: cursor query %d ms, cached statement %d ms",
+                count, TimeUnit.NANOSECONDS.toMillis(cursorTime), TimeUnit.NANOSECONDS.toMillis(cachedTime)));
+        assertThat(mAccountsDbAdapter.getAccountCurrencyCode(uid)).isEqualTo("EUR");
+    }
+
+    @After
+    public void tearDown() {
+        mAccountsDbAdapter.deleteRecord(mAccount.getUID());
+    }
+}
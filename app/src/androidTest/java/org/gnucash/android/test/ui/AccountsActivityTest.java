@@ -473,6 +473,7 @@ public class AccountsActivityTest {
         intent.setType(Account.MIME_TYPE);
 
         new AccountCreator().onReceive(mAccountsActivity, intent);
+        GnuCashApplication.getWriteBehindQueue().flush();
 
         Account account = mAccountsDbAdapter.getRecord("intent-account");
         assertThat(account).isNotNull();
@@ -23,6 +23,7 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
 import android.support.test.espresso.Espresso;
+import android.support.test.espresso.IdlingRegistry;
 import android.support.test.rule.ActivityTestRule;
 import android.support.test.rule.GrantPermissionRule;
 import android.support.test.runner.AndroidJUnit4;
@@ -43,6 +44,7 @@ import org.gnucash.android.model.Transaction;
 import org.gnucash.android.model.TransactionType;
 import org.gnucash.android.receivers.TransactionRecorder;
 import org.gnucash.android.test.ui.util.DisableAnimationsRule;
+import org.gnucash.android.test.ui.util.WriteBehindQueueIdlingResource;
 import org.gnucash.android.ui.common.UxArgument;
 import org.gnucash.android.ui.settings.PreferenceActivity;
 import org.gnucash.android.ui.transaction.TransactionFormFragment;
@@ -111,6 +113,8 @@ public class TransactionsActivityTest {
 	private Account mBaseAccount;
 	private Account mTransferAccount;
 
+	private final WriteBehindQueueIdlingResource mWriteBehindQueueIdlingResource = new WriteBehindQueueIdlingResource();
+
 	public TransactionsActivityTest() {
 		mBaseAccount = new Account(TRANSACTIONS_ACCOUNT_NAME, COMMODITY);
 		mBaseAccount.setUID(TRANSACTIONS_ACCOUNT_UID);
@@ -149,6 +153,7 @@ public class TransactionsActivityTest {
 
 	@Before
 	public void setUp() throws Exception {
+		IdlingRegistry.getInstance().register(mWriteBehindQueueIdlingResource);
 		mAccountsDbAdapter.deleteAllRecords();
         mAccountsDbAdapter.addRecord(mBaseAccount, DatabaseAdapter.UpdateMethod.insert);
         mAccountsDbAdapter.addRecord(mTransferAccount, DatabaseAdapter.UpdateMethod.insert);
@@ -652,6 +657,7 @@ public class TransactionsActivityTest {
 		transactionIntent.putExtra(Account.EXTRA_CURRENCY_CODE, "USD");
 
 		new TransactionRecorder().onReceive(mTransactionsActivity, transactionIntent);
+		GnuCashApplication.getWriteBehindQueue().flush();
 
 		int afterCount = mTransactionsDbAdapter.getTransactionsCount(TRANSACTIONS_ACCOUNT_UID);
 		
@@ -895,6 +901,7 @@ public class TransactionsActivityTest {
 
 	@After
 	public void tearDown() throws Exception {
+		IdlingRegistry.getInstance().unregister(mWriteBehindQueueIdlingResource);
 		if (mTransactionsActivity != null)
 			mTransactionsActivity.finish();
 	}
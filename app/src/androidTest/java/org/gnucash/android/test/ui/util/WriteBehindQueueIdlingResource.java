@@ -0,0 +1,33 @@
+package org.gnucash.android.test.ui.util;
+
+import android.support.test.espresso.IdlingResource;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.WriteBehindQueue;
+
+/**
+ * Lets Espresso wait for the records saved in the background before checking the database
+ */
+public class WriteBehindQueueIdlingResource implements IdlingResource {
+    private ResourceCallback mCallback;
+
+    @Override
+    public String getName() {
+        return WriteBehindQueueIdlingResource.class.getName();
+    }
+
+    @Override
+    public boolean isIdleNow() {
+        // the queue is replaced when the active book changes
+        WriteBehindQueue writeBehindQueue = GnuCashApplication.getWriteBehindQueue();
+        boolean idle = writeBehindQueue == null || writeBehindQueue.isIdle();
+        if (idle && mCallback != null)
+            mCallback.onTransitionToIdle();
+        return idle;
+    }
+
+    @Override
+    public void registerIdleTransitionCallback(ResourceCallback callback) {
+        mCallback = callback;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.app;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Immutable snapshot of the settings of the open book which are read in frequently called code,
+ * like the default currency when computing account balances.
+ * <p>Reading the settings from {@link android.content.SharedPreferences} looks up the preference keys
+ * from the resources, and the default currency also needs the locale. The snapshot holds the values
+ * in plain fields instead. {@link GnuCashApplication} creates a new snapshot when a book is opened
+ * and when one of the preferences changes.</p>
+ * @see GnuCashApplication#getBookSettings()
+ */
+public final class BookSettings {
+
+    private final String mBookUID;
+
+    private final String mDefaultCurrencyCode;
+
+    private final boolean mDoubleEntryEnabled;
+
+    /**
+     * Whether opening balances should be saved, or {@code null} if the preference is not set
+     */
+    private final Boolean mSaveOpeningBalances;
+
+    BookSettings(@NonNull String bookUID, @NonNull String defaultCurrencyCode,
+                 boolean doubleEntryEnabled, Boolean saveOpeningBalances) {
+        mBookUID = bookUID;
+        mDefaultCurrencyCode = defaultCurrencyCode;
+        mDoubleEntryEnabled = doubleEntryEnabled;
+        mSaveOpeningBalances = saveOpeningBalances;
+    }
+
+    /**
+     * Returns the GUID of the book the settings belong to
+     * @return GUID of the book
+     */
+    public String getBookUID() {
+        return mBookUID;
+    }
+
+    /**
+     * Returns the default currency code of the application
+     * @return ISO 4217 currency code
+     * @see GnuCashApplication#getDefaultCurrencyCode()
+     */
+    public String getDefaultCurrencyCode() {
+        return mDefaultCurrencyCode;
+    }
+
+    /**
+     * Returns {@code true} if double entry is enabled for the book
+     * @return {@code true} if double entry is enabled, {@code false} otherwise
+     */
+    public boolean isDoubleEntryEnabled() {
+        return mDoubleEntryEnabled;
+    }
+
+    /**
+     * Returns {@code true} if opening balances should be saved after deleting transactions
+     * @param defaultValue Value to return if the preference is not set
+     * @return {@code true} if opening balances should be saved, {@code false} otherwise
+     */
+    public boolean shouldSaveOpeningBalances(boolean defaultValue) {
+        return mSaveOpeningBalances == null ? defaultValue : mSaveOpeningBalances;
+    }
+}
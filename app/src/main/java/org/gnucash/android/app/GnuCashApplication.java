@@ -15,17 +15,14 @@
  */
 package org.gnucash.android.app;
 
-import android.app.AlarmManager;
 import android.app.Application;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Color;
 import android.os.Build;
-import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.multidex.MultiDexApplication;
 import android.support.v7.preference.PreferenceManager;
@@ -38,8 +35,10 @@ import com.uservoice.uservoicesdk.UserVoice;
 
 import org.gnucash.android.BuildConfig;
 import org.gnucash.android.R;
+import org.gnucash.android.db.BookContext;
+import org.gnucash.android.db.BookContextCache;
 import org.gnucash.android.db.BookDbHelper;
-import org.gnucash.android.db.DatabaseHelper;
+import org.gnucash.android.db.WriteBehindQueue;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
 import org.gnucash.android.db.adapter.BudgetAmountsDbAdapter;
@@ -56,8 +55,10 @@ import org.gnucash.android.receivers.PeriodicJobReceiver;
 import org.gnucash.android.service.ScheduledActionService;
 import org.gnucash.android.ui.settings.PreferenceActivity;
 
+import java.util.Collections;
 import java.util.Currency;
 import java.util.Locale;
+import java.util.Map;
 
 import io.fabric.sdk.android.Fabric;
 
@@ -83,6 +84,14 @@ public class GnuCashApplication extends MultiDexApplication {
      */
     public static long PASSCODE_SESSION_INIT_TIME = 0L;
 
+    private static final String STARTUP_PHASE_BOOK = "book";
+    private static final String STARTUP_PHASE_CRASH_REPORTING = "crash_reporting";
+    private static final String STARTUP_PHASE_USER_VOICE = "user_voice";
+    private static final String STARTUP_PHASE_STETHO = "stetho";
+    private static final String STARTUP_PHASE_DATABASE = "database";
+    private static final String STARTUP_PHASE_DEFAULT_CURRENCY = "default_currency";
+    private static final String STARTUP_PHASE_WARM_UP = "warm_up";
+
     private static Context context;
 
     private static AccountsDbAdapter mAccountsDbAdapter;
@@ -104,7 +113,39 @@ public class GnuCashApplication extends MultiDexApplication {
     private static RecurrenceDbAdapter mRecurrenceDbAdapter;
 
     private static BooksDbAdapter mBooksDbAdapter;
-    private static DatabaseHelper mDbHelper;
+
+    /**
+     * Open contexts of the active book and of the books used recently
+     */
+    private static BookContextCache mBookContexts;
+
+    private static BookContext mBookContext;
+
+    private static WriteBehindQueue mWriteBehindQueue;
+
+    /**
+     * Initialization of the application, which is completed in the background
+     */
+    private static StartupInitializer mStartup;
+
+    private static volatile BookSettings mBookSettings;
+
+    /**
+     * Preferences of the open book, which are listened to for changes
+     */
+    private static SharedPreferences mBookPreferences;
+
+    /**
+     * Refreshes the settings snapshot when a preference changes.
+     * This has to be referenced here, since {@link SharedPreferences} only keep weak references to listeners
+     */
+    private static final SharedPreferences.OnSharedPreferenceChangeListener mSettingsListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                    refreshBookSettings();
+                }
+            };
 
     /**
      * Returns darker version of specified <code>color</code>.
@@ -117,24 +158,103 @@ public class GnuCashApplication extends MultiDexApplication {
         return Color.HSVToColor(hsv);
     }
 
+    /**
+     * Initializes the application.
+     * <p>Only crash reporting is set up and the active book resolved before the first frame. The database
+     * of the book is opened, and migrated if needed, in the background, together with the other third-party
+     * libraries. The database adapters wait only for the database when they are first used,
+     * see {@link #awaitStartup()}</p>
+     */
     @Override
     public void onCreate(){
         super.onCreate();
         GnuCashApplication.context = getApplicationContext();
 
-        Fabric.with(this, new Crashlytics.Builder().core(
-                new CrashlyticsCore.Builder().disabled(!isCrashlyticsEnabled()).build())
-                .build());
-
-        setUpUserVoice();
+        mStartup = new StartupInitializer()
+                //first, so that errors of the other phases, e.g. of migrations, are reported
+                .addBlockingPhase(STARTUP_PHASE_CRASH_REPORTING, new Runnable() {
+                    @Override
+                    public void run() {
+                        Fabric.with(context, new Crashlytics.Builder().core(
+                                new CrashlyticsCore.Builder().disabled(!isCrashlyticsEnabled()).build())
+                                .build());
+                    }
+                })
+                .addBlockingPhase(STARTUP_PHASE_BOOK, new Runnable() {
+                    @Override
+                    public void run() {
+                        BookDbHelper bookDbHelper = new BookDbHelper(context);
+                        mBooksDbAdapter = new BooksDbAdapter(bookDbHelper.getWritableDatabase());
+                        mBookContexts = new BookContextCache(context, BookContextCache.DEFAULT_MAX_SIZE);
+                        openBookSettings(resolveActiveBookUID());
+                        Money.DEFAULT_CURRENCY_CODE = getDefaultCurrencyCode();
+                    }
+                })
+                .addBackgroundPhase(STARTUP_PHASE_USER_VOICE, new Runnable() {
+                    @Override
+                    public void run() {
+                        setUpUserVoice();
+                    }
+                })
+                .addBackgroundPhase(STARTUP_PHASE_STETHO, new Runnable() {
+                    @Override
+                    public void run() {
+                        StethoUtils.install(GnuCashApplication.this);
+                    }
+                })
+                .addBackgroundPhase(STARTUP_PHASE_DATABASE, new Runnable() {
+                    @Override
+                    public void run() {
+                        openBookDatabase(getBookSettings().getBookUID());
+                    }
+                }, STARTUP_PHASE_BOOK)
+                .addBackgroundPhase(STARTUP_PHASE_DEFAULT_CURRENCY, new Runnable() {
+                    @Override
+                    public void run() {
+                        setDefaultCurrencyCode(getDefaultCurrencyCode());
+                    }
+                }, STARTUP_PHASE_DATABASE)
+                .addBackgroundPhase(STARTUP_PHASE_WARM_UP, new Runnable() {
+                    @Override
+                    public void run() {
+                        //opens a read connection and loads the accounts, which the first screen lists
+                        mAccountsDbAdapter.getDataVersion();
+                        mAccountsDbAdapter.getRecordsCount();
+                    }
+                }, STARTUP_PHASE_DATABASE);
+        mStartup.start();
+    }
 
-        BookDbHelper bookDbHelper = new BookDbHelper(getApplicationContext());
-        mBooksDbAdapter = new BooksDbAdapter(bookDbHelper.getWritableDatabase());
+    /**
+     * Waits until the database of the active book is open and its default currency loaded.
+     * <p>The third-party libraries and the warm-up of the database are not waited for.
+     * This returns immediately once these phases are complete, and when called by the initialization itself</p>
+     */
+    private static void awaitStartup() {
+        StartupInitializer startup = mStartup;
+        if (startup != null)
+            startup.awaitPhases(STARTUP_PHASE_DATABASE, STARTUP_PHASE_DEFAULT_CURRENCY);
+    }
 
-        initializeDatabaseAdapters();
-        setDefaultCurrencyCode(getDefaultCurrencyCode());
+    /**
+     * Returns the duration of the phases of the initialization of the application, for tracking cold starts
+     * @return Durations in milliseconds, by phase name. Phases which are not complete are missing
+     */
+    public static Map<String, Long> getStartupTimings() {
+        StartupInitializer startup = mStartup;
+        return startup == null ? Collections.<String, Long>emptyMap() : startup.getPhaseTimings();
+    }
 
-        StethoUtils.install(this);
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (mBookContexts == null)
+            return;
+        // keep the recently used books open while the app is in use and memory is not critical
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW
+                || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            mBookContexts.evictAll(); //the context of the active book is in use, and stays open
+        }
     }
 
     /**
@@ -142,71 +262,145 @@ public class GnuCashApplication extends MultiDexApplication {
      * This method should be called every time a new book is opened
      */
     public static void initializeDatabaseAdapters() {
-        if (mDbHelper != null){ //close if open
-            mDbHelper.getReadableDatabase().close();
-        }
+        awaitStartup();
+        String bookUID = resolveActiveBookUID();
+        openBookSettings(bookUID); //before opening the database, since migrations read the settings
+        openBookDatabase(bookUID);
+    }
 
+    /**
+     * Returns the GUID of the active book, repairing the books database if no book is active
+     * @return GUID of the active book
+     */
+    private static String resolveActiveBookUID() {
         try {
-            mDbHelper = new DatabaseHelper(getAppContext(),
-                                           mBooksDbAdapter.getActiveBookUID());
+            return mBooksDbAdapter.getActiveBookUID();
         } catch (BooksDbAdapter.NoActiveBookFoundException e) {
             mBooksDbAdapter.fixBooksDatabase();
-            mDbHelper = new DatabaseHelper(getAppContext(),
-                                           mBooksDbAdapter.getActiveBookUID());
+            return mBooksDbAdapter.getActiveBookUID();
         }
-        SQLiteDatabase mainDb;
-        try {
-            mainDb = mDbHelper.getWritableDatabase();
-        } catch (SQLException e) {
-            Crashlytics.logException(e);
-            Log.e("GnuCashApplication", "Error getting database: " + e.getMessage());
-            mainDb = mDbHelper.getReadableDatabase();
+    }
+
+    /**
+     * Opens the database of a book, and makes its adapters the active ones
+     * @param bookUID GUID of the book
+     */
+    private static void openBookDatabase(@NonNull String bookUID) {
+        if (mWriteBehindQueue != null){ //pending writes belong to the book being closed
+            mWriteBehindQueue.shutdown();
+            mWriteBehindQueue = null;
+        }
+
+        // the context of the previous book stays open in the cache, so that switching back is fast
+        BookContext previousContext = mBookContext;
+        mBookContext = mBookContexts.acquire(bookUID);
+        if (previousContext != null) {
+            mBookContexts.release(previousContext);
+        }
+
+        mSplitsDbAdapter            = mBookContext.getSplitsDbAdapter();
+        mTransactionsDbAdapter      = mBookContext.getTransactionsDbAdapter();
+        mAccountsDbAdapter          = mBookContext.getAccountsDbAdapter();
+        mRecurrenceDbAdapter        = mBookContext.getRecurrenceDbAdapter();
+        mScheduledActionDbAdapter   = mBookContext.getScheduledActionDbAdapter();
+        mPricesDbAdapter            = mBookContext.getPricesDbAdapter();
+        mCommoditiesDbAdapter       = mBookContext.getCommoditiesDbAdapter();
+        mBudgetAmountsDbAdapter     = mBookContext.getBudgetAmountsDbAdapter();
+        mBudgetsDbAdapter           = mBookContext.getBudgetsDbAdapter();
+
+        mWriteBehindQueue = new WriteBehindQueue(mBookContext.getDb());
+    }
+
+    /**
+     * Listens to the preferences of the book and loads its settings snapshot
+     * @param bookUID GUID of the book being opened
+     */
+    private static void openBookSettings(@NonNull String bookUID) {
+        if (mBookPreferences != null) {
+            mBookPreferences.unregisterOnSharedPreferenceChangeListener(mSettingsListener);
         }
+        mBookPreferences = PreferenceActivity.getBookSharedPreferences(bookUID);
+        mBookPreferences.registerOnSharedPreferenceChangeListener(mSettingsListener);
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .registerOnSharedPreferenceChangeListener(mSettingsListener); //has no effect if already registered
+        mBookSettings = loadBookSettings(bookUID);
+    }
+
+    /**
+     * Reloads the settings snapshot of the open book from the preferences
+     */
+    private static synchronized void refreshBookSettings() {
+        BookSettings bookSettings = mBookSettings;
+        if (bookSettings != null) {
+            mBookSettings = loadBookSettings(bookSettings.getBookUID());
+        }
+    }
+
+    private static BookSettings loadBookSettings(@NonNull String bookUID) {
+        SharedPreferences bookPrefs = PreferenceActivity.getBookSharedPreferences(bookUID);
+        String keySaveOpeningBalances = context.getString(R.string.key_save_opening_balances);
+        Boolean saveOpeningBalances = bookPrefs.contains(keySaveOpeningBalances)
+                ? bookPrefs.getBoolean(keySaveOpeningBalances, false) : null;
+        return new BookSettings(bookUID, readDefaultCurrencyCode(),
+                bookPrefs.getBoolean(context.getString(R.string.key_use_double_entry), true),
+                saveOpeningBalances);
+    }
 
-        mSplitsDbAdapter            = new SplitsDbAdapter(mainDb);
-        mTransactionsDbAdapter      = new TransactionsDbAdapter(mainDb, mSplitsDbAdapter);
-        mAccountsDbAdapter          = new AccountsDbAdapter(mainDb, mTransactionsDbAdapter);
-        mRecurrenceDbAdapter        = new RecurrenceDbAdapter(mainDb);
-        mScheduledActionDbAdapter   = new ScheduledActionDbAdapter(mainDb, mRecurrenceDbAdapter);
-        mPricesDbAdapter            = new PricesDbAdapter(mainDb);
-        mCommoditiesDbAdapter       = new CommoditiesDbAdapter(mainDb);
-        mBudgetAmountsDbAdapter     = new BudgetAmountsDbAdapter(mainDb);
-        mBudgetsDbAdapter           = new BudgetsDbAdapter(mainDb, mBudgetAmountsDbAdapter, mRecurrenceDbAdapter);
+    /**
+     * Returns the snapshot of the settings of the open book.
+     * <p>The snapshot is replaced when a preference changes, so callers should not hold on to it</p>
+     * @return Settings of the open book
+     */
+    public static BookSettings getBookSettings() {
+        BookSettings bookSettings = mBookSettings;
+        if (bookSettings == null) { //no book opened yet
+            bookSettings = loadBookSettings(mBooksDbAdapter.getActiveBookUID());
+        }
+        return bookSettings;
     }
 
     public static AccountsDbAdapter getAccountsDbAdapter() {
+        awaitStartup();
         return mAccountsDbAdapter;
     }
 
     public static TransactionsDbAdapter getTransactionDbAdapter() {
+        awaitStartup();
         return mTransactionsDbAdapter;
     }
 
     public static SplitsDbAdapter getSplitsDbAdapter() {
+        awaitStartup();
         return mSplitsDbAdapter;
     }
 
     public static ScheduledActionDbAdapter getScheduledEventDbAdapter(){
+        awaitStartup();
         return mScheduledActionDbAdapter;
     }
 
     public static CommoditiesDbAdapter getCommoditiesDbAdapter(){
+        awaitStartup();
         return mCommoditiesDbAdapter;
     }
 
     public static PricesDbAdapter getPricesDbAdapter(){
+        awaitStartup();
         return mPricesDbAdapter;
     }
 
     public static BudgetsDbAdapter getBudgetDbAdapter() {
+        awaitStartup();
         return mBudgetsDbAdapter;
     }
 
     public static RecurrenceDbAdapter getRecurrenceDbAdapter() {
+        awaitStartup();
         return mRecurrenceDbAdapter;
     }
 
     public static BudgetAmountsDbAdapter getBudgetAmountsDbAdapter(){
+        awaitStartup();
         return mBudgetAmountsDbAdapter;
     }
 
@@ -214,12 +408,31 @@ public class GnuCashApplication extends MultiDexApplication {
         return mBooksDbAdapter;
     }
 
+    /**
+     * Returns the queue for saving records of the active book in the background
+     * @return Write queue of the active book
+     */
+    public static WriteBehindQueue getWriteBehindQueue(){
+        awaitStartup();
+        return mWriteBehindQueue;
+    }
+
     /**
      * Returns the currently active database in the application
      * @return Currently active {@link SQLiteDatabase}
      */
     public static SQLiteDatabase getActiveDb(){
-        return mDbHelper.getWritableDatabase();
+        awaitStartup();
+        return mBookContext.getDb();
+    }
+
+    /**
+     * Returns the cache of open book contexts.
+     * <p>Use it to work on a book which may not be the active one, e.g. in background services</p>
+     * @return Cache of book contexts
+     */
+    public static BookContextCache getBookContexts(){
+        return mBookContexts;
     }
 
     /**
@@ -244,8 +457,7 @@ public class GnuCashApplication extends MultiDexApplication {
      * @return <code>true</code> if double entry is enabled, <code>false</code> otherwise
      */
     public static boolean isDoubleEntryEnabled(){
-        SharedPreferences sharedPrefs = PreferenceActivity.getActiveBookSharedPreferences();
-        return sharedPrefs.getBoolean(context.getString(R.string.key_use_double_entry), true);
+        return getBookSettings().isDoubleEntryEnabled();
     }
 
     /**
@@ -255,8 +467,7 @@ public class GnuCashApplication extends MultiDexApplication {
      * @return <code>true</code> if opening balances should be saved, <code>false</code> otherwise
      */
     public static boolean shouldSaveOpeningBalances(boolean defaultValue){
-        SharedPreferences sharedPrefs = PreferenceActivity.getActiveBookSharedPreferences();
-        return sharedPrefs.getBoolean(context.getString(R.string.key_save_opening_balances), defaultValue);
+        return getBookSettings().shouldSaveOpeningBalances(defaultValue);
     }
 
     /**
@@ -270,6 +481,15 @@ public class GnuCashApplication extends MultiDexApplication {
      * @return Default currency code string for the application
      */
     public static String getDefaultCurrencyCode(){
+        return getBookSettings().getDefaultCurrencyCode();
+    }
+
+    /**
+     * Reads the default currency code from the preferences, or determines it from the locale
+     * @return Default currency code string for the application
+     * @see #getDefaultCurrencyCode()
+     */
+    private static String readDefaultCurrencyCode(){
         Locale locale = getDefaultLocale();
 
         String currencyCode = "USD"; //start with USD as the default
@@ -296,9 +516,11 @@ public class GnuCashApplication extends MultiDexApplication {
      * @see #getDefaultCurrencyCode()
      */
     public static void setDefaultCurrencyCode(@NonNull String currencyCode){
+        awaitStartup();
         PreferenceManager.getDefaultSharedPreferences(context).edit()
                 .putString(getAppContext().getString(R.string.key_default_currency), currencyCode)
                 .apply();
+        refreshBookSettings(); //without waiting for the listener on the main thread
         Money.DEFAULT_CURRENCY_CODE = currencyCode;
         Commodity.DEFAULT_COMMODITY = mCommoditiesDbAdapter.getCommodity(currencyCode);
     }
@@ -327,8 +549,9 @@ public class GnuCashApplication extends MultiDexApplication {
     }
 
     /**
-     * Starts the service for scheduled events and schedules an alarm to call the service twice daily.
-     * <p>If the alarm already exists, this method does nothing. If not, the alarm will be created
+     * Starts the service for scheduled events, if its alarm is not set.
+     * <p>The service sets the alarm itself for the next due scheduled action after every run.
+     * If the alarm already exists, this method does nothing.
      * Hence, there is no harm in calling the method repeatedly</p>
      * @param context Application context
      */
@@ -340,13 +563,6 @@ public class GnuCashApplication extends MultiDexApplication {
 
         if (pendingIntent != null) //if service is already scheduled, just return
             return;
-        else
-            pendingIntent = PendingIntent.getBroadcast(context, 0, alarmIntent, 0);
-
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME_WAKEUP,
-                SystemClock.elapsedRealtime() + AlarmManager.INTERVAL_FIFTEEN_MINUTES,
-                AlarmManager.INTERVAL_HOUR, pendingIntent);
 
         ScheduledActionService.enqueueWork(context);
     }
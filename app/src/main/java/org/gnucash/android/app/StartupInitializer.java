@@ -0,0 +1,306 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.app;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the initialization of the application as phases ordered by their dependencies.
+ * <p>Phases which are needed before the first frame run on the calling thread, in {@link #start()}.
+ * The other phases run on background threads, each one as soon as the phases it depends on are
+ * complete, so that independent phases run in parallel. Callers wait only for the phases they need
+ * with {@link #awaitPhases(String...)}, or for all of them with {@link #awaitReady()}.</p>
+ * <p>The duration of every phase is recorded, see {@link #getPhaseTimings()}</p>
+ */
+public class StartupInitializer {
+
+    private static final String LOG_TAG = "StartupInitializer";
+
+    /**
+     * Number of threads running background phases
+     */
+    private static final int THREAD_COUNT = 2;
+
+    private final Map<String, Phase> mPhases = new LinkedHashMap<>();
+    private final Map<String, Long> mPhaseTimings = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+    private final ThreadLocal<Boolean> mInPhase = new ThreadLocal<>();
+
+    private CountDownLatch mReadyLatch;
+    private volatile boolean mReady;
+    private volatile Throwable mFailure;
+    private long mStartTime;
+    private volatile long mReadyDuration = -1;
+
+    private static class Phase {
+        final String mName;
+        final boolean mOnCallingThread;
+        final Runnable mTask;
+        final List<String> mDependencies;
+        final CountDownLatch mDone = new CountDownLatch(1);
+        volatile boolean mSucceeded;
+        /**
+         * Exception of the phase, or of the dependency because of which it was skipped
+         */
+        volatile Throwable mFailure;
+
+        Phase(String name, boolean onCallingThread, Runnable task, List<String> dependencies) {
+            mName = name;
+            mOnCallingThread = onCallingThread;
+            mTask = task;
+            mDependencies = dependencies;
+        }
+    }
+
+    /**
+     * Adds a phase which runs on the thread calling {@link #start()}, before it returns.
+     * Its dependencies must be phases which also run on the calling thread
+     * @param name Unique name of the phase
+     * @param task Initialization to run
+     * @param dependencies Names of the phases which must be complete before this one runs
+     * @return This initializer, for chaining
+     */
+    public StartupInitializer addBlockingPhase(@NonNull String name, @NonNull Runnable task, String... dependencies) {
+        return addPhase(name, true, task, dependencies);
+    }
+
+    /**
+     * Adds a phase which runs in the background
+     * @param name Unique name of the phase
+     * @param task Initialization to run
+     * @param dependencies Names of the phases which must be complete before this one runs
+     * @return This initializer, for chaining
+     */
+    public StartupInitializer addBackgroundPhase(@NonNull String name, @NonNull Runnable task, String... dependencies) {
+        return addPhase(name, false, task, dependencies);
+    }
+
+    private StartupInitializer addPhase(String name, boolean onCallingThread, Runnable task, String... dependencies) {
+        if (mReadyLatch != null)
+            throw new IllegalStateException("Phases cannot be added after the initialization started");
+        if (mPhases.containsKey(name))
+            throw new IllegalArgumentException("Duplicate startup phase: " + name);
+        for (String dependency : dependencies) {
+            Phase dependencyPhase = mPhases.get(dependency);
+            //phases are added after their dependencies, so that there cannot be any cycle
+            if (dependencyPhase == null)
+                throw new IllegalArgumentException("Startup phase " + name + " depends on unknown phase " + dependency);
+            if (onCallingThread && !dependencyPhase.mOnCallingThread)
+                throw new IllegalArgumentException("Blocking startup phase " + name
+                        + " cannot depend on background phase " + dependency);
+        }
+        mPhases.put(name, new Phase(name, onCallingThread, task, Arrays.asList(dependencies)));
+        return this;
+    }
+
+    /**
+     * Runs the blocking phases and starts the background phases.
+     * <p>If a blocking phase fails, its exception is thrown. If a background phase fails,
+     * the phases depending on it are skipped and its exception is thrown by {@link #awaitReady()},
+     * and by {@link #awaitPhases(String...)} for these phases</p>
+     */
+    public void start() {
+        if (mReadyLatch != null)
+            throw new IllegalStateException("The initialization already started");
+        mStartTime = SystemClock.elapsedRealtime();
+        mReadyLatch = new CountDownLatch(mPhases.size());
+
+        List<Phase> backgroundPhases = new ArrayList<>();
+        for (Phase phase : mPhases.values()) {
+            if (phase.mOnCallingThread) {
+                runPhase(phase);
+                if (mFailure != null)
+                    throw new IllegalStateException("Startup phase " + phase.mName + " failed", mFailure);
+            } else {
+                backgroundPhases.add(phase);
+            }
+        }
+        if (backgroundPhases.isEmpty())
+            return;
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+                1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        return new Thread(runnable, LOG_TAG);
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true); //the threads stop once the initialization is complete
+        startBackgroundPhases(executor, backgroundPhases);
+        executor.shutdown();
+    }
+
+    /**
+     * Submits the background phases in the order in which they were added. Since phases are added
+     * after their dependencies, the phase submitted first among the pending ones can always run
+     */
+    private void startBackgroundPhases(ExecutorService executor, List<Phase> phases) {
+        for (final Phase phase : phases) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (String dependency : phase.mDependencies) {
+                        Phase dependencyPhase = mPhases.get(dependency);
+                        try {
+                            dependencyPhase.mDone.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        if (!dependencyPhase.mSucceeded) {
+                            Log.w(LOG_TAG, "Skipping startup phase " + phase.mName
+                                    + " because " + dependency + " did not complete");
+                            phase.mFailure = dependencyPhase.mFailure;
+                            phase.mDone.countDown();
+                            countDownReady();
+                            return;
+                        }
+                    }
+                    runPhase(phase);
+                }
+            });
+        }
+    }
+
+    private void runPhase(Phase phase) {
+        long start = SystemClock.elapsedRealtime();
+        mInPhase.set(Boolean.TRUE);
+        try {
+            phase.mTask.run();
+            phase.mSucceeded = true;
+        } catch (RuntimeException | Error e) {
+            Log.e(LOG_TAG, "Startup phase " + phase.mName + " failed", e);
+            phase.mFailure = e;
+            if (mFailure == null)
+                mFailure = e;
+        } finally {
+            mInPhase.remove();
+            long duration = SystemClock.elapsedRealtime() - start;
+            mPhaseTimings.put(phase.mName, duration);
+            Log.i(LOG_TAG, "Startup phase " + phase.mName + " took " + duration + " ms on "
+                    + Thread.currentThread().getName());
+            phase.mDone.countDown();
+            countDownReady();
+        }
+    }
+
+    private void countDownReady() {
+        mReadyLatch.countDown();
+        if (mReadyLatch.getCount() == 0) {
+            mReadyDuration = SystemClock.elapsedRealtime() - mStartTime;
+            mReady = true;
+            Log.i(LOG_TAG, "Startup complete after " + mReadyDuration + " ms");
+        }
+    }
+
+    /**
+     * Returns {@code true} if all the phases are complete
+     * @return {@code true} if the application is initialized, {@code false} otherwise
+     */
+    public boolean isReady() {
+        return mReady;
+    }
+
+    /**
+     * Waits until all the phases are complete.
+     * <p>When called from a phase, it returns immediately, since phases may use what is initialized
+     * by their dependencies. It also returns immediately if the initialization was not started.</p>
+     * @throws IllegalStateException if a phase failed
+     */
+    public void awaitReady() {
+        if (!mReady && mReadyLatch != null && mInPhase.get() == null) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    mReadyLatch.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+        Throwable failure = mFailure;
+        if (failure != null && mInPhase.get() == null)
+            throw new IllegalStateException("Application initialization failed", failure);
+    }
+
+    /**
+     * Waits until the specified phases, and thereby the phases they depend on, are complete.
+     * <p>When called from a phase, it returns immediately, since phases may use what is initialized
+     * by their dependencies. It also returns immediately if the initialization was not started.</p>
+     * @param names Names of the phases to wait for
+     * @throws IllegalArgumentException if a phase is unknown
+     * @throws IllegalStateException if one of the phases, or one of their dependencies, failed
+     */
+    public void awaitPhases(String... names) {
+        if (mReadyLatch == null || mInPhase.get() != null)
+            return;
+        boolean interrupted = false;
+        for (String name : names) {
+            Phase phase = mPhases.get(name);
+            if (phase == null)
+                throw new IllegalArgumentException("Unknown startup phase: " + name);
+            while (true) {
+                try {
+                    phase.mDone.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (phase.mFailure != null) {
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+                throw new IllegalStateException("Startup phase " + name + " failed", phase.mFailure);
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Returns the duration of the phases which are complete, in the order in which they completed
+     * @return Durations in milliseconds, by phase name
+     */
+    public Map<String, Long> getPhaseTimings() {
+        synchronized (mPhaseTimings) {
+            return new LinkedHashMap<>(mPhaseTimings);
+        }
+    }
+
+    /**
+     * Returns the time it took until all phases were complete
+     * @return Duration in milliseconds, or -1 if the initialization is not complete
+     */
+    public long getReadyDuration() {
+        return mReadyDuration;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.crashlytics.android.Crashlytics;
+
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.BudgetAmountsDbAdapter;
+import org.gnucash.android.db.adapter.BudgetsDbAdapter;
+import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
+import org.gnucash.android.db.adapter.PricesDbAdapter;
+import org.gnucash.android.db.adapter.RecurrenceDbAdapter;
+import org.gnucash.android.db.adapter.ScheduledActionDbAdapter;
+import org.gnucash.android.db.adapter.SplitsDbAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+
+/**
+ * Open database of a book, together with the adapters for its tables.
+ * <p>Opening a book opens the database file, runs any migrations and compiles the statements of
+ * the adapters. A context keeps all of this open, so that it can be reused when the book is opened
+ * again. Contexts are shared through a {@link BookContextCache} and closed when they are evicted
+ * from it.</p>
+ * @see org.gnucash.android.app.GnuCashApplication#getBookContexts()
+ */
+public class BookContext {
+
+    private static final String LOG_TAG = "BookContext";
+
+    private final String mBookUID;
+
+    private final DatabaseHelper mDbHelper;
+
+    private final SQLiteDatabase mDb;
+
+    /**
+     * Statements for single-value lookups on {@link #mDb}, shared by the adapters of the book
+     */
+    private final StatementCache mStatementCache;
+
+    private final SplitsDbAdapter mSplitsDbAdapter;
+    private final TransactionsDbAdapter mTransactionsDbAdapter;
+    private final AccountsDbAdapter mAccountsDbAdapter;
+    private final RecurrenceDbAdapter mRecurrenceDbAdapter;
+    private final ScheduledActionDbAdapter mScheduledActionDbAdapter;
+    private final PricesDbAdapter mPricesDbAdapter;
+    private final CommoditiesDbAdapter mCommoditiesDbAdapter;
+    private final BudgetAmountsDbAdapter mBudgetAmountsDbAdapter;
+    private final BudgetsDbAdapter mBudgetsDbAdapter;
+
+    /**
+     * Number of users of the context, which is only closed when there are none.
+     * Guarded by the {@link BookContextCache} owning the context
+     */
+    int mUseCount;
+
+    private boolean mClosed;
+
+    /**
+     * Opens the database of a book and creates the adapters for it
+     * @param context Application context
+     * @param bookUID GUID of the book
+     */
+    BookContext(@NonNull Context context, @NonNull String bookUID) {
+        mBookUID = bookUID;
+        mDbHelper = new DatabaseHelper(context, bookUID);
+        SQLiteDatabase db;
+        try {
+            db = mDbHelper.getWritableDatabase();
+        } catch (SQLException e) {
+            Crashlytics.logException(e);
+            Log.e(LOG_TAG, "Error getting database: " + e.getMessage());
+            db = mDbHelper.getReadableDatabase();
+        }
+        mDb = db;
+        mStatementCache = new StatementCache(db, StatementCache.DEFAULT_MAX_SIZE);
+
+        mSplitsDbAdapter            = new SplitsDbAdapter(db);
+        mTransactionsDbAdapter      = new TransactionsDbAdapter(db, mSplitsDbAdapter);
+        mAccountsDbAdapter          = new AccountsDbAdapter(db, mTransactionsDbAdapter);
+        mRecurrenceDbAdapter        = new RecurrenceDbAdapter(db);
+        mScheduledActionDbAdapter   = new ScheduledActionDbAdapter(db, mRecurrenceDbAdapter);
+        mPricesDbAdapter            = new PricesDbAdapter(db);
+        mCommoditiesDbAdapter       = new CommoditiesDbAdapter(db);
+        mBudgetAmountsDbAdapter     = new BudgetAmountsDbAdapter(db);
+        mBudgetsDbAdapter           = new BudgetsDbAdapter(db, mBudgetAmountsDbAdapter, mRecurrenceDbAdapter);
+
+        // queries of the adapters run on read connections, so they are not blocked by writes
+        ReadConnectionPool readConnectionPool = db.isReadOnly() ? null : mDbHelper.getReadConnectionPool();
+        for (DatabaseAdapter<?> adapter : getDatabaseAdapters()) {
+            adapter.setReadConnectionPool(readConnectionPool);
+            adapter.setStatementCache(mStatementCache);
+        }
+    }
+
+    /**
+     * Returns the GUID of the book
+     * @return GUID of the book
+     */
+    public String getBookUID() {
+        return mBookUID;
+    }
+
+    /**
+     * Returns the database of the book
+     * @return Writable database, or a read-only one if the database could not be opened for writing
+     */
+    public SQLiteDatabase getDb() {
+        return mDb;
+    }
+
+    public SplitsDbAdapter getSplitsDbAdapter() {
+        return mSplitsDbAdapter;
+    }
+
+    public TransactionsDbAdapter getTransactionsDbAdapter() {
+        return mTransactionsDbAdapter;
+    }
+
+    public AccountsDbAdapter getAccountsDbAdapter() {
+        return mAccountsDbAdapter;
+    }
+
+    public RecurrenceDbAdapter getRecurrenceDbAdapter() {
+        return mRecurrenceDbAdapter;
+    }
+
+    public ScheduledActionDbAdapter getScheduledActionDbAdapter() {
+        return mScheduledActionDbAdapter;
+    }
+
+    public PricesDbAdapter getPricesDbAdapter() {
+        return mPricesDbAdapter;
+    }
+
+    public CommoditiesDbAdapter getCommoditiesDbAdapter() {
+        return mCommoditiesDbAdapter;
+    }
+
+    public BudgetAmountsDbAdapter getBudgetAmountsDbAdapter() {
+        return mBudgetAmountsDbAdapter;
+    }
+
+    public BudgetsDbAdapter getBudgetsDbAdapter() {
+        return mBudgetsDbAdapter;
+    }
+
+    /**
+     * Returns all adapters of the book
+     * @return Array of database adapters
+     */
+    public DatabaseAdapter<?>[] getDatabaseAdapters() {
+        return new DatabaseAdapter<?>[]{mSplitsDbAdapter, mTransactionsDbAdapter, mAccountsDbAdapter,
+                mRecurrenceDbAdapter, mScheduledActionDbAdapter, mPricesDbAdapter, mCommoditiesDbAdapter,
+                mBudgetAmountsDbAdapter, mBudgetsDbAdapter};
+    }
+
+    /**
+     * Checks if the context has been closed
+     * @return {@code true} if the context is closed, {@code false} otherwise
+     */
+    public synchronized boolean isClosed() {
+        return mClosed;
+    }
+
+    /**
+     * Closes the statements of the adapters and the database, along with its read connections
+     */
+    synchronized void close() {
+        if (mClosed)
+            return;
+        mClosed = true;
+        for (DatabaseAdapter<?> adapter : getDatabaseAdapters()) {
+            adapter.close();
+        }
+        mStatementCache.close();
+        mDbHelper.close();
+    }
+}
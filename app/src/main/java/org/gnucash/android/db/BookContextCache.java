@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps the {@link BookContext}s of the most recently used books open, so that switching back to
+ * a book does not open its database and compile its statements again.
+ * <p>Contexts are acquired with {@link #acquire(String)} and must be handed back with
+ * {@link #release(BookContext)}. A context which is in use (e.g. the one of the active book) is
+ * never evicted, so there is at most one open context per book. The least recently used contexts
+ * which are not in use are closed when there are more than {@code maxSize} of them, or when
+ * memory runs low.</p>
+ */
+public class BookContextCache {
+
+    /**
+     * Number of contexts kept open by default: the active book and the one used before it
+     */
+    public static final int DEFAULT_MAX_SIZE = 2;
+
+    private final Context mContext;
+
+    private final int mMaxSize;
+
+    /**
+     * Open contexts by book GUID, in order of access (least recently used first)
+     */
+    private final LinkedHashMap<String, BookContext> mContexts = new LinkedHashMap<>(8, 0.75f, true);
+
+    public BookContextCache(@NonNull Context context, int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("The cache must hold at least one context");
+        mContext = context.getApplicationContext();
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns the open context of a book, opening the book if it is not in the cache.
+     * <p>The context stays open until it is released</p>
+     * @param bookUID GUID of the book
+     * @return Open context of the book
+     */
+    public synchronized BookContext acquire(@NonNull String bookUID) {
+        BookContext bookContext = mContexts.get(bookUID);
+        if (bookContext == null) {
+            bookContext = new BookContext(mContext, bookUID);
+            mContexts.put(bookUID, bookContext);
+        }
+        bookContext.mUseCount++;
+        trimToSize(mMaxSize);
+        return bookContext;
+    }
+
+    /**
+     * Hands back a context obtained from {@link #acquire(String)}.
+     * The context is not closed, unless it is no longer cached
+     * @param bookContext Context to release
+     */
+    public synchronized void release(@NonNull BookContext bookContext) {
+        if (bookContext.mUseCount > 0)
+            bookContext.mUseCount--;
+        if (bookContext.mUseCount == 0 && mContexts.get(bookContext.getBookUID()) != bookContext) {
+            bookContext.close();
+        } else {
+            trimToSize(mMaxSize);
+        }
+    }
+
+    /**
+     * Closes the least recently used contexts which are not in use,
+     * until at most {@code maxSize} contexts are open
+     * @param maxSize Maximum number of open contexts to keep
+     */
+    public synchronized void trimToSize(int maxSize) {
+        Iterator<BookContext> iterator = mContexts.values().iterator();
+        while (mContexts.size() > maxSize && iterator.hasNext()) {
+            BookContext bookContext = iterator.next();
+            if (bookContext.mUseCount == 0) {
+                iterator.remove();
+                bookContext.close();
+            }
+        }
+    }
+
+    /**
+     * Closes all contexts which are not in use.
+     * Called when the system is low on memory
+     */
+    public void evictAll() {
+        trimToSize(0);
+    }
+
+    /**
+     * Removes the context of a book from the cache, e.g. before its database is deleted.
+     * The context is closed right away if it is not in use, or else when it is released
+     * @param bookUID GUID of the book
+     */
+    public synchronized void evict(@NonNull String bookUID) {
+        BookContext bookContext = mContexts.remove(bookUID);
+        if (bookContext != null && bookContext.mUseCount == 0) {
+            bookContext.close();
+        }
+    }
+
+    /**
+     * Returns the number of open contexts
+     * @return Number of open contexts
+     */
+    public synchronized int size() {
+        return mContexts.size();
+    }
+}
@@ -17,20 +17,26 @@
 package org.gnucash.android.db;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.support.annotation.Nullable;
 import android.util.Log;
 import android.widget.Toast;
 
 import com.crashlytics.android.Crashlytics;
 
 import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
 import org.gnucash.android.model.Commodity;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Locale;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -39,11 +45,16 @@ import static org.gnucash.android.db.DatabaseSchema.BudgetAmountEntry;
 import static org.gnucash.android.db.DatabaseSchema.BudgetEntry;
 import static org.gnucash.android.db.DatabaseSchema.CommodityEntry;
 import static org.gnucash.android.db.DatabaseSchema.CommonColumns;
+import static org.gnucash.android.db.DatabaseSchema.DataVersionEntry;
 import static org.gnucash.android.db.DatabaseSchema.PriceEntry;
 import static org.gnucash.android.db.DatabaseSchema.RecurrenceEntry;
 import static org.gnucash.android.db.DatabaseSchema.ScheduledActionEntry;
 import static org.gnucash.android.db.DatabaseSchema.SplitEntry;
+import static org.gnucash.android.db.DatabaseSchema.TransactionSearchEntry;
+import static org.gnucash.android.db.DatabaseSchema.TransactionSuggestionEntry;
 import static org.gnucash.android.db.DatabaseSchema.TransactionEntry;
+import static org.gnucash.android.db.DatabaseSchema.TransactionSummaryEntry;
+import static org.gnucash.android.db.DatabaseSchema.VIEW_TRANS_SPLIT_ACCT;
 /**
  * Helper class for managing the SQLite database.
  * Creates the database and handles upgrades
@@ -95,6 +106,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             + TransactionEntry.COLUMN_CURRENCY      + " varchar(255) not null, "
             + TransactionEntry.COLUMN_COMMODITY_UID + " varchar(255) not null, "
             + TransactionEntry.COLUMN_SCHEDX_ACTION_UID + " varchar(255), "
+            + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION + " varchar(255), "
             + TransactionEntry.COLUMN_CREATED_AT    + " TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
             + TransactionEntry.COLUMN_MODIFIED_AT   + " TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
             + "FOREIGN KEY (" 	+ TransactionEntry.COLUMN_SCHEDX_ACTION_UID + ") REFERENCES " + ScheduledActionEntry.TABLE_NAME + " (" + ScheduledActionEntry.COLUMN_UID + ") ON DELETE SET NULL, "
@@ -142,6 +154,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             + ScheduledActionEntry.COLUMN_ADVANCE_NOTIFY    + " integer default 0, "
             + ScheduledActionEntry.COLUMN_TOTAL_FREQUENCY   + " integer default 0, "
             + ScheduledActionEntry.COLUMN_EXECUTION_COUNT   + " integer default 0, "
+            + ScheduledActionEntry.COLUMN_NEXT_RUN_AT       + " integer, "
             + ScheduledActionEntry.COLUMN_CREATED_AT        + " TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
             + ScheduledActionEntry.COLUMN_MODIFIED_AT       + " TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
             + "FOREIGN KEY (" 	+ ScheduledActionEntry.COLUMN_RECURRENCE_UID + ") REFERENCES " + RecurrenceEntry.TABLE_NAME + " (" + RecurrenceEntry.COLUMN_UID + ") "
@@ -232,6 +245,16 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
 	}
 
+    /**
+     * Flag whether the database was switched to write-ahead logging when it was opened
+     */
+    private boolean mWriteAheadLogging = false;
+
+    /**
+     * Read connections of the database, created on first request
+     */
+    private ReadConnectionPool mReadConnectionPool;
+
     /**
      * Creates an update trigger to update the updated_at column for all records in the database.
      * This has to be run per table, and is currently appended to the create table statement.
@@ -253,6 +276,61 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
 	}
 
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        mWriteAheadLogging = enableWriteAheadLogging(db);
+    }
+
+    /**
+     * Switches the journal of the database to write-ahead logging.
+     * <p>{@link SQLiteDatabase#enableWriteAheadLogging()} is not used because it also lets the
+     * database run queries on secondary connections behind the back of the adapters.
+     * Concurrent reads go through {@link ReadConnectionPool} instead, with their own statement caches.</p>
+     * @param db Database being configured
+     * @return {@code true} if the database is now in WAL mode, {@code false} otherwise
+     * (e.g. for in-memory or read-only databases)
+     */
+    static boolean enableWriteAheadLogging(SQLiteDatabase db) {
+        try {
+            Cursor cursor = db.rawQuery("PRAGMA journal_mode=WAL", null);
+            try {
+                return cursor.moveToFirst() && "wal".equalsIgnoreCase(cursor.getString(0));
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            Log.w(LOG_TAG, "Could not enable write-ahead logging: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Returns the pool of read connections for this database.
+     * <p>The pool is only available when the database is in write-ahead log mode,
+     * because otherwise readers would still be blocked by writers</p>
+     * @return Read connection pool, or null if the database does not support concurrent readers
+     */
+    @Nullable
+    public synchronized ReadConnectionPool getReadConnectionPool() {
+        if (mReadConnectionPool == null) {
+            SQLiteDatabase db = getWritableDatabase();
+            if (mWriteAheadLogging && !db.isReadOnly()) {
+                mReadConnectionPool = new ReadConnectionPool(db.getPath(), ReadConnectionPool.DEFAULT_SIZE);
+            }
+        }
+        return mReadConnectionPool;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mReadConnectionPool != null) {
+            mReadConnectionPool.close();
+            mReadConnectionPool = null;
+        }
+        super.close();
+    }
+
     @Override
     public void onOpen(SQLiteDatabase db) {
         super.onOpen(db);
@@ -301,6 +379,603 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 	}
 
 
+    /**
+     * Creates the indexes used for paging through transactions in (timestamp, uid) order
+     * and for fetching the splits of a page of transactions.
+     * <p>The index on the timestamp alone is ordered by (timestamp, _id), the order of the transaction lists</p>
+     * @param db Database instance
+     */
+    static void createTransactionPagingIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS '" + TransactionEntry.INDEX_TIMESTAMP_UID + "' ON "
+                + TransactionEntry.TABLE_NAME + "(" + TransactionEntry.COLUMN_TIMESTAMP + ", "
+                + TransactionEntry.COLUMN_UID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS '" + TransactionEntry.INDEX_TIMESTAMP + "' ON "
+                + TransactionEntry.TABLE_NAME + "(" + TransactionEntry.COLUMN_TIMESTAMP + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS '" + SplitEntry.INDEX_TRANSACTION_UID + "' ON "
+                + SplitEntry.TABLE_NAME + "(" + SplitEntry.COLUMN_TRANSACTION_UID + ")");
+    }
+
+    /**
+     * Creates the index for finding the scheduled actions which are due
+     * @param db Database instance
+     */
+    static void createScheduledActionNextRunIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS '" + ScheduledActionEntry.INDEX_NEXT_RUN_AT + "' ON "
+                + ScheduledActionEntry.TABLE_NAME + "(" + ScheduledActionEntry.COLUMN_NEXT_RUN_AT + ")");
+    }
+
+    /**
+     * Creates the view combining transactions, splits and accounts, which is often used in the queries
+     * @param db Database instance
+     */
+    static void createTransactionSplitAccountView(SQLiteDatabase db) {
+        //todo: would it be useful to add the split reconciled_state and reconciled_date to this view?
+        db.execSQL("CREATE VIEW IF NOT EXISTS " + VIEW_TRANS_SPLIT_ACCT + " AS SELECT "
+                        + TransactionEntry.TABLE_NAME + "." + CommonColumns.COLUMN_MODIFIED_AT + " AS "
+                        + TransactionEntry.TABLE_NAME + "_" + CommonColumns.COLUMN_MODIFIED_AT + " , "
+                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " AS "
+                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_UID + " , "
+                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_DESCRIPTION + " AS "
+                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_DESCRIPTION + " , "
+                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_NOTES + " AS "
+                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_NOTES + " , "
+                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_CURRENCY + " AS "
+                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_CURRENCY + " , "
+                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + " AS "
+                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TIMESTAMP + " , "
+                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_EXPORTED + " AS "
+                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_EXPORTED + " , "
+                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TEMPLATE + " AS "
+                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TEMPLATE + " , "
+                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_UID + " AS "
+                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_UID + " , "
+                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TYPE + " AS "
+                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_TYPE + " , "
+                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_VALUE_NUM + " AS "
+                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_VALUE_NUM + " , "
+                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_VALUE_DENOM + " AS "
+                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_VALUE_DENOM + " , "
+                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_QUANTITY_NUM + " AS "
+                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_NUM + " , "
+                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_QUANTITY_DENOM + " AS "
+                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_DENOM + " , "
+                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_MEMO + " AS "
+                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_MEMO + " , "
+                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_UID + " AS "
+                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_UID + " , "
+                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_NAME + " AS "
+                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_NAME + " , "
+                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_CURRENCY + " AS "
+                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_CURRENCY + " , "
+                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " AS "
+                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " , "
+                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_PLACEHOLDER + " AS "
+                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_PLACEHOLDER + " , "
+                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_COLOR_CODE + " AS "
+                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_COLOR_CODE + " , "
+                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_FAVORITE + " AS "
+                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_FAVORITE + " , "
+                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_FULL_NAME + " AS "
+                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_FULL_NAME + " , "
+                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_TYPE + " AS "
+                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_TYPE + " , "
+                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_DEFAULT_TRANSFER_ACCOUNT_UID + " AS "
+                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_DEFAULT_TRANSFER_ACCOUNT_UID
+                        + " FROM " + TransactionEntry.TABLE_NAME + " , " + SplitEntry.TABLE_NAME + " ON "
+                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + "=" + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID
+                        + " , " + AccountEntry.TABLE_NAME + " ON "
+                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + "=" + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_UID
+        );
+    }
+
+    /**
+     * Creates the data version counter and the triggers which increase it whenever the accounts,
+     * transactions, splits, prices or budgets change.
+     * <p>New splits are only saved along with the insert or the modification mark of their transaction,
+     * which already increases the version once per transaction, so there is no insert trigger on the splits.</p>
+     * @param db Database instance
+     * @see DataVersionEntry
+     */
+    static void createDataVersion(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + DataVersionEntry.TABLE_NAME + " ("
+                + DataVersionEntry.COLUMN_VERSION + " integer NOT NULL DEFAULT 0)");
+        db.execSQL("INSERT INTO " + DataVersionEntry.TABLE_NAME + " (" + DataVersionEntry.COLUMN_VERSION + ")"
+                + " SELECT 0 WHERE NOT EXISTS (SELECT 1 FROM " + DataVersionEntry.TABLE_NAME + ")");
+
+        String[] tableNames = {AccountEntry.TABLE_NAME, TransactionEntry.TABLE_NAME, SplitEntry.TABLE_NAME,
+                PriceEntry.TABLE_NAME, BudgetEntry.TABLE_NAME, BudgetAmountEntry.TABLE_NAME};
+        String increaseVersion = "UPDATE " + DataVersionEntry.TABLE_NAME + " SET "
+                + DataVersionEntry.COLUMN_VERSION + " = " + DataVersionEntry.COLUMN_VERSION + " + 1";
+        for (String tableName : tableNames) {
+            for (String event : new String[]{"INSERT", "UPDATE", "DELETE"}) {
+                if (tableName.equals(SplitEntry.TABLE_NAME) && event.equals("INSERT"))
+                    continue;
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS " + tableName + "_" + event.toLowerCase(Locale.US)
+                        + "_version_trigger AFTER " + event + " ON " + tableName
+                        + " FOR EACH ROW BEGIN " + increaseVersion + "; END");
+            }
+        }
+    }
+
+    /**
+     * Creates the full-text index of the transactions and the triggers which keep it up to date.
+     * <p>The index is an FTS4 table whose document IDs are the record IDs of the transactions.
+     * A REPLACE of a transaction does not fire the delete triggers, so the entry of the replaced
+     * transaction is removed before the new one is inserted. The memos of new splits are indexed
+     * once per transaction by {@link #updateTransactionAggregates(SQLiteDatabase, List)}.</p>
+     * @param db Database instance
+     * @see TransactionSearchEntry
+     */
+    static void createTransactionSearchIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TransactionSearchEntry.TABLE_NAME + " USING fts4 ("
+                + TransactionSearchEntry.COLUMN_DESCRIPTION + ", "
+                + TransactionSearchEntry.COLUMN_NOTES + ", "
+                + TransactionSearchEntry.COLUMN_MEMOS + ")");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS transaction_replace_fts_trigger BEFORE INSERT ON "
+                + TransactionEntry.TABLE_NAME + " FOR EACH ROW BEGIN "
+                + "DELETE FROM " + TransactionSearchEntry.TABLE_NAME + " WHERE docid IN (SELECT "
+                + TransactionEntry._ID + " FROM " + TransactionEntry.TABLE_NAME
+                + " WHERE " + TransactionEntry.COLUMN_UID + " = NEW." + TransactionEntry.COLUMN_UID + "); "
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS transaction_insert_fts_trigger AFTER INSERT ON "
+                + TransactionEntry.TABLE_NAME + " FOR EACH ROW BEGIN "
+                + "INSERT INTO " + TransactionSearchEntry.TABLE_NAME + " (docid, "
+                + TransactionSearchEntry.COLUMN_DESCRIPTION + ", " + TransactionSearchEntry.COLUMN_NOTES + ", "
+                + TransactionSearchEntry.COLUMN_MEMOS + ") VALUES (NEW." + TransactionEntry._ID + ", NEW."
+                + TransactionEntry.COLUMN_DESCRIPTION + ", NEW." + TransactionEntry.COLUMN_NOTES + ", "
+                + splitMemosSql("NEW." + TransactionEntry.COLUMN_UID) + "); "
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS transaction_update_fts_trigger AFTER UPDATE OF "
+                + TransactionEntry.COLUMN_DESCRIPTION + ", " + TransactionEntry.COLUMN_NOTES + " ON "
+                + TransactionEntry.TABLE_NAME + " FOR EACH ROW BEGIN "
+                + "UPDATE " + TransactionSearchEntry.TABLE_NAME + " SET "
+                + TransactionSearchEntry.COLUMN_DESCRIPTION + " = NEW." + TransactionEntry.COLUMN_DESCRIPTION + ", "
+                + TransactionSearchEntry.COLUMN_NOTES + " = NEW." + TransactionEntry.COLUMN_NOTES
+                + " WHERE docid = NEW." + TransactionEntry._ID + "; "
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS transaction_delete_fts_trigger AFTER DELETE ON "
+                + TransactionEntry.TABLE_NAME + " FOR EACH ROW BEGIN "
+                + "DELETE FROM " + TransactionSearchEntry.TABLE_NAME + " WHERE docid = OLD." + TransactionEntry._ID + "; "
+                + "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS split_update_fts_trigger AFTER UPDATE OF "
+                + SplitEntry.COLUMN_TRANSACTION_UID + ", " + SplitEntry.COLUMN_MEMO + " ON "
+                + SplitEntry.TABLE_NAME + " FOR EACH ROW BEGIN "
+                + updateSplitMemosSql("OLD." + SplitEntry.COLUMN_TRANSACTION_UID) + "; "
+                + updateSplitMemosSql("NEW." + SplitEntry.COLUMN_TRANSACTION_UID) + "; "
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS split_delete_fts_trigger AFTER DELETE ON "
+                + SplitEntry.TABLE_NAME + " FOR EACH ROW BEGIN "
+                + updateSplitMemosSql("OLD." + SplitEntry.COLUMN_TRANSACTION_UID) + "; "
+                + "END");
+    }
+
+    /**
+     * Indexes all transactions for full-text search, replacing existing entries
+     * @param db Database instance
+     */
+    static void rebuildTransactionSearchIndex(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TransactionSearchEntry.TABLE_NAME);
+        db.execSQL("INSERT INTO " + TransactionSearchEntry.TABLE_NAME + " (docid, "
+                + TransactionSearchEntry.COLUMN_DESCRIPTION + ", " + TransactionSearchEntry.COLUMN_NOTES + ", "
+                + TransactionSearchEntry.COLUMN_MEMOS + ") SELECT " + TransactionEntry._ID + ", "
+                + TransactionEntry.COLUMN_DESCRIPTION + ", " + TransactionEntry.COLUMN_NOTES + ", "
+                + splitMemosSql(TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID)
+                + " FROM " + TransactionEntry.TABLE_NAME);
+    }
+
+    /**
+     * Returns the expression which concatenates the memos of the splits of a transaction
+     * @param transactionUID Expression of the GUID of the transaction
+     */
+    private static String splitMemosSql(String transactionUID) {
+        return "(SELECT GROUP_CONCAT(" + SplitEntry.COLUMN_MEMO + ", ' ') FROM " + SplitEntry.TABLE_NAME
+                + " WHERE " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID + " = " + transactionUID + ")";
+    }
+
+    /**
+     * Returns the statement which updates the indexed split memos of a transaction
+     * @param transactionUID Expression of the GUID of the transaction
+     */
+    private static String updateSplitMemosSql(String transactionUID) {
+        return "UPDATE " + TransactionSearchEntry.TABLE_NAME + " SET " + TransactionSearchEntry.COLUMN_MEMOS
+                + " = " + splitMemosSql(transactionUID) + " WHERE docid = (SELECT " + TransactionEntry._ID
+                + " FROM " + TransactionEntry.TABLE_NAME + " WHERE " + TransactionEntry.COLUMN_UID + " = " + transactionUID + ")";
+    }
+
+    /**
+     * Creates the table of the description suggestions of each account, the index of the transactions
+     * by normalized description and the triggers which keep the suggestions up to date.
+     * @param db Database instance
+     * @see TransactionSuggestionEntry
+     * @see #createTransactionSuggestionTriggers(SQLiteDatabase)
+     */
+    static void createTransactionSuggestions(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TransactionSuggestionEntry.TABLE_NAME + " ("
+                + TransactionSuggestionEntry.COLUMN_ACCOUNT_UID + " varchar(255) NOT NULL, "
+                + TransactionSuggestionEntry.COLUMN_NORMALIZED_DESCRIPTION + " varchar(255) NOT NULL, "
+                + TransactionSuggestionEntry.COLUMN_DESCRIPTION + " varchar(255) NOT NULL, "
+                + TransactionSuggestionEntry.COLUMN_LAST_USED + " integer NOT NULL, "
+                + TransactionSuggestionEntry.COLUMN_USE_COUNT + " integer NOT NULL DEFAULT 0, "
+                + TransactionSuggestionEntry.COLUMN_TRANSACTION_UID + " varchar(255) NOT NULL, "
+                + "PRIMARY KEY (" + TransactionSuggestionEntry.COLUMN_ACCOUNT_UID + ", "
+                + TransactionSuggestionEntry.COLUMN_NORMALIZED_DESCRIPTION + "))");
+        db.execSQL("CREATE INDEX IF NOT EXISTS '" + TransactionSuggestionEntry.INDEX_TRANSACTION_UID + "' ON "
+                + TransactionSuggestionEntry.TABLE_NAME + "(" + TransactionSuggestionEntry.COLUMN_TRANSACTION_UID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS '" + TransactionEntry.INDEX_NORMALIZED_DESCRIPTION + "' ON "
+                + TransactionEntry.TABLE_NAME + "(" + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION + ", "
+                + TransactionEntry.COLUMN_TIMESTAMP + ")");
+        createTransactionSuggestionTriggers(db);
+    }
+
+    /**
+     * Creates the triggers which keep the description suggestions up to date.
+     * <p>Every transaction counts as one use of its description in each account of its splits.
+     * The triggers add or remove the uses of the transaction whose splits or normalized description
+     * change, instead of counting the uses again. Since transactions are saved again with {@code REPLACE}
+     * when they are edited, which deletes their splits, the uses of an existing transaction are removed
+     * before it is saved again, and counted again with its new splits. When the transaction kept by a
+     * suggestion loses its use, the most recent remaining one is looked up with the index of the
+     * transactions by normalized description.</p>
+     * <p>Within a trigger, the conflict clause of the outer statement replaces the one of the trigger
+     * statements, so new suggestions are not inserted with {@code INSERT OR IGNORE}.</p>
+     * @param db Database instance
+     */
+    static void createTransactionSuggestionTriggers(SQLiteDatabase db) {
+        String pairChanged = "(OLD." + SplitEntry.COLUMN_ACCOUNT_UID + " IS NOT NEW." + SplitEntry.COLUMN_ACCOUNT_UID
+                + " OR OLD." + SplitEntry.COLUMN_TRANSACTION_UID + " IS NOT NEW." + SplitEntry.COLUMN_TRANSACTION_UID + ")";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS split_insert_suggestion_trigger AFTER INSERT ON "
+                + SplitEntry.TABLE_NAME + " FOR EACH ROW WHEN " + isOnlySplitInAccountSql("NEW") + " BEGIN "
+                + addTransactionSuggestionUsesSql("NEW." + SplitEntry.COLUMN_TRANSACTION_UID,
+                        "(NEW." + SplitEntry.COLUMN_ACCOUNT_UID + ")")
+                + "END");
+        // a REPLACE of a split does not fire the delete triggers
+        String replacedSplit = " FROM " + SplitEntry.TABLE_NAME + " replaced WHERE replaced."
+                + SplitEntry.COLUMN_UID + " = NEW." + SplitEntry.COLUMN_UID;
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS split_replace_suggestion_trigger BEFORE INSERT ON "
+                + SplitEntry.TABLE_NAME + " FOR EACH ROW BEGIN "
+                + removeTransactionSuggestionUsesSql(
+                        normalizedDescriptionOfSql("(SELECT replaced." + SplitEntry.COLUMN_TRANSACTION_UID + replacedSplit + ")"),
+                        "(SELECT replaced." + SplitEntry.COLUMN_TRANSACTION_UID + replacedSplit + ")",
+                        "(SELECT replaced." + SplitEntry.COLUMN_ACCOUNT_UID + replacedSplit
+                                + " AND " + isOnlySplitInAccountSql("replaced") + ")")
+                + "END");
+        // the transaction is already deleted when its splits are deleted by cascade, its uses are removed below
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS split_delete_suggestion_trigger AFTER DELETE ON "
+                + SplitEntry.TABLE_NAME + " FOR EACH ROW WHEN " + isOnlySplitInAccountSql("OLD") + " BEGIN "
+                + removeTransactionSuggestionUsesSql(normalizedDescriptionOfSql("OLD." + SplitEntry.COLUMN_TRANSACTION_UID),
+                        "OLD." + SplitEntry.COLUMN_TRANSACTION_UID, "(OLD." + SplitEntry.COLUMN_ACCOUNT_UID + ")")
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS split_update_old_suggestion_trigger AFTER UPDATE OF "
+                + SplitEntry.COLUMN_ACCOUNT_UID + ", " + SplitEntry.COLUMN_TRANSACTION_UID + " ON "
+                + SplitEntry.TABLE_NAME + " FOR EACH ROW WHEN " + pairChanged
+                + " AND " + isOnlySplitInAccountSql("OLD") + " BEGIN "
+                + removeTransactionSuggestionUsesSql(normalizedDescriptionOfSql("OLD." + SplitEntry.COLUMN_TRANSACTION_UID),
+                        "OLD." + SplitEntry.COLUMN_TRANSACTION_UID, "(OLD." + SplitEntry.COLUMN_ACCOUNT_UID + ")")
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS split_update_new_suggestion_trigger AFTER UPDATE OF "
+                + SplitEntry.COLUMN_ACCOUNT_UID + ", " + SplitEntry.COLUMN_TRANSACTION_UID + " ON "
+                + SplitEntry.TABLE_NAME + " FOR EACH ROW WHEN " + pairChanged
+                + " AND " + isOnlySplitInAccountSql("NEW") + " BEGIN "
+                + addTransactionSuggestionUsesSql("NEW." + SplitEntry.COLUMN_TRANSACTION_UID,
+                        "(NEW." + SplitEntry.COLUMN_ACCOUNT_UID + ")")
+                + "END");
+        // the existing row, if any, is still there before a REPLACE
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS transaction_replace_suggestion_trigger BEFORE INSERT ON "
+                + TransactionEntry.TABLE_NAME + " FOR EACH ROW BEGIN "
+                + removeTransactionSuggestionUsesSql(normalizedDescriptionOfSql("NEW." + TransactionEntry.COLUMN_UID),
+                        "NEW." + TransactionEntry.COLUMN_UID, accountsOfTransactionSql("NEW." + TransactionEntry.COLUMN_UID))
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS transaction_update_suggestion_trigger AFTER UPDATE OF "
+                + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION + " ON " + TransactionEntry.TABLE_NAME
+                + " FOR EACH ROW WHEN OLD." + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION
+                + " IS NOT NEW." + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION + " BEGIN "
+                + removeTransactionSuggestionUsesSql("OLD." + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION,
+                        "OLD." + TransactionEntry.COLUMN_UID, accountsOfTransactionSql("NEW." + TransactionEntry.COLUMN_UID))
+                + addTransactionSuggestionUsesSql("NEW." + TransactionEntry.COLUMN_UID,
+                        accountsOfTransactionSql("NEW." + TransactionEntry.COLUMN_UID))
+                + "END");
+        // a description which only differs in case or spaces keeps its uses
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS transaction_rename_suggestion_trigger AFTER UPDATE OF "
+                + TransactionEntry.COLUMN_DESCRIPTION + " ON " + TransactionEntry.TABLE_NAME
+                + " FOR EACH ROW WHEN OLD." + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION
+                + " IS NEW." + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION + " BEGIN "
+                + "UPDATE " + TransactionSuggestionEntry.TABLE_NAME + " SET "
+                + TransactionSuggestionEntry.COLUMN_DESCRIPTION + " = NEW." + TransactionEntry.COLUMN_DESCRIPTION
+                + " WHERE " + TransactionSuggestionEntry.TABLE_NAME + "." + TransactionSuggestionEntry.COLUMN_TRANSACTION_UID
+                + " = NEW." + TransactionEntry.COLUMN_UID + "; "
+                + "END");
+        // the splits are still there before the transaction is deleted
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS transaction_delete_suggestion_trigger BEFORE DELETE ON "
+                + TransactionEntry.TABLE_NAME + " FOR EACH ROW BEGIN "
+                + removeTransactionSuggestionUsesSql("OLD." + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION,
+                        "OLD." + TransactionEntry.COLUMN_UID, accountsOfTransactionSql("OLD." + TransactionEntry.COLUMN_UID))
+                + "END");
+    }
+
+    /**
+     * Returns the statements of a trigger which count one use of the description of a transaction
+     * in each of the given accounts
+     * @param transactionUID Expression of the GUID of the transaction
+     * @param accountUIDs List or sub-query of the GUIDs of the accounts, which have splits of the transaction
+     * @return SQL statements, each one terminated by a semicolon
+     */
+    private static String addTransactionSuggestionUsesSql(String transactionUID, String accountUIDs) {
+        String transaction = " FROM " + TransactionEntry.TABLE_NAME + " WHERE "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " = " + transactionUID + ")";
+        String transactionTime = "(SELECT " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + transaction;
+        String isMostRecent = "CASE WHEN " + transactionTime + " >= "
+                + TransactionSuggestionEntry.TABLE_NAME + "." + TransactionSuggestionEntry.COLUMN_LAST_USED;
+        return "INSERT INTO " + TransactionSuggestionEntry.TABLE_NAME + " ("
+                + TransactionSuggestionEntry.COLUMN_ACCOUNT_UID + ", "
+                + TransactionSuggestionEntry.COLUMN_NORMALIZED_DESCRIPTION + ", "
+                + TransactionSuggestionEntry.COLUMN_DESCRIPTION + ", "
+                + TransactionSuggestionEntry.COLUMN_LAST_USED + ", "
+                + TransactionSuggestionEntry.COLUMN_USE_COUNT + ", "
+                + TransactionSuggestionEntry.COLUMN_TRANSACTION_UID + ") SELECT DISTINCT "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + ", "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION + ", "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_DESCRIPTION + ", "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + ", 0, "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID
+                + " FROM " + SplitEntry.TABLE_NAME + " INNER JOIN " + TransactionEntry.TABLE_NAME + " ON "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " = "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID
+                + " WHERE " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " = " + transactionUID
+                + " AND " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + " IN " + accountUIDs
+                + " AND " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION + " <> ''"
+                + " AND NOT EXISTS (SELECT 1 FROM " + TransactionSuggestionEntry.TABLE_NAME + " WHERE "
+                + TransactionSuggestionEntry.TABLE_NAME + "." + TransactionSuggestionEntry.COLUMN_ACCOUNT_UID + " = "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + " AND "
+                + TransactionSuggestionEntry.TABLE_NAME + "." + TransactionSuggestionEntry.COLUMN_NORMALIZED_DESCRIPTION + " = "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION + "); "
+                + "UPDATE " + TransactionSuggestionEntry.TABLE_NAME + " SET "
+                + TransactionSuggestionEntry.COLUMN_USE_COUNT + " = " + TransactionSuggestionEntry.COLUMN_USE_COUNT + " + 1, "
+                + TransactionSuggestionEntry.COLUMN_DESCRIPTION + " = " + isMostRecent
+                + " THEN (SELECT " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_DESCRIPTION + transaction
+                + " ELSE " + TransactionSuggestionEntry.TABLE_NAME + "." + TransactionSuggestionEntry.COLUMN_DESCRIPTION + " END, "
+                + TransactionSuggestionEntry.COLUMN_TRANSACTION_UID + " = " + isMostRecent + " THEN " + transactionUID
+                + " ELSE " + TransactionSuggestionEntry.TABLE_NAME + "." + TransactionSuggestionEntry.COLUMN_TRANSACTION_UID + " END, "
+                + TransactionSuggestionEntry.COLUMN_LAST_USED + " = MAX("
+                + TransactionSuggestionEntry.TABLE_NAME + "." + TransactionSuggestionEntry.COLUMN_LAST_USED + ", " + transactionTime + ")"
+                + " WHERE " + TransactionSuggestionEntry.TABLE_NAME + "." + TransactionSuggestionEntry.COLUMN_ACCOUNT_UID
+                + " IN " + accountUIDs + " AND " + TransactionSuggestionEntry.TABLE_NAME + "."
+                + TransactionSuggestionEntry.COLUMN_NORMALIZED_DESCRIPTION + " = " + normalizedDescriptionOfSql(transactionUID) + "; ";
+    }
+
+    /**
+     * Returns the statements of a trigger which remove one use of a description in each of the given accounts.
+     * Suggestions which are not used anymore are deleted. Suggestions which kept the transaction whose use
+     * is removed take the most recent of the other transactions using their description in their account.
+     * @param normalizedDescription Expression of the normalized description whose use is removed
+     * @param transactionUID Expression of the GUID of the transaction which does not use the description anymore
+     * @param accountUIDs List or sub-query of the GUIDs of the accounts
+     * @return SQL statements, each one terminated by a semicolon
+     */
+    private static String removeTransactionSuggestionUsesSql(String normalizedDescription, String transactionUID,
+                                                             String accountUIDs) {
+        String condition = " WHERE " + TransactionSuggestionEntry.TABLE_NAME + "."
+                + TransactionSuggestionEntry.COLUMN_NORMALIZED_DESCRIPTION + " = " + normalizedDescription
+                + " AND " + TransactionSuggestionEntry.TABLE_NAME + "." + TransactionSuggestionEntry.COLUMN_ACCOUNT_UID
+                + " IN " + accountUIDs;
+        String mostRecentUse = " FROM " + TransactionEntry.TABLE_NAME + " WHERE "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION + " = "
+                + TransactionSuggestionEntry.TABLE_NAME + "." + TransactionSuggestionEntry.COLUMN_NORMALIZED_DESCRIPTION
+                + " AND " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " <> " + transactionUID
+                + " AND EXISTS (SELECT 1 FROM " + SplitEntry.TABLE_NAME + " WHERE "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID + " = "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " AND "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + " = "
+                + TransactionSuggestionEntry.TABLE_NAME + "." + TransactionSuggestionEntry.COLUMN_ACCOUNT_UID + ")"
+                + " ORDER BY " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + " DESC LIMIT 1)";
+        return "UPDATE " + TransactionSuggestionEntry.TABLE_NAME + " SET "
+                + TransactionSuggestionEntry.COLUMN_USE_COUNT + " = " + TransactionSuggestionEntry.COLUMN_USE_COUNT + " - 1"
+                + condition + "; "
+                + "DELETE FROM " + TransactionSuggestionEntry.TABLE_NAME + condition + " AND "
+                + TransactionSuggestionEntry.TABLE_NAME + "." + TransactionSuggestionEntry.COLUMN_USE_COUNT + " <= 0; "
+                + "UPDATE " + TransactionSuggestionEntry.TABLE_NAME + " SET "
+                + TransactionSuggestionEntry.COLUMN_DESCRIPTION + " = (SELECT "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_DESCRIPTION + mostRecentUse + ", "
+                + TransactionSuggestionEntry.COLUMN_LAST_USED + " = (SELECT "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + mostRecentUse + ", "
+                + TransactionSuggestionEntry.COLUMN_TRANSACTION_UID + " = (SELECT "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + mostRecentUse
+                + condition + " AND " + TransactionSuggestionEntry.TABLE_NAME + "."
+                + TransactionSuggestionEntry.COLUMN_TRANSACTION_UID + " = " + transactionUID + "; ";
+    }
+
+    /**
+     * Returns the condition, within a trigger, that a split is the only one of its transaction in its account
+     * @param split {@code OLD}, {@code NEW} or the alias of the split
+     */
+    private static String isOnlySplitInAccountSql(String split) {
+        return "NOT EXISTS (SELECT 1 FROM " + SplitEntry.TABLE_NAME + " WHERE "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID + " = " + split + "." + SplitEntry.COLUMN_TRANSACTION_UID
+                + " AND " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + " = " + split + "." + SplitEntry.COLUMN_ACCOUNT_UID
+                + " AND " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_UID + " <> " + split + "." + SplitEntry.COLUMN_UID + ")";
+    }
+
+    /**
+     * Returns the sub-query of the accounts of the splits of a transaction
+     * @param transactionUID Expression of the GUID of the transaction
+     */
+    private static String accountsOfTransactionSql(String transactionUID) {
+        return "(SELECT " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + " FROM " + SplitEntry.TABLE_NAME
+                + " WHERE " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID + " = " + transactionUID + ")";
+    }
+
+    /**
+     * Returns the expression of the normalized description of a transaction, {@code NULL} if it does not exist
+     * @param transactionUID Expression of the GUID of the transaction
+     */
+    private static String normalizedDescriptionOfSql(String transactionUID) {
+        return "(SELECT " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION
+                + " FROM " + TransactionEntry.TABLE_NAME + " WHERE "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " = " + transactionUID + ")";
+    }
+
+    /**
+     * Computes the description suggestions of all accounts from the existing transactions, replacing existing ones
+     * @param db Database instance
+     */
+    static void rebuildTransactionSuggestions(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TransactionSuggestionEntry.TABLE_NAME);
+        String normalizedDescription = TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION;
+        // the bare columns are taken from the row of the most recent transaction
+        db.execSQL("INSERT INTO " + TransactionSuggestionEntry.TABLE_NAME + " ("
+                + TransactionSuggestionEntry.COLUMN_ACCOUNT_UID + ", "
+                + TransactionSuggestionEntry.COLUMN_NORMALIZED_DESCRIPTION + ", "
+                + TransactionSuggestionEntry.COLUMN_DESCRIPTION + ", "
+                + TransactionSuggestionEntry.COLUMN_LAST_USED + ", "
+                + TransactionSuggestionEntry.COLUMN_USE_COUNT + ", "
+                + TransactionSuggestionEntry.COLUMN_TRANSACTION_UID + ") SELECT "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + ", "
+                + normalizedDescription + ", "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_DESCRIPTION + ", "
+                + "MAX(" + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + "), COUNT(DISTINCT "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + "), "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID
+                + " FROM " + SplitEntry.TABLE_NAME + " INNER JOIN " + TransactionEntry.TABLE_NAME + " ON "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " = "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID
+                + " WHERE " + normalizedDescription + " <> ''"
+                + " GROUP BY " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + ", " + normalizedDescription);
+    }
+
+    /**
+     * Fills the normalized description of the existing transactions.
+     * The expression must match {@link org.gnucash.android.util.SuggestionTrie#normalize(String)},
+     * which is used when the transactions are saved
+     * @param db Database instance
+     */
+    static void fillNormalizedDescriptions(SQLiteDatabase db) {
+        db.execSQL("UPDATE " + TransactionEntry.TABLE_NAME + " SET " + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION
+                + " = LOWER(TRIM(IFNULL(" + TransactionEntry.COLUMN_DESCRIPTION + ", '')))");
+    }
+
+    /**
+     * Creates the table summarizing the splits of each transaction, the triggers which keep it up to date
+     * and the view {@code trans_extra_info} over it.
+     * <p>For each transaction, the summary holds its balance, the number of splits and of distinct account
+     * currencies, and one account which is used to order and display the transaction. If possible,
+     * the account of a split without memo is picked. The summary of a transaction is recomputed
+     * whenever one of its splits is updated or deleted, instead of grouping all the splits on every query.
+     * New splits are summarized once per transaction by {@link #updateTransactionAggregates(SQLiteDatabase, List)}.</p>
+     * @param db Database instance
+     */
+    static void createTransactionSummaries(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TransactionSummaryEntry.TABLE_NAME + " ("
+                + TransactionSummaryEntry.COLUMN_TRANSACTION_UID + " varchar(255) PRIMARY KEY, "
+                + TransactionSummaryEntry.COLUMN_ACCOUNT_UID + " varchar(255), "
+                + TransactionSummaryEntry.COLUMN_BALANCE + " real NOT NULL DEFAULT 0, "
+                + TransactionSummaryEntry.COLUMN_SPLIT_COUNT + " integer NOT NULL DEFAULT 0, "
+                + TransactionSummaryEntry.COLUMN_CURRENCY_COUNT + " integer NOT NULL DEFAULT 0)");
+
+        String splitTransactionUID = SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID;
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS split_delete_summary_trigger AFTER DELETE ON "
+                + SplitEntry.TABLE_NAME + " FOR EACH ROW BEGIN "
+                + deleteTransactionSummariesSql("= OLD." + SplitEntry.COLUMN_TRANSACTION_UID) + "; "
+                + insertTransactionSummariesSql(splitTransactionUID + " = OLD." + SplitEntry.COLUMN_TRANSACTION_UID) + "; "
+                + "END");
+        String updatedTransactions = "IN (OLD." + SplitEntry.COLUMN_TRANSACTION_UID
+                + ", NEW." + SplitEntry.COLUMN_TRANSACTION_UID + ")";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS split_update_summary_trigger AFTER UPDATE OF "
+                + SplitEntry.COLUMN_TRANSACTION_UID + ", " + SplitEntry.COLUMN_ACCOUNT_UID + ", "
+                + SplitEntry.COLUMN_TYPE + ", " + SplitEntry.COLUMN_VALUE_NUM + ", "
+                + SplitEntry.COLUMN_VALUE_DENOM + ", " + SplitEntry.COLUMN_MEMO + " ON "
+                + SplitEntry.TABLE_NAME + " FOR EACH ROW BEGIN "
+                + deleteTransactionSummariesSql(updatedTransactions) + "; "
+                + insertTransactionSummariesSql(splitTransactionUID + " " + updatedTransactions) + "; "
+                + "END");
+        // the currency count depends on the currencies of the accounts of the splits
+        String transactionsOfAccount = "IN (SELECT " + SplitEntry.COLUMN_TRANSACTION_UID + " FROM "
+                + SplitEntry.TABLE_NAME + " WHERE " + SplitEntry.COLUMN_ACCOUNT_UID + " = NEW." + AccountEntry.COLUMN_UID + ")";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS account_currency_summary_trigger AFTER UPDATE OF "
+                + AccountEntry.COLUMN_CURRENCY + " ON " + AccountEntry.TABLE_NAME + " FOR EACH ROW BEGIN "
+                + deleteTransactionSummariesSql(transactionsOfAccount) + "; "
+                + insertTransactionSummariesSql(splitTransactionUID + " " + transactionsOfAccount) + "; "
+                + "END");
+
+        db.execSQL("CREATE VIEW IF NOT EXISTS " + TransactionSummaryEntry.VIEW_NAME + " AS SELECT "
+                + TransactionSummaryEntry.COLUMN_TRANSACTION_UID + " AS trans_acct_t_uid , "
+                + TransactionSummaryEntry.COLUMN_ACCOUNT_UID + " AS trans_acct_a_uid , "
+                + TransactionSummaryEntry.COLUMN_BALANCE + " AS trans_acct_balance , "
+                + TransactionSummaryEntry.COLUMN_CURRENCY_COUNT + " AS trans_currency_count , "
+                + TransactionSummaryEntry.COLUMN_SPLIT_COUNT + " AS trans_split_count "
+                + " FROM " + TransactionSummaryEntry.TABLE_NAME);
+    }
+
+    /**
+     * Computes the summaries of all transactions, replacing existing ones
+     * @param db Database instance
+     */
+    static void rebuildTransactionSummaries(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TransactionSummaryEntry.TABLE_NAME);
+        db.execSQL(insertTransactionSummariesSql(null));
+    }
+
+    /**
+     * Computes the summaries and the indexed split memos of transactions again, after their splits were saved.
+     * <p>Inserting splits does not fire triggers for them, so that saving a transaction, or importing many,
+     * computes them once per transaction instead of once per split.</p>
+     * @param db Database instance
+     * @param transactionUIDs GUIDs of the transactions whose splits were saved
+     */
+    public static void updateTransactionAggregates(SQLiteDatabase db, List<String> transactionUIDs) {
+        for (int start = 0; start < transactionUIDs.size(); start += DatabaseAdapter.SQLITE_MAX_VARIABLE_NUMBER) {
+            List<String> chunk = transactionUIDs.subList(start,
+                    Math.min(transactionUIDs.size(), start + DatabaseAdapter.SQLITE_MAX_VARIABLE_NUMBER));
+            String[] args = chunk.toArray(new String[chunk.size()]);
+            String transactions = "IN ( " + new String(new char[args.length - 1]).replace("\0", "? , ") + "? )";
+            db.execSQL(deleteTransactionSummariesSql(transactions), args);
+            db.execSQL(insertTransactionSummariesSql(SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID
+                    + " " + transactions), args);
+            db.execSQL("UPDATE " + TransactionSearchEntry.TABLE_NAME + " SET " + TransactionSearchEntry.COLUMN_MEMOS
+                    + " = " + splitMemosSql("(SELECT " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID
+                            + " FROM " + TransactionEntry.TABLE_NAME + " WHERE " + TransactionEntry.TABLE_NAME + "."
+                            + TransactionEntry._ID + " = " + TransactionSearchEntry.TABLE_NAME + ".docid)")
+                    + " WHERE docid IN (SELECT " + TransactionEntry._ID + " FROM " + TransactionEntry.TABLE_NAME
+                    + " WHERE " + TransactionEntry.COLUMN_UID + " " + transactions + ")", args);
+        }
+    }
+
+    private static String deleteTransactionSummariesSql(String transactionUIDCondition) {
+        return "DELETE FROM " + TransactionSummaryEntry.TABLE_NAME
+                + " WHERE " + TransactionSummaryEntry.COLUMN_TRANSACTION_UID + " " + transactionUIDCondition;
+    }
+
+    /**
+     * Returns the statement which computes the summaries of the transactions matching {@code where}.
+     * <p>The multiplication by 1.0 is to cause sqlite to handle the balance as REAL and not to round off.
+     * A split without memo is preferred for the account in the following manner:
+     * an 'a' is put in front of the account UID if the split memo is null or empty, a 'b' otherwise.
+     * The minimal value is picked, and the prefix is removed again.</p>
+     * @param where Condition on the splits, or null for all transactions
+     */
+    private static String insertTransactionSummariesSql(@Nullable String where) {
+        return "INSERT INTO " + TransactionSummaryEntry.TABLE_NAME + " ("
+                + TransactionSummaryEntry.COLUMN_TRANSACTION_UID + ", "
+                + TransactionSummaryEntry.COLUMN_ACCOUNT_UID + ", "
+                + TransactionSummaryEntry.COLUMN_BALANCE + ", "
+                + TransactionSummaryEntry.COLUMN_SPLIT_COUNT + ", "
+                + TransactionSummaryEntry.COLUMN_CURRENCY_COUNT + ") SELECT "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID + ", "
+                + "SUBSTR ( MIN ( ( CASE WHEN IFNULL ( " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_MEMO
+                + " , '' ) == '' THEN 'a' ELSE 'b' END ) || "
+                + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_UID + " ) , 2 ), "
+                + "TOTAL ( CASE WHEN " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TYPE + " = 'DEBIT' THEN "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_VALUE_NUM + " ELSE - "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_VALUE_NUM + " END ) * 1.0 / "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_VALUE_DENOM + ", "
+                + "COUNT (*), COUNT ( DISTINCT " + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_CURRENCY + " )"
+                + " FROM " + SplitEntry.TABLE_NAME + " , " + AccountEntry.TABLE_NAME + " ON "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + " = "
+                + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_UID
+                + (where == null ? "" : " WHERE " + where)
+                + " GROUP BY " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID;
+    }
+
     /**
      * Creates the tables in the database and import default commodities into the database
      * @param db Database instance
@@ -354,6 +1029,13 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.execSQL(createBudgetUidIndex);
         db.execSQL(createRecurrenceUidIndex);
         db.execSQL(createBudgetAmountUidIndex);
+        createTransactionPagingIndexes(db);
+        createScheduledActionNextRunIndex(db);
+        createTransactionSplitAccountView(db);
+        createTransactionSummaries(db);
+        createDataVersion(db);
+        createTransactionSearchIndex(db);
+        createTransactionSuggestions(db);
 
         try {
             MigrationHelper.importCommodities(db);
@@ -39,7 +39,7 @@ public class DatabaseSchema {
      * Version number of database containing accounts and transactions info.
      * With any change to the database schema, this number must increase
      */
-    public static final int DATABASE_VERSION = 15;
+    public static final int DATABASE_VERSION = 22;
 
     /**
      * Name of the database
@@ -117,7 +117,15 @@ public class DatabaseSchema {
         public static final String COLUMN_TEMPLATE              = "is_template";
         public static final String COLUMN_SCHEDX_ACTION_UID     = "scheduled_action_uid";
 
+        /**
+         * Description in the form used by the suggestions, see {@link TransactionSuggestionEntry}
+         */
+        public static final String COLUMN_NORMALIZED_DESCRIPTION = "normalized_description";
+
         public static final String INDEX_UID                    = "transaction_uid_index";
+        public static final String INDEX_TIMESTAMP_UID          = "transaction_timestamp_uid_index";
+        public static final String INDEX_TIMESTAMP              = "transaction_timestamp_index";
+        public static final String INDEX_NORMALIZED_DESCRIPTION = "transaction_normalized_description_index";
     }
 
     /**
@@ -147,6 +155,7 @@ public class DatabaseSchema {
         public static final String COLUMN_RECONCILE_DATE        = "reconcile_date";
 
         public static final String INDEX_UID                    = "split_uid_index";
+        public static final String INDEX_TRANSACTION_UID        = "split_transaction_uid_index";
     }
 
     public static abstract class ScheduledActionEntry implements CommonColumns {
@@ -177,8 +186,14 @@ public class DatabaseSchema {
         public static final String COLUMN_ADVANCE_NOTIFY    = "adv_notify";
         public static final String COLUMN_TEMPLATE_ACCT_UID = "template_act_uid";
 
+        /**
+         * Time at which the scheduled action is next due, in milliseconds since Epoch.
+         * {@code NULL} if the action will not be executed again
+         */
+        public static final String COLUMN_NEXT_RUN_AT       = "next_run_at";
 
         public static final String INDEX_UID            = "scheduled_action_uid_index";
+        public static final String INDEX_NEXT_RUN_AT    = "scheduled_action_next_run_index";
     }
 
     public static abstract class CommodityEntry implements CommonColumns {
@@ -274,4 +289,71 @@ public class DatabaseSchema {
 
         public static final String INDEX_UID = "recurrence_uid_index";
     }
+
+    /**
+     * Summary of the splits of each transaction, maintained by triggers on the splits.
+     * <p>Queries read it through the view {@link #VIEW_NAME}, with the column names used by the queries</p>
+     */
+    public static abstract class TransactionSummaryEntry {
+        public static final String TABLE_NAME               = "transaction_summaries";
+        public static final String VIEW_NAME                = "trans_extra_info";
+
+        public static final String COLUMN_TRANSACTION_UID   = "transaction_uid";
+        /**
+         * Account shown for the transaction in lists: the account of a split without memo, if there is one
+         */
+        public static final String COLUMN_ACCOUNT_UID       = "account_uid";
+        public static final String COLUMN_BALANCE           = "balance";
+        public static final String COLUMN_SPLIT_COUNT       = "split_count";
+        public static final String COLUMN_CURRENCY_COUNT    = "currency_count";
+    }
+
+    /**
+     * Full-text index of the descriptions and notes of the transactions and the memos of their splits,
+     * maintained by triggers on the transactions and the splits.
+     * <p>The document ID of each entry is the record ID of its transaction</p>
+     */
+    public static abstract class TransactionSearchEntry {
+        public static final String TABLE_NAME               = "transactions_fts";
+
+        public static final String COLUMN_DESCRIPTION       = "description";
+        public static final String COLUMN_NOTES             = "notes";
+        public static final String COLUMN_MEMOS             = "memos";
+    }
+
+    /**
+     * Descriptions used for the transactions of each account, for autocompleting the description
+     * of new transactions. Maintained by triggers on the transactions and splits.
+     * <p>The descriptions are keyed by their normalized form, which is trimmed and in lower case.
+     * Each entry keeps the last used form of the description, the number of times it was used,
+     * and the most recent transaction with it, which serves as template for new transactions.</p>
+     */
+    public static abstract class TransactionSuggestionEntry {
+        public static final String TABLE_NAME                   = "transaction_suggestions";
+
+        public static final String COLUMN_ACCOUNT_UID           = "account_uid";
+        public static final String COLUMN_NORMALIZED_DESCRIPTION = "normalized_description";
+        public static final String COLUMN_DESCRIPTION           = "description";
+        public static final String COLUMN_LAST_USED             = "last_used";
+        public static final String COLUMN_USE_COUNT             = "use_count";
+        public static final String COLUMN_TRANSACTION_UID       = "transaction_uid";
+
+        public static final String INDEX_TRANSACTION_UID        = "transaction_suggestion_transaction_uid_index";
+    }
+
+    /**
+     * Counter of the changes to the data of a book, increased by triggers on every change.
+     * <p>Values computed from the data can be cached along with the version they were computed at,
+     * and are stale when the version has changed</p>
+     */
+    public static abstract class DataVersionEntry {
+        public static final String TABLE_NAME               = "data_version";
+
+        public static final String COLUMN_VERSION           = "version";
+    }
+
+    /**
+     * Name of the view joining the transactions, their splits and the accounts of the splits
+     */
+    public static final String VIEW_TRANS_SPLIT_ACCT = "trans_split_acct";
 }
@@ -1628,4 +1628,171 @@ public class MigrationHelper {
         rescheduleServiceAlarm();
         return dbVersion;
     }
+
+    /**
+     * Upgrades the database to version 16.
+     * <p>This migration adds indexes on the transaction (timestamp, uid) and on the split transaction
+     * UID, which are used when paging through the transactions for exports</p>
+     * @param db SQLite database to be upgraded
+     * @return New database version, 16 if migration succeeds, 15 otherwise
+     */
+    static int upgradeDbToVersion16(SQLiteDatabase db) {
+        Log.i(DatabaseHelper.LOG_TAG, "Upgrading database to version 16");
+        int dbVersion = 15;
+
+        db.beginTransaction();
+        try {
+            DatabaseHelper.createTransactionPagingIndexes(db);
+            db.setTransactionSuccessful();
+            dbVersion = 16;
+        } finally {
+            db.endTransaction();
+        }
+        return dbVersion;
+    }
+
+    /**
+     * Upgrades the database to version 17.
+     * <p>This migration replaces the temporary views, which were created for every connection
+     * and adapter, by permanent ones. The per-transaction aggregates of {@code trans_extra_info}
+     * are stored in a summary table kept up to date by triggers on the splits</p>
+     * @param db SQLite database to be upgraded
+     * @return New database version, 17 if migration succeeds, 16 otherwise
+     */
+    static int upgradeDbToVersion17(SQLiteDatabase db) {
+        Log.i(DatabaseHelper.LOG_TAG, "Upgrading database to version 17");
+        int dbVersion = 16;
+
+        db.beginTransaction();
+        try {
+            DatabaseHelper.createTransactionSplitAccountView(db);
+            DatabaseHelper.createTransactionSummaries(db);
+            DatabaseHelper.rebuildTransactionSummaries(db);
+            db.setTransactionSuccessful();
+            dbVersion = 17;
+        } finally {
+            db.endTransaction();
+        }
+        return dbVersion;
+    }
+
+    /**
+     * Upgrades the database to version 18.
+     * <p>This migration adds the time at which each scheduled action is next due, so that
+     * the scheduled action service only loads the actions which are due. The enabled actions
+     * are marked as due right away, and their next run time is computed by the service when
+     * it runs</p>
+     * @param db SQLite database to be upgraded
+     * @return New database version, 18 if migration succeeds, 17 otherwise
+     */
+    static int upgradeDbToVersion18(SQLiteDatabase db) {
+        Log.i(DatabaseHelper.LOG_TAG, "Upgrading database to version 18");
+        int dbVersion = 17;
+
+        db.beginTransaction();
+        try {
+            db.execSQL("ALTER TABLE " + ScheduledActionEntry.TABLE_NAME
+                    + " ADD COLUMN " + ScheduledActionEntry.COLUMN_NEXT_RUN_AT + " integer");
+            db.execSQL("UPDATE " + ScheduledActionEntry.TABLE_NAME
+                    + " SET " + ScheduledActionEntry.COLUMN_NEXT_RUN_AT + " = 0"
+                    + " WHERE " + ScheduledActionEntry.COLUMN_ENABLED + " = 1");
+            DatabaseHelper.createScheduledActionNextRunIndex(db);
+            db.setTransactionSuccessful();
+            dbVersion = 18;
+        } finally {
+            db.endTransaction();
+        }
+        return dbVersion;
+    }
+
+    /**
+     * Upgrades the database to version 19.
+     * <p>This migration adds the data version counter and the triggers which maintain it</p>
+     * @param db SQLite database to be upgraded
+     * @return New database version, 19 if migration succeeds, 18 otherwise
+     */
+    static int upgradeDbToVersion19(SQLiteDatabase db) {
+        Log.i(DatabaseHelper.LOG_TAG, "Upgrading database to version 19");
+        int dbVersion = 18;
+
+        db.beginTransaction();
+        try {
+            DatabaseHelper.createDataVersion(db);
+            db.setTransactionSuccessful();
+            dbVersion = 19;
+        } finally {
+            db.endTransaction();
+        }
+        return dbVersion;
+    }
+
+    /**
+     * Upgrades the database to version 20.
+     * <p>This migration adds the full-text index of the transactions and indexes the existing ones</p>
+     * @param db SQLite database to be upgraded
+     * @return New database version, 20 if migration succeeds, 19 otherwise
+     */
+    static int upgradeDbToVersion20(SQLiteDatabase db) {
+        Log.i(DatabaseHelper.LOG_TAG, "Upgrading database to version 20");
+        int dbVersion = 19;
+
+        db.beginTransaction();
+        try {
+            DatabaseHelper.createTransactionSearchIndex(db);
+            DatabaseHelper.rebuildTransactionSearchIndex(db);
+            db.setTransactionSuccessful();
+            dbVersion = 20;
+        } finally {
+            db.endTransaction();
+        }
+        return dbVersion;
+    }
+
+    /**
+     * Upgrades the database to version 21.
+     * <p>This migration adds the normalized description of the transactions, and the table of the
+     * description suggestions which is filled from the existing transactions</p>
+     * @param db SQLite database to be upgraded
+     * @return New database version, 21 if migration succeeds, 20 otherwise
+     */
+    static int upgradeDbToVersion21(SQLiteDatabase db) {
+        Log.i(DatabaseHelper.LOG_TAG, "Upgrading database to version 21");
+        int dbVersion = 20;
+
+        db.beginTransaction();
+        try {
+            db.execSQL("ALTER TABLE " + TransactionEntry.TABLE_NAME
+                    + " ADD COLUMN " + TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION + " varchar(255)");
+            DatabaseHelper.fillNormalizedDescriptions(db);
+            DatabaseHelper.createTransactionSuggestions(db);
+            DatabaseHelper.rebuildTransactionSuggestions(db);
+            db.setTransactionSuccessful();
+            dbVersion = 21;
+        } finally {
+            db.endTransaction();
+        }
+        return dbVersion;
+    }
+
+    /**
+     * Upgrades the database to version 22.
+     * <p>This migration adds the index on the timestamp of the transactions, used for paging through
+     * the transactions of an account</p>
+     * @param db SQLite database to be upgraded
+     * @return New database version, 22 if migration succeeds, 21 otherwise
+     */
+    static int upgradeDbToVersion22(SQLiteDatabase db) {
+        Log.i(DatabaseHelper.LOG_TAG, "Upgrading database to version 22");
+        int dbVersion = 21;
+
+        db.beginTransaction();
+        try {
+            DatabaseHelper.createTransactionPagingIndexes(db);
+            db.setTransactionSuccessful();
+            dbVersion = 22;
+        } finally {
+            db.endTransaction();
+        }
+        return dbVersion;
+    }
 }
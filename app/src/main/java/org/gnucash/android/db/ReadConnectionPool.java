@@ -0,0 +1,168 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.crashlytics.android.Crashlytics;
+
+import org.gnucash.android.db.adapter.DatabaseAdapter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of read-only connections to a book database in write-ahead log mode.
+ * <p>With write-ahead logging, readers see the last committed state of the database and do not
+ * wait for a writer. Loaders, reports and background tasks can therefore query the database
+ * while an import or export holds the writable connection.</p>
+ * <p>Each connection is opened on first use and has its own cache of compiled statements.
+ * Connections are handed out round-robin; each of them is thread-safe.</p>
+ *
+ * @see DatabaseHelper#getReadConnectionPool()
+ * @see DatabaseAdapter#setReadConnectionPool(ReadConnectionPool)
+ */
+public class ReadConnectionPool {
+
+    private static final String LOG_TAG = "ReadConnectionPool";
+
+    /**
+     * Default number of read connections in a pool
+     */
+    public static final int DEFAULT_SIZE = 3;
+
+    private final String mPath;
+
+    private final SQLiteDatabase[] mConnections;
+
+    private final StatementCache[] mStatementCaches;
+
+    private final AtomicInteger mNextConnection = new AtomicInteger();
+
+    private boolean mClosed = false;
+
+    /**
+     * Creates a pool of read connections to a database. No connection is opened yet
+     * @param path Path of the database file
+     * @param size Maximum number of connections
+     */
+    public ReadConnectionPool(@NonNull String path, int size) {
+        if (size < 1)
+            throw new IllegalArgumentException("Pool size must be positive");
+        mPath = path;
+        mConnections = new SQLiteDatabase[size];
+        mStatementCaches = new StatementCache[size];
+    }
+
+    /**
+     * Returns the path of the database the connections are opened on
+     * @return Path of the database file
+     */
+    public String getPath() {
+        return mPath;
+    }
+
+    /**
+     * Returns the maximum number of connections in the pool
+     * @return Size of the pool
+     */
+    public int getSize() {
+        return mConnections.length;
+    }
+
+    /**
+     * Returns the next read connection of the pool, opening it if necessary
+     * @return Read-only database, or null if the connection could not be opened
+     * or the pool is closed
+     */
+    @Nullable
+    public SQLiteDatabase getReadableDatabase() {
+        int index = nextIndex();
+        synchronized (mConnections) {
+            return openIfNecessary(index) ? mConnections[index] : null;
+        }
+    }
+
+    /**
+     * Returns the statement cache of the next read connection of the pool, opening it if necessary
+     * @return Statement cache for single-value lookups, or null if the connection could not be opened
+     * or the pool is closed
+     * @see StatementCache
+     */
+    @Nullable
+    public StatementCache getStatementCache() {
+        int index = nextIndex();
+        synchronized (mConnections) {
+            return openIfNecessary(index) ? mStatementCaches[index] : null;
+        }
+    }
+
+    private int nextIndex() {
+        return (mNextConnection.getAndIncrement() & Integer.MAX_VALUE) % mConnections.length;
+    }
+
+    /**
+     * Opens the connection at {@code index} if it is not open. Must be called with the connections lock held
+     * @return {@code true} if the connection is open, {@code false} otherwise
+     */
+    private boolean openIfNecessary(int index) {
+        if (mClosed)
+            return false;
+        SQLiteDatabase db = mConnections[index];
+        if (db == null || !db.isOpen()) {
+            if (mStatementCaches[index] != null)
+                mStatementCaches[index].close();
+            db = openConnection();
+            mConnections[index] = db;
+            mStatementCaches[index] = db == null ? null : new StatementCache(db, StatementCache.DEFAULT_MAX_SIZE);
+        }
+        return db != null;
+    }
+
+    /**
+     * Closes all connections of the pool.
+     * <p>Cursors obtained from the pool should no longer be used after this</p>
+     */
+    public void close() {
+        synchronized (mConnections) {
+            mClosed = true;
+            for (int i = 0; i < mConnections.length; i++) {
+                if (mStatementCaches[i] != null) {
+                    mStatementCaches[i].close();
+                    mStatementCaches[i] = null;
+                }
+                if (mConnections[i] != null) {
+                    mConnections[i].close();
+                    mConnections[i] = null;
+                }
+            }
+        }
+    }
+
+    private SQLiteDatabase openConnection() {
+        try {
+            SQLiteDatabase db = SQLiteDatabase.openDatabase(mPath, null,
+                    SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+            return db;
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Could not open read connection to " + mPath, e);
+            Crashlytics.logException(e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+/**
+ * Bounded cache of compiled statements for single-value lookups on one database connection.
+ * <p>Point lookups like the GUID of a record or the currency of an account are run very often.
+ * Running them as cached {@link SQLiteStatement}s avoids compiling the SQL and filling a cursor window
+ * for a single value. Statements are keyed by their SQL text and evicted least recently used first.</p>
+ * <p>A statement holds its bindings, so it is taken out of the cache while it is in use.
+ * Concurrent lookups with the same SQL compile a statement of their own. No lock is held while
+ * a statement runs, as the connection may be waiting for a transaction of another thread.</p>
+ */
+public class StatementCache {
+
+    /**
+     * Default maximum number of statements kept in a cache
+     */
+    public static final int DEFAULT_MAX_SIZE = 32;
+
+    private final SQLiteDatabase mDb;
+
+    private final LruCache<String, SQLiteStatement> mStatements;
+
+    private boolean mClosed = false;
+
+    /**
+     * Creates a cache of statements compiled on {@code db}
+     * @param db Database connection
+     * @param maxSize Maximum number of statements in the cache
+     */
+    public StatementCache(@NonNull SQLiteDatabase db, int maxSize) {
+        mDb = db;
+        mStatements = new LruCache<String, SQLiteStatement>(maxSize) {
+            @Override
+            protected void entryRemoved(boolean evicted, String sql, SQLiteStatement oldValue, SQLiteStatement newValue) {
+                if (evicted || newValue != null) //statements taken out for use are closed by their user
+                    oldValue.close();
+            }
+        };
+    }
+
+    /**
+     * Creates a cache which does not keep any statement. Every lookup compiles a statement
+     * and closes it right after, so nothing needs to be closed when the cache is discarded
+     * @param db Database connection
+     * @return Cache without statements
+     */
+    public static StatementCache createUncached(@NonNull SQLiteDatabase db) {
+        StatementCache statementCache = new StatementCache(db, 1);
+        statementCache.close();
+        return statementCache;
+    }
+
+    /**
+     * Returns the database the statements are compiled on
+     * @return Database connection
+     */
+    public SQLiteDatabase getDatabase() {
+        return mDb;
+    }
+
+    /**
+     * Runs a query which returns a single string value
+     * @param sql SQL query returning one column. Only the first row is read
+     * @param bindArgs Arguments bound to the parameters of the query
+     * @return Value of the first row, which may be null
+     * @throws SQLiteDoneException if the query returns no row
+     */
+    @Nullable
+    public String queryForString(@NonNull String sql, @NonNull String... bindArgs) {
+        SQLiteStatement statement = acquireStatement(sql);
+        try {
+            statement.bindAllArgsAsStrings(bindArgs);
+            return statement.simpleQueryForString();
+        } finally {
+            releaseStatement(sql, statement);
+        }
+    }
+
+    /**
+     * Runs a query which returns a single numeric value
+     * @param sql SQL query returning one column. Only the first row is read
+     * @param bindArgs Arguments bound to the parameters of the query
+     * @return Value of the first row
+     * @throws SQLiteDoneException if the query returns no row
+     */
+    public long queryForLong(@NonNull String sql, @NonNull String... bindArgs) {
+        SQLiteStatement statement = acquireStatement(sql);
+        try {
+            statement.bindAllArgsAsStrings(bindArgs);
+            return statement.simpleQueryForLong();
+        } finally {
+            releaseStatement(sql, statement);
+        }
+    }
+
+    /**
+     * Returns the number of statements in the cache
+     * @return Number of cached statements
+     */
+    public synchronized int size() {
+        return mStatements.size();
+    }
+
+    /**
+     * Closes the cached statements.
+     * <p>Lookups still work after this, but their statements are no longer cached</p>
+     */
+    public synchronized void close() {
+        mClosed = true;
+        mStatements.evictAll();
+    }
+
+    /**
+     * Takes the statement for {@code sql} out of the cache, or compiles it if it is not cached
+     */
+    private SQLiteStatement acquireStatement(String sql) {
+        SQLiteStatement statement;
+        synchronized (this) {
+            statement = mClosed ? null : mStatements.remove(sql);
+        }
+        return statement == null ? mDb.compileStatement(sql) : statement;
+    }
+
+    /**
+     * Puts a statement back into the cache, unless another one was put in the meantime
+     */
+    private void releaseStatement(String sql, SQLiteStatement statement) {
+        statement.clearBindings();
+        synchronized (this) {
+            if (!mClosed && mStatements.get(sql) == null) {
+                mStatements.put(sql, statement);
+                return;
+            }
+        }
+        statement.close();
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.crashlytics.android.Crashlytics;
+
+import org.gnucash.android.db.adapter.DatabaseAdapter;
+import org.gnucash.android.model.BaseModel;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue of database writes which are executed in the background by a single writer thread.
+ * <p>Writes are executed in the order in which they were first enqueued. All writes which are
+ * pending when the writer wakes up are executed in one SQLite transaction, so that bursts of writes
+ * (e.g. transactions recorded through intents) cost a single commit.</p>
+ * <p>Writes enqueued with the same key, which are still pending, are coalesced: only the last
+ * operation is executed, at the position of the first one, and all listeners are notified.</p>
+ * <p>If a batch fails, its writes are retried one transaction each, so that one bad write
+ * does not discard the others. Writes which change their models undo these changes before
+ * they are retried, see {@link RestorableWriteOperation}. Listeners are notified on the main thread.
+ * Adapters which write in transactions of their own must throw their errors when they run within
+ * the transaction of a batch, since a failed nested transaction rolls back the whole batch.</p>
+ * <p>The queue is kept in memory only: writes still pending when the process is killed are lost.
+ * Callers waiting for their data to be saved should wait for their listener.</p>
+ *
+ * @see org.gnucash.android.app.GnuCashApplication#getWriteBehindQueue()
+ */
+public class WriteBehindQueue {
+
+    private static final String LOG_TAG = "WriteBehindQueue";
+
+    /**
+     * Maximum number of writes executed in one SQLite transaction
+     */
+    public static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * Time to wait for pending writes when shutting down the queue
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    /**
+     * Time after which the idle writer thread is stopped
+     */
+    private static final long IDLE_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Database write executed by the writer thread.
+     * <p>The write runs inside an SQLite transaction on the database of the queue.
+     * It should throw an exception if it fails, for the transaction to be rolled back</p>
+     */
+    public interface WriteOperation {
+        void write();
+    }
+
+    /**
+     * Write which changes the models it saves, e.g. saving a transaction adds its imbalance split.
+     * <p>A write may be executed again after its batch was rolled back. The changes made by the
+     * rolled back attempt are undone first, since they may refer to records which were rolled back</p>
+     */
+    public interface RestorableWriteOperation extends WriteOperation {
+        /**
+         * Restores the models as they were before the write was first executed
+         */
+        void restore();
+    }
+
+    /**
+     * Write of a transaction, which restores the splits of the transaction if it is rolled back
+     */
+    public static abstract class TransactionWriteOperation implements RestorableWriteOperation {
+        private final Transaction mTransaction;
+        private List<Split> mSplits;
+
+        /**
+         * Creates a write of {@code transaction}
+         * @param transaction Transaction whose splits are restored if the write is rolled back
+         */
+        public TransactionWriteOperation(@NonNull Transaction transaction) {
+            mTransaction = transaction;
+        }
+
+        @Override
+        public final void write() {
+            // the splits are taken on the writer thread, since they may still have to be loaded
+            if (mSplits == null)
+                mSplits = new ArrayList<>(mTransaction.getSplits());
+            writeTransaction();
+        }
+
+        /**
+         * Saves the transaction
+         */
+        protected abstract void writeTransaction();
+
+        @Override
+        public void restore() {
+            if (mSplits != null)
+                mTransaction.setSplits(new ArrayList<>(mSplits));
+        }
+    }
+
+    /**
+     * Listener notified on the main thread once a write has been committed or has failed
+     */
+    public interface OnWriteCompleteListener {
+        /**
+         * Called once the write has been executed
+         * @param error Exception thrown by the write, or {@code null} if it was committed
+         */
+        void onWriteComplete(@Nullable Exception error);
+    }
+
+    private final SQLiteDatabase mDb;
+
+    private final ExecutorService mExecutor;
+
+    private final Handler mHandler;
+
+    /**
+     * Pending writes in order of submission. Writes without a key get a unique key of their own
+     */
+    private final LinkedHashMap<Object, PendingWrite> mPendingWrites = new LinkedHashMap<>();
+
+    private boolean mDrainScheduled = false;
+
+    private boolean mShutdown = false;
+
+    private final Runnable mDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Creates a queue of writes to {@code db}
+     * @param db Writable database
+     */
+    public WriteBehindQueue(@NonNull SQLiteDatabase db) {
+        mDb = db;
+        mHandler = new Handler(Looper.getMainLooper());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        Thread thread = new Thread(runnable, LOG_TAG);
+                        thread.setPriority(Thread.NORM_PRIORITY - 1);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true); //no thread is kept while there is nothing to write
+        mExecutor = executor;
+    }
+
+    /**
+     * Enqueues a write
+     * @param key Key for coalescing writes of the same record, or {@code null} if the write should not be coalesced
+     * @param operation Write to execute
+     * @param listener Listener to notify when the write is complete. May be null
+     * @throws IllegalStateException if the queue has been shut down
+     */
+    public void enqueue(@Nullable String key, @NonNull WriteOperation operation,
+                        @Nullable OnWriteCompleteListener listener) {
+        synchronized (mPendingWrites) {
+            if (mShutdown)
+                throw new IllegalStateException("Write queue has been shut down");
+
+            Object pendingKey = key == null ? new Object() : key;
+            PendingWrite pendingWrite = mPendingWrites.get(pendingKey);
+            if (pendingWrite == null) {
+                mPendingWrites.put(pendingKey, new PendingWrite(operation, listener));
+            } else {
+                pendingWrite.mOperation = operation;
+                pendingWrite.addListener(listener);
+            }
+
+            if (!mDrainScheduled) {
+                mDrainScheduled = true;
+                mExecutor.execute(mDrainTask);
+            }
+        }
+    }
+
+    /**
+     * Enqueues saving a record. Pending saves of the same record are coalesced
+     * @param adapter Database adapter for the record. Its database should be the one of this queue
+     * @param model Record to be saved
+     * @param updateMethod Method used for saving the record
+     * @param listener Listener to notify when the record has been saved. May be null
+     */
+    public <Model extends BaseModel> void saveRecord(@NonNull final DatabaseAdapter<Model> adapter,
+                                                     @NonNull final Model model,
+                                                     @NonNull final DatabaseAdapter.UpdateMethod updateMethod,
+                                                     @Nullable OnWriteCompleteListener listener) {
+        WriteOperation operation;
+        if (model instanceof Transaction) {
+            operation = new TransactionWriteOperation((Transaction) model) {
+                @Override
+                protected void writeTransaction() {
+                    adapter.addRecord(model, updateMethod);
+                }
+            };
+        } else {
+            operation = new WriteOperation() {
+                @Override
+                public void write() {
+                    adapter.addRecord(model, updateMethod);
+                }
+            };
+        }
+        enqueue(adapter.getTableName() + ":" + model.getUID(), operation, listener);
+    }
+
+    /**
+     * Returns the number of writes which have not yet been started
+     * @return Number of pending writes
+     */
+    public int getPendingCount() {
+        synchronized (mPendingWrites) {
+            return mPendingWrites.size();
+        }
+    }
+
+    /**
+     * Checks if the queue has no writes pending or in progress
+     * @return {@code true} if the writer is idle, {@code false} otherwise
+     */
+    public boolean isIdle() {
+        synchronized (mPendingWrites) {
+            return !mDrainScheduled;
+        }
+    }
+
+    /**
+     * Blocks until all writes enqueued before this call have been executed.
+     * <p>Must not be called from a write operation</p>
+     */
+    public void flush() {
+        Future<?> marker;
+        synchronized (mPendingWrites) {
+            if (mShutdown)
+                return;
+            // the writer is single-threaded, so the marker runs after every drain scheduled before it
+            marker = mExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+        try {
+            marker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.e(LOG_TAG, "Error flushing write queue", e);
+        }
+    }
+
+    /**
+     * Executes the pending writes and stops the writer thread.
+     * <p>This should be called before the database of the queue is closed</p>
+     */
+    public void shutdown() {
+        synchronized (mPendingWrites) {
+            if (mShutdown)
+                return;
+            mShutdown = true;
+            mExecutor.shutdown();
+        }
+        try {
+            if (!mExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                Log.w(LOG_TAG, "Timed out waiting for pending writes");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Executes batches of pending writes until there are none left
+     */
+    private void drain() {
+        while (true) {
+            List<PendingWrite> batch = new ArrayList<>();
+            synchronized (mPendingWrites) {
+                Iterator<Map.Entry<Object, PendingWrite>> iterator = mPendingWrites.entrySet().iterator();
+                while (iterator.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+                    batch.add(iterator.next().getValue());
+                    iterator.remove();
+                }
+                if (batch.isEmpty()) {
+                    mDrainScheduled = false;
+                    return;
+                }
+            }
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        Exception error = writeInTransaction(batch);
+        if (error != null) {
+            for (PendingWrite pendingWrite : batch) {
+                if (pendingWrite.mOperation instanceof RestorableWriteOperation)
+                    ((RestorableWriteOperation) pendingWrite.mOperation).restore();
+            }
+        }
+        if (error == null || batch.size() == 1) {
+            for (PendingWrite pendingWrite : batch) {
+                notifyListeners(pendingWrite, error);
+            }
+            if (error != null) {
+                Log.e(LOG_TAG, "Error executing write", error);
+                Crashlytics.logException(error);
+            }
+            return;
+        }
+
+        Log.w(LOG_TAG, "Batch of " + batch.size() + " writes failed, retrying them one by one", error);
+        for (PendingWrite pendingWrite : batch) {
+            List<PendingWrite> single = new ArrayList<>(1);
+            single.add(pendingWrite);
+            writeBatch(single);
+        }
+    }
+
+    /**
+     * Executes writes in one transaction
+     * @return Exception thrown by the writes, or {@code null} if they were committed
+     */
+    @Nullable
+    private Exception writeInTransaction(List<PendingWrite> writes) {
+        try {
+            mDb.beginTransaction();
+            try {
+                for (PendingWrite pendingWrite : writes) {
+                    pendingWrite.mOperation.write();
+                }
+                mDb.setTransactionSuccessful();
+            } finally {
+                mDb.endTransaction();
+            }
+            return null;
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    private void notifyListeners(final PendingWrite pendingWrite, @Nullable final Exception error) {
+        if (pendingWrite.mListeners.isEmpty())
+            return;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (OnWriteCompleteListener listener : pendingWrite.mListeners) {
+                    listener.onWriteComplete(error);
+                }
+            }
+        });
+    }
+
+    /**
+     * Write waiting to be executed, with the listeners of all the writes coalesced into it
+     */
+    private static class PendingWrite {
+        private WriteOperation mOperation;
+        private final List<OnWriteCompleteListener> mListeners = new ArrayList<>(1);
+
+        PendingWrite(WriteOperation operation, @Nullable OnWriteCompleteListener listener) {
+            mOperation = operation;
+            addListener(listener);
+        }
+
+        void addListener(@Nullable OnWriteCompleteListener listener) {
+            if (listener != null)
+                mListeners.add(listener);
+        }
+    }
+}
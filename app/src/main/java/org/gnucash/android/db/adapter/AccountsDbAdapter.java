@@ -21,12 +21,14 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteStatement;
 import android.graphics.Color;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import android.util.Log;
+import android.util.Pair;
 
 import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
@@ -35,6 +37,7 @@ import org.gnucash.android.model.Account;
 import org.gnucash.android.model.AccountType;
 import org.gnucash.android.model.Commodity;
 import org.gnucash.android.model.Money;
+import org.gnucash.android.model.MoneyAccumulator;
 import org.gnucash.android.model.Split;
 import org.gnucash.android.model.Transaction;
 import org.gnucash.android.model.TransactionType;
@@ -43,9 +46,11 @@ import org.gnucash.android.util.TimestampHelper;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import static org.gnucash.android.db.DatabaseSchema.AccountEntry;
 import static org.gnucash.android.db.DatabaseSchema.SplitEntry;
@@ -455,20 +460,11 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
 	 * @return DB record UID of the parent account, null if the account has no parent
 	 */
     public String getParentAccountUID(@NonNull String uid){
-		Cursor cursor = mDb.query(AccountEntry.TABLE_NAME,
-                new String[]{AccountEntry.COLUMN_PARENT_ACCOUNT_UID},
-                AccountEntry.COLUMN_UID + " = ?",
-                new String[]{uid},
-                null, null, null, null);
         try {
-            if (cursor.moveToFirst()) {
-                Log.d(LOG_TAG, "Found parent account UID, returning value");
-                return cursor.getString(cursor.getColumnIndexOrThrow(AccountEntry.COLUMN_PARENT_ACCOUNT_UID));
-            } else {
-                return null;
-            }
-        } finally {
-            cursor.close();
+            return getReadStatementCache().queryForString("SELECT " + AccountEntry.COLUMN_PARENT_ACCOUNT_UID
+                    + " FROM " + AccountEntry.TABLE_NAME + " WHERE " + AccountEntry.COLUMN_UID + " = ?", uid);
+        } catch (SQLiteDoneException e) {
+            return null;
         }
 	}
 
@@ -478,7 +474,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return String color code of account or null if none
      */
     public String getAccountColorCode(long accountId){
-        Cursor c = mDb.query(AccountEntry.TABLE_NAME,
+        Cursor c = getReadDb().query(AccountEntry.TABLE_NAME,
                 new String[]{AccountEntry._ID, AccountEntry.COLUMN_COLOR_CODE},
                 AccountEntry._ID + "=" + accountId,
                 null, null, null, null);
@@ -548,7 +544,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
 	 */
     public List<Account> getExportableAccounts(Timestamp lastExportTimeStamp){
         LinkedList<Account> accountsList = new LinkedList<>();
-        Cursor cursor = mDb.query(
+        Cursor cursor = getReadDb().query(
                 TransactionEntry.TABLE_NAME + " , " + SplitEntry.TABLE_NAME +
                         " ON " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " = " +
                         SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID + " , " +
@@ -666,7 +662,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return String unique ID of the account or null if no match is found
      */
     public String findAccountUidByFullName(String fullName){
-        Cursor c = mDb.query(AccountEntry.TABLE_NAME, new String[]{AccountEntry.COLUMN_UID},
+        Cursor c = getReadDb().query(AccountEntry.TABLE_NAME, new String[]{AccountEntry.COLUMN_UID},
                 AccountEntry.COLUMN_FULL_NAME + "= ?", new String[]{fullName},
                 null, null, null, "1");
         try {
@@ -689,7 +685,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
 	public Cursor fetchAllRecords(){
 		Log.v(LOG_TAG, "Fetching all accounts from db");
         String selection =  AccountEntry.COLUMN_HIDDEN + " = 0 AND " + AccountEntry.COLUMN_TYPE + " != ?" ;
-        return mDb.query(AccountEntry.TABLE_NAME,
+        return getReadDb().query(AccountEntry.TABLE_NAME,
                 null,
                 selection,
                 new String[]{AccountType.ROOT.name()},
@@ -705,7 +701,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
     public Cursor fetchAllRecordsOrderedByFullName(){
         Log.v(LOG_TAG, "Fetching all accounts from db");
         String selection =  AccountEntry.COLUMN_HIDDEN + " = 0 AND " + AccountEntry.COLUMN_TYPE + " != ?" ;
-        return mDb.query(AccountEntry.TABLE_NAME,
+        return getReadDb().query(AccountEntry.TABLE_NAME,
                 null,
                 selection,
                 new String[]{AccountType.ROOT.name()},
@@ -727,7 +723,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
         }
         Log.v(LOG_TAG, "Fetching all accounts from db where " + where + " order by " + orderBy);
 
-        return mDb.query(AccountEntry.TABLE_NAME,
+        return getReadDb().query(AccountEntry.TABLE_NAME,
                 null, where, whereArgs, null, null,
                 orderBy);
     }
@@ -741,7 +737,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      */
     public Cursor fetchAccountsOrderedByFullName(String where, String[] whereArgs) {
         Log.v(LOG_TAG, "Fetching all accounts from db where " + where);
-        return mDb.query(AccountEntry.TABLE_NAME,
+        return getReadDb().query(AccountEntry.TABLE_NAME,
                 null, where, whereArgs, null, null,
                 AccountEntry.COLUMN_FULL_NAME + " ASC");
     }
@@ -756,7 +752,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      */
     public Cursor fetchAccountsOrderedByFavoriteAndFullName(String where, String[] whereArgs) {
         Log.v(LOG_TAG, "Fetching all accounts from db where " + where + " order by Favorite then Name");
-        return mDb.query(AccountEntry.TABLE_NAME,
+        return getReadDb().query(AccountEntry.TABLE_NAME,
                 null, where, whereArgs, null, null,
                 AccountEntry.COLUMN_FAVORITE + " DESC, " + AccountEntry.COLUMN_FULL_NAME + " ASC");
     }
@@ -816,11 +812,11 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return Money balance of the account types
      */
     public Money getAccountBalance(List<AccountType> accountTypes, long start, long end){
-        Money balance = Money.createZeroInstance(GnuCashApplication.getDefaultCurrencyCode());
+        MoneyAccumulator balance = new MoneyAccumulator(GnuCashApplication.getDefaultCurrencyCode());
         for (AccountType accountType : accountTypes) {
-            balance = balance.add(getAccountBalance(accountType, start, end));
+            balance.add(getAccountBalance(accountType, start, end));
         }
-        return balance;
+        return balance.toMoney();
     }
 
     private Money computeBalance(String accountUID, long startTimestamp, long endTimestamp) {
@@ -866,6 +862,138 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
         return balance.add(splitSum);
     }
 
+    /**
+     * Returns the balances of several accounts, each including its sub-accounts, in the currency of the account.
+     * <p>The account tree is read with one query and the splits of all the accounts and their
+     * descendants are summed up with another one, instead of two queries per account as with
+     * {@link #getAccountBalance(String)}. Amounts in other currencies are converted with the latest price,
+     * and ignored if there is none.</p>
+     * @param accountUIDs GUIDs of the accounts
+     * @return Balance of each account, by GUID
+     */
+    public Map<String, Money> getAccountBalances(@NonNull Collection<String> accountUIDs) {
+        Map<String, List<String>> childrenByParent = new HashMap<>();
+        Map<String, String> currencyCodes = new HashMap<>();
+        Map<String, AccountType> accountTypes = new HashMap<>();
+        Cursor cursor = getReadDb().query(AccountEntry.TABLE_NAME,
+                new String[]{AccountEntry.COLUMN_UID, AccountEntry.COLUMN_PARENT_ACCOUNT_UID,
+                        AccountEntry.COLUMN_CURRENCY, AccountEntry.COLUMN_TYPE},
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                String accountUID = cursor.getString(0);
+                String parentUID = cursor.getString(1);
+                if (parentUID != null) {
+                    List<String> children = childrenByParent.get(parentUID);
+                    if (children == null) {
+                        children = new ArrayList<>();
+                        childrenByParent.put(parentUID, children);
+                    }
+                    children.add(accountUID);
+                }
+                currencyCodes.put(accountUID, cursor.getString(2));
+                accountTypes.put(accountUID, AccountType.valueOf(cursor.getString(3)));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        //accounts whose balance includes the splits of each account
+        Map<String, List<String>> balanceAccountsBySplitAccount = new HashMap<>();
+        Map<String, MoneyAccumulator> balances = new HashMap<>();
+        for (String accountUID : accountUIDs) {
+            if (!currencyCodes.containsKey(accountUID) || balances.containsKey(accountUID))
+                continue;
+            balances.put(accountUID, new MoneyAccumulator(currencyCodes.get(accountUID)));
+            LinkedList<String> pending = new LinkedList<>();
+            pending.add(accountUID);
+            while (!pending.isEmpty()) {
+                String splitAccountUID = pending.removeFirst();
+                List<String> balanceAccounts = balanceAccountsBySplitAccount.get(splitAccountUID);
+                if (balanceAccounts == null) {
+                    balanceAccounts = new ArrayList<>(1);
+                    balanceAccountsBySplitAccount.put(splitAccountUID, balanceAccounts);
+                }
+                balanceAccounts.add(accountUID);
+                List<String> children = childrenByParent.get(splitAccountUID);
+                if (children != null)
+                    pending.addAll(children);
+            }
+        }
+
+        Map<String, Money> result = new HashMap<>();
+        if (balances.isEmpty())
+            return result;
+
+        PricesDbAdapter pricesDbAdapter = new PricesDbAdapter(mDb);
+        Map<String, Pair<Long, Long>> prices = new HashMap<>();
+        cursor = mTransactionsAdapter.getSplitDbAdapter().fetchSplitSums(
+                new ArrayList<>(balanceAccountsBySplitAccount.keySet()),
+                new long[]{Long.MIN_VALUE}, new long[]{Long.MAX_VALUE});
+        try {
+            while (cursor.moveToNext()) {
+                String splitCurrencyCode = cursor.getString(1);
+                long denominator = cursor.getLong(2);
+                long numerator = cursor.getLong(3);
+                if (splitCurrencyCode.equals("XXX") || numerator == 0)
+                    continue; // ignore custom currency
+                for (String accountUID : balanceAccountsBySplitAccount.get(cursor.getString(0))) {
+                    long amountNumerator = accountTypes.get(accountUID).hasDebitNormalBalance() ? numerator : -numerator;
+                    MoneyAccumulator balance = balances.get(accountUID);
+                    Commodity commodity = balance.getCommodity();
+                    if (splitCurrencyCode.equals(commodity.getCurrencyCode())) {
+                        balance.add(new Money(amountNumerator, denominator, commodity.getCurrencyCode()));
+                        continue;
+                    }
+                    String priceKey = splitCurrencyCode + "/" + commodity.getCurrencyCode();
+                    Pair<Long, Long> price = prices.get(priceKey);
+                    if (price == null) {
+                        price = pricesDbAdapter.getPrice(mCommoditiesDbAdapter.getCommodityUID(splitCurrencyCode),
+                                mCommoditiesDbAdapter.getCommodityUID(commodity.getCurrencyCode()));
+                        prices.put(priceKey, price);
+                    }
+                    if (price.first <= 0 || price.second <= 0)
+                        continue; // no price exists, just ignore it
+                    BigDecimal amountConverted = Money.getBigDecimal(amountNumerator, denominator)
+                            .multiply(new BigDecimal(price.first))
+                            .divide(new BigDecimal(price.second), commodity.getSmallestFractionDigits(), BigDecimal.ROUND_HALF_EVEN);
+                    balance.add(new Money(amountConverted, commodity));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        for (Map.Entry<String, MoneyAccumulator> entry : balances.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toMoney());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of visible and hidden sub-accounts of several accounts
+     * @param accountUIDs GUIDs of the parent accounts
+     * @return Number of sub-accounts of each account which has some, by GUID
+     * @see #getSubAccountCount(String)
+     */
+    public Map<String, Integer> getSubAccountCounts(@NonNull Collection<String> accountUIDs) {
+        Map<String, Integer> counts = new HashMap<>();
+        if (accountUIDs.isEmpty())
+            return counts;
+        Cursor cursor = getReadDb().rawQuery("SELECT " + AccountEntry.COLUMN_PARENT_ACCOUNT_UID + ", COUNT(*) FROM "
+                + AccountEntry.TABLE_NAME + " WHERE " + AccountEntry.COLUMN_PARENT_ACCOUNT_UID
+                + " IN ( '" + TextUtils.join("' , '", accountUIDs) + "' ) GROUP BY "
+                + AccountEntry.COLUMN_PARENT_ACCOUNT_UID, null);
+        try {
+            while (cursor.moveToNext()) {
+                counts.put(cursor.getString(0), cursor.getInt(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return counts;
+    }
+
     /**
      * Retrieve all descendant accounts of an account
      * Note, in filtering, once an account is filtered out, all its descendants
@@ -882,7 +1010,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
         ArrayList<String> accountsListLevel = new ArrayList<>();
         accountsListLevel.add(accountUID);
         for (;;) {
-            Cursor cursor = mDb.query(AccountEntry.TABLE_NAME,
+            Cursor cursor = getReadDb().query(AccountEntry.TABLE_NAME,
                     new String[]{AccountEntry.COLUMN_UID},
                     AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " IN ( '" + TextUtils.join("' , '", accountsListLevel) + "' )" +
                             (where == null ? "" : " AND " + where),
@@ -917,7 +1045,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
         Log.v(LOG_TAG, "Fetching sub accounts for account id " + accountUID);
         String selection = AccountEntry.COLUMN_HIDDEN + " = 0 AND "
                 + AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " = ?";
-        return mDb.query(AccountEntry.TABLE_NAME,
+        return getReadDb().query(AccountEntry.TABLE_NAME,
                 null,
                 selection,
                 new String[]{accountUID}, null, null, AccountEntry.COLUMN_NAME + " ASC");
@@ -942,7 +1070,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return Cursor to recently used accounts
      */
     public Cursor fetchRecentAccounts(int numberOfRecent) {
-        return mDb.query(TransactionEntry.TABLE_NAME
+        return getReadDb().query(TransactionEntry.TABLE_NAME
                         + " LEFT OUTER JOIN " + SplitEntry.TABLE_NAME + " ON "
                         + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " = "
                         + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID
@@ -965,7 +1093,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
     public Cursor fetchFavoriteAccounts(){
         Log.v(LOG_TAG, "Fetching favorite accounts from db");
         String condition = AccountEntry.COLUMN_FAVORITE + " = 1";
-        return mDb.query(AccountEntry.TABLE_NAME,
+        return getReadDb().query(AccountEntry.TABLE_NAME,
                 null, condition, null, null, null,
                 AccountEntry.COLUMN_NAME + " ASC");
     }
@@ -1016,7 +1144,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
 
         String queryCount = "SELECT COUNT(*) FROM " + AccountEntry.TABLE_NAME + " WHERE "
                 + AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " = ?";
-        Cursor cursor = mDb.rawQuery(queryCount, new String[]{accountUID});
+        Cursor cursor = getReadDb().rawQuery(queryCount, new String[]{accountUID});
         cursor.moveToFirst();
         int count = cursor.getInt(0);
         cursor.close();
@@ -1049,7 +1177,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return Record ID of default transfer account
      */
     public long getDefaultTransferAccountID(long accountID){
-        Cursor cursor = mDb.query(AccountEntry.TABLE_NAME,
+        Cursor cursor = getReadDb().query(AccountEntry.TABLE_NAME,
                 new String[]{AccountEntry.COLUMN_DEFAULT_TRANSFER_ACCOUNT_UID},
                 AccountEntry._ID + " = " + accountID,
                 null, null, null, null);
@@ -1093,7 +1221,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return full name registered in DB
      */
     public String getAccountFullName(String accountUID) {
-        Cursor cursor = mDb.query(AccountEntry.TABLE_NAME, new String[]{AccountEntry.COLUMN_FULL_NAME},
+        Cursor cursor = getReadDb().query(AccountEntry.TABLE_NAME, new String[]{AccountEntry.COLUMN_FULL_NAME},
                 AccountEntry.COLUMN_UID + " = ?", new String[]{accountUID},
                 null, null, null);
         try {
@@ -1236,6 +1364,24 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
         return iColor;
     }
 
+    /**
+     * Returns the currency codes of all the accounts in the database, in ascending order
+     * @return Sorted list of currency codes, without duplicates
+     */
+    public List<String> getCurrencyCodesInUse() {
+        Cursor cursor = getReadDb().query(true, AccountEntry.TABLE_NAME, new String[]{AccountEntry.COLUMN_CURRENCY},
+                null, null, null, null, AccountEntry.COLUMN_CURRENCY + " ASC", null);
+        List<String> currencyCodes = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                currencyCodes.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return currencyCodes;
+    }
+
     /**
      * Returns the list of commodities in use in the database.
      *
@@ -1244,7 +1390,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
      * @return List of commodities in use
      */
     public List<Commodity> getCommoditiesInUse() {
-        Cursor cursor = mDb.query(true, AccountEntry.TABLE_NAME, new String[]{AccountEntry.COLUMN_CURRENCY},
+        Cursor cursor = getReadDb().query(true, AccountEntry.TABLE_NAME, new String[]{AccountEntry.COLUMN_CURRENCY},
                 null, null, null, null, null, null);
         List<Commodity> commodityList = new ArrayList<>();
         try {
@@ -1293,7 +1439,7 @@ public class AccountsDbAdapter extends DatabaseAdapter<Account> {
     }
 
     public int getTransactionMaxSplitNum(@NonNull String accountUID) {
-        Cursor cursor = mDb.query("trans_extra_info",
+        Cursor cursor = getReadDb().query("trans_extra_info",
                 new String[]{"MAX(trans_split_count)"},
                 "trans_acct_t_uid IN ( SELECT DISTINCT " + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_UID +
                         " FROM trans_split_acct WHERE " + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_UID +
@@ -27,6 +27,7 @@ import android.util.Log;
 
 import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.BookContextCache;
 import org.gnucash.android.db.DatabaseHelper;
 import org.gnucash.android.db.DatabaseSchema.BookEntry;
 import org.gnucash.android.model.Book;
@@ -109,6 +110,9 @@ public class BooksDbAdapter extends DatabaseAdapter<Book> {
      */
     public boolean deleteBook(@NonNull String bookUID){
         Context context = GnuCashApplication.getAppContext();
+        BookContextCache bookContexts = GnuCashApplication.getBookContexts();
+        if (bookContexts != null) //close the database if the book was used recently
+            bookContexts.evict(bookUID);
         boolean result = context.deleteDatabase(bookUID);
         if (result) //delete the db entry only if the file deletion was successful
             result &= deleteRecord(bookUID);
@@ -54,18 +54,27 @@ public class CommoditiesDbAdapter extends DatabaseAdapter<Commodity> {
     @Override
     protected @NonNull SQLiteStatement setBindings(@NonNull SQLiteStatement stmt, @NonNull final Commodity commodity) {
         stmt.clearBindings();
-        stmt.bindString(1, commodity.getFullname());
-        stmt.bindString(2, commodity.getNamespace().name());
-        stmt.bindString(3, commodity.getMnemonic());
-        stmt.bindString(4, commodity.getLocalSymbol());
-        stmt.bindString(5, commodity.getCusip());
-        stmt.bindLong(6, commodity.getSmallestFraction());
-        stmt.bindLong(7, commodity.getQuoteFlag());
-        stmt.bindString(8, commodity.getUID());
-
+        bindValues(stmt, 0, commodity);
         return stmt;
     }
 
+    @Override
+    protected void bindValues(@NonNull SQLiteStatement stmt, int offset, @NonNull final Commodity commodity) {
+        stmt.bindString(offset + 1, commodity.getFullname());
+        stmt.bindString(offset + 2, commodity.getNamespace().name());
+        stmt.bindString(offset + 3, commodity.getMnemonic());
+        stmt.bindString(offset + 4, commodity.getLocalSymbol());
+        stmt.bindString(offset + 5, commodity.getCusip());
+        stmt.bindLong(offset + 6, commodity.getSmallestFraction());
+        stmt.bindLong(offset + 7, commodity.getQuoteFlag());
+        stmt.bindString(offset + 8, commodity.getUID());
+    }
+
+    @Override
+    protected boolean supportsMultiRowBindings() {
+        return true;
+    }
+
     @Override
     public Commodity buildModelInstance(@NonNull final Cursor cursor) {
         String fullname = cursor.getString(cursor.getColumnIndexOrThrow(CommodityEntry.COLUMN_FULLNAME));
@@ -89,7 +98,7 @@ public class CommoditiesDbAdapter extends DatabaseAdapter<Commodity> {
 
     @Override
     public Cursor fetchAllRecords() {
-        return mDb.query(mTableName, null, null, null, null, null,
+        return getReadDb().query(mTableName, null, null, null, null, null,
                 CommodityEntry.COLUMN_FULLNAME + " ASC");
     }
 
@@ -99,7 +108,7 @@ public class CommoditiesDbAdapter extends DatabaseAdapter<Commodity> {
      * @return Cursor holding all commodity records
      */
     public Cursor fetchAllRecords(String orderBy) {
-        return mDb.query(mTableName, null, null, null, null, null,
+        return getReadDb().query(mTableName, null, null, null, null, null,
                 orderBy);
     }
 
@@ -123,7 +132,7 @@ public class CommoditiesDbAdapter extends DatabaseAdapter<Commodity> {
     }
 
     public String getCurrencyCode(@NonNull String guid) {
-        Cursor cursor = mDb.query(mTableName, new String[]{CommodityEntry.COLUMN_MNEMONIC},
+        Cursor cursor = getReadDb().query(mTableName, new String[]{CommodityEntry.COLUMN_MNEMONIC},
                 DatabaseSchema.CommonColumns.COLUMN_UID + " = ?", new String[]{guid},
                 null, null, null);
         try {
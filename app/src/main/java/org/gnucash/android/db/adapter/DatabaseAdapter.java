@@ -18,17 +18,20 @@ package org.gnucash.android.db.adapter;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import android.util.Log;
 
 import org.gnucash.android.db.DatabaseSchema;
+import org.gnucash.android.db.ReadConnectionPool;
+import org.gnucash.android.db.StatementCache;
 import org.gnucash.android.db.DatabaseSchema.AccountEntry;
 import org.gnucash.android.db.DatabaseSchema.CommonColumns;
-import org.gnucash.android.db.DatabaseSchema.SplitEntry;
-import org.gnucash.android.db.DatabaseSchema.TransactionEntry;
 import org.gnucash.android.model.AccountType;
 import org.gnucash.android.model.BaseModel;
 import org.gnucash.android.util.TimestampHelper;
@@ -64,6 +67,32 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
 
     protected volatile SQLiteStatement mInsertStatement;
 
+    /**
+     * Maximum number of host parameters in one SQLite statement (SQLITE_MAX_VARIABLE_NUMBER)
+     */
+    public static final int SQLITE_MAX_VARIABLE_NUMBER = 999;
+
+    /**
+     * Upper bound for the number of rows added by one multi-row statement.
+     * Beyond this the statements get longer without getting noticeably faster.
+     */
+    public static final int MAX_ROWS_PER_STATEMENT = 64;
+
+    private volatile SQLiteStatement mMultiRowInsertStatement;
+
+    private volatile SQLiteStatement mMultiRowReplaceStatement;
+
+    /**
+     * Read-only connections to the same database, used for queries. May be null
+     */
+    private volatile ReadConnectionPool mReadConnectionPool;
+
+    /**
+     * Compiled statements for single-value lookups on {@link #mDb}, shared by the adapters of a book.
+     * Adapters created for a single use look values up without caching the statements
+     */
+    private volatile StatementCache mStatementCache;
+
     public enum UpdateMethod {
         insert, update, replace
     };
@@ -76,122 +105,74 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
         this.mTableName = tableName;
         this.mDb = db;
         this.mColumns = columns;
+        this.mStatementCache = StatementCache.createUncached(db);
         if (!db.isOpen() || db.isReadOnly())
             throw new IllegalArgumentException("Database not open or is read-only. Require writeable database");
 
-        if (mDb.getVersion() >= 9) {
-            createTempView();
-        }
         LOG_TAG = getClass().getSimpleName();
     }
 
-    private void createTempView() {
-        //the multiplication by 1.0 is to cause sqlite to handle the value as REAL and not to round off
-
-        // Create some temporary views. Temporary views only exists in one DB session, and will not
-        // be saved in the DB
-        //
-        // TODO: Useful views should be add to the DB
-        //
-        // create a temporary view, combining accounts, transactions and splits, as this is often used
-        // in the queries
-
-        //todo: would it be useful to add the split reconciled_state and reconciled_date to this view?
-        mDb.execSQL("CREATE TEMP VIEW IF NOT EXISTS trans_split_acct AS SELECT "
-                        + TransactionEntry.TABLE_NAME + "." + CommonColumns.COLUMN_MODIFIED_AT + " AS "
-                        + TransactionEntry.TABLE_NAME + "_" + CommonColumns.COLUMN_MODIFIED_AT + " , "
-                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " AS "
-                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_UID + " , "
-                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_DESCRIPTION + " AS "
-                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_DESCRIPTION + " , "
-                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_NOTES + " AS "
-                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_NOTES + " , "
-                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_CURRENCY + " AS "
-                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_CURRENCY + " , "
-                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + " AS "
-                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TIMESTAMP + " , "
-                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_EXPORTED + " AS "
-                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_EXPORTED + " , "
-                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TEMPLATE + " AS "
-                        + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TEMPLATE + " , "
-                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_UID + " AS "
-                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_UID + " , "
-                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TYPE + " AS "
-                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_TYPE + " , "
-                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_VALUE_NUM + " AS "
-                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_VALUE_NUM + " , "
-                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_VALUE_DENOM + " AS "
-                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_VALUE_DENOM + " , "
-                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_QUANTITY_NUM + " AS "
-                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_NUM + " , "
-                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_QUANTITY_DENOM + " AS "
-                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_DENOM + " , "
-                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_MEMO + " AS "
-                        + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_MEMO + " , "
-                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_UID + " AS "
-                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_UID + " , "
-                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_NAME + " AS "
-                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_NAME + " , "
-                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_CURRENCY + " AS "
-                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_CURRENCY + " , "
-                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " AS "
-                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_PARENT_ACCOUNT_UID + " , "
-                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_PLACEHOLDER + " AS "
-                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_PLACEHOLDER + " , "
-                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_COLOR_CODE + " AS "
-                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_COLOR_CODE + " , "
-                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_FAVORITE + " AS "
-                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_FAVORITE + " , "
-                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_FULL_NAME + " AS "
-                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_FULL_NAME + " , "
-                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_TYPE + " AS "
-                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_TYPE + " , "
-                        + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_DEFAULT_TRANSFER_ACCOUNT_UID + " AS "
-                        + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_DEFAULT_TRANSFER_ACCOUNT_UID
-                        + " FROM " + TransactionEntry.TABLE_NAME + " , " + SplitEntry.TABLE_NAME + " ON "
-                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + "=" + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID
-                        + " , " + AccountEntry.TABLE_NAME + " ON "
-                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + "=" + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_UID
-        );
-
-        // SELECT transactions_uid AS trans_acct_t_uid ,
-        //      SUBSTR (
-        //          MIN (
-        //              ( CASE WHEN IFNULL ( splits_memo , '' ) == '' THEN 'a' ELSE 'b' END ) || accounts_uid
-        //          ) ,
-        //          2
-        //      ) AS trans_acct_a_uid ,
-        //   TOTAL ( CASE WHEN splits_type = 'DEBIT' THEN splits_value_num
-        //                ELSE - splits_value_num END ) * 1.0 / splits_value_denom AS trans_acct_balance ,
-        //   COUNT ( DISTINCT accounts_currency_code ) AS trans_currency_count ,
-        //   COUNT (*) AS trans_split_count
-        //   FROM trans_split_acct GROUP BY transactions_uid
-        //
-        // This temporary view would pick one Account_UID for each
-        // Transaction, which can be used to order all transactions. If possible, account_uid of a split whose
-        // memo is null is select.
-        //
-        // Transaction balance is also picked out by this view
-        //
-        // a split without split memo is chosen if possible, in the following manner:
-        //   if the splits memo is null or empty string, attach an 'a' in front of the split account uid,
-        //   if not, attach a 'b' to the split account uid
-        //   pick the minimal value of the modified account uid (one of the ones begins with 'a', if exists)
-        //   use substr to get account uid
-
-        mDb.execSQL("CREATE TEMP VIEW IF NOT EXISTS trans_extra_info AS SELECT " + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_UID +
-                " AS trans_acct_t_uid , SUBSTR ( MIN ( ( CASE WHEN IFNULL ( " + SplitEntry.TABLE_NAME + "_" +
-                SplitEntry.COLUMN_MEMO + " , '' ) == '' THEN 'a' ELSE 'b' END ) || " +
-                AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_UID +
-                " ) , 2 ) AS trans_acct_a_uid , TOTAL ( CASE WHEN " + SplitEntry.TABLE_NAME + "_" +
-                SplitEntry.COLUMN_TYPE + " = 'DEBIT' THEN "+ SplitEntry.TABLE_NAME + "_" +
-                SplitEntry.COLUMN_VALUE_NUM + " ELSE - " + SplitEntry.TABLE_NAME + "_" +
-                SplitEntry.COLUMN_VALUE_NUM + " END ) * 1.0 / " + SplitEntry.TABLE_NAME + "_" +
-                SplitEntry.COLUMN_VALUE_DENOM + " AS trans_acct_balance , COUNT ( DISTINCT " +
-                AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_CURRENCY +
-                " ) AS trans_currency_count , COUNT (*) AS trans_split_count FROM trans_split_acct " +
-                " GROUP BY " + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_UID
-        );
+    /**
+     * Sets the pool of read-only connections to be used for queries of this adapter
+     * @param readConnectionPool Pool of connections to the database of this adapter,
+     *                           or null to run all queries on the writable database
+     */
+    public void setReadConnectionPool(@Nullable ReadConnectionPool readConnectionPool) {
+        mReadConnectionPool = readConnectionPool;
+    }
+
+    /**
+     * Sets the cache of statements for single-value lookups on the database of this adapter.
+     * <p>The cache is owned by the caller, which closes it along with the database</p>
+     * @param statementCache Cache of statements compiled on the database of this adapter,
+     *                       or null to not cache the statements
+     */
+    public void setStatementCache(@Nullable StatementCache statementCache) {
+        if (statementCache != null && statementCache.getDatabase() != mDb)
+            throw new IllegalArgumentException("The statements must be compiled on the database of the adapter");
+        mStatementCache = statementCache == null ? StatementCache.createUncached(mDb) : statementCache;
+    }
+
+    /**
+     * Returns the database to be used for queries which do not modify the database.
+     * <p>This is a connection from the read connection pool, so that queries do not wait for
+     * writes in progress on other threads. If there is no pool or the calling thread is in a
+     * transaction, the writable database is returned so that uncommitted changes are visible.</p>
+     * @return Database to be queried
+     */
+    protected SQLiteDatabase getReadDb() {
+        ReadConnectionPool readConnectionPool = mReadConnectionPool;
+        if (readConnectionPool == null || mDb.inTransaction())
+            return mDb;
+        SQLiteDatabase db = readConnectionPool.getReadableDatabase();
+        return db == null ? mDb : db;
+    }
+
+    /**
+     * Returns the statement cache for single-value lookups, on the same connection as {@link #getReadDb()} would
+     * @return Statement cache of a read connection, or the one of the writable database
+     */
+    protected StatementCache getReadStatementCache() {
+        ReadConnectionPool readConnectionPool = mReadConnectionPool;
+        if (readConnectionPool == null || mDb.inTransaction())
+            return mStatementCache;
+        StatementCache statementCache = readConnectionPool.getStatementCache();
+        return statementCache == null ? mStatementCache : statementCache;
+    }
+
+    /**
+     * Closes the statements compiled by this adapter.
+     * <p>This should be called when the adapter is discarded, e.g. when another book is opened.
+     * The database itself, and the statement cache set with {@link #setStatementCache(StatementCache)},
+     * are closed by their owner</p>
+     */
+    public void close() {
+        SQLiteStatement[] statements = {mReplaceStatement, mUpdateStatement, mInsertStatement,
+                mMultiRowInsertStatement, mMultiRowReplaceStatement};
+        for (SQLiteStatement statement : statements) {
+            if (statement != null)
+                statement.close();
+        }
     }
 
     /**
@@ -202,6 +183,14 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
         return mDb.isOpen();
     }
 
+    /**
+     * Returns the name of the table holding the records of this adapter
+     * @return Table name
+     */
+    public String getTableName() {
+        return mTableName;
+    }
+
     /**
      * Adds a record to the database with the data contained in the model.
      * <p>This method uses the SQL REPLACE instructions to replace any record with a matching GUID.
@@ -246,6 +235,11 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
      * @return Number of rows affected in the database
      */
     private long doAddModels(@NonNull final List<Model> modelList, UpdateMethod updateMethod) {
+        int rowsPerStatement = getRowsPerStatement();
+        if (updateMethod != UpdateMethod.update && rowsPerStatement > 1
+                && modelList.size() >= rowsPerStatement) {
+            return doAddModelsMultiRow(modelList, updateMethod);
+        }
         long nRow = 0;
         switch (updateMethod) {
             case update:
@@ -276,6 +270,95 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
         return nRow;
     }
 
+    /**
+     * Inserts or replaces the models with statements which add {@link #getRowsPerStatement()} rows at once.
+     * <p>This saves the per-statement overhead of executing, and crossing into native code,
+     * for every single record. The records which do not fill a whole statement are added
+     * with one last shorter statement.</p>
+     * @param modelList List of records
+     * @param updateMethod Either {@link UpdateMethod#insert} or {@link UpdateMethod#replace}
+     * @return Number of rows added
+     */
+    private long doAddModelsMultiRow(@NonNull final List<Model> modelList, UpdateMethod updateMethod) {
+        int rowsPerStatement = getRowsPerStatement();
+        int size = modelList.size();
+        int fullSize = size - size % rowsPerStatement;
+        SQLiteStatement stmt = getMultiRowStatement(updateMethod);
+        synchronized (stmt) {
+            for (int start = 0; start < fullSize; start += rowsPerStatement) {
+                bindRows(stmt, modelList.subList(start, start + rowsPerStatement)).execute();
+            }
+        }
+        if (fullSize < size) {
+            List<Model> remainder = modelList.subList(fullSize, size);
+            SQLiteStatement remainderStatement = mDb.compileStatement(
+                    buildAddSql(updateMethod, remainder.size()));
+            try {
+                bindRows(remainderStatement, remainder).execute();
+            } finally {
+                remainderStatement.close();
+            }
+        }
+        return size;
+    }
+
+    private SQLiteStatement bindRows(@NonNull SQLiteStatement stmt, @NonNull List<Model> models) {
+        stmt.clearBindings();
+        int parametersPerRow = mColumns.length + 1;
+        int offset = 0;
+        for (Model model : models) {
+            bindValues(stmt, offset, model);
+            offset += parametersPerRow;
+        }
+        return stmt;
+    }
+
+    /**
+     * Returns the number of rows added by one multi-row statement of this table.
+     * <p>This is as many rows as fit in the SQLite host parameter limit, up to {@link #MAX_ROWS_PER_STATEMENT},
+     * or a single row if the adapter does not support multi-row bindings</p>
+     * @return Number of rows per statement
+     */
+    protected int getRowsPerStatement() {
+        if (!supportsMultiRowBindings())
+            return 1;
+        return Math.max(1, Math.min(MAX_ROWS_PER_STATEMENT, SQLITE_MAX_VARIABLE_NUMBER / (mColumns.length + 1)));
+    }
+
+    private SQLiteStatement getMultiRowStatement(UpdateMethod updateMethod) {
+        SQLiteStatement stmt = updateMethod == UpdateMethod.insert ? mMultiRowInsertStatement : mMultiRowReplaceStatement;
+        if (stmt == null) {
+            synchronized (this) {
+                stmt = updateMethod == UpdateMethod.insert ? mMultiRowInsertStatement : mMultiRowReplaceStatement;
+                if (stmt == null) {
+                    stmt = mDb.compileStatement(buildAddSql(updateMethod, getRowsPerStatement()));
+                    if (updateMethod == UpdateMethod.insert)
+                        mMultiRowInsertStatement = stmt;
+                    else
+                        mMultiRowReplaceStatement = stmt;
+                }
+            }
+        }
+        return stmt;
+    }
+
+    /**
+     * Builds an INSERT or REPLACE statement for {@code rowCount} records, with the columns
+     * in the same order as the single-row statements
+     */
+    private String buildAddSql(UpdateMethod updateMethod, int rowCount) {
+        String row = "( " + (new String(new char[mColumns.length]).replace("\0", "? , ")) + "?)";
+        StringBuilder sql = new StringBuilder(updateMethod == UpdateMethod.insert ? "INSERT" : "REPLACE")
+                .append(" INTO ").append(mTableName).append(" ( ")
+                .append(TextUtils.join(" , ", mColumns)).append(" , ")
+                .append(CommonColumns.COLUMN_UID)
+                .append(" ) VALUES ").append(row);
+        for (int i = 1; i < rowCount; i++) {
+            sql.append(" , ").append(row);
+        }
+        return sql.toString();
+    }
+
     /**
      * Add multiple records to the database at once
      * <p>Either all or none of the records will be inserted/updated into the database.</p>
@@ -385,6 +468,30 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
      */
     protected abstract @NonNull SQLiteStatement setBindings(@NonNull SQLiteStatement stmt, @NonNull final Model model);
 
+    /**
+     * Binds the values from the model to the SQL statement, after the first {@code offset} parameters.
+     * <p>Adapters which implement this, and return {@code true} from {@link #supportsMultiRowBindings()},
+     * add records in bulk with multi-row statements. The parameters are in the same order as in
+     * {@link #setBindings(SQLiteStatement, BaseModel)}, and unbound parameters are null.</p>
+     * <p>By default, the values are bound with {@link #setBindings(SQLiteStatement, BaseModel)}.
+     * The statements of adapters which do not support multi-row bindings hold a single record,
+     * see {@link #getRowsPerStatement()}, so that the offset is always 0</p>
+     * @param stmt SQL statement with placeholders for one or more records
+     * @param offset Number of parameters bound for previous records in the statement
+     * @param model Model from which to read bind attributes
+     */
+    protected void bindValues(@NonNull SQLiteStatement stmt, int offset, @NonNull final Model model) {
+        setBindings(stmt, model);
+    }
+
+    /**
+     * Checks if this adapter implements {@link #bindValues(SQLiteStatement, int, BaseModel)}
+     * @return {@code true} if records can be added with multi-row statements, {@code false} otherwise
+     */
+    protected boolean supportsMultiRowBindings() {
+        return false;
+    }
+
     /**
      * Returns a model instance populated with data from the record with GUID {@code uid}
      * <p>Sub-classes which require special handling should override this method</p>
@@ -473,7 +580,7 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
 	 * @return {@link Cursor} to record retrieved
 	 */
 	public Cursor fetchRecord(long rowId){
-		return mDb.query(mTableName, null, DatabaseSchema.CommonColumns._ID + "=" + rowId,
+		return getReadDb().query(mTableName, null, DatabaseSchema.CommonColumns._ID + "=" + rowId,
 				null, null, null, null);
 	}
 
@@ -483,7 +590,7 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
      * @return {@link Cursor} to record retrieved
      */
     public Cursor fetchRecord(@NonNull String uid){
-        return mDb.query(mTableName, null, CommonColumns.COLUMN_UID + "=?" ,
+        return getReadDb().query(mTableName, null, CommonColumns.COLUMN_UID + "=?" ,
                 new String[]{uid}, null, null, null);
     }
 
@@ -503,7 +610,7 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
      * @return Cursor to records matching conditions
      */
     public Cursor fetchAllRecords(String where, String[] whereArgs, String orderBy){
-        return mDb.query(mTableName, null, where, whereArgs, null, null, orderBy);
+        return getReadDb().query(mTableName, null, where, whereArgs, null, null, orderBy);
     }
 
 	/**
@@ -531,22 +638,12 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
      * @throws IllegalArgumentException if the GUID does not exist in the database
      */
     public long getID(@NonNull String uid){
-        Cursor cursor = mDb.query(mTableName,
-                new String[] {DatabaseSchema.CommonColumns._ID},
-                DatabaseSchema.CommonColumns.COLUMN_UID + " = ?",
-                new String[]{uid},
-                null, null, null);
-        long result = -1;
-        try{
-            if (cursor.moveToFirst()) {
-                result = cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseSchema.CommonColumns._ID));
-            } else {
-                throw new IllegalArgumentException(mTableName + " with GUID " + uid + " does not exist in the db");
-            }
-        } finally {
-            cursor.close();
+        try {
+            return getReadStatementCache().queryForLong("SELECT " + CommonColumns._ID + " FROM " + mTableName
+                    + " WHERE " + CommonColumns.COLUMN_UID + " = ?", uid);
+        } catch (SQLiteDoneException e) {
+            throw new IllegalArgumentException(mTableName + " with GUID " + uid + " does not exist in the db");
         }
-        return result;
     }
 
     /**
@@ -556,22 +653,12 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
      * @throws IllegalArgumentException if the record ID does not exist in the database
      */
     public String getUID(long id){
-        Cursor cursor = mDb.query(mTableName,
-                new String[]{DatabaseSchema.CommonColumns.COLUMN_UID},
-                DatabaseSchema.CommonColumns._ID + " = " + id,
-                null, null, null, null);
-
-        String uid = null;
         try {
-            if (cursor.moveToFirst()) {
-                uid = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.CommonColumns.COLUMN_UID));
-            } else {
-                throw new IllegalArgumentException(mTableName + " Record ID " + id + " does not exist in the db");
-            }
-        } finally {
-            cursor.close();
+            return getReadStatementCache().queryForString("SELECT " + CommonColumns.COLUMN_UID + " FROM " + mTableName
+                    + " WHERE " + CommonColumns._ID + " = ?", String.valueOf(id));
+        } catch (SQLiteDoneException e) {
+            throw new IllegalArgumentException(mTableName + " Record ID " + id + " does not exist in the db");
         }
-        return uid;
     }
 
     /**
@@ -582,18 +669,11 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
      *      does not exist in DB
      */
     public String getAccountCurrencyCode(@NonNull String accountUID) {
-        Cursor cursor = mDb.query(DatabaseSchema.AccountEntry.TABLE_NAME,
-                new String[] {DatabaseSchema.AccountEntry.COLUMN_CURRENCY},
-                DatabaseSchema.AccountEntry.COLUMN_UID + "= ?",
-                new String[]{accountUID}, null, null, null);
         try {
-            if (cursor.moveToFirst()) {
-                return cursor.getString(0);
-            } else {
-                throw new IllegalArgumentException("Account " + accountUID + " does not exist");
-            }
-        } finally {
-            cursor.close();
+            return getReadStatementCache().queryForString("SELECT " + AccountEntry.COLUMN_CURRENCY
+                    + " FROM " + AccountEntry.TABLE_NAME + " WHERE " + AccountEntry.COLUMN_UID + " = ?", accountUID);
+        } catch (SQLiteDoneException e) {
+            throw new IllegalArgumentException("Account " + accountUID + " does not exist");
         }
     }
 
@@ -604,20 +684,12 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
      * @return GUID of commodity
      */
     public String getCommodityUID(String currencyCode){
-        String where = DatabaseSchema.CommodityEntry.COLUMN_MNEMONIC + "= ?";
-        String[] whereArgs = new String[]{currencyCode};
-
-        Cursor cursor = mDb.query(DatabaseSchema.CommodityEntry.TABLE_NAME,
-                new String[]{DatabaseSchema.CommodityEntry.COLUMN_UID},
-                where, whereArgs, null, null, null);
         try {
-            if (cursor.moveToNext()) {
-                return cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.CommodityEntry.COLUMN_UID));
-            } else {
-                throw new IllegalArgumentException("Currency code not found in commodities");
-            }
-        } finally {
-            cursor.close();
+            return getReadStatementCache().queryForString("SELECT " + DatabaseSchema.CommodityEntry.COLUMN_UID
+                    + " FROM " + DatabaseSchema.CommodityEntry.TABLE_NAME
+                    + " WHERE " + DatabaseSchema.CommodityEntry.COLUMN_MNEMONIC + " = ?", currencyCode);
+        } catch (SQLiteDoneException e) {
+            throw new IllegalArgumentException("Currency code not found in commodities");
         }
     }
 
@@ -628,19 +700,12 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
      * @throws java.lang.IllegalArgumentException if accountUID does not exist in DB,
      */
     public AccountType getAccountType(@NonNull String accountUID){
-        String type = "";
-        Cursor c = mDb.query(DatabaseSchema.AccountEntry.TABLE_NAME,
-                new String[]{DatabaseSchema.AccountEntry.COLUMN_TYPE},
-                DatabaseSchema.AccountEntry.COLUMN_UID + "=?",
-                new String[]{accountUID}, null, null, null);
+        String type;
         try {
-            if (c.moveToFirst()) {
-                type = c.getString(c.getColumnIndexOrThrow(DatabaseSchema.AccountEntry.COLUMN_TYPE));
-            } else {
-                throw new IllegalArgumentException("account " + accountUID + " does not exist in DB");
-            }
-        } finally {
-            c.close();
+            type = getReadStatementCache().queryForString("SELECT " + AccountEntry.COLUMN_TYPE
+                    + " FROM " + AccountEntry.TABLE_NAME + " WHERE " + AccountEntry.COLUMN_UID + " = ?", accountUID);
+        } catch (SQLiteDoneException e) {
+            throw new IllegalArgumentException("account " + accountUID + " does not exist in DB");
         }
         return AccountType.valueOf(type);
     }
@@ -740,30 +805,57 @@ public abstract class DatabaseAdapter<Model extends BaseModel> {
      * @throws IllegalArgumentException if either the {@code recordUID} or {@code columnName} do not exist in the database
      */
     protected String getAttribute(@NonNull String tableName, @NonNull String recordUID, @NonNull String columnName){
-        Cursor cursor = mDb.query(tableName,
-                new String[]{columnName},
-                AccountEntry.COLUMN_UID + " = ?",
-                new String[]{recordUID}, null, null, null);
-
         try {
-            if (cursor.moveToFirst())
-                return cursor.getString(cursor.getColumnIndexOrThrow(columnName));
-            else {
-                throw new IllegalArgumentException(String.format("Record with GUID %s does not exist in the db", recordUID));
-            }
-        } finally {
-            cursor.close();
+            return getReadStatementCache().queryForString("SELECT " + columnName + " FROM " + tableName
+                    + " WHERE " + CommonColumns.COLUMN_UID + " = ?", recordUID);
+        } catch (SQLiteDoneException e) {
+            throw new IllegalArgumentException(String.format("Record with GUID %s does not exist in the db", recordUID));
         }
     }
 
+    /**
+     * Returns the version of the data of the book, which increases with every change to the accounts,
+     * transactions, splits, prices or budgets
+     * @return Data version of the book
+     * @see DatabaseSchema.DataVersionEntry
+     */
+    public long getDataVersion(){
+        return getReadStatementCache().queryForLong("SELECT " + DatabaseSchema.DataVersionEntry.COLUMN_VERSION
+                + " FROM " + DatabaseSchema.DataVersionEntry.TABLE_NAME);
+    }
+
+    /**
+     * Escapes the wildcards in a text which is used in a LIKE pattern.
+     * <p>The pattern must be compared with {@code LIKE ? ESCAPE '\'}</p>
+     * @param text Text to be matched literally
+     * @return Text with the wildcards and the escape character escaped
+     */
+    public static String escapeLikePattern(@NonNull String text){
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     /**
      * Returns the number of records in the database table backed by this adapter
      * @return Total number of records in the database
      */
     public long getRecordsCount(){
         String sql = "SELECT COUNT(*) FROM " + mTableName;
-        SQLiteStatement statement = mDb.compileStatement(sql);
-        return statement.simpleQueryForLong();
+        SQLiteStatement statement = getReadDb().compileStatement(sql);
+        try {
+            return statement.simpleQueryForLong();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Returns the number of records in the database table backed by this adapter which fulfill {@code where}
+     * @param where SQL WHERE clause without the "WHERE" itself
+     * @param whereArgs Arguments to replace the ? in the {@code where}
+     * @return Number of matching records in the database
+     */
+    public long getRecordsCount(@Nullable String where, @Nullable String[] whereArgs){
+        return DatabaseUtils.queryNumEntries(getReadDb(), mTableName, where, whereArgs);
     }
 
     /**
@@ -39,20 +39,29 @@ public class PricesDbAdapter extends DatabaseAdapter<Price> {
     @Override
     protected @NonNull SQLiteStatement setBindings(@NonNull SQLiteStatement stmt, @NonNull final Price price) {
         stmt.clearBindings();
-        stmt.bindString(1, price.getCommodityUID());
-        stmt.bindString(2, price.getCurrencyUID());
-        stmt.bindString(3, price.getDate().toString());
+        bindValues(stmt, 0, price);
+        return stmt;
+    }
+
+    @Override
+    protected void bindValues(@NonNull SQLiteStatement stmt, int offset, @NonNull final Price price) {
+        stmt.bindString(offset + 1, price.getCommodityUID());
+        stmt.bindString(offset + 2, price.getCurrencyUID());
+        stmt.bindString(offset + 3, price.getDate().toString());
         if (price.getSource() != null) {
-            stmt.bindString(4, price.getSource());
+            stmt.bindString(offset + 4, price.getSource());
         }
         if (price.getType() != null) {
-            stmt.bindString(5, price.getType());
+            stmt.bindString(offset + 5, price.getType());
         }
-        stmt.bindLong(6, price.getValueNum());
-        stmt.bindLong(7, price.getValueDenom());
-        stmt.bindString(8, price.getUID());
+        stmt.bindLong(offset + 6, price.getValueNum());
+        stmt.bindLong(offset + 7, price.getValueDenom());
+        stmt.bindString(offset + 8, price.getUID());
+    }
 
-        return stmt;
+    @Override
+    protected boolean supportsMultiRowBindings() {
+        return true;
     }
 
     @Override
@@ -94,7 +103,7 @@ public class PricesDbAdapter extends DatabaseAdapter<Price> {
         {
             return new Pair<Long, Long>(1L, 1L);
         }
-        Cursor cursor = mDb.query(PriceEntry.TABLE_NAME, null,
+        Cursor cursor = getReadDb().query(PriceEntry.TABLE_NAME, null,
                 // the commodity and currency can be swapped
                 "( " + PriceEntry.COLUMN_COMMODITY_UID + " = ? AND " + PriceEntry.COLUMN_CURRENCY_UID + " = ? ) OR ( "
                 + PriceEntry.COLUMN_COMMODITY_UID + " = ? AND " + PriceEntry.COLUMN_CURRENCY_UID + " = ? )",
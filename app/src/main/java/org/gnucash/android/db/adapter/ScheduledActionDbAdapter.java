@@ -58,7 +58,8 @@ public class ScheduledActionDbAdapter extends DatabaseAdapter<ScheduledAction> {
                 ScheduledActionEntry.COLUMN_ADVANCE_CREATION  ,
                 ScheduledActionEntry.COLUMN_ADVANCE_NOTIFY    ,
                 ScheduledActionEntry.COLUMN_TEMPLATE_ACCT_UID ,
-                ScheduledActionEntry.COLUMN_EXECUTION_COUNT
+                ScheduledActionEntry.COLUMN_EXECUTION_COUNT   ,
+                ScheduledActionEntry.COLUMN_NEXT_RUN_AT
         });
         mRecurrenceDbAdapter = recurrenceDbAdapter;
         LOG_TAG = "ScheduledActionDbAdapter";
@@ -121,7 +122,36 @@ public class ScheduledActionDbAdapter extends DatabaseAdapter<ScheduledAction> {
         Log.d(LOG_TAG, "Updating scheduled event recurrence attributes");
         String where = ScheduledActionEntry.COLUMN_UID + "=?";
         String[] whereArgs = new String[]{scheduledAction.getUID()};
-        return mDb.update(ScheduledActionEntry.TABLE_NAME, contentValues, where, whereArgs);
+        long rows = mDb.update(ScheduledActionEntry.TABLE_NAME, contentValues, where, whereArgs);
+
+        //the next run depends on the execution count and last run, which are only known from the database
+        updateNextRunTime(getRecord(scheduledAction.getUID()));
+        return rows;
+    }
+
+    /**
+     * Saves the time at which the scheduled action is next due, computed from its current state
+     * @param scheduledAction Scheduled action whose execution count and last run time are up to date
+     * @see ScheduledAction#computeNextRunTime()
+     */
+    public void updateNextRunTime(@NonNull ScheduledAction scheduledAction) {
+        ContentValues contentValues = new ContentValues();
+        putNextRunTime(contentValues, scheduledAction);
+        mDb.update(ScheduledActionEntry.TABLE_NAME, contentValues,
+                ScheduledActionEntry.COLUMN_UID + "=?", new String[]{scheduledAction.getUID()});
+    }
+
+    /**
+     * Adds the time at which the scheduled action is next due to the values of a row
+     * @param contentValues Values of the scheduled action row
+     * @param scheduledAction Scheduled action
+     */
+    public static void putNextRunTime(@NonNull ContentValues contentValues, @NonNull ScheduledAction scheduledAction) {
+        long nextRunTime = scheduledAction.computeNextRunTime();
+        if (nextRunTime < 0)
+            contentValues.putNull(ScheduledActionEntry.COLUMN_NEXT_RUN_AT);
+        else
+            contentValues.put(ScheduledActionEntry.COLUMN_NEXT_RUN_AT, nextRunTime);
     }
 
     @Override
@@ -147,7 +177,12 @@ public class ScheduledActionDbAdapter extends DatabaseAdapter<ScheduledAction> {
         stmt.bindString(15, schedxAction.getTemplateAccountUID());
 
         stmt.bindString(16, Integer.toString(schedxAction.getExecutionCount()));
-        stmt.bindString(17, schedxAction.getUID());
+        long nextRunTime = schedxAction.computeNextRunTime();
+        if (nextRunTime < 0)
+            stmt.bindNull(17);
+        else
+            stmt.bindLong(17, nextRunTime);
+        stmt.bindString(18, schedxAction.getUID());
         return stmt;
     }
     /**
@@ -202,7 +237,7 @@ public class ScheduledActionDbAdapter extends DatabaseAdapter<ScheduledAction> {
      * @return List of ScheduledEvents
      */
     public List<ScheduledAction> getScheduledActionsWithUID(@NonNull String actionUID){
-        Cursor cursor = mDb.query(ScheduledActionEntry.TABLE_NAME, null,
+        Cursor cursor = getReadDb().query(ScheduledActionEntry.TABLE_NAME, null,
                 ScheduledActionEntry.COLUMN_ACTION_UID + "= ?",
                 new String[]{actionUID}, null, null, null);
 
@@ -222,15 +257,58 @@ public class ScheduledActionDbAdapter extends DatabaseAdapter<ScheduledAction> {
      * @return List of enabled scheduled actions
      */
     public List<ScheduledAction> getAllEnabledScheduledActions(){
-        Cursor cursor = mDb.query(mTableName,
+        Cursor cursor = getReadDb().query(mTableName,
                 null, ScheduledActionEntry.COLUMN_ENABLED + "=1", null, null, null, null);
         List<ScheduledAction> scheduledActions = new ArrayList<>();
-        while (cursor.moveToNext()){
-            scheduledActions.add(buildModelInstance(cursor));
+        try {
+            while (cursor.moveToNext()) {
+                scheduledActions.add(buildModelInstance(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return scheduledActions;
+    }
+
+    /**
+     * Returns the enabled scheduled actions which are due at the specified time.
+     * <p>Only the actions whose next run time is not later than {@code time} are loaded,
+     * using the index on the next run time</p>
+     * @param time Time in milliseconds since Epoch, usually the current time
+     * @return List of due scheduled actions, in the order in which they became due
+     */
+    public List<ScheduledAction> getDueScheduledActions(long time){
+        Cursor cursor = getReadDb().query(mTableName, null,
+                ScheduledActionEntry.COLUMN_NEXT_RUN_AT + " <= ? AND " + ScheduledActionEntry.COLUMN_ENABLED + "=1",
+                new String[]{Long.toString(time)}, null, null,
+                ScheduledActionEntry.COLUMN_NEXT_RUN_AT + " ASC");
+        List<ScheduledAction> scheduledActions = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                scheduledActions.add(buildModelInstance(cursor));
+            }
+        } finally {
+            cursor.close();
         }
         return scheduledActions;
     }
 
+    /**
+     * Returns the time at which the next scheduled action of the book is due
+     * @return Time in milliseconds since Epoch, or -1 if no scheduled action will be executed again
+     */
+    public long getNextRunTime(){
+        Cursor cursor = getReadDb().rawQuery("SELECT MIN(" + ScheduledActionEntry.COLUMN_NEXT_RUN_AT + ") FROM "
+                + mTableName + " WHERE " + ScheduledActionEntry.COLUMN_ENABLED + "=1", null);
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(0))
+                return cursor.getLong(0);
+            return -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
     /**
      * Returns the number of instances of the action which have been created from this scheduled action
      * @param scheduledActionUID GUID of scheduled action
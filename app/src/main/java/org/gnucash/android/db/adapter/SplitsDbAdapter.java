@@ -19,6 +19,7 @@ package org.gnucash.android.db.adapter;
 
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
@@ -27,16 +28,23 @@ import android.util.Log;
 import android.util.Pair;
 
 import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.DatabaseHelper;
 import org.gnucash.android.db.DatabaseSchema;
 import org.gnucash.android.model.Commodity;
 import org.gnucash.android.model.Money;
+import org.gnucash.android.model.MoneyAccumulator;
 import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
 import org.gnucash.android.model.TransactionType;
 import org.gnucash.android.util.TimestampHelper;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.gnucash.android.db.DatabaseSchema.SplitEntry;
 import static org.gnucash.android.db.DatabaseSchema.TransactionEntry;
@@ -50,6 +58,11 @@ import static org.gnucash.android.db.DatabaseSchema.TransactionEntry;
  */
 public class SplitsDbAdapter extends DatabaseAdapter<Split> {
 
+    /**
+     * Maximum number of arguments in an IN clause, which stays below the limit of 999 parameters of SQLite
+     */
+    public static final int MAX_IN_ARGUMENTS = 500;
+
     public SplitsDbAdapter(SQLiteDatabase db) {
         super(db, SplitEntry.TABLE_NAME, new String[]{
                 SplitEntry.COLUMN_MEMO,
@@ -74,6 +87,18 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
         return GnuCashApplication.getSplitsDbAdapter();
     }
 
+    /**
+     * Statement which marks a transaction as modified and not exported
+     */
+    private volatile SQLiteStatement mTransactionModifiedStatement;
+
+    @Override
+    public void close() {
+        super.close();
+        if (mTransactionModifiedStatement != null)
+            mTransactionModifiedStatement.close();
+    }
+
     /**
      * Adds a split to the database.
      * The transactions belonging to the split are marked as exported
@@ -81,37 +106,79 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
      */
     public void addRecord(@NonNull final Split split, UpdateMethod updateMethod){
         Log.d(LOG_TAG, "Replace transaction split in db");
-        super.addRecord(split, updateMethod);
+        saveRecord(split, updateMethod);
+        markTransactionModified(split.getTransactionUID());
+        DatabaseHelper.updateTransactionAggregates(mDb, Collections.singletonList(split.getTransactionUID()));
+    }
 
-        long transactionId = getTransactionID(split.getTransactionUID());
-        //when a split is updated, we want mark the transaction as not exported
-        updateRecord(TransactionEntry.TABLE_NAME, transactionId,
-                TransactionEntry.COLUMN_EXPORTED, String.valueOf(0));
+    /**
+     * Saves a split to the database without updating its transaction.
+     * <p>This is the batched save path used by {@link TransactionsDbAdapter#addRecord(Transaction, UpdateMethod)},
+     * which calls {@link #markTransactionModified(String)} and
+     * {@link DatabaseHelper#updateTransactionAggregates(SQLiteDatabase, List)} once after saving all the splits
+     * of a transaction</p>
+     * @param split Split to be saved
+     * @param updateMethod Method to use for saving the split
+     */
+    void saveRecord(@NonNull final Split split, UpdateMethod updateMethod) {
+        super.addRecord(split, updateMethod);
+    }
 
-        //modifying a split means modifying the accompanying transaction as well
-        updateRecord(TransactionEntry.TABLE_NAME, transactionId,
-                TransactionEntry.COLUMN_MODIFIED_AT, TimestampHelper.getUtcStringFromTimestamp(TimestampHelper.getTimestampFromNow()));
+    /**
+     * Marks a transaction as not exported and updates its modification time, with a single statement.
+     * <p>When a split is updated, we want to mark the transaction as not exported.
+     * Modifying a split means modifying the accompanying transaction as well.</p>
+     * @param transactionUID GUID of the transaction
+     * @throws IllegalArgumentException if the transaction does not exist
+     */
+    void markTransactionModified(@NonNull String transactionUID) {
+        if (mTransactionModifiedStatement == null) {
+            synchronized (this) {
+                if (mTransactionModifiedStatement == null) {
+                    mTransactionModifiedStatement = mDb.compileStatement("UPDATE " + TransactionEntry.TABLE_NAME
+                            + " SET " + TransactionEntry.COLUMN_EXPORTED + " = 0 , "
+                            + TransactionEntry.COLUMN_MODIFIED_AT + " = ? "
+                            + " WHERE " + TransactionEntry.COLUMN_UID + " = ?");
+                }
+            }
+        }
+        synchronized (mTransactionModifiedStatement) {
+            mTransactionModifiedStatement.bindString(1,
+                    TimestampHelper.getUtcStringFromTimestamp(TimestampHelper.getTimestampFromNow()));
+            mTransactionModifiedStatement.bindString(2, transactionUID);
+            if (mTransactionModifiedStatement.executeUpdateDelete() == 0)
+                throw new IllegalArgumentException("transaction " + transactionUID + " does not exist");
+        }
     }
 
     @Override
     protected @NonNull SQLiteStatement setBindings(@NonNull SQLiteStatement stmt, @NonNull final Split split) {
         stmt.clearBindings();
+        bindValues(stmt, 0, split);
+        return stmt;
+    }
+
+    @Override
+    protected void bindValues(@NonNull SQLiteStatement stmt, int offset, @NonNull final Split split) {
         if (split.getMemo() != null) {
-            stmt.bindString(1, split.getMemo());
+            stmt.bindString(offset + 1, split.getMemo());
         }
-        stmt.bindString(2, split.getType().name());
-        stmt.bindLong(3, split.getValue().getNumerator());
-        stmt.bindLong(4, split.getValue().getDenominator());
-        stmt.bindLong(5, split.getQuantity().getNumerator());
-        stmt.bindLong(6, split.getQuantity().getDenominator());
-        stmt.bindString(7, split.getCreatedTimestamp().toString());
-        stmt.bindString(8, String.valueOf(split.getReconcileState()));
-        stmt.bindString(9, split.getReconcileDate().toString());
-        stmt.bindString(10, split.getAccountUID());
-        stmt.bindString(11, split.getTransactionUID());
-        stmt.bindString(12, split.getUID());
+        stmt.bindString(offset + 2, split.getType().name());
+        stmt.bindLong(offset + 3, split.getValue().getNumerator());
+        stmt.bindLong(offset + 4, split.getValue().getDenominator());
+        stmt.bindLong(offset + 5, split.getQuantity().getNumerator());
+        stmt.bindLong(offset + 6, split.getQuantity().getDenominator());
+        stmt.bindString(offset + 7, split.getCreatedTimestamp().toString());
+        stmt.bindString(offset + 8, String.valueOf(split.getReconcileState()));
+        stmt.bindString(offset + 9, split.getReconcileDate().toString());
+        stmt.bindString(offset + 10, split.getAccountUID());
+        stmt.bindString(offset + 11, split.getTransactionUID());
+        stmt.bindString(offset + 12, split.getUID());
+    }
 
-        return stmt;
+    @Override
+    protected boolean supportsMultiRowBindings() {
+        return true;
     }
     /**
      * Builds a split instance from the data pointed to by the cursor provided
@@ -201,7 +268,7 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
             selectionArgs = new String[]{String.valueOf(startTimestamp)};
         }
 
-        cursor = mDb.query("trans_split_acct",
+        cursor = getReadDb().query("trans_split_acct",
                 new String[]{"TOTAL ( CASE WHEN " + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_TYPE + " = 'DEBIT' THEN " +
                         SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_NUM + " ELSE - " +
                         SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_NUM + " END )",
@@ -210,7 +277,7 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
                 selection, selectionArgs, DatabaseSchema.AccountEntry.TABLE_NAME + "_" + DatabaseSchema.AccountEntry.COLUMN_CURRENCY, null, null);
 
         try {
-            Money total = Money.createZeroInstance(currencyCode);
+            MoneyAccumulator total = new MoneyAccumulator(currencyCode);
             CommoditiesDbAdapter commoditiesDbAdapter = null;
             PricesDbAdapter pricesDbAdapter = null;
             Commodity commodity = null;
@@ -229,7 +296,7 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
                 }
                 if (commodityCode.equals(currencyCode)) {
                     // currency matches
-                    total = total.add(new Money(amount_num, amount_denom, currencyCode));
+                    total.add(new Money(amount_num, amount_denom, currencyCode));
                     //Log.d(getClass().getName(), "currency " + commodity + " sub - total " + total);
                 } else {
                     // there is a second currency involved
@@ -249,16 +316,83 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
                     BigDecimal amount = Money.getBigDecimal(amount_num, amount_denom);
                     BigDecimal amountConverted = amount.multiply(new BigDecimal(price.first))
                             .divide(new BigDecimal(price.second), commodity.getSmallestFractionDigits(), BigDecimal.ROUND_HALF_EVEN);
-                    total = total.add(new Money(amountConverted, commodity));
+                    total.add(new Money(amountConverted, commodity));
                     //Log.d(getClass().getName(), "currency " + commodity + " sub - total " + total);
                 }
             }
-            return total;
+            return total.toMoney();
         } finally {
             cursor.close();
         }
     }
 
+    /**
+     * Returns a cursor to the sums of the splits of non-template transactions in a set of accounts,
+     * within several time ranges, computed in one query.
+     * <p>The columns are the account GUID, the account currency code and the denominator of the
+     * quantities, followed by one column per time range with the sum of the quantity numerators.
+     * Debits are summed as positive and credits as negative amounts. There is one row per account
+     * and denominator.</p>
+     * @param accountUIDList GUIDs of the accounts
+     * @param startTimestamps Start of each time range, inclusive
+     * @param endTimestamps End of each time range, inclusive
+     * @return Cursor to the sums of the splits
+     */
+    public Cursor fetchSplitSums(@NonNull List<String> accountUIDList, @NonNull long[] startTimestamps,
+                                 @NonNull long[] endTimestamps){
+        String accountUIDColumn = DatabaseSchema.AccountEntry.TABLE_NAME + "_" + DatabaseSchema.CommonColumns.COLUMN_UID;
+        String currencyColumn = DatabaseSchema.AccountEntry.TABLE_NAME + "_" + DatabaseSchema.AccountEntry.COLUMN_CURRENCY;
+        String denomColumn = SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_DENOM;
+        String timestampColumn = TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TIMESTAMP;
+        String signedQuantity = "CASE WHEN " + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_TYPE + " = 'DEBIT' THEN "
+                + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_NUM + " ELSE - "
+                + SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_NUM + " END";
+
+        String[] projection = new String[3 + startTimestamps.length];
+        projection[0] = accountUIDColumn;
+        projection[1] = currencyColumn;
+        projection[2] = denomColumn;
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        for (int i = 0; i < startTimestamps.length; i++) {
+            projection[3 + i] = "TOTAL ( CASE WHEN " + timestampColumn + " BETWEEN " + startTimestamps[i]
+                    + " AND " + endTimestamps[i] + " THEN " + signedQuantity + " ELSE 0 END )";
+            minTimestamp = Math.min(minTimestamp, startTimestamps[i]);
+            maxTimestamp = Math.max(maxTimestamp, endTimestamps[i]);
+        }
+        String selection = accountUIDColumn + " in ( '" + TextUtils.join("' , '", accountUIDList) + "' ) AND "
+                + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TEMPLATE + " = 0 AND "
+                + timestampColumn + " BETWEEN ? AND ?";
+        return getReadDb().query(DatabaseSchema.VIEW_TRANS_SPLIT_ACCT, projection, selection,
+                new String[]{String.valueOf(minTimestamp), String.valueOf(maxTimestamp)},
+                accountUIDColumn + ", " + denomColumn, null, null);
+    }
+
+    /**
+     * Returns a cursor to the amounts of the splits of non-template transactions in a set of
+     * accounts, within a time range.
+     * <p>The columns are the account GUID, the transaction timestamp, the split type and the
+     * numerator and denominator of the quantity, in that order. The rows are sorted by timestamp.</p>
+     * @param accountUIDList GUIDs of the accounts
+     * @param startTimestamp Start of the time range, exclusive
+     * @param endTimestamp End of the time range, inclusive
+     * @return Cursor to the split amounts
+     */
+    public Cursor fetchSplitQuantities(@NonNull List<String> accountUIDList, long startTimestamp, long endTimestamp){
+        String timestampColumn = TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TIMESTAMP;
+        String selection = DatabaseSchema.AccountEntry.TABLE_NAME + "_" + DatabaseSchema.CommonColumns.COLUMN_UID + " in ( '" + TextUtils.join("' , '", accountUIDList) + "' ) AND "
+                + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TEMPLATE + " = 0 AND "
+                + timestampColumn + " > ? AND " + timestampColumn + " <= ?";
+        return getReadDb().query(DatabaseSchema.VIEW_TRANS_SPLIT_ACCT,
+                new String[]{DatabaseSchema.AccountEntry.TABLE_NAME + "_" + DatabaseSchema.CommonColumns.COLUMN_UID,
+                        timestampColumn,
+                        SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_TYPE,
+                        SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_NUM,
+                        SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_DENOM},
+                selection, new String[]{String.valueOf(startTimestamp), String.valueOf(endTimestamp)},
+                null, null, timestampColumn + " ASC");
+    }
+
     /**
      * Returns the list of splits for a transaction
      * @param transactionUID String unique ID of transaction
@@ -288,6 +422,37 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
         return getSplitsForTransaction(getTransactionUID(transactionID));
     }
 
+    /**
+     * Returns the splits of several transactions.
+     * <p>The splits are loaded with one query per {@value #MAX_IN_ARGUMENTS} transactions,
+     * instead of one query per transaction</p>
+     * @param transactionUIDs GUIDs of the transactions
+     * @return Map of the transaction GUIDs to their splits. Transactions without splits map to an empty list
+     */
+    public Map<String, List<Split>> getSplitsForTransactions(@NonNull Collection<String> transactionUIDs){
+        Map<String, List<Split>> splitsMap = new HashMap<>(transactionUIDs.size() * 2);
+        for (String transactionUID : transactionUIDs) {
+            splitsMap.put(transactionUID, new ArrayList<Split>());
+        }
+        List<String> uids = new ArrayList<>(splitsMap.keySet());
+        for (int start = 0; start < uids.size(); start += MAX_IN_ARGUMENTS) {
+            List<String> chunk = uids.subList(start, Math.min(start + MAX_IN_ARGUMENTS, uids.size()));
+            String placeholders = TextUtils.join(",", Collections.nCopies(chunk.size(), "?"));
+            Cursor cursor = getReadDb().query(SplitEntry.TABLE_NAME, null,
+                    SplitEntry.COLUMN_TRANSACTION_UID + " IN (" + placeholders + ")",
+                    chunk.toArray(new String[chunk.size()]), null, null, SplitEntry._ID + " ASC");
+            try {
+                while (cursor.moveToNext()) {
+                    Split split = buildModelInstance(cursor);
+                    splitsMap.get(split.getTransactionUID()).add(split);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return splitsMap;
+    }
+
     /**
      * Fetch splits for a given transaction within a specific account
      * @param transactionUID String unique ID of transaction
@@ -314,7 +479,7 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
      * @return Cursor to split records
      */
     public Cursor fetchSplits(String where, String[] whereArgs, String sortOrder){
-        return mDb.query(SplitEntry.TABLE_NAME,
+        return getReadDb().query(SplitEntry.TABLE_NAME,
                 null, where, whereArgs, null, null, sortOrder);
     }
 
@@ -325,7 +490,7 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
      */
     public Cursor fetchSplitsForTransaction(String transactionUID){
         Log.v(LOG_TAG, "Fetching all splits for transaction UID " + transactionUID);
-        return mDb.query(SplitEntry.TABLE_NAME,
+        return getReadDb().query(SplitEntry.TABLE_NAME,
                 null, SplitEntry.COLUMN_TRANSACTION_UID + " = ?",
                 new String[]{transactionUID},
                 null, null, null);
@@ -369,7 +534,7 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
 
         Log.v(LOG_TAG, "Fetching all splits for transaction ID " + transactionUID
                 + "and account ID " + accountUID);
-        return mDb.query(SplitEntry.TABLE_NAME,
+        return getReadDb().query(SplitEntry.TABLE_NAME,
                 null, SplitEntry.COLUMN_TRANSACTION_UID + " = ? AND "
                         + SplitEntry.COLUMN_ACCOUNT_UID + " = ?",
                 new String[]{transactionUID, accountUID},
@@ -382,7 +547,7 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
      * @return String unique ID of the transaction or null if transaction with the ID cannot be found.
      */
     public String getTransactionUID(long transactionId){
-        Cursor cursor = mDb.query(TransactionEntry.TABLE_NAME,
+        Cursor cursor = getReadDb().query(TransactionEntry.TABLE_NAME,
                 new String[]{TransactionEntry.COLUMN_UID},
                 TransactionEntry._ID + " = " + transactionId,
                 null, null, null, null);
@@ -427,18 +592,11 @@ public class SplitsDbAdapter extends DatabaseAdapter<Split> {
      * @return Database record ID for the transaction
      */
     public long getTransactionID(String transactionUID) {
-        Cursor c = mDb.query(TransactionEntry.TABLE_NAME,
-                new String[]{TransactionEntry._ID},
-                TransactionEntry.COLUMN_UID + "=?",
-                new String[]{transactionUID}, null, null, null);
         try {
-            if (c.moveToFirst()) {
-                return c.getLong(0);
-            } else {
-                throw new IllegalArgumentException("transaction " + transactionUID + " does not exist");
-            }
-        } finally {
-            c.close();
+            return getReadStatementCache().queryForLong("SELECT " + TransactionEntry._ID
+                    + " FROM " + TransactionEntry.TABLE_NAME + " WHERE " + TransactionEntry.COLUMN_UID + " = ?", transactionUID);
+        } catch (SQLiteDoneException e) {
+            throw new IllegalArgumentException("transaction " + transactionUID + " does not exist");
         }
     }
 
@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db.adapter;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import org.gnucash.android.db.DatabaseSchema.TransactionEntry;
+
+/**
+ * Position of a transaction in the transaction lists, which are ordered by timestamp and database ID,
+ * the most recent first.
+ * <p>Pages of a list are delimited by the keys of their last transaction, so that loading a page
+ * seeks directly to its position instead of skipping all the transactions before it.</p>
+ *
+ * @see TransactionsDbAdapter#fetchTransactionPageForAccount(String, TransactionKey, TransactionKey, int)
+ */
+public class TransactionKey {
+    private final long mTimestamp;
+    private final long mId;
+
+    public TransactionKey(long timestamp, long id) {
+        mTimestamp = timestamp;
+        mId = id;
+    }
+
+    /**
+     * Reads the key of the transaction at the current position of a cursor
+     * @param cursor Cursor with the timestamp and ID columns of the transactions table
+     * @return Key of the transaction
+     */
+    public static TransactionKey fromCursor(@NonNull Cursor cursor) {
+        return new TransactionKey(
+                cursor.getLong(cursor.getColumnIndexOrThrow(TransactionEntry.COLUMN_TIMESTAMP)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(TransactionEntry._ID)));
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    /**
+     * Returns an SQL condition for the transactions listed after this key, i.e. older ones.
+     * <p>The values are inlined so that the comparison uses the affinity of the columns,
+     * and the first term lets SQLite seek in the timestamp index</p>
+     */
+    String listedAfter(String timestampColumn, String idColumn) {
+        return "(" + timestampColumn + " <= " + mTimestamp
+                + " AND (" + timestampColumn + " < " + mTimestamp + " OR " + idColumn + " < " + mId + "))";
+    }
+
+    /**
+     * Returns an SQL condition for the transactions listed up to and including this key, i.e. newer ones
+     */
+    String listedUpTo(String timestampColumn, String idColumn) {
+        return "(" + timestampColumn + " >= " + mTimestamp
+                + " AND (" + timestampColumn + " > " + mTimestamp + " OR " + idColumn + " >= " + mId + "))";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TransactionKey)) return false;
+        TransactionKey other = (TransactionKey) o;
+        return mTimestamp == other.mTimestamp && mId == other.mId;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (int) (mTimestamp ^ (mTimestamp >>> 32)) + (int) (mId ^ (mId >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return mTimestamp + ":" + mId;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.db.adapter;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.gnucash.android.db.DatabaseSchema.TransactionEntry;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the transactions in the database in pages of bounded size.
+ * <p>Transactions are ordered by (timestamp, uid) and each page is found by seeking past the last
+ * key of the previous page, so no query ever has to materialize more than one page of rows.
+ * A transaction is never split across two pages.</p>
+ * <p>The pages only describe a range of transaction keys. Use {@link TransactionPage#getWhere(String, String)}
+ * to restrict a query (e.g. one joining the splits) to the transactions of a page.</p>
+ *
+ * @see TransactionsDbAdapter#iterateTransactionPages(String, String[], int)
+ */
+public class TransactionPageIterator implements Iterator<TransactionPageIterator.TransactionPage> {
+
+    /**
+     * Adapter whose read connection is queried for the pages
+     */
+    private final DatabaseAdapter<?> mAdapter;
+
+    /**
+     * Filter on the transactions table, may be null
+     */
+    private final String mWhere;
+
+    private final String[] mWhereArgs;
+
+    private final int mPageSize;
+
+    /**
+     * Key of the last transaction returned, or null before the first page
+     */
+    private TransactionPage mLastPage;
+
+    private TransactionPage mNextPage;
+
+    private boolean mFinished = false;
+
+    TransactionPageIterator(@NonNull DatabaseAdapter<?> adapter, @Nullable String where, @Nullable String[] whereArgs,
+                            int pageSize) {
+        if (pageSize < 1)
+            throw new IllegalArgumentException("Page size must be positive");
+        mAdapter = adapter;
+        mWhere = where;
+        mWhereArgs = whereArgs == null ? new String[0] : whereArgs;
+        mPageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (mNextPage == null && !mFinished) {
+            mNextPage = loadNextPage();
+            if (mNextPage == null)
+                mFinished = true;
+        }
+        return mNextPage != null;
+    }
+
+    @Override
+    public TransactionPage next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        mLastPage = mNextPage;
+        mNextPage = null;
+        return mLastPage;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Finds the first and last key of the next page of transactions
+     * @return Next page, or null if there are no more transactions
+     */
+    private TransactionPage loadNextPage() {
+        StringBuilder where = new StringBuilder();
+        String[] whereArgs = mWhereArgs;
+        if (mWhere != null && !mWhere.isEmpty()) {
+            where.append("(").append(mWhere).append(")");
+        }
+        if (mLastPage != null) {
+            if (where.length() > 0)
+                where.append(" AND ");
+            where.append(TransactionPage.after(TransactionEntry.COLUMN_TIMESTAMP, TransactionEntry.COLUMN_UID,
+                    mLastPage.mLastTimestamp));
+            whereArgs = new String[mWhereArgs.length + 1];
+            System.arraycopy(mWhereArgs, 0, whereArgs, 0, mWhereArgs.length);
+            whereArgs[mWhereArgs.length] = mLastPage.mLastUID;
+        }
+
+        Cursor cursor = mAdapter.getReadDb().query(TransactionEntry.TABLE_NAME,
+                new String[]{TransactionEntry.COLUMN_TIMESTAMP, TransactionEntry.COLUMN_UID},
+                where.length() == 0 ? null : where.toString(), whereArgs, null, null,
+                TransactionEntry.COLUMN_TIMESTAMP + " ASC, " + TransactionEntry.COLUMN_UID + " ASC",
+                Integer.toString(mPageSize));
+        try {
+            if (!cursor.moveToFirst())
+                return null;
+            long firstTimestamp = cursor.getLong(0);
+            String firstUID = cursor.getString(1);
+            int count = cursor.getCount();
+            cursor.moveToLast();
+            // a short page is the last one, so no empty page is queried after it
+            if (count < mPageSize)
+                mFinished = true;
+            return new TransactionPage(firstTimestamp, firstUID, cursor.getLong(0), cursor.getString(1), count);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Range of transaction keys, inclusive at both ends, making up one page of transactions
+     */
+    public static class TransactionPage {
+        private final long mFirstTimestamp;
+        private final String mFirstUID;
+        private final long mLastTimestamp;
+        private final String mLastUID;
+        private final int mCount;
+
+        TransactionPage(long firstTimestamp, String firstUID, long lastTimestamp, String lastUID, int count) {
+            mFirstTimestamp = firstTimestamp;
+            mFirstUID = firstUID;
+            mLastTimestamp = lastTimestamp;
+            mLastUID = lastUID;
+            mCount = count;
+        }
+
+        /**
+         * Returns the number of transactions in the page which matched the filter of the iterator
+         * @return Number of transactions
+         */
+        public int getCount() {
+            return mCount;
+        }
+
+        /**
+         * Returns an SQL condition which selects the transactions in this page.
+         * <p>The timestamps are inlined so that the comparison uses the affinity of the column.
+         * The UIDs must be bound with {@link #getWhereArgs()}</p>
+         * @param timestampColumn Fully qualified name of the transaction timestamp column in the query
+         * @param uidColumn Fully qualified name of the transaction UID column in the query
+         * @return SQL condition without the "WHERE"
+         */
+        public String getWhere(String timestampColumn, String uidColumn) {
+            return "(" + timestampColumn + " > " + mFirstTimestamp
+                    + " OR (" + timestampColumn + " = " + mFirstTimestamp + " AND " + uidColumn + " >= ?))"
+                    + " AND (" + timestampColumn + " < " + mLastTimestamp
+                    + " OR (" + timestampColumn + " = " + mLastTimestamp + " AND " + uidColumn + " <= ?))";
+        }
+
+        /**
+         * Returns the arguments for the condition returned by {@link #getWhere(String, String)}
+         * @return Arguments to bind
+         */
+        public String[] getWhereArgs() {
+            return new String[]{mFirstUID, mLastUID};
+        }
+
+        /**
+         * Returns an SQL condition for the keys after {@code (timestamp, ?)}
+         */
+        static String after(String timestampColumn, String uidColumn, long timestamp) {
+            return "(" + timestampColumn + " > " + timestamp
+                    + " OR (" + timestampColumn + " = " + timestamp + " AND " + uidColumn + " > ?))";
+        }
+    }
+}
@@ -31,20 +31,34 @@ import android.util.Log;
 import com.crashlytics.android.Crashlytics;
 
 import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.DatabaseHelper;
+import org.gnucash.android.db.adapter.TransactionPageIterator.TransactionPage;
 import org.gnucash.android.model.AccountType;
+import org.gnucash.android.model.Commodity;
 import org.gnucash.android.model.Money;
 import org.gnucash.android.model.Split;
 import org.gnucash.android.model.Transaction;
+import org.gnucash.android.model.TransactionSummary;
+import org.gnucash.android.util.SuggestionTrie;
 import org.gnucash.android.util.TimestampHelper;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.gnucash.android.db.DatabaseSchema.AccountEntry;
+import static org.gnucash.android.db.DatabaseSchema.CommodityEntry;
 import static org.gnucash.android.db.DatabaseSchema.ScheduledActionEntry;
 import static org.gnucash.android.db.DatabaseSchema.SplitEntry;
 import static org.gnucash.android.db.DatabaseSchema.TransactionEntry;
+import static org.gnucash.android.db.DatabaseSchema.TransactionSearchEntry;
+import static org.gnucash.android.db.DatabaseSchema.TransactionSuggestionEntry;
+import static org.gnucash.android.db.DatabaseSchema.TransactionSummaryEntry;
 
 /**
  * Manages persistence of {@link Transaction}s in the database
@@ -55,10 +69,46 @@ import static org.gnucash.android.db.DatabaseSchema.TransactionEntry;
  */
 public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
 
+    /**
+     * Default number of transactions in a page returned by {@link #iterateTransactionPages(String, String[], int)}
+     */
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    /**
+     * Columns of the results of {@link #searchTransactions(String, int)} with the amount of each transaction
+     * in the account shown for it: the amount in the smallest units of the account currency,
+     * the number of units per currency unit, and the currency code
+     */
+    public static final String SEARCH_COLUMN_AMOUNT_NUM         = "amount_num";
+    public static final String SEARCH_COLUMN_AMOUNT_DENOM       = "amount_denom";
+    public static final String SEARCH_COLUMN_AMOUNT_CURRENCY    = "amount_currency";
+
     private final SplitsDbAdapter mSplitsDbAdapter;
 
     private final CommoditiesDbAdapter mCommoditiesDbAdapter;
 
+    /**
+     * Number of accounts whose description suggestions are kept in memory
+     */
+    private static final int SUGGESTION_CACHE_SIZE = 8;
+
+    /**
+     * Description suggestions of the most recently used accounts, valid for {@link #mSuggestionsDataVersion}
+     */
+    private final LinkedHashMap<String, SuggestionTrie> mSuggestionTries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long mSuggestionsDataVersion = -1;
+
+    /**
+     * Loads the splits of transactions built by {@link #buildModelInstance(Cursor)} when they are first needed
+     */
+    private final Transaction.SplitsLoader mSplitsLoader = new Transaction.SplitsLoader() {
+        @Override
+        public List<Split> loadSplits(String transactionUID) {
+            return mSplitsDbAdapter.getSplitsForTransaction(transactionUID);
+        }
+    };
+
     /**
      * Overloaded constructor. Creates adapter for already open db
      * @param db SQlite db instance
@@ -73,7 +123,8 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
                 TransactionEntry.COLUMN_COMMODITY_UID,
                 TransactionEntry.COLUMN_CREATED_AT,
                 TransactionEntry.COLUMN_SCHEDX_ACTION_UID,
-                TransactionEntry.COLUMN_TEMPLATE
+                TransactionEntry.COLUMN_TEMPLATE,
+                TransactionEntry.COLUMN_NORMALIZED_DESCRIPTION
         });
         mSplitsDbAdapter = splitsDbAdapter;
         mCommoditiesDbAdapter = new CommoditiesDbAdapter(db);
@@ -94,12 +145,15 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
     /**
 	 * Adds an transaction to the database. 
 	 * If a transaction already exists in the database with the same unique ID, 
-	 * then the record will just be updated instead
+	 * then the record will just be updated instead.
+	 * <p>Errors are logged, unless the record is added within an enclosing transaction,
+	 * e.g. by the {@link org.gnucash.android.db.WriteBehindQueue}, in which case they are thrown</p>
 	 * @param transaction {@link Transaction} to be inserted to database
 	 */
     @Override
 	public void addRecord(@NonNull Transaction transaction, UpdateMethod updateMethod){
         Log.d(LOG_TAG, "Adding transaction to the db via " + updateMethod.name());
+        boolean nestedTransaction = mDb.inTransaction();
         mDb.beginTransaction();
         try {
             Split imbalanceSplit = transaction.createAutoBalanceSplit();
@@ -113,14 +167,15 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
             Log.d(LOG_TAG, "Adding splits for transaction");
             ArrayList<String> splitUIDs = new ArrayList<>(transaction.getSplits().size());
             for (Split split : transaction.getSplits()) {
-                Log.d(LOG_TAG, "Replace transaction split in db");
                 if (imbalanceSplit == split) {
-                    mSplitsDbAdapter.addRecord(split, UpdateMethod.insert);
+                    mSplitsDbAdapter.saveRecord(split, UpdateMethod.insert);
                 } else {
-                    mSplitsDbAdapter.addRecord(split, updateMethod);
+                    mSplitsDbAdapter.saveRecord(split, updateMethod);
                 }
                 splitUIDs.add(split.getUID());
             }
+            // once for all splits, instead of once per split
+            mSplitsDbAdapter.markTransactionModified(transaction.getUID());
             Log.d(LOG_TAG, transaction.getSplits().size() + " splits added");
 
             long deleted = mDb.delete(SplitEntry.TABLE_NAME,
@@ -128,11 +183,15 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
                             + SplitEntry.COLUMN_UID + " NOT IN ('" + TextUtils.join("' , '", splitUIDs) + "')",
                     new String[]{transaction.getUID()});
             Log.d(LOG_TAG, deleted + " splits deleted");
+            DatabaseHelper.updateTransactionAggregates(mDb, Collections.singletonList(transaction.getUID()));
 
             mDb.setTransactionSuccessful();
         } catch (SQLException sqlEx) {
             Log.e(LOG_TAG, sqlEx.getMessage());
             Crashlytics.logException(sqlEx);
+            // the failure rolls back the enclosing transaction as well, so its owner has to know about it
+            if (nestedTransaction)
+                throw sqlEx;
         } finally {
             mDb.endTransaction();
         }
@@ -154,14 +213,17 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
         long end = System.nanoTime();
         Log.d(getClass().getSimpleName(), String.format("bulk add transaction time %d ", end - start));
         List<Split> splitList = new ArrayList<>(transactionList.size()*3);
+        List<String> transactionUIDs = new ArrayList<>(transactionList.size());
         for (Transaction transaction : transactionList) {
             splitList.addAll(transaction.getSplits());
+            transactionUIDs.add(transaction.getUID());
         }
         if (rowInserted != 0 && !splitList.isEmpty()) {
             try {
                 start = System.nanoTime();
                 long nSplits = mSplitsDbAdapter.bulkAddRecords(splitList, updateMethod);
                 Log.d(LOG_TAG, String.format("%d splits inserted in %d ns", nSplits, System.nanoTime()-start));
+                DatabaseHelper.updateTransactionAggregates(mDb, transactionUIDs);
             }
             finally {
                 SQLiteStatement deleteEmptyTransaction = mDb.compileStatement("DELETE FROM " +
@@ -176,24 +238,34 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
     }
 
     @Override
-    protected @NonNull SQLiteStatement setBindings(@NonNull SQLiteStatement stmt, @NonNull Transaction transaction) {
+    protected @NonNull SQLiteStatement setBindings(@NonNull SQLiteStatement stmt, @NonNull final Transaction transaction) {
         stmt.clearBindings();
-        stmt.bindString(1, transaction.getDescription());
-        stmt.bindString(2, transaction.getNote());
-        stmt.bindLong(3, transaction.getTimeMillis());
-        stmt.bindLong(4, transaction.isExported() ? 1 : 0);
-        stmt.bindString(5, transaction.getCurrencyCode());
-        stmt.bindString(6, transaction.getCommodity().getUID());
-        stmt.bindString(7, TimestampHelper.getUtcStringFromTimestamp(transaction.getCreatedTimestamp()));
+        bindValues(stmt, 0, transaction);
+        return stmt;
+    }
+
+    @Override
+    protected void bindValues(@NonNull SQLiteStatement stmt, int offset, @NonNull final Transaction transaction) {
+        stmt.bindString(offset + 1, transaction.getDescription());
+        stmt.bindString(offset + 2, transaction.getNote());
+        stmt.bindLong(offset + 3, transaction.getTimeMillis());
+        stmt.bindLong(offset + 4, transaction.isExported() ? 1 : 0);
+        stmt.bindString(offset + 5, transaction.getCurrencyCode());
+        stmt.bindString(offset + 6, transaction.getCommodity().getUID());
+        stmt.bindString(offset + 7, TimestampHelper.getUtcStringFromTimestamp(transaction.getCreatedTimestamp()));
 
         if (transaction.getScheduledActionUID() == null)
-            stmt.bindNull(8);
+            stmt.bindNull(offset + 8);
         else
-            stmt.bindString(8, transaction.getScheduledActionUID());
-        stmt.bindLong(9, transaction.isTemplate() ? 1 : 0);
-        stmt.bindString(10, transaction.getUID());
+            stmt.bindString(offset + 8, transaction.getScheduledActionUID());
+        stmt.bindLong(offset + 9, transaction.isTemplate() ? 1 : 0);
+        stmt.bindString(offset + 10, SuggestionTrie.normalize(transaction.getDescription()));
+        stmt.bindString(offset + 11, transaction.getUID());
+    }
 
-        return stmt;
+    @Override
+    protected boolean supportsMultiRowBindings() {
+        return true;
     }
 
     /**
@@ -219,6 +291,78 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
         return queryBuilder.query(mDb, projectionIn, selection, selectionArgs, null, null, sortOrder);
     }
 
+    /**
+     * Returns a cursor to one page of the transactions of an account, ordered by timestamp and database ID,
+     * the most recent first.
+     * <p>Unlike {@link #fetchAllTransactionsForAccount(String)}, only the transactions of the page are read:
+     * they are walked in the order of the timestamp index, starting from the end of the previous page,
+     * and those with a split in the account are kept. Template transactions are excluded.</p>
+     * @param accountUID GUID of the account
+     * @param startAfter Key of the last transaction of the previous page, or {@code null} for the first page
+     * @param endAt Key of the last transaction of the page, when a page is reloaded. If {@code null},
+     *              the page holds the next {@code limit} transactions
+     * @param limit Maximum number of transactions, when {@code endAt} is null
+     * @return Cursor with the columns of the transactions table
+     * @see #getTransactionPageVersion(String, TransactionKey, TransactionKey)
+     */
+    public Cursor fetchTransactionPageForAccount(@NonNull String accountUID, @Nullable TransactionKey startAfter,
+                                                 @Nullable TransactionKey endAt, int limit){
+        String sortOrder = TransactionEntry.COLUMN_TIMESTAMP + " DESC, " + TransactionEntry._ID + " DESC";
+        return getReadDb().query(TransactionEntry.TABLE_NAME, null,
+                getTransactionPageSelection(startAfter, endAt), new String[]{accountUID},
+                null, null, sortOrder, endAt == null ? Integer.toString(limit) : null);
+    }
+
+    /**
+     * Returns a value which changes whenever a transaction is added to or removed from a page
+     * of the transactions of an account, or one of the transactions of the page is saved again.
+     * <p>Saving transactions and splits replaces their rows, which gets them new database IDs,
+     * so the value sums the IDs of the transactions and splits of the page.
+     * It is used to reload only the pages of a list which have changed.</p>
+     * @param accountUID GUID of the account
+     * @param startAfter Key of the last transaction of the previous page, or {@code null} for the first page
+     * @param endAt Key of the last transaction of the page, or {@code null} for the last page of the list
+     * @return Version of the page
+     * @see #fetchTransactionPageForAccount(String, TransactionKey, TransactionKey, int)
+     */
+    public String getTransactionPageVersion(@NonNull String accountUID, @Nullable TransactionKey startAfter,
+                                            @Nullable TransactionKey endAt){
+        Cursor cursor = getReadDb().rawQuery("SELECT COUNT(*), TOTAL(" + TransactionEntry.TABLE_NAME + "." + TransactionEntry._ID
+                + "), TOTAL(" + SplitEntry.TABLE_NAME + "." + SplitEntry._ID
+                + "), MAX(" + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_MODIFIED_AT
+                + "), MAX(" + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_MODIFIED_AT + ")"
+                + " FROM " + TransactionEntry.TABLE_NAME + " INNER JOIN " + SplitEntry.TABLE_NAME + " ON "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " = "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID
+                + " WHERE " + getTransactionPageSelection(startAfter, endAt), new String[]{accountUID});
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0) + ":" + cursor.getString(1) + ":" + cursor.getString(2)
+                    + ":" + cursor.getString(3) + ":" + cursor.getString(4);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the selection of the transactions of a page, the GUID of the account is its only argument
+     */
+    private static String getTransactionPageSelection(@Nullable TransactionKey startAfter, @Nullable TransactionKey endAt){
+        String timestampColumn = TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP;
+        String idColumn = TransactionEntry.TABLE_NAME + "." + TransactionEntry._ID;
+        StringBuilder selection = new StringBuilder();
+        selection.append(TransactionEntry.TABLE_NAME).append(".").append(TransactionEntry.COLUMN_TEMPLATE).append(" = 0")
+                .append(" AND EXISTS (SELECT 1 FROM ").append(SplitEntry.TABLE_NAME).append(" WHERE ")
+                .append(SplitEntry.TABLE_NAME).append(".").append(SplitEntry.COLUMN_TRANSACTION_UID).append(" = ")
+                .append(TransactionEntry.TABLE_NAME).append(".").append(TransactionEntry.COLUMN_UID).append(" AND ")
+                .append(SplitEntry.TABLE_NAME).append(".").append(SplitEntry.COLUMN_ACCOUNT_UID).append(" = ?)");
+        if (startAfter != null)
+            selection.append(" AND ").append(startAfter.listedAfter(timestampColumn, idColumn));
+        if (endAt != null)
+            selection.append(" AND ").append(endAt.listedUpTo(timestampColumn, idColumn));
+        return selection.toString();
+    }
+
     /**
      * Returns a cursor to all scheduled transactions which have at least one split in the account
      * <p>This is basically a set of all template transactions for this account</p>
@@ -293,16 +437,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
 	 * @return List of {@link Transaction}s for account with UID <code>accountUID</code>
 	 */
     public List<Transaction> getAllTransactionsForAccount(String accountUID){
-		Cursor c = fetchAllTransactionsForAccount(accountUID);
-		ArrayList<Transaction> transactionsList = new ArrayList<>();
-        try {
-            while (c.moveToNext()) {
-                transactionsList.add(buildModelInstance(c));
-            }
-        } finally {
-            c.close();
-        }
-		return transactionsList;
+        return buildTransactionsWithSplits(fetchAllTransactionsForAccount(accountUID));
 	}
 
     /**
@@ -310,20 +445,72 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
      * @return List of all transactions
      */
     public List<Transaction> getAllTransactions(){
-        Cursor cursor = fetchAllRecords();
-        List<Transaction> transactions = new ArrayList<Transaction>();
+        return buildTransactionsWithSplits(fetchAllRecords());
+    }
+
+    /**
+     * Builds the transactions of a cursor and loads their splits in batches,
+     * instead of one query per transaction
+     * @param cursor Cursor to transaction records. It is closed by this method
+     * @return List of transactions with their splits
+     */
+    private List<Transaction> buildTransactionsWithSplits(Cursor cursor){
+        List<Transaction> transactions = new ArrayList<>();
+        Map<String, Commodity> commodities = new HashMap<>();
         try {
             while (cursor.moveToNext()) {
-                transactions.add(buildModelInstance(cursor));
+                transactions.add(buildTransactionInstance(cursor, commodities));
             }
         } finally {
             cursor.close();
         }
+        List<String> transactionUIDs = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            transactionUIDs.add(transaction.getUID());
+        }
+        Map<String, List<Split>> splitsMap = mSplitsDbAdapter.getSplitsForTransactions(transactionUIDs);
+        for (Transaction transaction : transactions) {
+            transaction.setSplits(splitsMap.get(transaction.getUID()));
+        }
         return transactions;
     }
 
+    /**
+     * Returns the header fields of the transactions which fulfill the conditions, without loading their splits
+     * @param where SQL WHERE clause on the transactions table without the "WHERE" itself, may be null
+     * @param whereArgs Arguments to substitute question marks for
+     * @param orderBy SQL ORDER BY clause without the "ORDER BY" itself, may be null
+     * @return List of transaction summaries
+     */
+    public List<TransactionSummary> getTransactionSummaries(@Nullable String where, @Nullable String[] whereArgs,
+                                                            @Nullable String orderBy){
+        Cursor cursor = getReadDb().query(TransactionEntry.TABLE_NAME + " LEFT JOIN " + TransactionSummaryEntry.TABLE_NAME
+                        + " ON " + TransactionSummaryEntry.TABLE_NAME + "." + TransactionSummaryEntry.COLUMN_TRANSACTION_UID
+                        + " = " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID,
+                new String[]{TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID,
+                        TransactionEntry.COLUMN_DESCRIPTION,
+                        TransactionEntry.COLUMN_NOTES,
+                        TransactionEntry.COLUMN_TIMESTAMP,
+                        TransactionEntry.COLUMN_CURRENCY,
+                        TransactionEntry.COLUMN_TEMPLATE,
+                        TransactionEntry.COLUMN_EXPORTED,
+                        "IFNULL(" + TransactionSummaryEntry.COLUMN_SPLIT_COUNT + ", 0)"},
+                where, whereArgs, null, null, orderBy);
+        List<TransactionSummary> summaries = new ArrayList<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                summaries.add(new TransactionSummary(cursor.getString(0), cursor.getString(1),
+                        cursor.getString(2), cursor.getLong(3), cursor.getString(4),
+                        cursor.getInt(5) == 1, cursor.getInt(6) == 1, cursor.getInt(7)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return summaries;
+    }
+
     public Cursor fetchTransactionsWithSplits(String [] columns, @Nullable String where, @Nullable String[] whereArgs, @Nullable String orderBy) {
-        return mDb.query(TransactionEntry.TABLE_NAME + " , " + SplitEntry.TABLE_NAME +
+        return getReadDb().query(TransactionEntry.TABLE_NAME + " , " + SplitEntry.TABLE_NAME +
                         " ON " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID +
                         " = " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID +
                         " , trans_extra_info ON trans_extra_info.trans_acct_t_uid = " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID ,
@@ -355,7 +542,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
         // can be eliminated with a WHERE clause. Transactions in QIF can be auto balanced.
         //
         // Account, transaction and split Information can be retrieve in a single query.
-        return mDb.query(
+        return getReadDb().query(
                 "trans_split_acct , trans_extra_info ON trans_extra_info.trans_acct_t_uid = trans_split_acct." +
                 TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_UID + " , " +
                 AccountEntry.TABLE_NAME + " AS account1 ON account1." + AccountEntry.COLUMN_UID +
@@ -363,6 +550,111 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
                 columns, where, whereArgs, null, null , orderBy);
     }
 
+    /**
+     * Returns an iterator over the transactions in the database in pages of at most {@code pageSize} transactions,
+     * ordered by timestamp and UID.
+     * <p>Use it to walk over large numbers of transactions without materializing one huge query</p>
+     * @param where SQL WHERE clause on the transactions table without the "WHERE" itself, may be null.
+     *              Column names must not be qualified with the table name
+     * @param whereArgs Arguments to substitute question marks for
+     * @param pageSize Maximum number of transactions in a page
+     * @return Iterator over the pages
+     * @see #fetchTransactionsWithSplits(String[], String, String[], TransactionPage, String)
+     * @see #getTransactions(TransactionPage, String, String[])
+     */
+    public TransactionPageIterator iterateTransactionPages(@Nullable String where, @Nullable String[] whereArgs, int pageSize) {
+        return new TransactionPageIterator(this, where, whereArgs, pageSize);
+    }
+
+    /**
+     * Fetches the transactions with splits of one page, as returned by {@link #iterateTransactionPages(String, String[], int)}
+     * @see #fetchTransactionsWithSplits(String[], String, String[], String)
+     */
+    public Cursor fetchTransactionsWithSplits(String[] columns, @Nullable String where, @Nullable String[] whereArgs,
+                                              @NonNull TransactionPage page, @Nullable String orderBy) {
+        String pageWhere = page.getWhere(TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP,
+                TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID);
+        return fetchTransactionsWithSplits(columns, andWhere(where, pageWhere),
+                andWhereArgs(whereArgs, page.getWhereArgs()), orderBy);
+    }
+
+    /**
+     * Fetches the transactions with splits and transaction account of one page,
+     * as returned by {@link #iterateTransactionPages(String, String[], int)}
+     * @see #fetchTransactionsWithSplitsWithTransactionAccount(String[], String, String[], String)
+     */
+    public Cursor fetchTransactionsWithSplitsWithTransactionAccount(String[] columns, @Nullable String where, @Nullable String[] whereArgs,
+                                                                    @NonNull TransactionPage page, @Nullable String orderBy) {
+        String pageWhere = page.getWhere("trans_split_acct." + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TIMESTAMP,
+                "trans_split_acct." + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_UID);
+        return fetchTransactionsWithSplitsWithTransactionAccount(columns, andWhere(where, pageWhere),
+                andWhereArgs(whereArgs, page.getWhereArgs()), orderBy);
+    }
+
+    /**
+     * Returns the transactions of one page, with their splits, ordered by timestamp and UID.
+     * <p>The splits of the whole page are loaded with a single query</p>
+     * @param page Page returned by {@link #iterateTransactionPages(String, String[], int)}
+     * @param where SQL WHERE clause on the transactions table without the "WHERE" itself, may be null.
+     *              Usually the same as the one passed to {@link #iterateTransactionPages(String, String[], int)}
+     * @param whereArgs Arguments to substitute question marks for
+     * @return List of transactions
+     */
+    public List<Transaction> getTransactions(@NonNull TransactionPage page, @Nullable String where, @Nullable String[] whereArgs) {
+        String pageWhere = page.getWhere(TransactionEntry.COLUMN_TIMESTAMP, TransactionEntry.COLUMN_UID);
+        List<Transaction> transactions = new ArrayList<>(page.getCount());
+        Map<String, Transaction> transactionMap = new HashMap<>(page.getCount() * 2);
+        Map<String, Commodity> commodities = new HashMap<>();
+        Cursor cursor = getReadDb().query(TransactionEntry.TABLE_NAME, null, andWhere(where, pageWhere),
+                andWhereArgs(whereArgs, page.getWhereArgs()), null, null,
+                TransactionEntry.COLUMN_TIMESTAMP + " ASC, " + TransactionEntry.COLUMN_UID + " ASC");
+        try {
+            while (cursor.moveToNext()) {
+                Transaction transaction = buildTransactionInstance(cursor, commodities);
+                transaction.setSplits(new ArrayList<Split>());
+                transactions.add(transaction);
+                transactionMap.put(transaction.getUID(), transaction);
+            }
+        } finally {
+            cursor.close();
+        }
+        if (transactions.isEmpty())
+            return transactions;
+
+        pageWhere = page.getWhere(TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP,
+                TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID);
+        cursor = getReadDb().query(SplitEntry.TABLE_NAME + " INNER JOIN " + TransactionEntry.TABLE_NAME + " ON "
+                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID + " = "
+                        + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID,
+                new String[]{SplitEntry.TABLE_NAME + ".*"}, pageWhere, page.getWhereArgs(), null, null,
+                SplitEntry.TABLE_NAME + "." + SplitEntry._ID + " ASC");
+        try {
+            while (cursor.moveToNext()) {
+                Split split = mSplitsDbAdapter.buildModelInstance(cursor);
+                Transaction transaction = transactionMap.get(split.getTransactionUID());
+                if (transaction != null) // null if it did not match the filter
+                    transaction.getSplits().add(split);
+            }
+        } finally {
+            cursor.close();
+        }
+        return transactions;
+    }
+
+    @Nullable
+    private static String andWhere(@Nullable String where, @NonNull String pageWhere) {
+        return where == null || where.isEmpty() ? pageWhere : "(" + where + ") AND " + pageWhere;
+    }
+
+    private static String[] andWhereArgs(@Nullable String[] whereArgs, @NonNull String[] pageWhereArgs) {
+        if (whereArgs == null || whereArgs.length == 0)
+            return pageWhereArgs;
+        String[] args = new String[whereArgs.length + pageWhereArgs.length];
+        System.arraycopy(whereArgs, 0, args, 0, whereArgs.length);
+        System.arraycopy(pageWhereArgs, 0, args, whereArgs.length, pageWhereArgs.length);
+        return args;
+    }
+
     /**
      * Return number of transactions in the database (excluding templates)
      * @return Number of transactions
@@ -370,7 +662,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
     public long getRecordsCount() {
         String queryCount = "SELECT COUNT(*) FROM " + TransactionEntry.TABLE_NAME +
                 " WHERE " + TransactionEntry.COLUMN_TEMPLATE + " =0";
-        Cursor cursor = mDb.rawQuery(queryCount, null);
+        Cursor cursor = getReadDb().rawQuery(queryCount, null);
         try {
             cursor.moveToFirst();
             return cursor.getLong(0);
@@ -386,7 +678,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
      * @return Number of records in the databases
      */
     public long getRecordsCount(@Nullable String where, @Nullable String[] whereArgs) {
-        Cursor cursor = mDb.query(true, TransactionEntry.TABLE_NAME + " , trans_extra_info ON "
+        Cursor cursor = getReadDb().query(true, TransactionEntry.TABLE_NAME + " , trans_extra_info ON "
                         + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID
                         + " = trans_extra_info.trans_acct_t_uid",
                 new String[]{"COUNT(*)"},
@@ -406,12 +698,26 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
 
 	/**
 	 * Builds a transaction instance with the provided cursor.
-	 * The cursor should already be pointing to the transaction record in the database
+	 * The cursor should already be pointing to the transaction record in the database.
+	 * <p>The splits of the transaction are loaded when they are first needed</p>
 	 * @param c Cursor pointing to transaction record in database
 	 * @return {@link Transaction} object constructed from database record
 	 */
     @Override
     public Transaction buildModelInstance(@NonNull final Cursor c){
+        Transaction transaction = buildTransactionInstance(c, null);
+        transaction.setSplitsLoader(mSplitsLoader);
+
+		return transaction;
+	}
+
+    /**
+     * Builds a transaction instance with the provided cursor, without loading its splits
+     * @param c Cursor pointing to transaction record in database
+     * @param commodities Commodities already read by currency code, to share them between transactions. May be null
+     * @return {@link Transaction} object constructed from database record
+     */
+    private Transaction buildTransactionInstance(@NonNull final Cursor c, @Nullable Map<String, Commodity> commodities){
 		String name   = c.getString(c.getColumnIndexOrThrow(TransactionEntry.COLUMN_DESCRIPTION));
 		Transaction transaction = new Transaction(name);
         populateBaseModelAttributes(c, transaction);
@@ -421,10 +727,14 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
 		transaction.setExported(c.getInt(c.getColumnIndexOrThrow(TransactionEntry.COLUMN_EXPORTED)) == 1);
 		transaction.setTemplate(c.getInt(c.getColumnIndexOrThrow(TransactionEntry.COLUMN_TEMPLATE)) == 1);
         String currencyCode = c.getString(c.getColumnIndexOrThrow(TransactionEntry.COLUMN_CURRENCY));
-        transaction.setCommodity(mCommoditiesDbAdapter.getCommodity(currencyCode));
+        Commodity commodity = commodities == null ? null : commodities.get(currencyCode);
+        if (commodity == null) {
+            commodity = mCommoditiesDbAdapter.getCommodity(currencyCode);
+            if (commodities != null)
+                commodities.put(currencyCode, commodity);
+        }
+        transaction.setCommodity(commodity);
         transaction.setScheduledActionUID(c.getString(c.getColumnIndexOrThrow(TransactionEntry.COLUMN_SCHEDX_ACTION_UID)));
-        long transactionID = c.getLong(c.getColumnIndexOrThrow(TransactionEntry._ID));
-        transaction.setSplits(mSplitsDbAdapter.getSplitsForTransaction(transactionID));
 
 		return transaction;
 	}
@@ -495,16 +805,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
      * @return List of all scheduled transactions
      */
     public List<Transaction> getScheduledTransactionsForAccount(String accountUID){
-        Cursor cursor = fetchScheduledTransactionsForAccount(accountUID);
-        List<Transaction> scheduledTransactions = new ArrayList<>();
-        try {
-            while (cursor.moveToNext()) {
-                scheduledTransactions.add(buildModelInstance(cursor));
-            }
-            return scheduledTransactions;
-        } finally {
-            cursor.close();
-        }
+        return buildTransactionsWithSplits(fetchScheduledTransactionsForAccount(accountUID));
     }
 
     /**
@@ -528,6 +829,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
      * @param prefix Starting characters of the transaction name
      * @param accountUID GUID of account within which to search for transactions
      * @return Cursor to the data set containing all matching transactions
+     * @see #getTransactionSuggestions(String)
      */
     public Cursor fetchTransactionSuggestions(String prefix, String accountUID){
         SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
@@ -539,8 +841,8 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
         String[] projectionIn = new String[]{TransactionEntry.TABLE_NAME + ".*"};
         String selection = "(" + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + " = ?"
                 + " OR " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TEMPLATE + "=1 )"
-                + " AND " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_DESCRIPTION + " LIKE '" + prefix + "%'";
-        String[] selectionArgs = new String[]{accountUID};
+                + " AND " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_DESCRIPTION + " LIKE ? ESCAPE '\\'";
+        String[] selectionArgs = new String[]{accountUID, escapeLikePattern(prefix) + "%"};
         String sortOrder = TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + " DESC";
         String groupBy = TransactionEntry.COLUMN_DESCRIPTION;
         String limit = Integer.toString(5);
@@ -548,6 +850,147 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
         return queryBuilder.query(mDb, projectionIn, selection, selectionArgs, groupBy, null, sortOrder, limit);
     }
 
+    /**
+     * Returns the descriptions used in an account, for autocompleting the description of new transactions.
+     * <p>The suggestions are loaded from the suggestions table when they are first needed and kept
+     * in memory, for a few accounts, until the data of the book changes. Looking up a prefix in the
+     * returned trie does not query the database.</p>
+     * @param accountUID GUID of the account
+     * @return Prefix trie of the suggestions
+     * @see org.gnucash.android.db.DatabaseSchema.TransactionSuggestionEntry
+     */
+    public SuggestionTrie getTransactionSuggestions(@NonNull String accountUID){
+        long dataVersion = getDataVersion();
+        synchronized (mSuggestionTries) {
+            if (dataVersion != mSuggestionsDataVersion) {
+                mSuggestionTries.clear();
+                mSuggestionsDataVersion = dataVersion;
+            }
+            SuggestionTrie suggestionTrie = mSuggestionTries.get(accountUID);
+            if (suggestionTrie == null) {
+                suggestionTrie = loadTransactionSuggestions(accountUID);
+                mSuggestionTries.put(accountUID, suggestionTrie);
+                Iterator<String> iterator = mSuggestionTries.keySet().iterator();
+                while (mSuggestionTries.size() > SUGGESTION_CACHE_SIZE) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+            return suggestionTrie;
+        }
+    }
+
+    private SuggestionTrie loadTransactionSuggestions(String accountUID){
+        SuggestionTrie suggestionTrie = new SuggestionTrie(SuggestionTrie.DEFAULT_MAX_SUGGESTIONS, System.currentTimeMillis());
+        Cursor cursor = getReadDb().query(TransactionSuggestionEntry.TABLE_NAME,
+                new String[]{TransactionSuggestionEntry.COLUMN_DESCRIPTION,
+                        TransactionSuggestionEntry.COLUMN_NORMALIZED_DESCRIPTION,
+                        TransactionSuggestionEntry.COLUMN_TRANSACTION_UID,
+                        TransactionSuggestionEntry.COLUMN_LAST_USED,
+                        TransactionSuggestionEntry.COLUMN_USE_COUNT},
+                TransactionSuggestionEntry.COLUMN_ACCOUNT_UID + " = ?", new String[]{accountUID},
+                null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                suggestionTrie.add(new SuggestionTrie.Suggestion(cursor.getString(0), cursor.getString(1),
+                        cursor.getString(2), cursor.getLong(3), cursor.getInt(4)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return suggestionTrie;
+    }
+
+    /**
+     * Returns a cursor to the transactions whose description, notes or split memos contain words
+     * starting with each of the words of the {@code query}, the most recent first.
+     * <p>The search uses the full-text index of the transactions. The columns are those of the
+     * transactions table, followed by the GUID of the account shown for the transaction
+     * ({@link TransactionSummaryEntry#COLUMN_ACCOUNT_UID}) and the amount of the transaction in that account
+     * ({@link #SEARCH_COLUMN_AMOUNT_NUM} and the following columns), computed like
+     * {@link #getBalance(String, String)}. Template transactions are not included.</p>
+     * @param query Words to search for, as typed by the user
+     * @param limit Maximum number of transactions to return
+     * @return Cursor to the matching transactions
+     * @see org.gnucash.android.db.DatabaseSchema.TransactionSearchEntry
+     */
+    public Cursor searchTransactions(@NonNull String query, int limit){
+        String matchQuery = getSearchMatchQuery(query);
+        String accountCurrency = AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_CURRENCY;
+        String fraction = CommodityEntry.TABLE_NAME + "." + CommodityEntry.COLUMN_SMALLEST_FRACTION;
+        // the splits of the account add to its balance if they are of its normal balance type
+        StringBuilder debitAccountTypes = new StringBuilder();
+        for (AccountType accountType : AccountType.values()) {
+            if (accountType.hasDebitNormalBalance()) {
+                debitAccountTypes.append(debitAccountTypes.length() == 0 ? "'" : " , '")
+                        .append(accountType.name()).append("'");
+            }
+        }
+        String amount = "( SELECT ROUND ( TOTAL ( CASE WHEN " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TYPE
+                + " = ( CASE WHEN " + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_TYPE
+                + " IN ( " + debitAccountTypes + " ) THEN 'DEBIT' ELSE 'CREDIT' END ) THEN 1 ELSE -1 END * ( CASE WHEN "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_CURRENCY + " = " + accountCurrency + " THEN "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_VALUE_NUM + " * 1.0 / "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_VALUE_DENOM + " ELSE "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_QUANTITY_NUM + " * 1.0 / "
+                + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_QUANTITY_DENOM + " END ) ) * " + fraction + " )"
+                + " FROM " + SplitEntry.TABLE_NAME
+                + " WHERE " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID + " = "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID
+                + " AND " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID + " = "
+                + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_UID + " )";
+        String sql = "SELECT " + TransactionEntry.TABLE_NAME + ".* , "
+                + TransactionSummaryEntry.TABLE_NAME + "." + TransactionSummaryEntry.COLUMN_ACCOUNT_UID + " , "
+                + amount + " AS " + SEARCH_COLUMN_AMOUNT_NUM + " , "
+                + fraction + " AS " + SEARCH_COLUMN_AMOUNT_DENOM + " , "
+                + accountCurrency + " AS " + SEARCH_COLUMN_AMOUNT_CURRENCY
+                + " FROM " + TransactionSearchEntry.TABLE_NAME
+                + " INNER JOIN " + TransactionEntry.TABLE_NAME + " ON "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry._ID + " = "
+                + TransactionSearchEntry.TABLE_NAME + ".docid"
+                + " LEFT OUTER JOIN " + TransactionSummaryEntry.TABLE_NAME + " ON "
+                + TransactionSummaryEntry.TABLE_NAME + "." + TransactionSummaryEntry.COLUMN_TRANSACTION_UID + " = "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID
+                + " LEFT OUTER JOIN " + AccountEntry.TABLE_NAME + " ON "
+                + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_UID + " = "
+                + TransactionSummaryEntry.TABLE_NAME + "." + TransactionSummaryEntry.COLUMN_ACCOUNT_UID
+                + " LEFT OUTER JOIN " + CommodityEntry.TABLE_NAME + " ON "
+                + CommodityEntry.TABLE_NAME + "." + CommodityEntry.COLUMN_UID + " = "
+                + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_COMMODITY_UID
+                + " WHERE " + (matchQuery == null ? "0" : TransactionSearchEntry.TABLE_NAME + " MATCH ?")
+                + " AND " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TEMPLATE + " = 0"
+                + " ORDER BY " + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + " DESC , "
+                + TransactionEntry.TABLE_NAME + "." + TransactionEntry._ID + " DESC"
+                + " LIMIT " + limit;
+        return getReadDb().rawQuery(sql, matchQuery == null ? null : new String[]{matchQuery});
+    }
+
+    /**
+     * Converts the text typed by the user into a full-text query, which matches the words starting
+     * with each of the typed words. Any syntax of the full-text query language is dropped.
+     * <p>The words are split like the default tokenizer of the index does: every ASCII character
+     * other than a letter or a digit separates words, and ASCII letters are compared in lower case</p>
+     * @param query Text typed by the user
+     * @return Full-text query, or {@code null} if there are no words in the text
+     */
+    @Nullable
+    private static String getSearchMatchQuery(@NonNull String query){
+        StringBuilder matchQuery = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : ' ';
+            if (c >= 0x80 || Character.isLetterOrDigit(c)) {
+                word.append(c >= 'A' && c <= 'Z' ? Character.toLowerCase(c) : c);
+            } else if (word.length() > 0) {
+                if (matchQuery.length() > 0)
+                    matchQuery.append(' ');
+                matchQuery.append('"').append(word).append("*\"");
+                word.setLength(0);
+            }
+        }
+        return matchQuery.length() == 0 ? null : matchQuery.toString();
+    }
+
     /**
      * Updates a specific entry of an transaction
      * @param contentValues Values with which to update the record
@@ -566,7 +1009,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
      * @return Number of currencies within the transaction
      */
     public int getNumCurrencies(String transactionUID) {
-        Cursor cursor = mDb.query("trans_extra_info",
+        Cursor cursor = getReadDb().query("trans_extra_info",
                 new String[]{"trans_currency_count"},
                 "trans_acct_t_uid=?",
                 new String[]{transactionUID},
@@ -618,7 +1061,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
      * @return Last moodified time in milliseconds or current time if there is none in the database
      */
     public Timestamp getTimestampOfLastModification(){
-        Cursor cursor = mDb.query(TransactionEntry.TABLE_NAME,
+        Cursor cursor = getReadDb().query(TransactionEntry.TABLE_NAME,
                 new String[]{"MAX(" + TransactionEntry.COLUMN_MODIFIED_AT + ")"},
                 null, null, null, null, null);
 
@@ -654,7 +1097,7 @@ public class TransactionsDbAdapter extends DatabaseAdapter<Transaction> {
                 + " WHERE " + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_TYPE + " = ? AND "
                 + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_CURRENCY + " = ? AND "
                 + TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TEMPLATE + " = 0";
-        Cursor cursor = mDb.rawQuery(sql, new String[]{ type.name(), currencyCode });
+        Cursor cursor = getReadDb().rawQuery(sql, new String[]{ type.name(), currencyCode });
         long timestamp= 0;
         if (cursor != null) {
             if (cursor.moveToFirst()) {
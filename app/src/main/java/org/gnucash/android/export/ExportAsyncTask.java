@@ -20,12 +20,15 @@ package org.gnucash.android.export;
 import android.app.Activity;
 import android.app.ProgressDialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.ResolveInfo;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.CancellationSignal;
+import android.provider.DocumentsContract;
 import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.v4.content.FileProvider;
@@ -70,6 +73,7 @@ import org.gnucash.android.util.BackupManager;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.text.SimpleDateFormat;
@@ -84,7 +88,7 @@ import java.util.concurrent.TimeUnit;
  *
  * @author Ngewi Fet <ngewif@gmail.com>
  */
-public class ExportAsyncTask extends AsyncTask<ExportParams, Void, Boolean> {
+public class ExportAsyncTask extends AsyncTask<ExportParams, Integer, Boolean> {
 
     /**
      * App context
@@ -110,6 +114,16 @@ public class ExportAsyncTask extends AsyncTask<ExportParams, Void, Boolean> {
 
     private Exporter mExporter;
 
+    /**
+     * Signal used to stop the exporter when the user cancels the export
+     */
+    private final CancellationSignal mCancellationSignal = new CancellationSignal();
+
+    /**
+     * Flag indicating that the export was stopped by the user
+     */
+    private boolean mExportCancelled = false;
+
     public ExportAsyncTask(Context context, SQLiteDatabase db){
         this.mContext = context;
         this.mDb = db;
@@ -125,6 +139,20 @@ public class ExportAsyncTask extends AsyncTask<ExportParams, Void, Boolean> {
             mProgressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
             mProgressDialog.setProgressNumberFormat(null);
             mProgressDialog.setProgressPercentFormat(null);
+            mProgressDialog.setMax(100);
+            mProgressDialog.setButton(DialogInterface.BUTTON_NEGATIVE, mContext.getString(android.R.string.cancel),
+                    new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            dialog.cancel();
+                        }
+                    });
+            mProgressDialog.setOnCancelListener(new DialogInterface.OnCancelListener() {
+                @Override
+                public void onCancel(DialogInterface dialog) {
+                    mCancellationSignal.cancel();
+                }
+            });
 
             mProgressDialog.show();
         }
@@ -139,10 +167,28 @@ public class ExportAsyncTask extends AsyncTask<ExportParams, Void, Boolean> {
     protected Boolean doInBackground(ExportParams... params) {
         mExportParams = params[0];
         mExporter = getExporter();
+        mExporter.setCancellationSignal(mCancellationSignal);
+        mExporter.setProgressListener(new Exporter.ProgressListener() {
+            @Override
+            public void onExportProgress(long progress, long total) {
+                if (total > 0)
+                    publishProgress((int) Math.min(100, progress * 100 / total));
+            }
+        });
 
         try {
+            if (canStreamToTarget()) {
+                mExportedFiles = streamExportToTarget();
+                return !mExportedFiles.isEmpty();
+            }
             mExportedFiles = mExporter.generateExport();
+        } catch (Exporter.ExportCancelledException e) {
+            Log.i(TAG, "Export cancelled by the user");
+            mExporter.discardExport();
+            mExportCancelled = true;
+            return false;
         } catch (final Exception e) {
+            mExporter.discardExport();
             Log.e(TAG, "Error exporting: " + e.getMessage());
             Crashlytics.logException(e);
             e.printStackTrace();
@@ -173,6 +219,14 @@ public class ExportAsyncTask extends AsyncTask<ExportParams, Void, Boolean> {
         return true;
     }
 
+    @Override
+    protected void onProgressUpdate(Integer... values) {
+        if (mProgressDialog != null && mProgressDialog.isShowing()) {
+            mProgressDialog.setIndeterminate(false);
+            mProgressDialog.setProgress(values[0]);
+        }
+    }
+
     /**
      * Transmits the exported transactions to the designated location, either SD card or third-party application
      * Finishes the activity if the export was starting  in the context of an activity
@@ -191,7 +245,11 @@ public class ExportAsyncTask extends AsyncTask<ExportParams, Void, Boolean> {
         } else {
             if (mContext instanceof Activity) {
                 dismissProgressDialog();
-                if (mExportedFiles.isEmpty()) {
+                if (mExportCancelled) {
+                    Toast.makeText(mContext,
+                            R.string.toast_export_cancelled,
+                            Toast.LENGTH_SHORT).show();
+                } else if (mExportedFiles.isEmpty()) {
                     Toast.makeText(mContext,
                             R.string.toast_no_transactions_to_export,
                             Toast.LENGTH_LONG).show();
@@ -234,6 +292,84 @@ public class ExportAsyncTask extends AsyncTask<ExportParams, Void, Boolean> {
         }
     }
 
+    /**
+     * Returns whether the export can be written directly to its target,
+     * without being generated in the cache directory first
+     * @return {@code true} if the export can be streamed, {@code false} otherwise
+     */
+    private boolean canStreamToTarget() {
+        switch (mExportParams.getExportTarget()) {
+            case URI:
+            case SD_CARD:
+                return mExporter.supportsStreaming();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Generates the export and writes it directly to the URI or SD card target specified by the user
+     * <p>If the export fails, the partially written target is deleted</p>
+     * @return List containing the location the export was written to,
+     * or an empty list if there was nothing to export, in which case the target is deleted
+     * @throws IOException if the target could not be opened
+     */
+    private List<String> streamExportToTarget() throws IOException {
+        switch (mExportParams.getExportTarget()) {
+            case URI: {
+                Uri exportUri = Uri.parse(mExportParams.getExportLocation());
+                Log.i(TAG, "Streaming export to " + exportUri);
+                boolean exported;
+                try {
+                    exported = mExporter.generateExport(mContext.getContentResolver().openOutputStream(exportUri));
+                } catch (IOException | RuntimeException e) {
+                    //do not leave a truncated document at the target
+                    deleteDocument(exportUri);
+                    throw e;
+                }
+                if (!exported) {
+                    deleteDocument(exportUri);
+                    return Collections.emptyList();
+                }
+                return Collections.singletonList(mExportParams.getExportLocation());
+            }
+
+            case SD_CARD: {
+                File exportFile = new File(Exporter.getExportFolderPath(mExporter.mBookUID)
+                        + mExporter.getExportFileName());
+                Log.i(TAG, "Streaming export to external storage");
+                boolean exported;
+                try {
+                    exported = mExporter.generateExport(new FileOutputStream(exportFile));
+                } catch (IOException | RuntimeException e) {
+                    exportFile.delete();
+                    throw e;
+                }
+                if (!exported) {
+                    exportFile.delete();
+                    return Collections.emptyList();
+                }
+                return Collections.singletonList(exportFile.getAbsolutePath());
+            }
+
+            default:
+                throw new Exporter.ExporterException(mExportParams, "Target does not support streaming");
+        }
+    }
+
+    /**
+     * Deletes a partially written document from the Storage Access Framework target
+     * @param documentUri URI of the document
+     */
+    private void deleteDocument(Uri documentUri) {
+        try {
+            DocumentsContract.deleteDocument(mContext.getContentResolver(), documentUri);
+        } catch (Exception e) {
+            // not all providers support deleting documents
+            Log.w(TAG, "Could not delete incomplete export " + documentUri + ": " + e.getMessage());
+        }
+    }
+
     /**
      * Moves the generated export files to the target specified by the user
      * @throws Exporter.ExporterException if the move fails
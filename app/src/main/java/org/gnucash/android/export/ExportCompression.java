@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.export;
+
+import android.support.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression stage applied to the output of an export before it reaches its destination
+ */
+public enum ExportCompression {
+    /**
+     * Output is written as is
+     */
+    NONE,
+
+    /**
+     * Output is compressed with gzip
+     */
+    GZIP;
+
+    /**
+     * Size of the buffers placed in front of the destination and used by the compressor.
+     * Large buffers keep the number of writes to SD cards and content providers low.
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Default compression level, as used by {@link GZIPOutputStream}
+     */
+    public static final int DEFAULT_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Wraps {@code outputStream} in this compression stage.
+     * <p>Closing the returned stream finishes the compression and closes {@code outputStream}</p>
+     * @param outputStream Destination of the export
+     * @param level Compression level from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION},
+     *              or {@link #DEFAULT_LEVEL}. Ignored if there is no compression
+     * @return Buffered output stream which compresses the data written to it
+     * @throws IOException if the compression header could not be written
+     */
+    @NonNull
+    public OutputStream wrap(@NonNull OutputStream outputStream, final int level) throws IOException {
+        OutputStream bufferedOutputStream = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(bufferedOutputStream, BUFFER_SIZE) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            case NONE:
+            default:
+                return bufferedOutputStream;
+        }
+    }
+}
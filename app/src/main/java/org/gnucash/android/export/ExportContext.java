@@ -0,0 +1,180 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.export;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LongSparseArray;
+
+import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
+import org.gnucash.android.model.AccountType;
+import org.gnucash.android.model.Commodity;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.gnucash.android.db.DatabaseSchema.AccountEntry;
+
+/**
+ * Lookup tables shared by the exporters of a book.
+ * <p>Accounts and commodities are loaded once, so that rows can be exported without
+ * running queries or repeating string work for every row. Accounts are keyed by their record ID,
+ * which lets queries select a compact {@code _id} instead of the account strings.</p>
+ */
+public class ExportContext {
+
+    private final LongSparseArray<AccountInfo> mAccountsById = new LongSparseArray<>();
+    private final Map<String, AccountInfo> mAccountsByUID = new HashMap<>();
+    private final Map<String, Commodity> mCommoditiesByCode = new HashMap<>();
+    private final Map<String, Commodity> mCommoditiesByUID = new HashMap<>();
+
+    /**
+     * Loads the accounts and commodities of the database
+     * @param db Database being exported
+     * @param commoditiesDbAdapter Adapter for the commodities of {@code db}
+     */
+    public ExportContext(@NonNull SQLiteDatabase db, @NonNull CommoditiesDbAdapter commoditiesDbAdapter) {
+        List<Commodity> commodities = commoditiesDbAdapter.getAllRecords();
+        for (Commodity commodity : commodities) {
+            mCommoditiesByCode.put(commodity.getCurrencyCode(), commodity);
+            mCommoditiesByUID.put(commodity.getUID(), commodity);
+        }
+
+        Cursor cursor = db.query(AccountEntry.TABLE_NAME, new String[]{
+                        AccountEntry._ID,
+                        AccountEntry.COLUMN_UID,
+                        AccountEntry.COLUMN_NAME,
+                        AccountEntry.COLUMN_FULL_NAME,
+                        AccountEntry.COLUMN_CURRENCY,
+                        AccountEntry.COLUMN_TYPE},
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                AccountInfo account = new AccountInfo(cursor.getLong(0), cursor.getString(1),
+                        cursor.getString(2), cursor.getString(3), cursor.getString(4),
+                        AccountType.valueOf(cursor.getString(5)));
+                mAccountsById.put(account.getId(), account);
+                mAccountsByUID.put(account.getUID(), account);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the account with the record ID {@code id}
+     * @param id Database record ID of the account
+     * @return Account, or null if it does not exist
+     */
+    @Nullable
+    public AccountInfo getAccount(long id) {
+        return mAccountsById.get(id);
+    }
+
+    /**
+     * Returns the account with the unique ID {@code uid}
+     * @param uid GUID of the account
+     * @return Account, or null if it does not exist
+     */
+    @Nullable
+    public AccountInfo getAccount(String uid) {
+        return mAccountsByUID.get(uid);
+    }
+
+    /**
+     * Returns the commodity with the currency code {@code currencyCode}
+     * @param currencyCode ISO 4217 currency code
+     * @return Commodity, or null if it is not in the database
+     */
+    @Nullable
+    public Commodity getCommodity(String currencyCode) {
+        return mCommoditiesByCode.get(currencyCode);
+    }
+
+    /**
+     * Returns the commodity with the unique ID {@code uid}
+     * @param uid GUID of the commodity
+     * @return Commodity, or null if it is not in the database
+     */
+    @Nullable
+    public Commodity getCommodityByUID(String uid) {
+        return mCommoditiesByUID.get(uid);
+    }
+
+    /**
+     * Resolves the indexes of {@code columns} in {@code cursor}.
+     * <p>Queries with the same projection return their columns at the same indexes,
+     * so the result can be reused for every page of a paged query</p>
+     * @param cursor Cursor returned by the query
+     * @param columns Names of the columns, as aliased in the projection
+     * @return Indexes of the columns, in the same order as {@code columns}
+     * @throws IllegalArgumentException if a column does not exist
+     */
+    public static int[] getColumnIndexes(@NonNull Cursor cursor, @NonNull String... columns) {
+        int[] indexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            indexes[i] = cursor.getColumnIndexOrThrow(columns[i]);
+        }
+        return indexes;
+    }
+
+    /**
+     * The attributes of an account needed by the exporters
+     */
+    public static final class AccountInfo {
+        private final long mId;
+        private final String mUID;
+        private final String mName;
+        private final String mFullName;
+        private final String mCurrencyCode;
+        private final AccountType mAccountType;
+
+        AccountInfo(long id, String uid, String name, String fullName, String currencyCode, AccountType accountType) {
+            mId = id;
+            mUID = uid;
+            mName = name;
+            mFullName = fullName;
+            mCurrencyCode = currencyCode;
+            mAccountType = accountType;
+        }
+
+        public long getId() {
+            return mId;
+        }
+
+        public String getUID() {
+            return mUID;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public String getFullName() {
+            return mFullName;
+        }
+
+        public String getCurrencyCode() {
+            return mCurrencyCode;
+        }
+
+        public AccountType getAccountType() {
+            return mAccountType;
+        }
+    }
+}
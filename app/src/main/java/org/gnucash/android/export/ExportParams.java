@@ -83,6 +83,17 @@ public class ExportParams {
      */
     private char mCsvSeparator = ',';
 
+    /**
+     * Compression applied to the exported file.
+     * By default, exports are not compressed
+     */
+    private ExportCompression mCompression = ExportCompression.NONE;
+
+    /**
+     * Compression level used when the export is compressed
+     */
+    private int mCompressionLevel = ExportCompression.DEFAULT_LEVEL;
+
     /**
      * Creates a new set of paramters and specifies the export format
      * @param format Format to use when exporting the transactions
@@ -190,6 +201,40 @@ public class ExportParams {
         mCsvSeparator = separator;
     }
 
+    /**
+     * Returns the compression applied to the exported file
+     * @return {@link ExportCompression}
+     */
+    public ExportCompression getCompression() {
+        return mCompression;
+    }
+
+    /**
+     * Set the compression applied to the exported file
+     * @param compression {@link ExportCompression}
+     */
+    public void setCompression(ExportCompression compression) {
+        mCompression = compression;
+    }
+
+    /**
+     * Returns the compression level used when the export is compressed
+     * @return Compression level
+     */
+    public int getCompressionLevel() {
+        return mCompressionLevel;
+    }
+
+    /**
+     * Set the compression level used when the export is compressed
+     * @param compressionLevel Level from {@link java.util.zip.Deflater#BEST_SPEED} to
+     *                         {@link java.util.zip.Deflater#BEST_COMPRESSION},
+     *                         or {@link ExportCompression#DEFAULT_LEVEL}
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        mCompressionLevel = compressionLevel;
+    }
+
     @Override
     public String toString() {
         return "Export all transactions created since " + TimestampHelper.getUtcStringFromTimestamp(mExportStartTime) + " UTC"
@@ -19,6 +19,7 @@ package org.gnucash.android.export;
 
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.os.CancellationSignal;
 import android.os.Environment;
 import android.support.annotation.NonNull;
 import android.util.Log;
@@ -40,8 +41,13 @@ import org.gnucash.android.db.adapter.SplitsDbAdapter;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -100,6 +106,7 @@ public abstract class Exporter {
 	protected final BudgetsDbAdapter mBudgetsDbAdapter;
     protected final Context mContext;
     private String mExportCacheFilePath;
+    private String mExportFileName;
 
     /**
      * Database being currently exported
@@ -111,6 +118,25 @@ public abstract class Exporter {
      */
     protected String mBookUID;
 
+    /**
+     * Listener notified of the export progress. May be null
+     */
+    private ProgressListener mProgressListener;
+
+    /**
+     * Signal checked for every exported record to find out if the export should be stopped
+     */
+    private CancellationSignal mCancellationSignal;
+
+    /**
+     * Accounts and commodities of the book, loaded on first use
+     */
+    private ExportContext mExportContext;
+
+    private long mProgressTotal = -1;
+    private long mProgressCount = 0;
+    private long mProgressReported = 0;
+
     public Exporter(ExportParams params, SQLiteDatabase db) {
         this.mExportParams = params;
         mContext = GnuCashApplication.getAppContext();
@@ -137,6 +163,7 @@ public abstract class Exporter {
 
         mBookUID = new File(mDb.getPath()).getName(); //this depends on the database file always having the name of the book GUID
         mExportCacheFilePath = null;
+        mExportFileName = null;
         mCacheDir = new File(mContext.getCacheDir(), params.getExportFormat().name());
         mCacheDir.mkdir();
         purgeDirectory(mCacheDir);
@@ -193,6 +220,143 @@ public abstract class Exporter {
      */
     public abstract List<String> generateExport() throws ExporterException;
 
+    /**
+     * Generates the export output and writes it directly to {@code outputStream},
+     * without creating a file in the cache directory first.
+     * <p>The compression set in the export parameters is applied to the output
+     * and the stream is closed when the export is done, even if nothing was exported.</p>
+     * @param outputStream Destination of the export e.g. a file on the SD card or a URI
+     * @return {@code true} if data was exported, {@code false} if there was nothing to export,
+     * e.g. no transactions since the last export. The content of the stream is to be discarded then
+     * @throws ExporterException if an error occurs during export
+     */
+    public abstract boolean generateExport(@NonNull OutputStream outputStream) throws ExporterException;
+
+    /**
+     * Returns whether the output of {@link #generateExport(OutputStream)} can be written directly to
+     * the export target, as a single file named by {@link #getExportFileName()}
+     * @return {@code true} if streaming to the target is supported, {@code false} otherwise
+     */
+    public boolean supportsStreaming() {
+        return true;
+    }
+
+    /**
+     * Generates the export into the cache file, through {@link #generateExport(OutputStream)}
+     * @return List containing the path of the cache file, or an empty list if there was nothing to export
+     * @throws ExporterException if an error occurs during export
+     * @see #getExportCacheFilePath()
+     */
+    protected List<String> generateExportToCacheFile() throws ExporterException {
+        String outputFile = getExportCacheFilePath();
+        boolean exported;
+        try {
+            exported = generateExport(new FileOutputStream(outputFile));
+        } catch (FileNotFoundException e) {
+            throw new ExporterException(mExportParams, e);
+        }
+        if (!exported) {
+            new File(outputFile).delete();
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(outputFile);
+    }
+
+    /**
+     * Opens the compression stage set in the export parameters on top of {@code outputStream}.
+     * <p>If the stage cannot be opened, {@code outputStream} is closed</p>
+     * @param outputStream Destination of the export
+     * @return Buffered, possibly compressing, output stream
+     * @throws IOException if the stream could not be initialized
+     */
+    protected OutputStream openCompressedStream(@NonNull OutputStream outputStream) throws IOException {
+        try {
+            return mExportParams.getCompression().wrap(outputStream, mExportParams.getCompressionLevel());
+        } catch (IOException e) {
+            outputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the lookup tables for the accounts and commodities of the book being exported.
+     * <p>They are loaded on the first call</p>
+     * @return Export context
+     */
+    protected ExportContext getExportContext() {
+        if (mExportContext == null)
+            mExportContext = new ExportContext(mDb, mCommoditiesDbAdapter);
+        return mExportContext;
+    }
+
+    /**
+     * Set the listener to be notified as records are exported
+     * @param listener Progress listener
+     */
+    public void setProgressListener(ProgressListener listener) {
+        mProgressListener = listener;
+    }
+
+    /**
+     * Set the signal used to cancel the export.
+     * <p>Exporters check the signal for every record they write and abort with an
+     * {@link ExportCancelledException} once it has been cancelled.</p>
+     * @param cancellationSignal Cancellation signal
+     */
+    public void setCancellationSignal(CancellationSignal cancellationSignal) {
+        mCancellationSignal = cancellationSignal;
+    }
+
+    /**
+     * Starts progress reporting for an export of {@code total} records.
+     * <p>The total is usually taken from {@link org.gnucash.android.db.adapter.DatabaseAdapter#getRecordsCount()}.
+     * If it is not known, pass -1</p>
+     * @param total Total number of records to be exported
+     */
+    protected void startProgress(long total) {
+        mProgressTotal = total;
+        mProgressCount = 0;
+        mProgressReported = 0;
+        if (mProgressListener != null)
+            mProgressListener.onExportProgress(0, total);
+    }
+
+    /**
+     * Signals that one more record has been exported.
+     * <p>Subclasses should call this for every record written.
+     * The listener is notified at most once for every percent of progress.</p>
+     * @throws ExportCancelledException if the export was cancelled
+     */
+    protected void publishProgress() throws ExportCancelledException {
+        if (mCancellationSignal != null && mCancellationSignal.isCanceled())
+            throw new ExportCancelledException(mExportParams);
+
+        mProgressCount++;
+        if (mProgressListener != null
+                && (mProgressTotal <= 0 || (mProgressCount - mProgressReported) * 100 >= mProgressTotal)) {
+            mProgressReported = mProgressCount;
+            mProgressListener.onExportProgress(mProgressCount, mProgressTotal);
+        }
+    }
+
+    /**
+     * Signals that all records have been exported
+     */
+    protected void finishProgress() {
+        if (mProgressListener != null) {
+            long total = Math.max(mProgressTotal, mProgressCount);
+            mProgressListener.onExportProgress(total, total);
+        }
+    }
+
+    /**
+     * Deletes any files generated by this exporter which have not yet been moved to the export target.
+     * <p>This should be called when an export fails or is cancelled so that no partial files are left behind</p>
+     */
+    public void discardExport() {
+        purgeDirectory(mCacheDir);
+    }
+
     /**
      * Recursively delete all files in a directory
      * @param directory File descriptor for directory
@@ -219,13 +383,26 @@ public abstract class Exporter {
             String cachePath = mCacheDir.getAbsolutePath();
             if (!cachePath.endsWith("/"))
                 cachePath += "/";
-            String bookName = BooksDbAdapter.getInstance().getAttribute(mBookUID, DatabaseSchema.BookEntry.COLUMN_DISPLAY_NAME);
-            mExportCacheFilePath = cachePath + buildExportFilename(mExportParams.getExportFormat(), bookName);
+            mExportCacheFilePath = cachePath + getExportFileName();
         }
 
         return mExportCacheFilePath;
     }
 
+    /**
+     * Returns the name of the file generated by this export.
+     * <p>The name contains a timestamp but does not change with multiple calls</p>
+     * @return File name, without a path
+     * @see #buildExportFilename(ExportFormat, String)
+     */
+    protected String getExportFileName(){
+        if (mExportFileName == null) {
+            String bookName = BooksDbAdapter.getInstance().getAttribute(mBookUID, DatabaseSchema.BookEntry.COLUMN_DISPLAY_NAME);
+            mExportFileName = buildExportFilename(mExportParams.getExportFormat(), bookName);
+        }
+        return mExportFileName;
+    }
+
     /**
      * Returns that path to the export folder for the book with GUID {@code bookUID}.
      * This is the folder where exports like QIF and OFX will be saved for access by external programs
@@ -249,6 +426,28 @@ public abstract class Exporter {
         return "text/plain";
     }
 
+    /**
+     * Listener for the progress of an export
+     */
+    public interface ProgressListener {
+        /**
+         * Called as records are exported
+         * @param progress Number of records exported so far
+         * @param total Total number of records to be exported, or -1 if unknown
+         */
+        void onExportProgress(long progress, long total);
+    }
+
+    /**
+     * Thrown when an export is stopped through its {@link CancellationSignal}
+     */
+    public static class ExportCancelledException extends ExporterException {
+
+        public ExportCancelledException(@NonNull ExportParams params) {
+            super(params, "Export cancelled");
+        }
+    }
+
     public static class ExporterException extends RuntimeException{
 
         public ExporterException(ExportParams params){
@@ -17,16 +17,20 @@
 package org.gnucash.android.export.csv;
 
 import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
 
 import com.crashlytics.android.Crashlytics;
 
 import org.gnucash.android.R;
+import org.gnucash.android.db.DatabaseSchema.AccountEntry;
 import org.gnucash.android.export.ExportParams;
 import org.gnucash.android.export.Exporter;
 import org.gnucash.android.model.Account;
+import org.gnucash.android.model.AccountType;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.util.Arrays;
 import java.util.List;
 
@@ -62,16 +66,20 @@ public class CsvAccountExporter extends Exporter{
 
     @Override
     public List<String> generateExport() throws ExporterException {
-        String outputFile = getExportCacheFilePath();
-        try (CsvWriter writer = new CsvWriter(new FileWriter(outputFile), mCsvSeparator + "")) {
-            generateExport(writer);
+        return generateExportToCacheFile();
+    }
+
+    @Override
+    public boolean generateExport(@NonNull OutputStream outputStream) throws ExporterException {
+        try (OutputStream compressedStream = openCompressedStream(outputStream);
+             CsvWriter csvWriter = new CsvWriter(new OutputStreamWriter(compressedStream, "UTF-8"), mCsvSeparator + "")){
+            generateExport(csvWriter);
         } catch (IOException ex){
             Crashlytics.log("Error exporting CSV");
             Crashlytics.logException(ex);
             throw new ExporterException(mExportParams, ex);
         }
-
-        return Arrays.asList(outputFile);
+        return true;
     }
 
     /**
@@ -82,14 +90,19 @@ public class CsvAccountExporter extends Exporter{
     public void generateExport(final CsvWriter csvWriter) throws ExporterException {
         try {
             List<String> names = Arrays.asList(mContext.getResources().getStringArray(R.array.csv_account_headers));
-            List<Account> accounts = mAccountsDbAdapter.getAllRecords();
+            // only the account attributes are exported, so the transactions of the accounts are not loaded
+            List<Account> accounts = mAccountsDbAdapter.getSimpleAccountList(
+                    AccountEntry.COLUMN_HIDDEN + " = 0 AND " + AccountEntry.COLUMN_TYPE + " != ?",
+                    new String[]{AccountType.ROOT.name()}, AccountEntry.COLUMN_NAME + " ASC");
 
             for(int i = 0; i < names.size(); i++) {
                 csvWriter.writeToken(names.get(i));
             }
 
             csvWriter.newLine();
+            startProgress(accounts.size());
             for (Account account : accounts) {
+                publishProgress();
                 csvWriter.writeToken(account.getAccountType().toString());
                 csvWriter.writeToken(account.getFullName());
                 csvWriter.writeToken(account.getName());
@@ -106,6 +119,7 @@ public class CsvAccountExporter extends Exporter{
                 csvWriter.writeToken("F"); //Tax
                 csvWriter.writeEndToken(account.isPlaceholderAccount() ? "T": "F");
             }
+            finishProgress();
         } catch (IOException e) {
             Crashlytics.logException(e);
             throw new ExporterException(mExportParams, e);
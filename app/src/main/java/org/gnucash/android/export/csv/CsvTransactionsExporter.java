@@ -16,14 +16,14 @@
 
 package org.gnucash.android.export.csv;
 
-import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.support.annotation.NonNull;
-import android.util.Log;
 
 import com.crashlytics.android.Crashlytics;
 
 import org.gnucash.android.R;
+import org.gnucash.android.db.adapter.TransactionPageIterator;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.export.ExportParams;
 import org.gnucash.android.export.Exporter;
 import org.gnucash.android.model.Account;
@@ -33,8 +33,9 @@ import org.gnucash.android.model.TransactionType;
 import org.gnucash.android.util.PreferencesHelper;
 import org.gnucash.android.util.TimestampHelper;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
@@ -44,6 +45,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import static org.gnucash.android.db.DatabaseSchema.TransactionEntry;
+
 /**
  * Creates a GnuCash CSV transactions representation of the accounts and transactions
  *
@@ -79,17 +82,26 @@ public class CsvTransactionsExporter extends Exporter{
 
     @Override
     public List<String> generateExport() throws ExporterException {
-        String outputFile = getExportCacheFilePath();
+        return generateExportToCacheFile();
+    }
 
-        try (CsvWriter csvWriter = new CsvWriter(new FileWriter(outputFile), "" + mCsvSeparator)){
-            generateExport(csvWriter);
+    @Override
+    public boolean generateExport(@NonNull OutputStream outputStream) throws ExporterException {
+        String where = TransactionEntry.COLUMN_MODIFIED_AT + " >= ?";
+        String[] whereArgs = new String[]{TimestampHelper.getUtcStringFromTimestamp(mExportParams.getExportStartTime())};
+        TransactionPageIterator pages = mTransactionsDbAdapter.iterateTransactionPages(
+                where, whereArgs, TransactionsDbAdapter.DEFAULT_PAGE_SIZE);
+        try (OutputStream compressedStream = openCompressedStream(outputStream);
+             CsvWriter csvWriter = new CsvWriter(new OutputStreamWriter(compressedStream, "UTF-8"), "" + mCsvSeparator)){
+            if (!pages.hasNext())
+                return false; // no transactions to export
+            generateExport(csvWriter, pages, where, whereArgs);
         } catch (IOException ex){
             Crashlytics.log("Error exporting CSV");
             Crashlytics.logException(ex);
             throw new ExporterException(mExportParams, ex);
         }
-
-        return Arrays.asList(outputFile);
+        return true;
     }
 
     /**
@@ -135,7 +147,8 @@ public class CsvTransactionsExporter extends Exporter{
         }
     }
 
-    private void generateExport(final CsvWriter csvWriter) throws ExporterException {
+    private void generateExport(final CsvWriter csvWriter, TransactionPageIterator pages,
+                                String where, String[] whereArgs) throws ExporterException {
         try {
             List<String> names = Arrays.asList(mContext.getResources().getStringArray(R.array.csv_transaction_headers));
             for(int i = 0; i < names.size(); i++) {
@@ -143,24 +156,25 @@ public class CsvTransactionsExporter extends Exporter{
             }
             csvWriter.newLine();
 
-
-            Cursor cursor = mTransactionsDbAdapter.fetchTransactionsModifiedSince(mExportParams.getExportStartTime());
-            Log.d(LOG_TAG, String.format("Exporting %d transactions to CSV", cursor.getCount()));
-            while (cursor.moveToNext()){
-                Transaction transaction = mTransactionsDbAdapter.buildModelInstance(cursor);
-                Date date = new Date(transaction.getTimeMillis());
-                csvWriter.writeToken(dateFormat.format(date));
-                csvWriter.writeToken(transaction.getUID());
-                csvWriter.writeToken(null);  //Transaction number
-
-                csvWriter.writeToken(transaction.getDescription());
-                csvWriter.writeToken(transaction.getNote());
-
-                csvWriter.writeToken("CURRENCY::" + transaction.getCurrencyCode());
-                csvWriter.writeToken(null); // Void Reason
-                csvWriter.writeToken(null); // Action
-                writeSplitsToCsv(transaction.getSplits(), csvWriter);
+            startProgress(mTransactionsDbAdapter.getRecordsCount());
+            while (pages.hasNext()) {
+                for (Transaction transaction : mTransactionsDbAdapter.getTransactions(pages.next(), where, whereArgs)) {
+                    publishProgress();
+                    Date date = new Date(transaction.getTimeMillis());
+                    csvWriter.writeToken(dateFormat.format(date));
+                    csvWriter.writeToken(transaction.getUID());
+                    csvWriter.writeToken(null);  //Transaction number
+
+                    csvWriter.writeToken(transaction.getDescription());
+                    csvWriter.writeToken(transaction.getNote());
+
+                    csvWriter.writeToken("CURRENCY::" + transaction.getCurrencyCode());
+                    csvWriter.writeToken(null); // Void Reason
+                    csvWriter.writeToken(null); // Action
+                    writeSplitsToCsv(transaction.getSplits(), csvWriter);
+                }
             }
+            finishProgress();
 
             PreferencesHelper.setLastExportTime(TimestampHelper.getTimestampFromNow());
         } catch (IOException e) {
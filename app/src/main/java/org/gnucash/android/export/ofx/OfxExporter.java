@@ -19,6 +19,7 @@ package org.gnucash.android.export.ofx;
 
 import android.database.sqlite.SQLiteDatabase;
 import android.preference.PreferenceManager;
+import android.support.annotation.NonNull;
 import android.util.Log;
 
 import com.crashlytics.android.Crashlytics;
@@ -37,10 +38,8 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.ProcessingInstruction;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -91,8 +90,9 @@ public class OfxExporter extends Exporter{
 	 * Converts all expenses into OFX XML format and adds them to the XML document
 	 * @param doc DOM document of the OFX expenses.
 	 * @param parent Parent node for all expenses in report
+	 * @return List of the accounts added to the document
 	 */
-	private void generateOfx(Document doc, Element parent){
+	private List<Account> generateOfx(Document doc, Element parent){
 		Element transactionUid = doc.createElement(OfxHelper.TAG_TRANSACTION_UID);
 		//unsolicited because the data exported is not as a result of a request
 		transactionUid.appendChild(doc.createTextNode(OfxHelper.UNSOLICITED_TRANSACTION_ID));
@@ -105,8 +105,10 @@ public class OfxExporter extends Exporter{
 		
 		parent.appendChild(bankmsgs);		
 		
-		AccountsDbAdapter accountsDbAdapter = mAccountsDbAdapter;
-		for (Account account : mAccountsList) {		
+		List<Account> exportedAccounts = new ArrayList<>();
+		startProgress(mAccountsList.size());
+		for (Account account : mAccountsList) {
+			publishProgress();
 			if (account.getTransactionCount() == 0)
 				continue; 
 
@@ -117,11 +119,10 @@ public class OfxExporter extends Exporter{
 
 			//add account details (transactions) to the XML document			
 			account.toOfx(doc, statementTransactionResponse, mExportParams.getExportStartTime());
-			
-			//mark as exported
-			accountsDbAdapter.markAsExported(account.getUID());
-			
+			exportedAccounts.add(account);
 		}
+		finishProgress();
+		return exportedAccounts;
 	}
 
     /**
@@ -146,7 +147,13 @@ public class OfxExporter extends Exporter{
         document.appendChild(pi);
         document.appendChild(root);
 
-        generateOfx(document, root);
+        List<Account> exportedAccounts = generateOfx(document, root);
+
+        //mark as exported only once the whole document was generated, so that a cancelled export changes nothing
+        AccountsDbAdapter accountsDbAdapter = mAccountsDbAdapter;
+        for (Account account : exportedAccounts) {
+            accountsDbAdapter.markAsExported(account.getUID());
+        }
 
         boolean useXmlHeader = PreferenceManager.getDefaultSharedPreferences(mContext)
                 .getBoolean(mContext.getString(R.string.key_xml_ofx_header), false);
@@ -167,32 +174,21 @@ public class OfxExporter extends Exporter{
 
     @Override
     public List<String> generateExport() throws ExporterException {
-        mAccountsList = mAccountsDbAdapter.getExportableAccounts(mExportParams.getExportStartTime());
-        if (mAccountsList.isEmpty())
-            return new ArrayList<>(); // Nothing to export, so no files generated
-
-        BufferedWriter writer = null;
+        return generateExportToCacheFile();
+    }
 
-        try {
-            File file = new File(getExportCacheFilePath());
-            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    @Override
+    public boolean generateExport(@NonNull OutputStream outputStream) throws ExporterException {
+        try (OutputStream compressedStream = openCompressedStream(outputStream);
+             Writer writer = new OutputStreamWriter(compressedStream, "UTF-8")) {
+            mAccountsList = mAccountsDbAdapter.getExportableAccounts(mExportParams.getExportStartTime());
+            if (mAccountsList.isEmpty())
+                return false; // Nothing to export
             writer.write(generateOfxExport());
         } catch (IOException e) {
             throw new ExporterException(mExportParams, e);
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    throw new ExporterException(mExportParams, e);
-                }
-            }
         }
-
-        List<String> exportedFiles = new ArrayList<>();
-        exportedFiles.add(getExportCacheFilePath());
-
-        return exportedFiles;
+        return true;
     }
 
     /**
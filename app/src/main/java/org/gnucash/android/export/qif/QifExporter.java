@@ -22,10 +22,11 @@ import android.database.sqlite.SQLiteDatabase;
 import android.support.annotation.NonNull;
 
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.TransactionPageIterator;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.export.ExportContext;
 import org.gnucash.android.export.ExportParams;
 import org.gnucash.android.export.Exporter;
-import org.gnucash.android.model.Commodity;
 import org.gnucash.android.util.FileUtils;
 import org.gnucash.android.util.PreferencesHelper;
 import org.gnucash.android.util.TimestampHelper;
@@ -37,6 +38,7 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -56,6 +58,25 @@ import static org.gnucash.android.db.DatabaseSchema.TransactionEntry;
  */
 public class QifExporter extends Exporter{
 
+    /**
+     * Aliases of the columns selected for the export. The COL_ constants are their positions
+     */
+    private static final String[] COLUMN_ALIASES = {"trans_uid", "trans_time", "trans_desc", "trans_notes",
+            "split_quantity_num", "split_quantity_denom", "split_type", "split_memo",
+            "trans_acct_balance", "trans_split_count", "acct1_id", "acct2_uid"};
+    private static final int COL_TRANS_UID              = 0;
+    private static final int COL_TRANS_TIME             = 1;
+    private static final int COL_TRANS_DESC             = 2;
+    private static final int COL_TRANS_NOTES            = 3;
+    private static final int COL_SPLIT_QUANTITY_NUM     = 4;
+    private static final int COL_SPLIT_QUANTITY_DENOM   = 5;
+    private static final int COL_SPLIT_TYPE             = 6;
+    private static final int COL_SPLIT_MEMO             = 7;
+    private static final int COL_TRANS_ACCT_BALANCE     = 8;
+    private static final int COL_TRANS_SPLIT_COUNT      = 9;
+    private static final int COL_ACCT1_ID               = 10;
+    private static final int COL_ACCT2_UID              = 11;
+
     /**
      * Initialize the exporter
      * @param params Export options
@@ -81,167 +102,198 @@ public class QifExporter extends Exporter{
         TransactionsDbAdapter transactionsDbAdapter = mTransactionsDbAdapter;
         try {
             String lastExportTimeStamp = TimestampHelper.getUtcStringFromTimestamp(mExportParams.getExportStartTime());
-            Cursor cursor = transactionsDbAdapter.fetchTransactionsWithSplitsWithTransactionAccount(
-                    new String[]{
-                            TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_UID + " AS trans_uid",
-                            TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TIMESTAMP + " AS trans_time",
-                            TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_DESCRIPTION + " AS trans_desc",
-                            TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_NOTES + " AS trans_notes",
-                            SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_NUM + " AS split_quantity_num",
-                            SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_DENOM + " AS split_quantity_denom",
-                            SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_TYPE + " AS split_type",
-                            SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_MEMO + " AS split_memo",
-                            "trans_extra_info.trans_acct_balance AS trans_acct_balance",
-                            "trans_extra_info.trans_split_count AS trans_split_count",
-                            "account1." + AccountEntry.COLUMN_UID + " AS acct1_uid",
-                            "account1." + AccountEntry.COLUMN_FULL_NAME + " AS acct1_full_name",
-                            "account1." + AccountEntry.COLUMN_CURRENCY + " AS acct1_currency",
-                            "account1." + AccountEntry.COLUMN_TYPE + " AS acct1_type",
-                            AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_FULL_NAME + " AS acct2_full_name"
-                    },
-                    // no recurrence transactions
-                    TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TEMPLATE + " == 0 AND " +
-                            // in qif, split from the one account entry is not recorded (will be auto balanced)
-                            "( " + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_UID + " != account1." + AccountEntry.COLUMN_UID + " OR " +
-                            // or if the transaction has only one split (the whole transaction would be lost if it is not selected)
-                            "trans_split_count == 1 )" +
-                            (
-                                    " AND " + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_MODIFIED_AT + " > \"" + lastExportTimeStamp + "\""
-                            ),
-                    null,
-                    // trans_time ASC : put transactions in time order
-                    // trans_uid ASC  : put splits from the same transaction together
-                   "acct1_currency ASC, trans_time ASC, trans_uid ASC"
-                    );
+            String[] columns = new String[]{
+                    TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_UID + " AS trans_uid",
+                    TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TIMESTAMP + " AS trans_time",
+                    TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_DESCRIPTION + " AS trans_desc",
+                    TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_NOTES + " AS trans_notes",
+                    SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_NUM + " AS split_quantity_num",
+                    SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_QUANTITY_DENOM + " AS split_quantity_denom",
+                    SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_TYPE + " AS split_type",
+                    SplitEntry.TABLE_NAME + "_" + SplitEntry.COLUMN_MEMO + " AS split_memo",
+                    "trans_extra_info.trans_acct_balance AS trans_acct_balance",
+                    "trans_extra_info.trans_split_count AS trans_split_count",
+                    // the other account attributes are looked up in the export context
+                    "account1." + AccountEntry._ID + " AS acct1_id",
+                    AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_UID + " AS acct2_uid"
+            };
+            // no recurrence transactions
+            String where = TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_TEMPLATE + " == 0 AND " +
+                    // in qif, split from the one account entry is not recorded (will be auto balanced)
+                    "( " + AccountEntry.TABLE_NAME + "_" + AccountEntry.COLUMN_UID + " != account1." + AccountEntry.COLUMN_UID + " OR " +
+                    // or if the transaction has only one split (the whole transaction would be lost if it is not selected)
+                    "trans_split_count == 1 )" +
+                    (
+                            " AND " + TransactionEntry.TABLE_NAME + "_" + TransactionEntry.COLUMN_MODIFIED_AT + " > \"" + lastExportTimeStamp + "\""
+                    ) +
+                    // one currency at a time, to group transactions by currency
+                    " AND account1." + AccountEntry.COLUMN_CURRENCY + " = ?";
+            // trans_time ASC : put transactions in time order
+            // trans_uid ASC  : put splits from the same transaction together
+            String orderBy = "trans_time ASC, trans_uid ASC";
+            // filter on the transactions table for the pages, it must not be stricter than the one above
+            String transactionWhere = TransactionEntry.COLUMN_TEMPLATE + " == 0 AND "
+                    + TransactionEntry.COLUMN_MODIFIED_AT + " > ?";
+            String[] transactionWhereArgs = new String[]{lastExportTimeStamp};
+            List<String> currencyCodes = mAccountsDbAdapter.getCurrencyCodesInUse();
+            ExportContext exportContext = getExportContext();
+            String imbalanceAccountPrefix = AccountsDbAdapter.getImbalanceAccountPrefix();
 
             File file = new File(getExportCacheFilePath());
             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
 
             try {
                 String currentCurrencyCode = "";
-                String currentAccountUID = "";
+                long currentAccountId = -1;
                 String currentTransactionUID = "";
-                while (cursor.moveToNext()) {
-                    String currencyCode = cursor.getString(cursor.getColumnIndexOrThrow("acct1_currency"));
-                    String accountUID = cursor.getString(cursor.getColumnIndexOrThrow("acct1_uid"));
-                    String transactionUID = cursor.getString(cursor.getColumnIndexOrThrow("trans_uid"));
-                    if (!transactionUID.equals(currentTransactionUID)) {
-                        if (!currentTransactionUID.equals("")) {
-                            writer.append(QifHelper.ENTRY_TERMINATOR).append(newLine);
-                            // end last transaction
-                        }
-                        if (!accountUID.equals(currentAccountUID)) {
-                            // no need to end account
-                            //if (!currentAccountUID.equals("")) {
-                            //    // end last account
-                            //}
-                            if (!currencyCode.equals(currentCurrencyCode)) {
-                                currentCurrencyCode = currencyCode;
-                                writer.append(QifHelper.INTERNAL_CURRENCY_PREFIX)
-                                        .append(currencyCode)
+                int[] col = null;
+                // the transactions are walked once per currency of the accounts of their splits
+                String currencyWhere = transactionWhere + " AND " + TransactionEntry.COLUMN_UID + " IN ( SELECT "
+                        + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_TRANSACTION_UID + " FROM " + SplitEntry.TABLE_NAME
+                        + " INNER JOIN " + AccountEntry.TABLE_NAME + " ON " + AccountEntry.TABLE_NAME + "."
+                        + AccountEntry.COLUMN_UID + " = " + SplitEntry.TABLE_NAME + "." + SplitEntry.COLUMN_ACCOUNT_UID
+                        + " WHERE " + AccountEntry.TABLE_NAME + "." + AccountEntry.COLUMN_CURRENCY + " = ? )";
+                long progressTotal = 0;
+                for (String currencyCode : currencyCodes) {
+                    progressTotal += transactionsDbAdapter.getRecordsCount(currencyWhere,
+                            new String[]{transactionWhereArgs[0], currencyCode});
+                }
+                startProgress(progressTotal);
+                for (String acct1CurrencyCode : currencyCodes) {
+                    TransactionPageIterator pages = transactionsDbAdapter.iterateTransactionPages(
+                            transactionWhere, transactionWhereArgs, TransactionsDbAdapter.DEFAULT_PAGE_SIZE);
+                    while (pages.hasNext()) {
+                        Cursor cursor = transactionsDbAdapter.fetchTransactionsWithSplitsWithTransactionAccount(
+                                columns, where, new String[]{acct1CurrencyCode}, pages.next(), orderBy);
+                        try {
+                            if (col == null)
+                                col = ExportContext.getColumnIndexes(cursor, COLUMN_ALIASES);
+                            while (cursor.moveToNext()) {
+                                String transactionUID = cursor.getString(col[COL_TRANS_UID]);
+                                if (!transactionUID.equals(currentTransactionUID)) {
+                                    publishProgress();
+                                    if (!currentTransactionUID.equals("")) {
+                                        writer.append(QifHelper.ENTRY_TERMINATOR).append(newLine);
+                                        // end last transaction
+                                    }
+                                    long accountId = cursor.getLong(col[COL_ACCT1_ID]);
+                                    if (accountId != currentAccountId) {
+                                        // no need to end account
+                                        //if (currentAccountId != -1) {
+                                        //    // end last account
+                                        //}
+                                        ExportContext.AccountInfo account = exportContext.getAccount(accountId);
+                                        if (!account.getCurrencyCode().equals(currentCurrencyCode)) {
+                                            currentCurrencyCode = account.getCurrencyCode();
+                                            writer.append(QifHelper.INTERNAL_CURRENCY_PREFIX)
+                                                    .append(currentCurrencyCode)
+                                                    .append(newLine);
+                                        }
+                                        // start new account
+                                        currentAccountId = accountId;
+                                        writer.append(QifHelper.ACCOUNT_HEADER).append(newLine);
+                                        writer.append(QifHelper.ACCOUNT_NAME_PREFIX)
+                                                .append(account.getFullName())
+                                                .append(newLine);
+                                        writer.append(QifHelper.ENTRY_TERMINATOR).append(newLine);
+                                        writer.append(QifHelper.getQifHeader(account.getAccountType()))
+                                                .append(newLine);
+                                    }
+                                    // start new transaction
+                                    currentTransactionUID = transactionUID;
+                                    writer.append(QifHelper.DATE_PREFIX)
+                                            .append(QifHelper.formatDate(cursor.getLong(col[COL_TRANS_TIME])))
+                                            .append(newLine);
+                                    // Payee / description
+                                    writer.append(QifHelper.PAYEE_PREFIX)
+                                            .append(cursor.getString(col[COL_TRANS_DESC]))
+                                            .append(newLine);
+                                    // Notes, memo
+                                    writer.append(QifHelper.MEMO_PREFIX)
+                                            .append(cursor.getString(col[COL_TRANS_NOTES]))
+                                            .append(newLine);
+                                    // deal with imbalance first
+                                    double imbalance = cursor.getDouble(col[COL_TRANS_ACCT_BALANCE]);
+                                    BigDecimal decimalImbalance = BigDecimal.valueOf(imbalance).setScale(2, BigDecimal.ROUND_HALF_UP);
+                                    if (decimalImbalance.compareTo(BigDecimal.ZERO) != 0) {
+                                        writer.append(QifHelper.SPLIT_CATEGORY_PREFIX)
+                                                .append(imbalanceAccountPrefix)
+                                                .append(currentCurrencyCode)
+                                                .append(newLine);
+                                        writer.append(QifHelper.SPLIT_AMOUNT_PREFIX)
+                                                .append(decimalImbalance.toPlainString())
+                                                .append(newLine);
+                                    }
+                                }
+                                if (cursor.getInt(col[COL_TRANS_SPLIT_COUNT]) == 1) {
+                                    // No other splits should be recorded if this is the only split.
+                                    continue;
+                                }
+                                // all splits
+                                // amount associated with the header account will not be exported.
+                                // It can be auto balanced when importing to GnuCash
+                                writer.append(QifHelper.SPLIT_CATEGORY_PREFIX)
+                                        .append(exportContext.getAccount(cursor.getString(col[COL_ACCT2_UID])).getFullName())
+                                        .append(newLine);
+                                String splitMemo = cursor.getString(col[COL_SPLIT_MEMO]);
+                                if (splitMemo != null && splitMemo.length() > 0) {
+                                    writer.append(QifHelper.SPLIT_MEMO_PREFIX)
+                                            .append(splitMemo)
+                                            .append(newLine);
+                                }
+                                String splitType = cursor.getString(col[COL_SPLIT_TYPE]);
+                                Double quantity_num = cursor.getDouble(col[COL_SPLIT_QUANTITY_NUM]);
+                                int quantity_denom = cursor.getInt(col[COL_SPLIT_QUANTITY_DENOM]);
+                                int precision = 0;
+                                switch (quantity_denom) {
+                                    case 0: // will sometimes happen for zero values
+                                        break;
+                                    case 1:
+                                        precision = 0;
+                                        break;
+                                    case 10:
+                                        precision = 1;
+                                        break;
+                                    case 100:
+                                        precision = 2;
+                                        break;
+                                    case 1000:
+                                        precision = 3;
+                                        break;
+                                    case 10000:
+                                        precision = 4;
+                                        break;
+                                    case 100000:
+                                        precision = 5;
+                                        break;
+                                    case 1000000:
+                                        precision = 6;
+                                        break;
+                                    default:
+                                        throw new ExporterException(mExportParams, "split quantity has illegal denominator: "+ quantity_denom);
+                                }
+                                Double quantity = 0.0;
+                                if (quantity_denom != 0) {
+                                    quantity = quantity_num / quantity_denom;
+                                }
+                                final Locale noLocale = null;
+                                writer.append(QifHelper.SPLIT_AMOUNT_PREFIX)
+                                        .append(splitType.equals("DEBIT") ? "-" : "")
+                                        .append(String.format(noLocale, "%." + precision + "f", quantity))
                                         .append(newLine);
                             }
-                            // start new account
-                            currentAccountUID = accountUID;
-                            writer.append(QifHelper.ACCOUNT_HEADER).append(newLine);
-                            writer.append(QifHelper.ACCOUNT_NAME_PREFIX)
-                                    .append(cursor.getString(cursor.getColumnIndexOrThrow("acct1_full_name")))
-                                    .append(newLine);
-                            writer.append(QifHelper.ENTRY_TERMINATOR).append(newLine);
-                            writer.append(QifHelper.getQifHeader(cursor.getString(cursor.getColumnIndexOrThrow("acct1_type"))))
-                                    .append(newLine);
-                        }
-                        // start new transaction
-                        currentTransactionUID = transactionUID;
-                        writer.append(QifHelper.DATE_PREFIX)
-                                .append(QifHelper.formatDate(cursor.getLong(cursor.getColumnIndexOrThrow("trans_time"))))
-                                .append(newLine);
-                        // Payee / description
-                        writer.append(QifHelper.PAYEE_PREFIX)
-                                .append(cursor.getString(cursor.getColumnIndexOrThrow("trans_desc")))
-                                .append(newLine);
-                        // Notes, memo
-                        writer.append(QifHelper.MEMO_PREFIX)
-                                .append(cursor.getString(cursor.getColumnIndexOrThrow("trans_notes")))
-                                .append(newLine);
-                        // deal with imbalance first
-                        double imbalance = cursor.getDouble(cursor.getColumnIndexOrThrow("trans_acct_balance"));
-                        BigDecimal decimalImbalance = BigDecimal.valueOf(imbalance).setScale(2, BigDecimal.ROUND_HALF_UP);
-                        if (decimalImbalance.compareTo(BigDecimal.ZERO) != 0) {
-                            writer.append(QifHelper.SPLIT_CATEGORY_PREFIX)
-                                    .append(AccountsDbAdapter.getImbalanceAccountName(
-                                            Commodity.getInstance(cursor.getString(cursor.getColumnIndexOrThrow("acct1_currency")))
-                                    ))
-                                    .append(newLine);
-                            writer.append(QifHelper.SPLIT_AMOUNT_PREFIX)
-                                    .append(decimalImbalance.toPlainString())
-                                    .append(newLine);
+                        } finally {
+                            cursor.close();
                         }
                     }
-                    if (cursor.getInt(cursor.getColumnIndexOrThrow("trans_split_count")) == 1) {
-                        // No other splits should be recorded if this is the only split.
-                        continue;
-                    }
-                    // all splits
-                    // amount associated with the header account will not be exported.
-                    // It can be auto balanced when importing to GnuCash
-                    writer.append(QifHelper.SPLIT_CATEGORY_PREFIX)
-                            .append(cursor.getString(cursor.getColumnIndexOrThrow("acct2_full_name")))
-                            .append(newLine);
-                    String splitMemo = cursor.getString(cursor.getColumnIndexOrThrow("split_memo"));
-                    if (splitMemo != null && splitMemo.length() > 0) {
-                        writer.append(QifHelper.SPLIT_MEMO_PREFIX)
-                                .append(splitMemo)
-                                .append(newLine);
-                    }
-                    String splitType = cursor.getString(cursor.getColumnIndexOrThrow("split_type"));
-                    Double quantity_num = cursor.getDouble(cursor.getColumnIndexOrThrow("split_quantity_num"));
-                    int quantity_denom = cursor.getInt(cursor.getColumnIndexOrThrow("split_quantity_denom"));
-                    int precision = 0;
-                    switch (quantity_denom) {
-                        case 0: // will sometimes happen for zero values
-                            break;
-                        case 1:
-                            precision = 0;
-                            break;
-                        case 10:
-                            precision = 1;
-                            break;
-                        case 100:
-                            precision = 2;
-                            break;
-                        case 1000:
-                            precision = 3;
-                            break;
-                        case 10000:
-                            precision = 4;
-                            break;
-                        case 100000:
-                            precision = 5;
-                            break;
-                        case 1000000:
-                            precision = 6;
-                            break;
-                        default:
-                            throw new ExporterException(mExportParams, "split quantity has illegal denominator: "+ quantity_denom);
-                    }
-                    Double quantity = 0.0;
-                    if (quantity_denom != 0) {
-                        quantity = quantity_num / quantity_denom;
-                    }
-                    final Locale noLocale = null;
-                    writer.append(QifHelper.SPLIT_AMOUNT_PREFIX)
-                            .append(splitType.equals("DEBIT") ? "-" : "")
-                            .append(String.format(noLocale, "%." + precision + "f", quantity))
-                            .append(newLine);
                 }
                 if (!currentTransactionUID.equals("")) {
                     // end last transaction
                     writer.append(QifHelper.ENTRY_TERMINATOR).append(newLine);
                 }
                 writer.flush();
+                finishProgress();
             } finally {
-                cursor.close();
                 writer.close();
             }
 
@@ -264,6 +316,36 @@ public class QifExporter extends Exporter{
         }
     }
 
+    /**
+     * Writes the QIF export to {@code outputStream}.
+     * <p>Transactions in several currencies are exported to one QIF file per currency, zipped together.
+     * So the export is generated in the cache directory first, and the QIF or zip file is then copied
+     * to the stream</p>
+     * @see #supportsStreaming()
+     */
+    @Override
+    public boolean generateExport(@NonNull OutputStream outputStream) throws ExporterException {
+        try (OutputStream compressedStream = openCompressedStream(outputStream)) {
+            List<String> exportedFiles = generateExport();
+            if (exportedFiles.isEmpty())
+                return false;
+            FileUtils.moveFile(exportedFiles.get(0), compressedStream);
+        } catch (IOException e) {
+            throw new ExporterException(mExportParams, e);
+        }
+        return true;
+    }
+
+    /**
+     * The export is a zip file instead of a QIF file if there are transactions in several currencies,
+     * so it cannot be streamed to a target named before the export
+     * @return {@code false}
+     */
+    @Override
+    public boolean supportsStreaming() {
+        return false;
+    }
+
     @NonNull
     private List<String> zipQifs(List<String> exportedFiles) throws IOException {
         String zipFileName = getExportCacheFilePath() + ".zip";
@@ -19,7 +19,7 @@ package org.gnucash.android.export.xml;
 
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.net.Uri;
+import android.support.annotation.NonNull;
 import android.util.Log;
 
 import com.crashlytics.android.Crashlytics;
@@ -27,9 +27,10 @@ import com.crashlytics.android.Crashlytics;
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.DatabaseSchema;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
-import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
 import org.gnucash.android.db.adapter.RecurrenceDbAdapter;
+import org.gnucash.android.db.adapter.TransactionPageIterator;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.export.ExportContext;
 import org.gnucash.android.export.ExportFormat;
 import org.gnucash.android.export.ExportParams;
 import org.gnucash.android.export.Exporter;
@@ -47,11 +48,7 @@ import org.gnucash.android.model.ScheduledAction;
 import org.gnucash.android.model.TransactionType;
 import org.gnucash.android.util.BookUtils;
 import org.gnucash.android.util.TimestampHelper;
-import org.xmlpull.v1.XmlPullParserFactory;
-import org.xmlpull.v1.XmlSerializer;
 
-import java.io.BufferedOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -63,7 +60,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.zip.GZIPOutputStream;
 
 import static org.gnucash.android.db.DatabaseSchema.ScheduledActionEntry;
 import static org.gnucash.android.db.DatabaseSchema.SplitEntry;
@@ -83,6 +79,40 @@ public class GncXmlExporter extends Exporter{
     private Account mRootTemplateAccount;
     private Map<String, Account> mTransactionToTemplateAccountMap = new TreeMap<>();
 
+    /**
+     * Denominator used for the (zero) value and quantity of template splits
+     */
+    private static final long TEMPLATE_AMOUNT_DENOMINATOR = 100;
+
+    /**
+     * Aliases of the transaction columns selected for the export. The COL_ constants are their positions
+     */
+    private static final String[] TRANSACTION_COLUMN_ALIASES = {"trans_uid", "trans_desc", "trans_notes",
+            "trans_time", "trans_exported", "trans_currency", "trans_date_posted", "trans_from_sched_action",
+            "split_uid", "split_memo", "split_type", "split_value_num", "split_value_denom",
+            "split_quantity_num", "split_quantity_denom", "split_acct_uid"};
+    private static final int COL_TRANS_UID               = 0;
+    private static final int COL_TRANS_DESC              = 1;
+    private static final int COL_TRANS_NOTES             = 2;
+    private static final int COL_TRANS_TIME              = 3;
+    private static final int COL_TRANS_EXPORTED          = 4;
+    private static final int COL_TRANS_CURRENCY          = 5;
+    private static final int COL_TRANS_DATE_POSTED       = 6;
+    private static final int COL_TRANS_FROM_SCHED_ACTION = 7;
+    private static final int COL_SPLIT_UID               = 8;
+    private static final int COL_SPLIT_MEMO              = 9;
+    private static final int COL_SPLIT_TYPE              = 10;
+    private static final int COL_SPLIT_VALUE_NUM         = 11;
+    private static final int COL_SPLIT_VALUE_DENOM       = 12;
+    private static final int COL_SPLIT_QUANTITY_NUM      = 13;
+    private static final int COL_SPLIT_QUANTITY_DENOM    = 14;
+    private static final int COL_SPLIT_ACCT_UID          = 15;
+
+    /**
+     * Flag whether the generated XML should be indented
+     */
+    private boolean mIndentOutput = true;
+
     /**
      * Construct a new exporter with export parameters
      * @param params Parameters for the export
@@ -103,7 +133,17 @@ public class GncXmlExporter extends Exporter{
         LOG_TAG = "GncXmlExporter";
     }
 
-    private void exportSlots(XmlSerializer xmlSerializer,
+    /**
+     * Sets whether the generated XML should be indented for readability.
+     * <p>Indentation is on by default. Backups turn it off since nobody reads them
+     * and the whitespace only costs time and space.</p>
+     * @param indentOutput {@code true} to indent the output, {@code false} otherwise
+     */
+    public void setIndentOutput(boolean indentOutput) {
+        mIndentOutput = indentOutput;
+    }
+
+    private void exportSlots(GncXmlSerializer xmlSerializer,
                              List<String> slotKey,
                              List<String> slotType,
                              List<String> slotValue) throws IOException {
@@ -125,11 +165,12 @@ public class GncXmlExporter extends Exporter{
         }
     }
 
-    private void exportAccounts(XmlSerializer xmlSerializer) throws IOException {
+    private void exportAccounts(GncXmlSerializer xmlSerializer) throws IOException {
         // gnucash desktop requires that parent account appears before its descendants.
         // sort by full-name to fulfill the request
         Cursor cursor = mAccountsDbAdapter.fetchAccounts(null, null, DatabaseSchema.AccountEntry.COLUMN_FULL_NAME + " ASC");
         while (cursor.moveToNext()) {
+            publishProgress();
             // write account
             xmlSerializer.startTag(null, GncXmlHelper.TAG_ACCOUNT);
             xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_VERSION, GncXmlHelper.BOOK_VERSION);
@@ -158,7 +199,7 @@ public class GncXmlExporter extends Exporter{
             xmlSerializer.endTag(null, GncXmlHelper.TAG_COMMODITY_ID);
             xmlSerializer.endTag(null, GncXmlHelper.TAG_ACCT_COMMODITY);
             // commodity scu
-            Commodity commodity = CommoditiesDbAdapter.getInstance().getCommodity(acctCurrencyCode);
+            Commodity commodity = getExportContext().getCommodity(acctCurrencyCode);
             xmlSerializer.startTag(null, GncXmlHelper.TAG_COMMODITY_SCU);
             xmlSerializer.text(Integer.toString(commodity.getSmallestFraction()));
             xmlSerializer.endTag(null, GncXmlHelper.TAG_COMMODITY_SCU);
@@ -221,7 +262,7 @@ public class GncXmlExporter extends Exporter{
      * @param accountList List of template accounts
      * @throws IOException if could not write XML to output stream
      */
-    private void exportTemplateAccounts(XmlSerializer xmlSerializer, Collection<Account> accountList) throws IOException {
+    private void exportTemplateAccounts(GncXmlSerializer xmlSerializer, Collection<Account> accountList) throws IOException {
         for (Account account : accountList) {
             xmlSerializer.startTag(null, GncXmlHelper.TAG_ACCOUNT);
             xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_VERSION, GncXmlHelper.BOOK_VERSION);
@@ -269,34 +310,33 @@ public class GncXmlExporter extends Exporter{
      * @param exportTemplates Flag whether to export templates or normal transactions
      * @throws IOException if the XML serializer cannot be written to
      */
-    private void exportTransactions(XmlSerializer xmlSerializer, boolean exportTemplates) throws IOException {
-        String where = TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TEMPLATE + "=0";
-        if (exportTemplates) {
-            where = TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TEMPLATE + "=1";
-        }
-        Cursor cursor = mTransactionsDbAdapter.fetchTransactionsWithSplits(
-                new String[]{
-                        TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_UID + " AS trans_uid",
-                        TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_DESCRIPTION + " AS trans_desc",
-                        TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_NOTES + " AS trans_notes",
-                        TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_TIMESTAMP + " AS trans_time",
-                        TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_EXPORTED + " AS trans_exported",
-                        TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_CURRENCY + " AS trans_currency",
-                        TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_CREATED_AT + " AS trans_date_posted",
-                        TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_SCHEDX_ACTION_UID + " AS trans_from_sched_action",
-                        SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_UID + " AS split_uid",
-                        SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_MEMO + " AS split_memo",
-                        SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_TYPE + " AS split_type",
-                        SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_VALUE_NUM + " AS split_value_num",
-                        SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_VALUE_DENOM + " AS split_value_denom",
-                        SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_QUANTITY_NUM + " AS split_quantity_num",
-                        SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_QUANTITY_DENOM + " AS split_quantity_denom",                        SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_ACCOUNT_UID + " AS split_acct_uid"},
-                        where, null,
-                        TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + " ASC , " +
-                        TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " ASC ");
+    private void exportTransactions(GncXmlSerializer xmlSerializer, boolean exportTemplates) throws IOException {
+        String transactionWhere = TransactionEntry.COLUMN_TEMPLATE + (exportTemplates ? "=1" : "=0");
+        String where = TransactionEntry.TABLE_NAME + "." + transactionWhere;
+        String[] columns = new String[]{
+                TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_UID + " AS trans_uid",
+                TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_DESCRIPTION + " AS trans_desc",
+                TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_NOTES + " AS trans_notes",
+                TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_TIMESTAMP + " AS trans_time",
+                TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_EXPORTED + " AS trans_exported",
+                TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_CURRENCY + " AS trans_currency",
+                TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_CREATED_AT + " AS trans_date_posted",
+                TransactionEntry.TABLE_NAME+"."+ TransactionEntry.COLUMN_SCHEDX_ACTION_UID + " AS trans_from_sched_action",
+                SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_UID + " AS split_uid",
+                SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_MEMO + " AS split_memo",
+                SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_TYPE + " AS split_type",
+                SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_VALUE_NUM + " AS split_value_num",
+                SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_VALUE_DENOM + " AS split_value_denom",
+                SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_QUANTITY_NUM + " AS split_quantity_num",
+                SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_QUANTITY_DENOM + " AS split_quantity_denom",
+                SplitEntry.TABLE_NAME+"."+ SplitEntry.COLUMN_ACCOUNT_UID + " AS split_acct_uid"};
+        // the page iterator walks the transactions in the same order
+        String orderBy = TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_TIMESTAMP + " ASC , " +
+                TransactionEntry.TABLE_NAME + "." + TransactionEntry.COLUMN_UID + " ASC ";
         String lastTrxUID = "";
         Commodity trnCommodity = null;
-        String denomString = "100";
+        ExportContext exportContext = getExportContext();
+        int[] col = null;
 
         if (exportTemplates) {
             mRootTemplateAccount = new Account("Template Root");
@@ -305,192 +345,218 @@ public class GncXmlExporter extends Exporter{
 
             //FIXME: Retrieve the template account GUIDs from the scheduled action table and create accounts with that
             //this will allow use to maintain the template account GUID when we import from the desktop and also use the same for the splits
-            while (cursor.moveToNext()) {
-                Account account = new Account(BaseModel.generateUID());
-                account.setAccountType(AccountType.BANK);
-                String trnUID = cursor.getString(cursor.getColumnIndexOrThrow("trans_uid"));
-                mTransactionToTemplateAccountMap.put(trnUID, account);
+            Cursor cursor = mTransactionsDbAdapter.fetchAllRecords(transactionWhere + " AND "
+                    + TransactionEntry.COLUMN_UID + " IN (SELECT " + SplitEntry.COLUMN_TRANSACTION_UID
+                    + " FROM " + SplitEntry.TABLE_NAME + ")", null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    Account account = new Account(BaseModel.generateUID());
+                    account.setAccountType(AccountType.BANK);
+                    String trnUID = cursor.getString(cursor.getColumnIndexOrThrow(TransactionEntry.COLUMN_UID));
+                    mTransactionToTemplateAccountMap.put(trnUID, account);
+                }
+            } finally {
+                cursor.close();
             }
 
             exportTemplateAccounts(xmlSerializer, mTransactionToTemplateAccountMap.values());
-            //push cursor back to before the beginning
-            cursor.moveToFirst();
-            cursor.moveToPrevious();
         }
 
         //// FIXME: 12.10.2015 export split reconciled_state and reconciled_date to the export
-        while (cursor.moveToNext()){
-            String curTrxUID = cursor.getString(cursor.getColumnIndexOrThrow("trans_uid"));
-            if (!lastTrxUID.equals(curTrxUID)) { // new transaction starts
-                if (!lastTrxUID.equals("")) { // there's an old transaction, close it
-                    xmlSerializer.endTag(null, GncXmlHelper.TAG_TRN_SPLITS);
-                    xmlSerializer.endTag(null, GncXmlHelper.TAG_TRANSACTION);
-                }
-                // new transaction
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_TRANSACTION);
-                xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_VERSION, GncXmlHelper.BOOK_VERSION);
-                // transaction id
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_TRX_ID);
-                xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_TYPE, GncXmlHelper.ATTR_VALUE_GUID);
-                xmlSerializer.text(curTrxUID);
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_TRX_ID);
-                // currency
-                String currencyCode = cursor.getString(cursor.getColumnIndexOrThrow("trans_currency"));
-                trnCommodity = CommoditiesDbAdapter.getInstance().getCommodity(currencyCode);//Currency.getInstance(currencyCode);
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_TRX_CURRENCY);
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_COMMODITY_SPACE);
-                xmlSerializer.text("ISO4217");
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_COMMODITY_SPACE);
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_COMMODITY_ID);
-                xmlSerializer.text(currencyCode);
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_COMMODITY_ID);
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_TRX_CURRENCY);
-                // date posted, time which user put on the transaction
-                String strDate = GncXmlHelper.formatDate(cursor.getLong(cursor.getColumnIndexOrThrow("trans_time")));
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_DATE_POSTED);
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_TS_DATE);
-                xmlSerializer.text(strDate);
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_TS_DATE);
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_DATE_POSTED);
-
-                // date entered, time when the transaction was actually created
-                Timestamp timeEntered = TimestampHelper.getTimestampFromUtcString(cursor.getString(cursor.getColumnIndexOrThrow("trans_date_posted")));
-                String dateEntered = GncXmlHelper.formatDate(timeEntered.getTime());
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_DATE_ENTERED);
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_TS_DATE);
-                xmlSerializer.text(dateEntered);
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_TS_DATE);
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_DATE_ENTERED);
-
-                // description
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_TRN_DESCRIPTION);
-                xmlSerializer.text(cursor.getString(cursor.getColumnIndexOrThrow("trans_desc")));
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_TRN_DESCRIPTION);
-                lastTrxUID = curTrxUID;
-                // slots
-                ArrayList<String> slotKey = new ArrayList<>();
-                ArrayList<String> slotType = new ArrayList<>();
-                ArrayList<String> slotValue = new ArrayList<>();
-
-                String notes = cursor.getString(cursor.getColumnIndexOrThrow("trans_notes"));
-                if (notes != null && notes.length() > 0) {
-                    slotKey.add(GncXmlHelper.KEY_NOTES);
-                    slotType.add(GncXmlHelper.ATTR_VALUE_STRING);
-                    slotValue.add(notes);
-                }
-
-                String scheduledActionUID = cursor.getString(cursor.getColumnIndexOrThrow("trans_from_sched_action"));
-                if (scheduledActionUID != null && !scheduledActionUID.isEmpty()){
-                    slotKey.add(GncXmlHelper.KEY_FROM_SCHED_ACTION);
-                    slotType.add(GncXmlHelper.ATTR_VALUE_GUID);
-                    slotValue.add(scheduledActionUID);
-                }
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_TRN_SLOTS);
-                exportSlots(xmlSerializer, slotKey, slotType, slotValue);
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_TRN_SLOTS);
-
-                // splits start
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_TRN_SPLITS);
-            }
-            xmlSerializer.startTag(null, GncXmlHelper.TAG_TRN_SPLIT);
-            // split id
-            xmlSerializer.startTag(null, GncXmlHelper.TAG_SPLIT_ID);
-            xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_TYPE, GncXmlHelper.ATTR_VALUE_GUID);
-            xmlSerializer.text(cursor.getString(cursor.getColumnIndexOrThrow("split_uid")));
-            xmlSerializer.endTag(null, GncXmlHelper.TAG_SPLIT_ID);
-            // memo
-            String memo = cursor.getString(cursor.getColumnIndexOrThrow("split_memo"));
-            if (memo != null && memo.length() > 0){
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_SPLIT_MEMO);
-                xmlSerializer.text(memo);
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_SPLIT_MEMO);
-            }
-            // reconciled
-            xmlSerializer.startTag(null, GncXmlHelper.TAG_RECONCILED_STATE);
-            xmlSerializer.text("n"); //fixme: retrieve reconciled state from the split in the db
-            xmlSerializer.endTag(null, GncXmlHelper.TAG_RECONCILED_STATE);
-            //todo: if split is reconciled, add reconciled date
-            // value, in the transaction's currency
-            String trxType = cursor.getString(cursor.getColumnIndexOrThrow("split_type"));
-            int splitValueNum = cursor.getInt(cursor.getColumnIndexOrThrow("split_value_num"));
-            int splitValueDenom = cursor.getInt(cursor.getColumnIndexOrThrow("split_value_denom"));
-            BigDecimal splitAmount = Money.getBigDecimal(splitValueNum, splitValueDenom);
-            String strValue = "0/" + denomString;
-            if (!exportTemplates) { //when doing normal transaction export
-                strValue = (trxType.equals("CREDIT") ? "-" : "") + splitValueNum + "/" + splitValueDenom;
-            }
-            xmlSerializer.startTag(null, GncXmlHelper.TAG_SPLIT_VALUE);
-            xmlSerializer.text(strValue);
-            xmlSerializer.endTag(null, GncXmlHelper.TAG_SPLIT_VALUE);
-            // quantity, in the split account's currency
-            String splitQuantityNum = cursor.getString(cursor.getColumnIndexOrThrow("split_quantity_num"));
-            String splitQuantityDenom = cursor.getString(cursor.getColumnIndexOrThrow("split_quantity_denom"));
-            if (!exportTemplates) {
-                strValue = (trxType.equals("CREDIT") ? "-" : "") + splitQuantityNum + "/" + splitQuantityDenom;
-            }
-            xmlSerializer.startTag(null, GncXmlHelper.TAG_SPLIT_QUANTITY);
-            xmlSerializer.text(strValue);
-            xmlSerializer.endTag(null, GncXmlHelper.TAG_SPLIT_QUANTITY);
-            // account guid
-            xmlSerializer.startTag(null, GncXmlHelper.TAG_SPLIT_ACCOUNT);
-            xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_TYPE, GncXmlHelper.ATTR_VALUE_GUID);
-            String splitAccountUID;
-            if (exportTemplates){
-                //get the UID of the template account
-                 splitAccountUID = mTransactionToTemplateAccountMap.get(curTrxUID).getUID();
-            } else {
-                splitAccountUID = cursor.getString(cursor.getColumnIndexOrThrow("split_acct_uid"));
-            }
-            xmlSerializer.text(splitAccountUID);
-            xmlSerializer.endTag(null, GncXmlHelper.TAG_SPLIT_ACCOUNT);
-
-            //if we are exporting a template transaction, then we need to add some extra slots
-            if (exportTemplates){
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_SPLIT_SLOTS);
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_SLOT);
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_SLOT_KEY);
-                xmlSerializer.text(GncXmlHelper.KEY_SCHEDX_ACTION); //FIXME: not all templates may be scheduled actions
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_SLOT_KEY);
-                xmlSerializer.startTag(null, GncXmlHelper.TAG_SLOT_VALUE);
-                xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_TYPE, "frame");
-
-                List<String> slotKeys = new ArrayList<>();
-                List<String> slotTypes = new ArrayList<>();
-                List<String> slotValues = new ArrayList<>();
-                slotKeys.add(GncXmlHelper.KEY_SPLIT_ACCOUNT_SLOT);
-                slotTypes.add(GncXmlHelper.ATTR_VALUE_GUID);
-                slotValues.add(cursor.getString(cursor.getColumnIndexOrThrow("split_acct_uid")));
-                TransactionType type = TransactionType.valueOf(trxType);
-                if (type == TransactionType.CREDIT){
-                    slotKeys.add(GncXmlHelper.KEY_CREDIT_FORMULA);
-                    slotTypes.add(GncXmlHelper.ATTR_VALUE_STRING);
-                    slotValues.add(GncXmlHelper.formatTemplateSplitAmount(splitAmount));
-                    slotKeys.add(GncXmlHelper.KEY_CREDIT_NUMERIC);
-                    slotTypes.add(GncXmlHelper.ATTR_VALUE_NUMERIC);
-                    slotValues.add(GncXmlHelper.formatSplitAmount(splitAmount, trnCommodity));
-                } else {
-                    slotKeys.add(GncXmlHelper.KEY_DEBIT_FORMULA);
-                    slotTypes.add(GncXmlHelper.ATTR_VALUE_STRING);
-                    slotValues.add(GncXmlHelper.formatTemplateSplitAmount(splitAmount));
-                    slotKeys.add(GncXmlHelper.KEY_DEBIT_NUMERIC);
-                    slotTypes.add(GncXmlHelper.ATTR_VALUE_NUMERIC);
-                    slotValues.add(GncXmlHelper.formatSplitAmount(splitAmount, trnCommodity));
+        TransactionPageIterator pages = mTransactionsDbAdapter.iterateTransactionPages(
+                transactionWhere, null, TransactionsDbAdapter.DEFAULT_PAGE_SIZE);
+        while (pages.hasNext()) {
+            Cursor cursor = mTransactionsDbAdapter.fetchTransactionsWithSplits(columns, where, null, pages.next(), orderBy);
+            try {
+                if (col == null)
+                    col = ExportContext.getColumnIndexes(cursor, TRANSACTION_COLUMN_ALIASES);
+                while (cursor.moveToNext()){
+                    publishProgress();
+                    String curTrxUID = cursor.getString(col[COL_TRANS_UID]);
+                    if (!lastTrxUID.equals(curTrxUID)) { // new transaction starts
+                        if (!lastTrxUID.equals("")) { // there's an old transaction, close it
+                            xmlSerializer.endTag(null, GncXmlHelper.TAG_TRN_SPLITS);
+                            xmlSerializer.endTag(null, GncXmlHelper.TAG_TRANSACTION);
+                        }
+                        // new transaction
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_TRANSACTION);
+                        xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_VERSION, GncXmlHelper.BOOK_VERSION);
+                        // transaction id
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_TRX_ID);
+                        xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_TYPE, GncXmlHelper.ATTR_VALUE_GUID);
+                        xmlSerializer.text(curTrxUID);
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_TRX_ID);
+                        // currency
+                        String currencyCode = cursor.getString(col[COL_TRANS_CURRENCY]);
+                        trnCommodity = exportContext.getCommodity(currencyCode);
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_TRX_CURRENCY);
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_COMMODITY_SPACE);
+                        xmlSerializer.text("ISO4217");
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_COMMODITY_SPACE);
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_COMMODITY_ID);
+                        xmlSerializer.text(currencyCode);
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_COMMODITY_ID);
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_TRX_CURRENCY);
+                        // date posted, time which user put on the transaction
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_DATE_POSTED);
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_TS_DATE);
+                        xmlSerializer.textDate(cursor.getLong(col[COL_TRANS_TIME]));
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_TS_DATE);
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_DATE_POSTED);
+
+                        // date entered, time when the transaction was actually created
+                        Timestamp timeEntered = TimestampHelper.getTimestampFromUtcString(cursor.getString(col[COL_TRANS_DATE_POSTED]));
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_DATE_ENTERED);
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_TS_DATE);
+                        xmlSerializer.textDate(timeEntered.getTime());
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_TS_DATE);
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_DATE_ENTERED);
+
+                        // description
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_TRN_DESCRIPTION);
+                        xmlSerializer.text(cursor.getString(col[COL_TRANS_DESC]));
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_TRN_DESCRIPTION);
+                        lastTrxUID = curTrxUID;
+                        // slots
+                        ArrayList<String> slotKey = new ArrayList<>();
+                        ArrayList<String> slotType = new ArrayList<>();
+                        ArrayList<String> slotValue = new ArrayList<>();
+
+                        String notes = cursor.getString(col[COL_TRANS_NOTES]);
+                        if (notes != null && notes.length() > 0) {
+                            slotKey.add(GncXmlHelper.KEY_NOTES);
+                            slotType.add(GncXmlHelper.ATTR_VALUE_STRING);
+                            slotValue.add(notes);
+                        }
+
+                        String scheduledActionUID = cursor.getString(col[COL_TRANS_FROM_SCHED_ACTION]);
+                        if (scheduledActionUID != null && !scheduledActionUID.isEmpty()){
+                            slotKey.add(GncXmlHelper.KEY_FROM_SCHED_ACTION);
+                            slotType.add(GncXmlHelper.ATTR_VALUE_GUID);
+                            slotValue.add(scheduledActionUID);
+                        }
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_TRN_SLOTS);
+                        exportSlots(xmlSerializer, slotKey, slotType, slotValue);
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_TRN_SLOTS);
+
+                        // splits start
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_TRN_SPLITS);
+                    }
+                    xmlSerializer.startTag(null, GncXmlHelper.TAG_TRN_SPLIT);
+                    // split id
+                    xmlSerializer.startTag(null, GncXmlHelper.TAG_SPLIT_ID);
+                    xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_TYPE, GncXmlHelper.ATTR_VALUE_GUID);
+                    xmlSerializer.text(cursor.getString(col[COL_SPLIT_UID]));
+                    xmlSerializer.endTag(null, GncXmlHelper.TAG_SPLIT_ID);
+                    // memo
+                    String memo = cursor.getString(col[COL_SPLIT_MEMO]);
+                    if (memo != null && memo.length() > 0){
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_SPLIT_MEMO);
+                        xmlSerializer.text(memo);
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_SPLIT_MEMO);
+                    }
+                    // reconciled
+                    xmlSerializer.startTag(null, GncXmlHelper.TAG_RECONCILED_STATE);
+                    xmlSerializer.text("n"); //fixme: retrieve reconciled state from the split in the db
+                    xmlSerializer.endTag(null, GncXmlHelper.TAG_RECONCILED_STATE);
+                    //todo: if split is reconciled, add reconciled date
+                    // value, in the transaction's currency
+                    String trxType = cursor.getString(col[COL_SPLIT_TYPE]);
+                    boolean isCredit = trxType.equals("CREDIT");
+                    long splitValueNum = cursor.getLong(col[COL_SPLIT_VALUE_NUM]);
+                    long splitValueDenom = cursor.getLong(col[COL_SPLIT_VALUE_DENOM]);
+                    xmlSerializer.startTag(null, GncXmlHelper.TAG_SPLIT_VALUE);
+                    if (exportTemplates) {
+                        xmlSerializer.textAmount(false, 0, TEMPLATE_AMOUNT_DENOMINATOR);
+                    } else { //when doing normal transaction export
+                        xmlSerializer.textAmount(isCredit, splitValueNum, splitValueDenom);
+                    }
+                    xmlSerializer.endTag(null, GncXmlHelper.TAG_SPLIT_VALUE);
+                    // quantity, in the split account's currency
+                    xmlSerializer.startTag(null, GncXmlHelper.TAG_SPLIT_QUANTITY);
+                    if (exportTemplates) {
+                        xmlSerializer.textAmount(false, 0, TEMPLATE_AMOUNT_DENOMINATOR);
+                    } else {
+                        xmlSerializer.textAmount(isCredit,
+                                cursor.getLong(col[COL_SPLIT_QUANTITY_NUM]),
+                                cursor.getLong(col[COL_SPLIT_QUANTITY_DENOM]));
+                    }
+                    xmlSerializer.endTag(null, GncXmlHelper.TAG_SPLIT_QUANTITY);
+                    // account guid
+                    xmlSerializer.startTag(null, GncXmlHelper.TAG_SPLIT_ACCOUNT);
+                    xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_TYPE, GncXmlHelper.ATTR_VALUE_GUID);
+                    String splitAccountUID;
+                    if (exportTemplates){
+                        //get the UID of the template account
+                         splitAccountUID = mTransactionToTemplateAccountMap.get(curTrxUID).getUID();
+                    } else {
+                        splitAccountUID = cursor.getString(col[COL_SPLIT_ACCT_UID]);
+                    }
+                    xmlSerializer.text(splitAccountUID);
+                    xmlSerializer.endTag(null, GncXmlHelper.TAG_SPLIT_ACCOUNT);
+
+                    //if we are exporting a template transaction, then we need to add some extra slots
+                    if (exportTemplates){
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_SPLIT_SLOTS);
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_SLOT);
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_SLOT_KEY);
+                        xmlSerializer.text(GncXmlHelper.KEY_SCHEDX_ACTION); //FIXME: not all templates may be scheduled actions
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_SLOT_KEY);
+                        xmlSerializer.startTag(null, GncXmlHelper.TAG_SLOT_VALUE);
+                        xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_TYPE, "frame");
+
+                        BigDecimal splitAmount = Money.getBigDecimal(splitValueNum, splitValueDenom);
+                        List<String> slotKeys = new ArrayList<>();
+                        List<String> slotTypes = new ArrayList<>();
+                        List<String> slotValues = new ArrayList<>();
+                        slotKeys.add(GncXmlHelper.KEY_SPLIT_ACCOUNT_SLOT);
+                        slotTypes.add(GncXmlHelper.ATTR_VALUE_GUID);
+                        slotValues.add(cursor.getString(col[COL_SPLIT_ACCT_UID]));
+                        TransactionType type = TransactionType.valueOf(trxType);
+                        if (type == TransactionType.CREDIT){
+                            slotKeys.add(GncXmlHelper.KEY_CREDIT_FORMULA);
+                            slotTypes.add(GncXmlHelper.ATTR_VALUE_STRING);
+                            slotValues.add(GncXmlHelper.formatTemplateSplitAmount(splitAmount));
+                            slotKeys.add(GncXmlHelper.KEY_CREDIT_NUMERIC);
+                            slotTypes.add(GncXmlHelper.ATTR_VALUE_NUMERIC);
+                            slotValues.add(GncXmlHelper.formatSplitAmount(splitAmount, trnCommodity));
+                        } else {
+                            slotKeys.add(GncXmlHelper.KEY_DEBIT_FORMULA);
+                            slotTypes.add(GncXmlHelper.ATTR_VALUE_STRING);
+                            slotValues.add(GncXmlHelper.formatTemplateSplitAmount(splitAmount));
+                            slotKeys.add(GncXmlHelper.KEY_DEBIT_NUMERIC);
+                            slotTypes.add(GncXmlHelper.ATTR_VALUE_NUMERIC);
+                            slotValues.add(GncXmlHelper.formatSplitAmount(splitAmount, trnCommodity));
+                        }
+
+                        exportSlots(xmlSerializer, slotKeys, slotTypes, slotValues);
+
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_SLOT_VALUE);
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_SLOT);
+                        xmlSerializer.endTag(null, GncXmlHelper.TAG_SPLIT_SLOTS);
+                    }
+
+                    xmlSerializer.endTag(null, GncXmlHelper.TAG_TRN_SPLIT);
                 }
-
-                exportSlots(xmlSerializer, slotKeys, slotTypes, slotValues);
-
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_SLOT_VALUE);
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_SLOT);
-                xmlSerializer.endTag(null, GncXmlHelper.TAG_SPLIT_SLOTS);
+            } finally {
+                cursor.close();
             }
-
-            xmlSerializer.endTag(null, GncXmlHelper.TAG_TRN_SPLIT);
         }
         if (!lastTrxUID.equals("")){ // there's an unfinished transaction, close it
             xmlSerializer.endTag(null,GncXmlHelper.TAG_TRN_SPLITS);
             xmlSerializer.endTag(null, GncXmlHelper.TAG_TRANSACTION);
         }
-        cursor.close();
+    }
+
+    /**
+     * Returns the number of splits exported by {@link #exportTransactions(GncXmlSerializer, boolean)}
+     * @param exportTemplates Flag whether to count the splits of templates or of normal transactions
+     * @return Number of splits
+     */
+    private long getExportedSplitsCount(boolean exportTemplates) {
+        return mSplitsDbAdapter.getRecordsCount(SplitEntry.COLUMN_TRANSACTION_UID + " IN (SELECT "
+                + TransactionEntry.COLUMN_UID + " FROM " + TransactionEntry.TABLE_NAME + " WHERE "
+                + TransactionEntry.COLUMN_TEMPLATE + (exportTemplates ? "=1" : "=0") + ")", null);
     }
 
     /**
@@ -498,12 +564,13 @@ public class GncXmlExporter extends Exporter{
      * @param xmlSerializer XML serializer
      * @throws IOException
      */
-    private void exportScheduledTransactions(XmlSerializer xmlSerializer) throws IOException{
+    private void exportScheduledTransactions(GncXmlSerializer xmlSerializer) throws IOException{
         //for now we will export only scheduled transactions to XML
         Cursor cursor = mScheduledActionDbAdapter.fetchAllRecords(
                 ScheduledActionEntry.COLUMN_TYPE + "=?", new String[]{ScheduledAction.ActionType.TRANSACTION.name()}, null);
 
         while (cursor.moveToNext()) {
+            publishProgress();
             ScheduledAction scheduledAction = mScheduledActionDbAdapter.buildModelInstance(cursor);
             String actionUID = scheduledAction.getActionUID();
             Account accountUID = mTransactionToTemplateAccountMap.get(actionUID);
@@ -602,6 +669,7 @@ public class GncXmlExporter extends Exporter{
 
             xmlSerializer.endTag(null, GncXmlHelper.TAG_SCHEDULED_ACTION);
         }
+        cursor.close();
     }
 
     /**
@@ -612,15 +680,15 @@ public class GncXmlExporter extends Exporter{
      * @param timeMillis Date to be formatted and output
      * @throws IOException
      */
-    private void serializeDate(XmlSerializer xmlSerializer, String tag, long timeMillis) throws IOException {
+    private void serializeDate(GncXmlSerializer xmlSerializer, String tag, long timeMillis) throws IOException {
         xmlSerializer.startTag(null, tag);
         xmlSerializer.startTag(null, GncXmlHelper.TAG_GDATE);
-        xmlSerializer.text(GncXmlHelper.DATE_FORMATTER.format(timeMillis));
+        xmlSerializer.textDay(timeMillis);
         xmlSerializer.endTag(null, GncXmlHelper.TAG_GDATE);
         xmlSerializer.endTag(null, tag);
     }
 
-    private void exportCommodities(XmlSerializer xmlSerializer, List<Commodity> commodities) throws IOException {
+    private void exportCommodities(GncXmlSerializer xmlSerializer, List<Commodity> commodities) throws IOException {
         for (Commodity commodity : commodities) {
             xmlSerializer.startTag(null, GncXmlHelper.TAG_COMMODITY);
             xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_VERSION, GncXmlHelper.BOOK_VERSION);
@@ -634,9 +702,10 @@ public class GncXmlExporter extends Exporter{
         }
     }
 
-    private void exportPrices(XmlSerializer xmlSerializer) throws IOException {
+    private void exportPrices(GncXmlSerializer xmlSerializer) throws IOException {
         xmlSerializer.startTag(null, GncXmlHelper.TAG_PRICEDB);
         xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_VERSION, "1");
+        ExportContext exportContext = getExportContext();
         Cursor cursor = mPricesDbAdapter.fetchAllRecords();
         try {
             while(cursor.moveToNext()) {
@@ -652,7 +721,7 @@ public class GncXmlExporter extends Exporter{
                 xmlSerializer.text("ISO4217");
                 xmlSerializer.endTag(null, GncXmlHelper.TAG_COMMODITY_SPACE);
                 xmlSerializer.startTag(null, GncXmlHelper.TAG_COMMODITY_ID);
-                xmlSerializer.text(mCommoditiesDbAdapter.getCurrencyCode(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.PriceEntry.COLUMN_COMMODITY_UID))));
+                xmlSerializer.text(exportContext.getCommodityByUID(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.PriceEntry.COLUMN_COMMODITY_UID))).getCurrencyCode());
                 xmlSerializer.endTag(null, GncXmlHelper.TAG_COMMODITY_ID);
                 xmlSerializer.endTag(null, GncXmlHelper.TAG_PRICE_COMMODITY);
                 // currency
@@ -661,14 +730,14 @@ public class GncXmlExporter extends Exporter{
                 xmlSerializer.text("ISO4217");
                 xmlSerializer.endTag(null, GncXmlHelper.TAG_COMMODITY_SPACE);
                 xmlSerializer.startTag(null, GncXmlHelper.TAG_COMMODITY_ID);
-                xmlSerializer.text(mCommoditiesDbAdapter.getCurrencyCode(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.PriceEntry.COLUMN_CURRENCY_UID))));
+                xmlSerializer.text(exportContext.getCommodityByUID(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.PriceEntry.COLUMN_CURRENCY_UID))).getCurrencyCode());
                 xmlSerializer.endTag(null, GncXmlHelper.TAG_COMMODITY_ID);
                 xmlSerializer.endTag(null, GncXmlHelper.TAG_PRICE_CURRENCY);
                 // time
-                String strDate = GncXmlHelper.formatDate(TimestampHelper.getTimestampFromUtcString(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.PriceEntry.COLUMN_DATE))).getTime());
+                long priceTime = TimestampHelper.getTimestampFromUtcString(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.PriceEntry.COLUMN_DATE))).getTime();
                 xmlSerializer.startTag(null, GncXmlHelper.TAG_PRICE_TIME);
                 xmlSerializer.startTag(null, GncXmlHelper.TAG_TS_DATE);
-                xmlSerializer.text(strDate);
+                xmlSerializer.textDate(priceTime);
                 xmlSerializer.endTag(null, GncXmlHelper.TAG_TS_DATE);
                 xmlSerializer.endTag(null, GncXmlHelper.TAG_PRICE_TIME);
                 // source
@@ -684,8 +753,9 @@ public class GncXmlExporter extends Exporter{
                 }
                 // value
                 xmlSerializer.startTag(null, GncXmlHelper.TAG_PRICE_VALUE);
-                xmlSerializer.text(cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseSchema.PriceEntry.COLUMN_VALUE_NUM))
-                                + "/" + cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseSchema.PriceEntry.COLUMN_VALUE_DENOM)));
+                xmlSerializer.textAmount(false,
+                        cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseSchema.PriceEntry.COLUMN_VALUE_NUM)),
+                        cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseSchema.PriceEntry.COLUMN_VALUE_DENOM)));
                 xmlSerializer.endTag(null, GncXmlHelper.TAG_PRICE_VALUE);
                 xmlSerializer.endTag(null, GncXmlHelper.TAG_PRICE);
             }
@@ -702,7 +772,7 @@ public class GncXmlExporter extends Exporter{
      * @param xmlSerializer XML serializer
      * @param recurrence Recurrence object
      */
-    private void exportRecurrence(XmlSerializer xmlSerializer, Recurrence recurrence) throws IOException{
+    private void exportRecurrence(GncXmlSerializer xmlSerializer, Recurrence recurrence) throws IOException{
         PeriodType periodType = recurrence.getPeriodType();
         xmlSerializer.startTag(null, GncXmlHelper.TAG_RX_MULT);
         xmlSerializer.text(String.valueOf(recurrence.getMultiplier()));
@@ -715,9 +785,10 @@ public class GncXmlExporter extends Exporter{
         serializeDate(xmlSerializer, GncXmlHelper.TAG_RX_START, recurrenceStartTime);
     }
 
-    private void exportBudgets(XmlSerializer xmlSerializer) throws IOException {
+    private void exportBudgets(GncXmlSerializer xmlSerializer) throws IOException {
         Cursor cursor = mBudgetsDbAdapter.fetchAllRecords();
         while(cursor.moveToNext()) {
+            publishProgress();
             Budget budget = mBudgetsDbAdapter.buildModelInstance(cursor);
             xmlSerializer.startTag(null,    GncXmlHelper.TAG_BUDGET);
             xmlSerializer.attribute(null,   GncXmlHelper.ATTR_KEY_VERSION, GncXmlHelper.BOOK_VERSION);
@@ -776,31 +847,20 @@ public class GncXmlExporter extends Exporter{
 
     @Override
     public List<String> generateExport() throws ExporterException {
-        OutputStreamWriter writer = null;
-        String outputFile = getExportCacheFilePath();
-        try {
-            FileOutputStream fileOutputStream = new FileOutputStream(outputFile);
-            BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(fileOutputStream);
-            writer = new OutputStreamWriter(bufferedOutputStream);
+        return generateExportToCacheFile();
+    }
 
+    @Override
+    public boolean generateExport(@NonNull OutputStream outputStream) throws ExporterException {
+        try (OutputStream compressedStream = openCompressedStream(outputStream);
+             Writer writer = new OutputStreamWriter(compressedStream, "UTF-8")) {
             generateExport(writer);
-        } catch (IOException ex){
+        } catch (IOException ex) {
             Crashlytics.log("Error exporting XML");
             Crashlytics.logException(ex);
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    throw new ExporterException(mExportParams, e);
-                }
-            }
+            throw new ExporterException(mExportParams, ex);
         }
-
-        List<String> exportedFiles = new ArrayList<>();
-        exportedFiles.add(outputFile);
-
-        return exportedFiles;
+        return true;
     }
 
     /**
@@ -812,12 +872,8 @@ public class GncXmlExporter extends Exporter{
         try {
             String[] namespaces = new String[]{"gnc", "act", "book", "cd", "cmdty", "price", "slot",
                     "split", "trn", "ts", "sx", "bgt", "recurrence"};
-            XmlSerializer xmlSerializer = XmlPullParserFactory.newInstance().newSerializer();
-            try {
-                xmlSerializer.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true);
-            } catch (IllegalStateException e) {
-                // Feature not supported. No problem
-            }
+            GncXmlSerializer xmlSerializer = new GncXmlSerializer();
+            xmlSerializer.setFeature(GncXmlSerializer.FEATURE_INDENT_OUTPUT, mIndentOutput);
             xmlSerializer.setOutput(writer);
             xmlSerializer.startDocument("utf-8", true);
             // root tag
@@ -850,9 +906,10 @@ public class GncXmlExporter extends Exporter{
             xmlSerializer.text(commodities.size() + "");
             xmlSerializer.endTag(null, GncXmlHelper.TAG_COUNT_DATA);
             //account count
+            long accountCount = mAccountsDbAdapter.getRecordsCount();
             xmlSerializer.startTag(null, GncXmlHelper.TAG_COUNT_DATA);
             xmlSerializer.attribute(null, GncXmlHelper.ATTR_KEY_CD_TYPE, "account");
-            xmlSerializer.text(mAccountsDbAdapter.getRecordsCount() + "");
+            xmlSerializer.text(accountCount + "");
             xmlSerializer.endTag(null, GncXmlHelper.TAG_COUNT_DATA);
             //transaction count
             xmlSerializer.startTag(null, GncXmlHelper.TAG_COUNT_DATA);
@@ -867,6 +924,13 @@ public class GncXmlExporter extends Exporter{
                 xmlSerializer.text(priceCount + "");
                 xmlSerializer.endTag(null, GncXmlHelper.TAG_COUNT_DATA);
             }
+            // one progress step per exported account, split, scheduled transaction and budget
+            boolean hasTemplateTransactions = mTransactionsDbAdapter.getTemplateTransactionsCount() > 0;
+            startProgress(accountCount + getExportedSplitsCount(false)
+                    + (hasTemplateTransactions ? getExportedSplitsCount(true) : 0)
+                    + mScheduledActionDbAdapter.getRecordsCount(ScheduledActionEntry.COLUMN_TYPE + "=?",
+                            new String[]{ScheduledAction.ActionType.TRANSACTION.name()})
+                    + mBudgetsDbAdapter.getRecordsCount());
             // export the commodities used in the DB
             exportCommodities(xmlSerializer, commodities);
             // prices
@@ -879,7 +943,7 @@ public class GncXmlExporter extends Exporter{
             exportTransactions(xmlSerializer, false);
 
             //transaction templates
-            if (mTransactionsDbAdapter.getTemplateTransactionsCount() > 0) {
+            if (hasTemplateTransactions) {
                 xmlSerializer.startTag(null, GncXmlHelper.TAG_TEMPLATE_TRANSACTIONS);
                 exportTransactions(xmlSerializer, true);
                 xmlSerializer.endTag(null, GncXmlHelper.TAG_TEMPLATE_TRANSACTIONS);
@@ -894,6 +958,9 @@ public class GncXmlExporter extends Exporter{
             xmlSerializer.endTag(null, GncXmlHelper.TAG_ROOT);
             xmlSerializer.endDocument();
             xmlSerializer.flush();
+            finishProgress();
+        } catch (ExporterException e) {
+            throw e;
         } catch (Exception e) {
             Crashlytics.logException(e);
             throw new ExporterException(mExportParams, e);
@@ -0,0 +1,511 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.export.xml;
+
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Specialized XML serializer for writing GnuCash XML files.
+ *
+ * <p>GnuCash XML uses a small, fixed vocabulary of qualified tag names and never needs namespace
+ * resolution by the serializer, so this writer skips all the bookkeeping done by the generic
+ * {@link org.xmlpull.v1.XmlPullParserFactory} serializer. Tag names are converted to their opening
+ * and closing character sequences only once, only text and attribute values are escaped, and
+ * output is accumulated in a large internal buffer which is written to the underlying
+ * {@link Writer} in blocks.</p>
+ *
+ * <p>Dates and split amounts can be written with {@link #textDate(long)}, {@link #textDay(long)}
+ * and {@link #textAmount(boolean, long, long)} which format straight into a reusable
+ * {@code char[]} without creating intermediate strings.</p>
+ *
+ * <p>Indentation is enabled through the standard {@link #FEATURE_INDENT_OUTPUT} feature and is off
+ * by default. Backups should leave it off since the whitespace only adds to the file size.</p>
+ */
+public class GncXmlSerializer implements XmlSerializer {
+
+    /**
+     * Standard XmlPull feature for pretty-printing the output
+     */
+    public static final String FEATURE_INDENT_OUTPUT = "http://xmlpull.org/v1/doc/features.html#indent-output";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final char[] INDENT = "  ".toCharArray();
+
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private int mBufferPosition = 0;
+
+    /**
+     * Scratch space for formatting numbers and dates
+     */
+    private final char[] mScratch = new char[48];
+
+    /**
+     * Cache of the start ({@code "<tag"}) and end ({@code "</tag>"}) character sequences of the tags
+     */
+    private final Map<String, char[][]> mTagCache = new HashMap<>();
+
+    private final Calendar mCalendar = Calendar.getInstance();
+
+    private Writer mWriter;
+
+    private String[] mElementStack = new String[16];
+    private int mDepth = 0;
+
+    /**
+     * Flag for a start tag which has not yet been closed with {@code '>'} because attributes may follow
+     */
+    private boolean mPendingStartTag = false;
+
+    /**
+     * Flag indicating if the current element contains child elements (as opposed to only text)
+     */
+    private boolean mHasChildElements = false;
+
+    private boolean mIndent = false;
+
+    @Override
+    public void setFeature(String name, boolean state) throws IllegalArgumentException, IllegalStateException {
+        if (FEATURE_INDENT_OUTPUT.equals(name)) {
+            mIndent = state;
+        } else {
+            throw new IllegalStateException("Unsupported feature: " + name);
+        }
+    }
+
+    @Override
+    public boolean getFeature(String name) {
+        return FEATURE_INDENT_OUTPUT.equals(name) && mIndent;
+    }
+
+    @Override
+    public void setProperty(String name, Object value) throws IllegalArgumentException, IllegalStateException {
+        throw new IllegalStateException("Unsupported property: " + name);
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return null;
+    }
+
+    @Override
+    public void setOutput(OutputStream os, String encoding) throws IOException, IllegalArgumentException, IllegalStateException {
+        try {
+            setOutput(new OutputStreamWriter(os, encoding == null ? "UTF-8" : encoding));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public void setOutput(Writer writer) throws IOException, IllegalArgumentException, IllegalStateException {
+        mWriter = writer;
+        mBufferPosition = 0;
+        mDepth = 0;
+        mPendingStartTag = false;
+        mHasChildElements = false;
+    }
+
+    @Override
+    public void startDocument(String encoding, Boolean standalone) throws IOException, IllegalArgumentException, IllegalStateException {
+        write("<?xml version='1.0' encoding='");
+        write(encoding == null ? "UTF-8" : encoding);
+        write('\'');
+        if (standalone != null) {
+            write(" standalone='");
+            write(standalone ? "yes" : "no");
+            write('\'');
+        }
+        write(" ?>");
+    }
+
+    @Override
+    public void endDocument() throws IOException, IllegalArgumentException, IllegalStateException {
+        while (mDepth > 0) {
+            endTag(null, mElementStack[mDepth - 1]);
+        }
+        if (mIndent)
+            write('\n');
+        flush();
+    }
+
+    @Override
+    public void setPrefix(String prefix, String namespace) throws IOException, IllegalArgumentException, IllegalStateException {
+        //GnuCash XML declares its namespaces as attributes on the root tag
+    }
+
+    @Override
+    public String getPrefix(String namespace, boolean generatePrefix) throws IllegalArgumentException {
+        return null;
+    }
+
+    @Override
+    public int getDepth() {
+        return mDepth;
+    }
+
+    @Override
+    public String getNamespace() {
+        return null;
+    }
+
+    @Override
+    public String getName() {
+        return mDepth == 0 ? null : mElementStack[mDepth - 1];
+    }
+
+    @Override
+    public GncXmlSerializer startTag(String namespace, String name) throws IOException, IllegalArgumentException, IllegalStateException {
+        closePendingStartTag();
+        if (mIndent)
+            writeIndent(mDepth);
+
+        if (mDepth == mElementStack.length) {
+            mElementStack = Arrays.copyOf(mElementStack, mDepth * 2);
+        }
+        mElementStack[mDepth++] = name;
+
+        write(getTagSequences(name)[0]);
+        mPendingStartTag = true;
+        mHasChildElements = false;
+        return this;
+    }
+
+    @Override
+    public GncXmlSerializer attribute(String namespace, String name, String value) throws IOException, IllegalArgumentException, IllegalStateException {
+        if (!mPendingStartTag)
+            throw new IllegalStateException("Attributes can only be written directly after a start tag");
+        write(' ');
+        write(name);
+        write("=\"");
+        writeEscaped(value, true);
+        write('"');
+        return this;
+    }
+
+    @Override
+    public GncXmlSerializer endTag(String namespace, String name) throws IOException, IllegalArgumentException, IllegalStateException {
+        if (mDepth == 0)
+            throw new IllegalStateException("No open tag to close: " + name);
+        mDepth--;
+        if (mPendingStartTag) {
+            write(" />");
+            mPendingStartTag = false;
+        } else {
+            if (mIndent && mHasChildElements)
+                writeIndent(mDepth);
+            write(getTagSequences(mElementStack[mDepth])[1]);
+        }
+        mHasChildElements = true;
+        return this;
+    }
+
+    @Override
+    public GncXmlSerializer text(String text) throws IOException, IllegalArgumentException, IllegalStateException {
+        if (text == null)
+            return this;
+        closePendingStartTag();
+        writeEscaped(text, false);
+        return this;
+    }
+
+    @Override
+    public GncXmlSerializer text(char[] buf, int start, int len) throws IOException, IllegalArgumentException, IllegalStateException {
+        return text(new String(buf, start, len));
+    }
+
+    /**
+     * Writes a timestamp in the format used by {@link GncXmlHelper#TIME_FORMATTER}
+     * i.e. {@code yyyy-MM-dd HH:mm:ss Z}, in the default time zone
+     * @param timeMillis Time in milliseconds since epoch
+     * @return This serializer
+     * @throws IOException if the output could not be written
+     */
+    public GncXmlSerializer textDate(long timeMillis) throws IOException {
+        closePendingStartTag();
+        mCalendar.setTimeInMillis(timeMillis);
+        int pos = formatDay(mScratch, 0);
+        char[] chars = mScratch;
+        chars[pos++] = ' ';
+        pos = formatTwoDigits(chars, pos, mCalendar.get(Calendar.HOUR_OF_DAY));
+        chars[pos++] = ':';
+        pos = formatTwoDigits(chars, pos, mCalendar.get(Calendar.MINUTE));
+        chars[pos++] = ':';
+        pos = formatTwoDigits(chars, pos, mCalendar.get(Calendar.SECOND));
+        chars[pos++] = ' ';
+        int offsetMinutes = (mCalendar.get(Calendar.ZONE_OFFSET) + mCalendar.get(Calendar.DST_OFFSET)) / 60000;
+        if (offsetMinutes < 0) {
+            chars[pos++] = '-';
+            offsetMinutes = -offsetMinutes;
+        } else {
+            chars[pos++] = '+';
+        }
+        pos = formatTwoDigits(chars, pos, offsetMinutes / 60);
+        pos = formatTwoDigits(chars, pos, offsetMinutes % 60);
+        write(chars, 0, pos);
+        return this;
+    }
+
+    /**
+     * Writes a date in the format used by {@link GncXmlHelper#DATE_FORMATTER} i.e. {@code yyyy-MM-dd},
+     * in the default time zone
+     * @param timeMillis Time in milliseconds since epoch
+     * @return This serializer
+     * @throws IOException if the output could not be written
+     */
+    public GncXmlSerializer textDay(long timeMillis) throws IOException {
+        closePendingStartTag();
+        mCalendar.setTimeInMillis(timeMillis);
+        int pos = formatDay(mScratch, 0);
+        write(mScratch, 0, pos);
+        return this;
+    }
+
+    /**
+     * Writes an amount in the GnuCash {@code num/denom} notation e.g. {@code -2550/100}
+     * @param negative {@code true} if the amount should be prefixed with a minus sign
+     * @param numerator Numerator of the amount
+     * @param denominator Denominator of the amount
+     * @return This serializer
+     * @throws IOException if the output could not be written
+     */
+    public GncXmlSerializer textAmount(boolean negative, long numerator, long denominator) throws IOException {
+        closePendingStartTag();
+        int pos = 0;
+        if (negative)
+            mScratch[pos++] = '-';
+        pos = formatLong(mScratch, pos, numerator);
+        mScratch[pos++] = '/';
+        pos = formatLong(mScratch, pos, denominator);
+        write(mScratch, 0, pos);
+        return this;
+    }
+
+    @Override
+    public void cdsect(String text) throws IOException, IllegalArgumentException, IllegalStateException {
+        closePendingStartTag();
+        write("<![CDATA[");
+        write(text);
+        write("]]>");
+    }
+
+    @Override
+    public void entityRef(String text) throws IOException, IllegalArgumentException, IllegalStateException {
+        closePendingStartTag();
+        write('&');
+        write(text);
+        write(';');
+    }
+
+    @Override
+    public void processingInstruction(String text) throws IOException, IllegalArgumentException, IllegalStateException {
+        closePendingStartTag();
+        write("<?");
+        write(text);
+        write("?>");
+    }
+
+    @Override
+    public void comment(String text) throws IOException, IllegalArgumentException, IllegalStateException {
+        closePendingStartTag();
+        write("<!--");
+        write(text);
+        write("-->");
+    }
+
+    @Override
+    public void docdecl(String text) throws IOException, IllegalArgumentException, IllegalStateException {
+        write("<!DOCTYPE");
+        write(text);
+        write('>');
+    }
+
+    @Override
+    public void ignorableWhitespace(String text) throws IOException, IllegalArgumentException, IllegalStateException {
+        closePendingStartTag();
+        write(text);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        closePendingStartTag();
+        flushBuffer();
+        mWriter.flush();
+    }
+
+    /**
+     * Returns the cached start and end character sequences for the tag {@code name}
+     * @param name Qualified tag name
+     * @return Array with the start sequence {@code "<name"} at index 0 and
+     * the end sequence {@code "</name>"} at index 1
+     */
+    private char[][] getTagSequences(String name) {
+        char[][] sequences = mTagCache.get(name);
+        if (sequences == null) {
+            sequences = new char[][]{("<" + name).toCharArray(), ("</" + name + ">").toCharArray()};
+            mTagCache.put(name, sequences);
+        }
+        return sequences;
+    }
+
+    private void closePendingStartTag() throws IOException {
+        if (mPendingStartTag) {
+            write('>');
+            mPendingStartTag = false;
+        }
+    }
+
+    private void writeIndent(int depth) throws IOException {
+        write('\n');
+        for (int i = 0; i < depth; i++) {
+            write(INDENT, 0, INDENT.length);
+        }
+    }
+
+    /**
+     * Writes {@code text} escaping the XML markup characters.
+     * Runs of characters which need no escaping are copied in one go.
+     * @param text Text to write
+     * @param isAttribute {@code true} if the text is an attribute value and quotes should also be escaped
+     */
+    private void writeEscaped(String text, boolean isAttribute) throws IOException {
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            String replacement;
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '"':
+                    replacement = isAttribute ? "&quot;" : null;
+                    break;
+                default:
+                    replacement = null;
+            }
+            if (replacement != null) {
+                write(text, start, i);
+                write(replacement);
+                start = i + 1;
+            }
+        }
+        write(text, start, length);
+    }
+
+    private int formatDay(char[] chars, int pos) {
+        int year = mCalendar.get(Calendar.YEAR);
+        pos = formatTwoDigits(chars, pos, year / 100);
+        pos = formatTwoDigits(chars, pos, year % 100);
+        chars[pos++] = '-';
+        pos = formatTwoDigits(chars, pos, mCalendar.get(Calendar.MONTH) + 1);
+        chars[pos++] = '-';
+        pos = formatTwoDigits(chars, pos, mCalendar.get(Calendar.DAY_OF_MONTH));
+        return pos;
+    }
+
+    private static int formatTwoDigits(char[] chars, int pos, int value) {
+        chars[pos++] = (char) ('0' + value / 10);
+        chars[pos++] = (char) ('0' + value % 10);
+        return pos;
+    }
+
+    private static int formatLong(char[] chars, int pos, long value) {
+        if (value == Long.MIN_VALUE) {
+            String digits = Long.toString(value);
+            digits.getChars(0, digits.length(), chars, pos);
+            return pos + digits.length();
+        }
+        if (value < 0) {
+            chars[pos++] = '-';
+            value = -value;
+        }
+        int end = pos;
+        long remainder = value;
+        do {
+            end++;
+            remainder /= 10;
+        } while (remainder != 0);
+
+        int index = end;
+        do {
+            chars[--index] = (char) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        return end;
+    }
+
+    private void write(char c) throws IOException {
+        if (mBufferPosition == BUFFER_SIZE)
+            flushBuffer();
+        mBuffer[mBufferPosition++] = c;
+    }
+
+    private void write(char[] chars) throws IOException {
+        write(chars, 0, chars.length);
+    }
+
+    private void write(char[] chars, int offset, int length) throws IOException {
+        if (length > BUFFER_SIZE - mBufferPosition) {
+            flushBuffer();
+            if (length > BUFFER_SIZE) {
+                mWriter.write(chars, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(chars, offset, mBuffer, mBufferPosition, length);
+        mBufferPosition += length;
+    }
+
+    private void write(String text) throws IOException {
+        write(text, 0, text.length());
+    }
+
+    private void write(String text, int start, int end) throws IOException {
+        int length = end - start;
+        if (length > BUFFER_SIZE - mBufferPosition) {
+            flushBuffer();
+            if (length > BUFFER_SIZE) {
+                mWriter.write(text, start, length);
+                return;
+            }
+        }
+        text.getChars(start, end, mBuffer, mBufferPosition);
+        mBufferPosition += length;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (mBufferPosition > 0) {
+            mWriter.write(mBuffer, 0, mBufferPosition);
+            mBufferPosition = 0;
+        }
+    }
+}
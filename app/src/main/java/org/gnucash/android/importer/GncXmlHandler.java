@@ -161,6 +161,11 @@ public class GncXmlHandler extends DefaultHandler {
      */
     List<Transaction> mTemplateTransactions;
 
+    /**
+     * Template transactions by GUID, for generating the transactions of scheduled actions
+     */
+    Map<String, Transaction> mTemplateTransactionMap;
+
     /**
      * Accumulate attributes of splits found in this object
      */
@@ -318,6 +323,7 @@ public class GncXmlHandler extends DefaultHandler {
 
         mTemplatAccountList = new ArrayList<>();
         mTemplateTransactions = new ArrayList<>();
+        mTemplateTransactionMap = new HashMap<>();
         mTemplateAccountToTransactionMap = new HashMap<>();
 
         mAutoBalanceSplits = new ArrayList<>();
@@ -696,8 +702,10 @@ public class GncXmlHandler extends DefaultHandler {
                     mAutoBalanceSplits.add(imbSplit);
                 }
                 if (mInTemplates){
-                    if (!mIgnoreTemplateTransaction)
+                    if (!mIgnoreTemplateTransaction) {
                         mTemplateTransactions.add(mTransaction);
+                        mTemplateTransactionMap.put(mTransaction.getUID(), mTransaction);
+                    }
                 } else {
                     mTransactionList.add(mTransaction);
                 }
@@ -1094,31 +1102,35 @@ public class GncXmlHandler extends DefaultHandler {
             return 0;
         }
 
+        Transaction templateTransaction = mTemplateTransactionMap.get(scheduledAction.getActionUID());
+        if (templateTransaction == null)
+            return 0;
+
         long lastRuntime = scheduledAction.getStartTime();
         if (scheduledAction.getLastRunTime() > 0){
             lastRuntime = scheduledAction.getLastRunTime();
         }
 
+        int maxCount = scheduledAction.getTotalPlannedExecutionCount() > 0
+                ? scheduledAction.getTotalPlannedExecutionCount() - scheduledAction.getExecutionCount()
+                : Integer.MAX_VALUE;
+        List<Long> transactionTimes = scheduledAction.getRecurrence().getOccurrencesBetween(
+                scheduledAction.getStartTime(), lastRuntime, System.currentTimeMillis(), maxCount);
+
         int generatedTransactionCount = 0;
-        long period = scheduledAction.getPeriod();
-        final String actionUID = scheduledAction.getActionUID();
-        while ((lastRuntime = lastRuntime + period) <= System.currentTimeMillis()){
-            for (Transaction templateTransaction : mTemplateTransactions) {
-                if (templateTransaction.getUID().equals(actionUID)){
-                    Transaction transaction = new Transaction(templateTransaction, true);
-                    transaction.setTime(lastRuntime);
-                    transaction.setScheduledActionUID(scheduledAction.getUID());
-                    mTransactionList.add(transaction);
-                    //autobalance splits are generated with the currency of the transactions as the GUID
-                    //so we add them to the mAutoBalanceSplits which will be updated to real GUIDs before saving
-                    List<Split> autoBalanceSplits = transaction.getSplits(transaction.getCurrencyCode());
-                    mAutoBalanceSplits.addAll(autoBalanceSplits);
-                    scheduledAction.setExecutionCount(scheduledAction.getExecutionCount() + 1);
-                    ++generatedTransactionCount;
-                    break;
-                }
-            }
+        for (long transactionTime : transactionTimes) {
+            Transaction transaction = new Transaction(templateTransaction, true);
+            transaction.setTime(transactionTime);
+            transaction.setScheduledActionUID(scheduledAction.getUID());
+            mTransactionList.add(transaction);
+            //autobalance splits are generated with the currency of the transactions as the GUID
+            //so we add them to the mAutoBalanceSplits which will be updated to real GUIDs before saving
+            List<Split> autoBalanceSplits = transaction.getSplits(transaction.getCurrencyCode());
+            mAutoBalanceSplits.addAll(autoBalanceSplits);
+            ++generatedTransactionCount;
+            lastRuntime = transactionTime;
         }
+        scheduledAction.setExecutionCount(scheduledAction.getExecutionCount() + generatedTransactionCount);
         scheduledAction.setLastRun(lastRuntime);
         return generatedTransactionCount;
     }
@@ -33,6 +33,8 @@ import com.crashlytics.android.Crashlytics;
 import org.gnucash.android.R;
 import org.gnucash.android.db.DatabaseSchema;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
+import org.gnucash.android.db.adapter.ScheduledActionDbAdapter;
+import org.gnucash.android.service.ScheduledActionService;
 import org.gnucash.android.ui.util.TaskDelegate;
 import org.gnucash.android.util.BookUtils;
 
@@ -136,8 +138,11 @@ public class ImportAsyncTask extends AsyncTask<Uri, Void, Boolean> {
         int message = importSuccess ? R.string.toast_success_importing_accounts : R.string.toast_error_importing_accounts;
         Toast.makeText(mContext, message, Toast.LENGTH_SHORT).show();
 
-        if (mImportedBookUID != null)
+        if (mImportedBookUID != null) {
             BookUtils.loadBook(mImportedBookUID);
+            //the imported book may contain scheduled actions which are due earlier than the alarm
+            ScheduledActionService.requestRunAt(mContext, ScheduledActionDbAdapter.getInstance().getNextRunTime());
+        }
 
         if (mDelegate != null)
             mDelegate.onTaskComplete();
@@ -267,11 +267,11 @@ public class Account extends BaseModel {
      * @return {@link Money} aggregate amount of all transactions in account.
      */
     public Money getBalance() {
-        Money balance = Money.createZeroInstance(mCommodity.getCurrencyCode());
+        MoneyAccumulator balance = new MoneyAccumulator(mCommodity);
         for (Transaction transaction : mTransactionsList) {
-            balance = balance.add(transaction.getBalance(getUID()));
+            balance.add(transaction.getBalance(getUID()));
         }
-        return balance;
+        return balance.toMoney();
     }
 
     /**
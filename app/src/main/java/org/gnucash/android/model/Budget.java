@@ -173,19 +173,20 @@ public class Budget extends BaseModel {
      * @return Money sum of all amounts
      */
     public Money getAmountSum(){
-        Money sum = null; //we explicitly allow this null instead of a money instance, because this method should never return null for a budget
+        MoneyAccumulator sum = null; //we explicitly allow this null instead of a money instance, because this method should never return null for a budget
         for (BudgetAmount budgetAmount : mBudgetAmounts) {
             if (sum == null){
-                sum = budgetAmount.getAmount();
+                sum = new MoneyAccumulator(budgetAmount.getAmount().getCommodity());
+                sum.add(budgetAmount.getAmount());
             } else {
                 try {
-                    sum = sum.add(budgetAmount.getAmount().abs());
+                    sum.add(budgetAmount.getAmount().abs());
                 } catch (Money.CurrencyMismatchException ex){
                     Log.i(getClass().getSimpleName(), "Skip some budget amounts with different currency");
                 }
             }
         }
-        return sum;
+        return sum == null ? null : sum.toMoney();
     }
 
     /**
@@ -35,6 +35,12 @@ import java.util.Locale;
  * Money internally uses {@link BigDecimal} to represent the amounts, which enables it 
  * to maintain high precision afforded by BigDecimal. Money objects are immutable and
  * most operations return new Money objects.
+ * <p>Amounts which fit are also held as a {@code long} number of units at a decimal scale,
+ * e.g. 32.50$ as 3250 units at scale 2. Additions, subtractions and comparisons of amounts
+ * at the scale of their commodity are then done on the units, without creating {@link BigDecimal}s.
+ * The {@link BigDecimal} value is computed when it is first needed.
+ * Operations which would overflow or need rounding fall back to {@link BigDecimal}.
+ * For summing many amounts, see {@link MoneyAccumulator}.</p>
  * Money String constructors should not be passed any locale-formatted numbers. Only
  * {@link Locale#US} is supported e.g. "2.45" will be parsed as 2.45 meanwhile 
  * "2,45" will be parsed to 245 although that could be a decimal in {@link Locale#GERMAN}
@@ -50,10 +56,35 @@ public final class Money implements Comparable<Money>{
 	private Commodity mCommodity;
 
 	/**
-	 * Amount value held by this object
+	 * Amount value held by this object.
+	 * <p>For compact amounts, this is only computed when first needed</p>
 	 */
 	private BigDecimal mAmount;
 
+	/**
+	 * Whether the amount is held in {@link #mUnits} at {@link #mUnitScale}
+	 */
+	private boolean mCompact;
+
+	/**
+	 * Amount as number of units at {@link #mUnitScale}. Only valid if {@link #mCompact}
+	 */
+	private long mUnits;
+
+	/**
+	 * Decimal scale of {@link #mUnits}
+	 */
+	private int mUnitScale;
+
+	/**
+	 * Powers of ten which fit in a {@code long}, indexed by the exponent
+	 */
+	private static final long[] POWERS_OF_TEN = {
+			1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+			10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+			1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L
+	};
+
 	/**
 	 * Rounding mode to be applied when performing operations
 	 * Defaults to {@link RoundingMode#HALF_EVEN}
@@ -130,10 +161,35 @@ public final class Money implements Comparable<Money>{
 	 * @param currencyCode 3-character currency code string
 	 */
 	public Money(long numerator, long denominator, String currencyCode){
-		mAmount = getBigDecimal(numerator, denominator);
+		if (numerator == 0 && denominator == 0) {
+			denominator = 1;
+		}
+		setUnits(numerator, Integer.numberOfTrailingZeros((int) denominator)); //same scale as getBigDecimal()
 		setCommodity(currencyCode);
 	}
 
+	/**
+	 * Creates a new money amount from a number of units at a decimal scale.
+	 * <p>The scale is not adjusted to the commodity, so callers should pass units at the scale of the commodity</p>
+	 * @param units Number of units
+	 * @param scale Decimal scale of the units
+	 * @param commodity Commodity of the money
+	 */
+	private Money(long units, int scale, @NonNull Commodity commodity){
+		mCommodity = commodity;
+		setUnits(units, scale);
+	}
+
+	/**
+	 * Creates a money amount from a number of units at the scale of the commodity
+	 * @param units Number of units
+	 * @param commodity Commodity of the money
+	 * @return Money object
+	 */
+	static Money fromUnits(long units, @NonNull Commodity commodity){
+		return new Money(units, commodity.getSmallestFractionDigits(), commodity);
+	}
+
     /**
      * Copy constructor.
      * Creates a new Money object which is a clone of <code>money</code>
@@ -141,7 +197,11 @@ public final class Money implements Comparable<Money>{
      */
     public Money(Money money){
 		setCommodity(money.getCommodity());
-		setAmount(money.asBigDecimal());
+		if (money.mCompact && money.mUnitScale == mCommodity.getSmallestFractionDigits()) {
+			setUnits(money.mUnits, money.mUnitScale);
+		} else {
+			setAmount(money.asBigDecimal());
+		}
     }
 
     /**
@@ -169,7 +229,7 @@ public final class Money implements Comparable<Money>{
 	 * @return {@link Money} object with same value as current object, but with new <code>currency</code>
 	 */
     public Money withCurrency(@NonNull Commodity commodity){
-		return new Money(mAmount, commodity);
+		return new Money(getAmount(), commodity);
 	}
 
 	/**
@@ -195,12 +255,20 @@ public final class Money implements Comparable<Money>{
 	 * @return GnuCash numerator for this amount
 	 */
 	public long getNumerator() {
+		if (mCompact && mUnitScale <= getScale()) {
+			try {
+				return scaleUnits(mUnits, getScale() - mUnitScale);
+			} catch (ArithmeticException e) {
+				//fall through to BigDecimal, which reports the overflow
+			}
+		}
+		BigDecimal amount = getAmount();
 		try {
-			return mAmount.scaleByPowerOfTen(getScale()).longValueExact();
+			return amount.scaleByPowerOfTen(getScale()).longValueExact();
 		} catch (ArithmeticException e) {
 			String msg = "Currency " + mCommodity.getCurrencyCode() +
 					" with scale " + getScale() +
-					" has amount " + mAmount.toString();
+					" has amount " + amount.toString();
 			Crashlytics.log(msg);
 			Log.e(getClass().getName(), msg);
 			throw e;
@@ -214,6 +282,8 @@ public final class Money implements Comparable<Money>{
 	 */
 	public long getDenominator() {
 		int scale = getScale();
+		if (scale < POWERS_OF_TEN.length)
+			return POWERS_OF_TEN[scale];
 		return BigDecimal.ONE.scaleByPowerOfTen(scale).longValueExact();
 	}
 
@@ -225,7 +295,7 @@ public final class Money implements Comparable<Money>{
 	private int getScale() {
 		int scale = mCommodity.getSmallestFractionDigits();
 		if (scale < 0) {
-			scale = mAmount.scale();
+			scale = getAmount().scale();
 		}
 		if (scale < 0) {
 			scale = 0;
@@ -239,7 +309,7 @@ public final class Money implements Comparable<Money>{
 	 * @return {@link BigDecimal} valure of amount in object
 	 */
 	public BigDecimal asBigDecimal() {
-		return mAmount.setScale(mCommodity.getSmallestFractionDigits(), RoundingMode.HALF_EVEN);
+		return getAmount().setScale(mCommodity.getSmallestFractionDigits(), RoundingMode.HALF_EVEN);
 	}
 	
 	/**
@@ -247,7 +317,7 @@ public final class Money implements Comparable<Money>{
 	 * @return Double value of the amount in the object
 	 */
 	public double asDouble(){
-		return mAmount.doubleValue();
+		return getAmount().doubleValue();
 	}
 
 	/**
@@ -307,7 +377,9 @@ public final class Money implements Comparable<Money>{
 	 * @return Negated <code>Money</code> object
 	 */
     public Money negate(){
-		return new Money(mAmount.negate(), mCommodity);
+		if (hasCommodityScale() && mUnits != Long.MIN_VALUE)
+			return new Money(-mUnits, mUnitScale, mCommodity);
+		return new Money(getAmount().negate(), mCommodity);
 	}
 	
 	/**
@@ -316,6 +388,100 @@ public final class Money implements Comparable<Money>{
 	 */
 	private void setAmount(@NonNull BigDecimal amount) {
 		mAmount = amount.setScale(mCommodity.getSmallestFractionDigits(), ROUNDING_MODE);
+		BigInteger unscaled = mAmount.unscaledValue();
+		mCompact = unscaled.bitLength() < Long.SIZE;
+		if (mCompact) {
+			mUnits = unscaled.longValue();
+			mUnitScale = mAmount.scale();
+		}
+	}
+
+	/**
+	 * Sets the amount value of this <code>Money</code> object as a number of units.
+	 * <p>The {@link BigDecimal} value is computed when it is first needed</p>
+	 * @param units Number of units
+	 * @param scale Decimal scale of the units
+	 */
+	private void setUnits(long units, int scale) {
+		mUnits = units;
+		mUnitScale = scale;
+		mCompact = true;
+		mAmount = null;
+	}
+
+	/**
+	 * Returns the amount held by this object, without adjusting its scale
+	 * @return {@link BigDecimal} value of the amount
+	 */
+	BigDecimal getAmount() {
+		BigDecimal amount = mAmount;
+		if (amount == null) {
+			//computing it twice on different threads does no harm, since BigDecimal is immutable
+			amount = BigDecimal.valueOf(mUnits, mUnitScale);
+			mAmount = amount;
+		}
+		return amount;
+	}
+
+	/**
+	 * Returns {@code true} if the amount is held as units at the scale of the commodity.
+	 * Only such amounts take part in the {@code long} arithmetic
+	 */
+	boolean hasCommodityScale() {
+		return isCompactAt(mCommodity.getSmallestFractionDigits());
+	}
+
+	/**
+	 * Returns {@code true} if the amount is held as units at the decimal {@code scale}
+	 */
+	boolean isCompactAt(int scale) {
+		return mCompact && mUnitScale == scale;
+	}
+
+	/**
+	 * Returns the number of units at the scale of the commodity.
+	 * Only valid if {@link #hasCommodityScale()}
+	 */
+	long getUnits() {
+		return mUnits;
+	}
+
+	/**
+	 * Returns the sum of two {@code long} values
+	 * @throws ArithmeticException if the sum overflows
+	 */
+	static long addUnits(long x, long y) {
+		long sum = x + y;
+		if (((x ^ sum) & (y ^ sum)) < 0)
+			throw new ArithmeticException("long overflow");
+		return sum;
+	}
+
+	/**
+	 * Returns the difference of two {@code long} values
+	 * @throws ArithmeticException if the difference overflows
+	 */
+	static long subtractUnits(long x, long y) {
+		long difference = x - y;
+		if (((x ^ y) & (x ^ difference)) < 0)
+			throw new ArithmeticException("long overflow");
+		return difference;
+	}
+
+	/**
+	 * Multiplies {@code units} by 10 raised to the power {@code exponent}
+	 * @throws ArithmeticException if the product overflows
+	 */
+	private static long scaleUnits(long units, int exponent) {
+		if (exponent == 0 || units == 0)
+			return units;
+		if (exponent >= POWERS_OF_TEN.length)
+			throw new ArithmeticException("long overflow");
+		long factor = POWERS_OF_TEN[exponent];
+		long product = units * factor;
+		if (product / factor != units)
+			throw new ArithmeticException("long overflow");
+		return product;
 	}
 
 	/**
@@ -330,7 +496,14 @@ public final class Money implements Comparable<Money>{
 		if (!mCommodity.equals(addend.mCommodity))
 			throw new CurrencyMismatchException();
 		
-		BigDecimal bigD = mAmount.add(addend.mAmount);
+		if (hasCommodityScale() && addend.hasCommodityScale()) {
+			try {
+				return new Money(addUnits(mUnits, addend.mUnits), mUnitScale, mCommodity);
+			} catch (ArithmeticException e) {
+				//overflow, use BigDecimal
+			}
+		}
+		BigDecimal bigD = getAmount().add(addend.getAmount());
 		return new Money(bigD, mCommodity);
 	}
 
@@ -346,7 +519,14 @@ public final class Money implements Comparable<Money>{
 		if (!mCommodity.equals(subtrahend.mCommodity))
 			throw new CurrencyMismatchException();
 		
-		BigDecimal bigD = mAmount.subtract(subtrahend.mAmount);		
+		if (hasCommodityScale() && subtrahend.hasCommodityScale()) {
+			try {
+				return new Money(subtractUnits(mUnits, subtrahend.mUnits), mUnitScale, mCommodity);
+			} catch (ArithmeticException e) {
+				//overflow, use BigDecimal
+			}
+		}
+		BigDecimal bigD = getAmount().subtract(subtrahend.getAmount());
 		return new Money(bigD, mCommodity);
 	}
 	
@@ -363,7 +543,7 @@ public final class Money implements Comparable<Money>{
 		if (!mCommodity.equals(divisor.mCommodity))
 			throw new CurrencyMismatchException();
 		
-		BigDecimal bigD = mAmount.divide(divisor.mAmount, mCommodity.getSmallestFractionDigits(), ROUNDING_MODE);
+		BigDecimal bigD = getAmount().divide(divisor.getAmount(), mCommodity.getSmallestFractionDigits(), ROUNDING_MODE);
 		return new Money(bigD, mCommodity);
 	}
 	
@@ -390,7 +570,7 @@ public final class Money implements Comparable<Money>{
 		if (!mCommodity.equals(money.mCommodity))
 			throw new CurrencyMismatchException();
 		
-		BigDecimal bigD = mAmount.multiply(money.mAmount);		
+		BigDecimal bigD = getAmount().multiply(money.getAmount());		
 		return new Money(bigD, mCommodity);
 	}
 	
@@ -413,7 +593,7 @@ public final class Money implements Comparable<Money>{
 	 * @return Money object whose value is the product of this objects values and <code>multiplier</code>
 	 */
 	public Money multiply(@NonNull BigDecimal multiplier){
-		return new Money(mAmount.multiply(multiplier), mCommodity);
+		return new Money(getAmount().multiply(multiplier), mCommodity);
 	}
 
 	/**
@@ -421,7 +601,9 @@ public final class Money implements Comparable<Money>{
 	 * @return <code>true</code> if the amount is negative, <code>false</code> otherwise.
 	 */
 	public boolean isNegative(){
-		return mAmount.compareTo(BigDecimal.ZERO) == -1;
+		if (mCompact)
+			return mUnits < 0;
+		return getAmount().compareTo(BigDecimal.ZERO) == -1;
 	}
 	
 	/**
@@ -432,7 +614,7 @@ public final class Money implements Comparable<Money>{
 	 * @return String representation of the amount (without currency) of the Money object
 	 */
 	public String toPlainString(){
-		return mAmount.setScale(mCommodity.getSmallestFractionDigits(), ROUNDING_MODE).toPlainString();
+		return getAmount().setScale(mCommodity.getSmallestFractionDigits(), ROUNDING_MODE).toPlainString();
 	}
 
 	/**
@@ -458,7 +640,7 @@ public final class Money implements Comparable<Money>{
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + (mAmount.hashCode());
+		result = prime * result + (getAmount().hashCode());
 		result = prime * result + (mCommodity.hashCode());
 		return result;
 	}
@@ -477,7 +659,11 @@ public final class Money implements Comparable<Money>{
 		if (getClass() != obj.getClass())
 			return false;
 		Money other = (Money) obj;
-		if (!mAmount.equals(other.mAmount))
+		if (mCompact && other.mCompact) {
+			//same as BigDecimal.equals(), which compares value and scale
+			if (mUnits != other.mUnits || mUnitScale != other.mUnitScale)
+				return false;
+		} else if (!getAmount().equals(other.getAmount()))
 			return false;
 		if (!mCommodity.equals(other.mCommodity))
 			return false;
@@ -488,7 +674,9 @@ public final class Money implements Comparable<Money>{
 	public int compareTo(@NonNull Money another) {
 		if (!mCommodity.equals(another.mCommodity))
 			throw new CurrencyMismatchException();
-		return mAmount.compareTo(another.mAmount);
+		if (mCompact && another.mCompact && mUnitScale == another.mUnitScale)
+			return mUnits < another.mUnits ? -1 : (mUnits == another.mUnits ? 0 : 1);
+		return getAmount().compareTo(another.getAmount());
 	}
 
     /**
@@ -496,7 +684,9 @@ public final class Money implements Comparable<Money>{
      * @return Money object with absolute value of this instance
      */
     public Money abs() {
-        return new Money(mAmount.abs(), mCommodity);
+        if (hasCommodityScale() && mUnits != Long.MIN_VALUE)
+            return new Money(Math.abs(mUnits), mUnitScale, mCommodity);
+        return new Money(getAmount().abs(), mCommodity);
     }
 
 	/**
@@ -504,7 +694,9 @@ public final class Money implements Comparable<Money>{
 	 * @return {@code true} if this money amount is zero, {@code false} otherwise
 	 */
     public boolean isAmountZero() {
-		return mAmount.compareTo(BigDecimal.ZERO) == 0;
+		if (mCompact)
+			return mUnits == 0;
+		return getAmount().compareTo(BigDecimal.ZERO) == 0;
 	}
 
 	public class CurrencyMismatchException extends IllegalArgumentException{
@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.model;
+
+import android.support.annotation.NonNull;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Mutable sum of {@link Money} amounts of one commodity.
+ * <p>Summing with {@link Money#add(Money)} creates a new object for every amount.
+ * The accumulator keeps the running sum as a number of units at the scale of the commodity instead,
+ * and only switches to {@link BigDecimal} while the sum does not fit in a {@code long},
+ * or for amounts with more decimal places than the commodity.
+ * The result is the same as adding the amounts one after the other with {@link Money#add(Money)}
+ * and {@link Money#subtract(Money)}.</p>
+ * <p>Instances are not thread-safe</p>
+ */
+public class MoneyAccumulator {
+
+    private final Commodity mCommodity;
+
+    /**
+     * Decimal scale of the sum, which is the number of fraction digits of the commodity
+     */
+    private final int mScale;
+
+    /**
+     * Sum as number of units at {@link #mScale}. Only valid if {@link #mAmount} is null
+     */
+    private long mUnits;
+
+    /**
+     * Sum as {@link BigDecimal}, if it cannot be held in {@link #mUnits}
+     */
+    private BigDecimal mAmount;
+
+    /**
+     * Creates an accumulator with a sum of zero
+     * @param commodity Commodity of the amounts to be summed
+     */
+    public MoneyAccumulator(@NonNull Commodity commodity) {
+        mCommodity = commodity;
+        mScale = commodity.getSmallestFractionDigits();
+    }
+
+    /**
+     * Creates an accumulator with a sum of zero
+     * @param currencyCode Currency code of the amounts to be summed
+     */
+    public MoneyAccumulator(@NonNull String currencyCode) {
+        this(Commodity.getInstance(currencyCode));
+    }
+
+    /**
+     * Returns the commodity of the sum
+     * @return Commodity instance
+     */
+    public Commodity getCommodity() {
+        return mCommodity;
+    }
+
+    /**
+     * Adds {@code amount} to the sum
+     * @param amount Amount to add
+     * @return This accumulator
+     * @throws Money.CurrencyMismatchException if the amount has a different commodity
+     */
+    public MoneyAccumulator add(@NonNull Money amount) {
+        checkCommodity(amount);
+        if (mAmount == null && amount.isCompactAt(mScale)) {
+            try {
+                mUnits = Money.addUnits(mUnits, amount.getUnits());
+                return this;
+            } catch (ArithmeticException e) {
+                //overflow, use BigDecimal
+            }
+        }
+        setAmount(getAmount().add(amount.getAmount()));
+        return this;
+    }
+
+    /**
+     * Subtracts {@code amount} from the sum
+     * @param amount Amount to subtract
+     * @return This accumulator
+     * @throws Money.CurrencyMismatchException if the amount has a different commodity
+     */
+    public MoneyAccumulator subtract(@NonNull Money amount) {
+        checkCommodity(amount);
+        if (mAmount == null && amount.isCompactAt(mScale)) {
+            try {
+                mUnits = Money.subtractUnits(mUnits, amount.getUnits());
+                return this;
+            } catch (ArithmeticException e) {
+                //overflow, use BigDecimal
+            }
+        }
+        setAmount(getAmount().subtract(amount.getAmount()));
+        return this;
+    }
+
+    /**
+     * Resets the sum to zero
+     */
+    public void reset() {
+        mUnits = 0;
+        mAmount = null;
+    }
+
+    /**
+     * Returns the current sum
+     * @return Money object with the sum
+     */
+    public Money toMoney() {
+        if (mAmount == null)
+            return Money.fromUnits(mUnits, mCommodity);
+        return new Money(mAmount, mCommodity);
+    }
+
+    private void checkCommodity(Money amount) {
+        if (!mCommodity.equals(amount.getCommodity()))
+            throw amount.new CurrencyMismatchException();
+    }
+
+    private BigDecimal getAmount() {
+        return mAmount != null ? mAmount : BigDecimal.valueOf(mUnits, mScale);
+    }
+
+    /**
+     * Sets the sum rounded to the scale of the commodity, like {@link Money} does,
+     * and goes back to {@code long} units if it fits
+     */
+    private void setAmount(BigDecimal amount) {
+        amount = amount.setScale(mScale, RoundingMode.HALF_EVEN);
+        BigInteger unscaled = amount.unscaledValue();
+        if (unscaled.bitLength() < Long.SIZE) {
+            mUnits = unscaled.longValue();
+            mAmount = null;
+        } else {
+            mAmount = amount;
+        }
+    }
+}
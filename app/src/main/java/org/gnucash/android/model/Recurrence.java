@@ -23,6 +23,7 @@ import android.support.annotation.NonNull;
 import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.ui.util.RecurrenceParser;
+import org.joda.time.DateTimeConstants;
 import org.joda.time.Days;
 import org.joda.time.Hours;
 import org.joda.time.LocalDate;
@@ -418,6 +419,177 @@ public class Recurrence extends BaseModel {
         mMultiplier = multiplier;
     }
 
+    /**
+     * Returns the times of the occurrences of this recurrence, starting with the occurrence at
+     * index {@code fromIndex}, which are not later than {@code until}.
+     * <p>The first occurrence (index 0) is at {@code startTime}. For weekly recurrences with days of
+     * the week, it is on the first of those days which is not before {@code startTime}.
+     * Each period is computed from the start, so short months do not shift the later occurrences,
+     * and the occurrence at {@code fromIndex} is found without computing the ones before it.</p>
+     * @param startTime Start of the schedule in milliseconds since Epoch
+     * @param fromIndex Index of the first occurrence to return, e.g. the number of executions so far
+     * @param until Latest time of an occurrence, inclusive
+     * @param maxCount Maximum number of occurrences to return
+     * @return Times of the occurrences in milliseconds since Epoch, in ascending order
+     */
+    public @NonNull List<Long> getOccurrences(long startTime, int fromIndex, long until, int maxCount){
+        LocalDateTime start = LocalDateTime.fromDateFields(new Date(startTime));
+        int[] daysOfWeek = getJodaDaysOfWeek();
+        int period = fromIndex;
+        int position = 0;
+        if (daysOfWeek.length > 0) {
+            LocalDateTime anchor = getAnchor(start, daysOfWeek);
+            int daysInFirstWeek = 0;
+            for (int dayOfWeek : daysOfWeek) {
+                if (!anchor.withDayOfWeek(dayOfWeek).isBefore(start))
+                    daysInFirstWeek++;
+            }
+            if (fromIndex < daysInFirstWeek) {
+                period = 0;
+                position = daysOfWeek.length - daysInFirstWeek + fromIndex;
+            } else {
+                int index = fromIndex - daysInFirstWeek;
+                period = 1 + index / daysOfWeek.length;
+                position = index % daysOfWeek.length;
+            }
+        }
+        return expand(start, daysOfWeek, period, position, Long.MIN_VALUE, until, maxCount);
+    }
+
+    /**
+     * Returns the times of the occurrences of this recurrence which are later than {@code after}
+     * and not later than {@code until}, computed in one pass.
+     * @param startTime Start of the schedule in milliseconds since Epoch
+     * @param after Time after which the occurrences are returned, exclusive
+     * @param until Latest time of an occurrence, inclusive
+     * @param maxCount Maximum number of occurrences to return
+     * @return Times of the occurrences in milliseconds since Epoch, in ascending order
+     * @see #getOccurrences(long, int, long, int)
+     */
+    public @NonNull List<Long> getOccurrencesBetween(long startTime, long after, long until, int maxCount){
+        LocalDateTime start = LocalDateTime.fromDateFields(new Date(startTime));
+        int[] daysOfWeek = getJodaDaysOfWeek();
+        int period = 0;
+        if (after > startTime) {
+            //start one period early, since the number of periods between is rounded
+            LocalDateTime anchor = getAnchor(start, daysOfWeek);
+            period = Math.max(0, getPeriodsBetween(anchor, LocalDateTime.fromDateFields(new Date(after))) - 1);
+        }
+        return expand(start, daysOfWeek, period, 0, after, until, maxCount);
+    }
+
+    /**
+     * Lists the occurrences, starting at the specified position
+     * @param start Start of the schedule
+     * @param daysOfWeek Sorted days of the week of weekly recurrences, or an empty array
+     * @param period Index of the first period, counted in multiples of the period type from the start
+     * @param position Index of the first day of the week in {@code daysOfWeek}, in the first period
+     * @param after Time after which the occurrences are returned, exclusive
+     * @param until Latest time of an occurrence, inclusive
+     * @param maxCount Maximum number of occurrences to return
+     * @return Times of the occurrences in milliseconds since Epoch
+     */
+    private List<Long> expand(LocalDateTime start, int[] daysOfWeek, int period, int position,
+                              long after, long until, int maxCount){
+        List<Long> occurrences = new ArrayList<>();
+        LocalDateTime anchor = getAnchor(start, daysOfWeek);
+        while (occurrences.size() < maxCount) {
+            LocalDateTime periodStart = plusPeriods(anchor, period);
+            if (daysOfWeek.length == 0) {
+                long time = periodStart.toDate().getTime();
+                if (time > until)
+                    break;
+                if (time > after)
+                    occurrences.add(time);
+            } else {
+                for (; position < daysOfWeek.length && occurrences.size() < maxCount; position++) {
+                    LocalDateTime occurrence = periodStart.withDayOfWeek(daysOfWeek[position]);
+                    if (period == 0 && occurrence.isBefore(start))
+                        continue;
+                    long time = occurrence.toDate().getTime();
+                    if (time > until)
+                        return occurrences;
+                    if (time > after)
+                        occurrences.add(time);
+                }
+                position = 0;
+            }
+            period++;
+        }
+        return occurrences;
+    }
+
+    /**
+     * Returns the days of the week of a weekly recurrence, as {@link org.joda.time.DateTimeConstants}
+     * @return Sorted days of the week, or an empty array if the recurrence is not weekly or has no days set
+     */
+    private int[] getJodaDaysOfWeek(){
+        if (mPeriodType != PeriodType.WEEK || mByDays.isEmpty())
+            return new int[0];
+        boolean[] isSet = new boolean[8];
+        for (int calendarDay : mByDays) {
+            //Calendar weeks start on Sunday (1), Joda weeks on Monday (1)
+            isSet[calendarDay == Calendar.SUNDAY ? 7 : calendarDay - 1] = true;
+        }
+        int count = 0;
+        for (boolean set : isSet) {
+            if (set) count++;
+        }
+        int[] daysOfWeek = new int[count];
+        int i = 0;
+        for (int day = 1; day <= 7; day++) {
+            if (isSet[day]) daysOfWeek[i++] = day;
+        }
+        return daysOfWeek;
+    }
+
+    /**
+     * Returns the time from which the periods are counted: the start, or the Monday of its week
+     * for recurrences on days of the week
+     */
+    private static LocalDateTime getAnchor(LocalDateTime start, int[] daysOfWeek){
+        return daysOfWeek.length == 0 ? start : start.withDayOfWeek(DateTimeConstants.MONDAY);
+    }
+
+    private LocalDateTime plusPeriods(LocalDateTime anchor, int periods){
+        int amount = periods * Math.max(1, mMultiplier);
+        switch (mPeriodType){
+            case HOUR:
+                return anchor.plusHours(amount);
+            case DAY:
+                return anchor.plusDays(amount);
+            case WEEK:
+                return anchor.plusWeeks(amount);
+            case YEAR:
+                return anchor.plusYears(amount);
+            case MONTH:
+            default:
+                return anchor.plusMonths(amount);
+        }
+    }
+
+    private int getPeriodsBetween(LocalDateTime anchor, LocalDateTime time){
+        int amount;
+        switch (mPeriodType){
+            case HOUR:
+                amount = Hours.hoursBetween(anchor, time).getHours();
+                break;
+            case DAY:
+                amount = Days.daysBetween(anchor, time).getDays();
+                break;
+            case WEEK:
+                amount = Weeks.weeksBetween(anchor, time).getWeeks();
+                break;
+            case YEAR:
+                amount = Years.yearsBetween(anchor, time).getYears();
+                break;
+            case MONTH:
+            default:
+                amount = Months.monthsBetween(anchor, time).getMonths();
+        }
+        return amount / Math.max(1, mMultiplier);
+    }
+
     /**
      * Returns a localized string describing the period type's frequency.
      *
@@ -25,7 +25,9 @@ import org.joda.time.LocalDateTime;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 
@@ -181,9 +183,24 @@ public class ScheduledAction extends BaseModel{
      * It only considers when the next execution would theoretically be due.</p>
      *
      * @return Next run time in milliseconds
+     * @see Recurrence#getOccurrences(long, int, long, int)
      */
     public long computeNextCountBasedScheduledExecutionTime(){
-        return computeNextScheduledExecutionTimeStartingAt(getTimeOfLastSchedule());
+        return mRecurrence.getOccurrences(mStartDate, mExecutionCount, Long.MAX_VALUE, 1).get(0);
+    }
+
+    /**
+     * Returns the times at which the scheduled action should have been executed since its last
+     * execution, up to {@code until}, based on the execution count.
+     * <p>The number of planned executions is considered, but not the end time.</p>
+     * @param until Time of the latest execution, inclusive
+     * @return Times of the missed executions in milliseconds since Epoch, in ascending order
+     */
+    public List<Long> computeMissedCountBasedExecutionTimes(long until){
+        int maxCount = mTotalFrequency > 0 ? mTotalFrequency - mExecutionCount : Integer.MAX_VALUE;
+        if (maxCount <= 0)
+            return Collections.emptyList();
+        return mRecurrence.getOccurrences(mStartDate, mExecutionCount, until, maxCount);
     }
 
     /**
@@ -199,6 +216,53 @@ public class ScheduledAction extends BaseModel{
         return computeNextScheduledExecutionTimeStartingAt(getLastRunTime());
     }
 
+    /**
+     * Computes the earliest time at which the scheduled action has to be checked for execution.
+     *
+     * <p>Unlike the other methods, this considers whether the action is enabled, its end time and
+     * the number of planned executions. Transactions are due based on the execution count,
+     * backups based on the time of the last run.</p>
+     *
+     * @return Next run time in milliseconds, or -1 if the action will not be executed again
+     */
+    public long computeNextRunTime() {
+        if (!mIsEnabled || mRecurrence == null)
+            return -1;
+        if (mTotalFrequency > 0 && mExecutionCount >= mTotalFrequency)
+            return -1;
+
+        long nextRunTime = mActionType == ActionType.BACKUP
+                ? computeNextTimeBasedScheduledExecutionTime()
+                : computeNextCountBasedScheduledExecutionTime();
+        nextRunTime = Math.max(nextRunTime, mStartDate);
+        if (mEndDate > 0 && nextRunTime > mEndDate)
+            return -1;
+        return nextRunTime;
+    }
+
+    /**
+     * Computes the earliest time at which the scheduled action has to be checked again after it was due
+     * at {@code skippedTime} but had nothing to do, e.g. a backup without new transactions to export.
+     *
+     * <p>Backups are then due at their next period after {@code skippedTime}, while the time of the
+     * last run, from which the next backup exports, is kept. Transactions are always generated
+     * when they are due, so their next run time is not affected.</p>
+     *
+     * @param skippedTime Time in milliseconds at which the action was skipped
+     * @return Next run time in milliseconds, or -1 if the action will not be executed again
+     * @see #computeNextRunTime()
+     */
+    public long computeNextRunTimeAfterSkip(long skippedTime) {
+        long nextRunTime = computeNextRunTime();
+        if (nextRunTime < 0 || nextRunTime > skippedTime || mActionType != ActionType.BACKUP)
+            return nextRunTime;
+
+        nextRunTime = computeNextScheduledExecutionTimeStartingAt(skippedTime);
+        if (mEndDate > 0 && nextRunTime > mEndDate)
+            return -1;
+        return nextRunTime;
+    }
+
     /**
      * Computes the next time that this scheduled action is supposed to be
      * executed starting at startTime.
@@ -90,6 +90,16 @@ public class Transaction extends BaseModel{
      */
     private List<Split> mSplitList = new ArrayList<>();
 
+    /**
+     * Loads the splits when they are first needed, if set
+     */
+    private SplitsLoader mSplitsLoader;
+
+    /**
+     * GUID of the transaction whose splits are loaded by {@link #mSplitsLoader}
+     */
+    private String mSplitsLoaderUID;
+
 	/**
 	 * Name describing the transaction
 	 */
@@ -148,7 +158,7 @@ public class Transaction extends BaseModel{
         setCommodity(transaction.getCommodity());
         //exported flag is left at default value of false
 
-        for (Split split : transaction.mSplitList) {
+        for (Split split : transaction.getSplits()) {
             addSplit(new Split(split, generateNewUID));
         }
 
@@ -194,7 +204,7 @@ public class Transaction extends BaseModel{
     @Override
     public void setUID(String uid) {
         super.setUID(uid);
-        for (Split split : mSplitList) {
+        for (Split split : getSplits()) {
             split.setTransactionUID(uid);
         }
     }
@@ -204,9 +214,33 @@ public class Transaction extends BaseModel{
      * @return {@link java.util.List} of splits in the transaction
      */
     public List<Split> getSplits(){
+        if (mSplitsLoader != null) {
+            SplitsLoader splitsLoader = mSplitsLoader;
+            mSplitsLoader = null;
+            mSplitList = splitsLoader.loadSplits(mSplitsLoaderUID);
+        }
         return mSplitList;
     }
 
+    /**
+     * Sets a loader for the splits of the transaction, which is called when the splits are first needed.
+     * <p>This replaces the current splits. Use it when building transactions whose splits may not be needed</p>
+     * @param splitsLoader Loader of the splits
+     */
+    public void setSplitsLoader(@NonNull SplitsLoader splitsLoader){
+        mSplitsLoader = splitsLoader;
+        mSplitsLoaderUID = getUID();
+        mSplitList = new ArrayList<>();
+    }
+
+    /**
+     * Returns {@code true} if the splits of this transaction are loaded, or were set
+     * @return {@code true} if the splits are available without loading them
+     */
+    public boolean isSplitsLoaded(){
+        return mSplitsLoader == null;
+    }
+
     /**
      * Returns the list of splits belonging to a specific account
      * @param accountUID Unique Identifier of the account
@@ -214,7 +248,7 @@ public class Transaction extends BaseModel{
      */
     public List<Split> getSplits(String accountUID){
         List<Split> splits = new ArrayList<>();
-        for (Split split : mSplitList) {
+        for (Split split : getSplits()) {
             if (split.getAccountUID().equals(accountUID)){
                 splits.add(split);
             }
@@ -228,6 +262,7 @@ public class Transaction extends BaseModel{
      * @param splitList List of splits for this transaction
      */
     public void setSplits(List<Split> splitList){
+        mSplitsLoader = null;
         mSplitList = splitList;
         for (Split split : splitList) {
             split.setTransactionUID(getUID());
@@ -242,7 +277,7 @@ public class Transaction extends BaseModel{
     public void addSplit(Split split){
         //sets the currency of the split to the currency of the transaction
         split.setTransactionUID(getUID());
-        mSplitList.add(split);
+        getSplits().add(split);
     }
 
     /**
@@ -253,7 +288,7 @@ public class Transaction extends BaseModel{
      * @see #computeBalance(String, java.util.List)
      */
     public Money getBalance(String accountUID){
-        return computeBalance(accountUID, mSplitList);
+        return computeBalance(accountUID, getSplits());
     }
 
     /**
@@ -263,8 +298,8 @@ public class Transaction extends BaseModel{
      * @return Money imbalance of the transaction or zero if it is a multi-currency transaction
      */
     private Money getImbalance(){
-        Money imbalance = Money.createZeroInstance(mCommodity.getCurrencyCode());
-        for (Split split : mSplitList) {
+        MoneyAccumulator imbalance = new MoneyAccumulator(mCommodity);
+        for (Split split : getSplits()) {
             if (!split.getQuantity().getCommodity().equals(mCommodity)) {
                 // this may happen when importing XML exported from GNCA before 2.0.0
                 // these transactions should only be imported from XML exported from GNC desktop
@@ -273,11 +308,11 @@ public class Transaction extends BaseModel{
             }
             Money amount = split.getValue();
             if (split.getType() == TransactionType.DEBIT)
-                imbalance = imbalance.subtract(amount);
+                imbalance.subtract(amount);
             else
-                imbalance = imbalance.add(amount);
+                imbalance.add(amount);
         }
-        return imbalance;
+        return imbalance.toMoney();
     }
 
     /**
@@ -295,7 +330,7 @@ public class Transaction extends BaseModel{
         String accountCurrencyCode = accountsDbAdapter.getAccountCurrencyCode(accountUID);
 
         boolean isDebitAccount = accountType.hasDebitNormalBalance();
-        Money balance = Money.createZeroInstance(accountCurrencyCode);
+        MoneyAccumulator balance = new MoneyAccumulator(accountCurrencyCode);
         for (Split split : splitList) {
             if (!split.getAccountUID().equals(accountUID))
                 continue;
@@ -308,19 +343,19 @@ public class Transaction extends BaseModel{
             boolean isDebitSplit = split.getType() == TransactionType.DEBIT;
             if (isDebitAccount) {
                 if (isDebitSplit) {
-                    balance = balance.add(amount);
+                    balance.add(amount);
                 } else {
-                    balance = balance.subtract(amount);
+                    balance.subtract(amount);
                 }
             } else {
                 if (isDebitSplit) {
-                    balance = balance.subtract(amount);
+                    balance.subtract(amount);
                 } else {
-                    balance = balance.add(amount);
+                    balance.add(amount);
                 }
             }
         }
-        return balance;
+        return balance.toMoney();
     }
 
     /**
@@ -507,9 +542,10 @@ public class Transaction extends BaseModel{
             transactionNode.appendChild(memo);
         }
 
-        if (mSplitList.size() == 2){ //if we have exactly one other split, then treat it like a transfer
+        List<Split> splitList = getSplits();
+        if (splitList.size() == 2){ //if we have exactly one other split, then treat it like a transfer
             String transferAccountUID = accountUID;
-            for (Split split : mSplitList) {
+            for (Split split : splitList) {
                 if (!split.getAccountUID().equals(accountUID)){
                     transferAccountUID = split.getAccountUID();
                     break;
@@ -572,4 +608,17 @@ public class Transaction extends BaseModel{
         intent.putExtra(Transaction.EXTRA_SPLITS, stringBuilder.toString());
         return intent;
     }
+
+    /**
+     * Loads the splits of a transaction from storage
+     * @see #setSplitsLoader(SplitsLoader)
+     */
+    public interface SplitsLoader {
+        /**
+         * Loads the splits of the transaction
+         * @param transactionUID GUID of the transaction
+         * @return List of splits, which may be modified by the transaction
+         */
+        List<Split> loadSplits(String transactionUID);
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.model;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Header fields of a transaction, without its splits.
+ * <p>Use it instead of {@link Transaction} where the splits are not needed, e.g. for listing transactions.
+ * It is read with a single query, which also returns the number of splits of the transaction.</p>
+ * @see org.gnucash.android.db.adapter.TransactionsDbAdapter#getTransactionSummaries(String, String[], String)
+ */
+public final class TransactionSummary {
+
+    private final String mUID;
+    private final String mDescription;
+    private final String mNote;
+    private final long mTimestamp;
+    private final String mCurrencyCode;
+    private final boolean mTemplate;
+    private final boolean mExported;
+    private final int mSplitCount;
+
+    public TransactionSummary(@NonNull String uid, String description, String note, long timestamp,
+                              String currencyCode, boolean template, boolean exported, int splitCount) {
+        mUID = uid;
+        mDescription = description;
+        mNote = note;
+        mTimestamp = timestamp;
+        mCurrencyCode = currencyCode;
+        mTemplate = template;
+        mExported = exported;
+        mSplitCount = splitCount;
+    }
+
+    /**
+     * Returns the GUID of the transaction
+     * @return GUID of the transaction
+     */
+    public String getUID() {
+        return mUID;
+    }
+
+    public String getDescription() {
+        return mDescription;
+    }
+
+    public String getNote() {
+        return mNote;
+    }
+
+    /**
+     * Returns the time of the transaction
+     * @return Time in milliseconds since Epoch
+     */
+    public long getTimeMillis() {
+        return mTimestamp;
+    }
+
+    /**
+     * Returns the currency code of the transaction
+     * @return ISO 4217 currency code
+     */
+    public String getCurrencyCode() {
+        return mCurrencyCode;
+    }
+
+    public boolean isTemplate() {
+        return mTemplate;
+    }
+
+    public boolean isExported() {
+        return mExported;
+    }
+
+    /**
+     * Returns the number of splits of the transaction
+     * @return Number of splits
+     */
+    public int getSplitCount() {
+        return mSplitCount;
+    }
+}
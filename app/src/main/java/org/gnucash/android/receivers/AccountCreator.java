@@ -20,8 +20,11 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.WriteBehindQueue;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.DatabaseAdapter;
 import org.gnucash.android.model.Account;
@@ -63,7 +66,15 @@ public class AccountCreator extends BroadcastReceiver {
         if (uid != null)
             account.setUID(uid);
 
-        AccountsDbAdapter.getInstance().addRecord(account, DatabaseAdapter.UpdateMethod.insert);
+        final PendingResult pendingResult = goAsync();
+        GnuCashApplication.getWriteBehindQueue().saveRecord(AccountsDbAdapter.getInstance(), account,
+                DatabaseAdapter.UpdateMethod.insert, new WriteBehindQueue.OnWriteCompleteListener() {
+                    @Override
+                    public void onWriteComplete(@Nullable Exception error) {
+                        if (pendingResult != null) //null when not called for a broadcast
+                            pendingResult.finish();
+                    }
+                });
     }
 
 }
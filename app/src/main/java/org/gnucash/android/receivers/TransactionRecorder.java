@@ -20,10 +20,13 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
 import com.crashlytics.android.Crashlytics;
 
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.WriteBehindQueue;
 import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
 import org.gnucash.android.db.adapter.DatabaseAdapter;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
@@ -55,7 +58,7 @@ import java.math.MathContext;
 public class TransactionRecorder extends BroadcastReceiver {
 
 	@Override
-	public void onReceive(Context context, Intent intent) {
+	public void onReceive(final Context context, Intent intent) {
 		Log.i(this.getClass().getName(), "Received transaction recording intent");
 		Bundle args = intent.getExtras();
 		String name = args.getString(Intent.EXTRA_TITLE);
@@ -103,9 +106,19 @@ public class TransactionRecorder extends BroadcastReceiver {
             }
         }
 
-		TransactionsDbAdapter.getInstance().addRecord(transaction, DatabaseAdapter.UpdateMethod.insert);
-		
-		WidgetConfigurationActivity.updateAllWidgets(context);
+        // the transaction is saved in the background, batched with other transactions received meanwhile
+        final PendingResult pendingResult = goAsync();
+        final Transaction savedTransaction = transaction;
+        GnuCashApplication.getWriteBehindQueue().saveRecord(TransactionsDbAdapter.getInstance(), transaction,
+                DatabaseAdapter.UpdateMethod.insert, new WriteBehindQueue.OnWriteCompleteListener() {
+                    @Override
+                    public void onWriteComplete(@Nullable Exception error) {
+                        if (error == null)
+                            WidgetConfigurationActivity.updateWidgetsForSplits(context, savedTransaction.getSplits());
+                        if (pendingResult != null) //null when not called for a broadcast
+                            pendingResult.finish();
+                    }
+                });
 	}
 
 }
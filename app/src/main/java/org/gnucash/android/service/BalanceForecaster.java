@@ -0,0 +1,297 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.service;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.ScheduledActionDbAdapter;
+import org.gnucash.android.db.adapter.SplitsDbAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.MoneyAccumulator;
+import org.gnucash.android.model.ScheduledAction;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
+import org.gnucash.android.model.TransactionType;
+import org.joda.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Projects the balances of accounts into the future.
+ * <p>The balances start from the current balance of each account. The transactions which are
+ * already recorded with a future date, and the runs of the scheduled transactions which have
+ * not been executed yet, are added at their dates. The scheduled transactions are expanded
+ * in memory only, nothing is written to the database.</p>
+ */
+public class BalanceForecaster {
+
+    /**
+     * Column of the GUID of the scheduled action in {@link TransactionsDbAdapter#fetchAllScheduledTransactions()}
+     */
+    private static final String COLUMN_SCHEDULED_ACTION_UID = "origin_scheduled_action_uid";
+
+    private final AccountsDbAdapter mAccountsDbAdapter;
+    private final TransactionsDbAdapter mTransactionsDbAdapter;
+    private final ScheduledActionDbAdapter mScheduledActionDbAdapter;
+
+    /**
+     * Creates a forecaster for the active book
+     */
+    public BalanceForecaster() {
+        this(AccountsDbAdapter.getInstance(), TransactionsDbAdapter.getInstance(),
+                ScheduledActionDbAdapter.getInstance());
+    }
+
+    public BalanceForecaster(@NonNull AccountsDbAdapter accountsDbAdapter,
+                             @NonNull TransactionsDbAdapter transactionsDbAdapter,
+                             @NonNull ScheduledActionDbAdapter scheduledActionDbAdapter) {
+        mAccountsDbAdapter = accountsDbAdapter;
+        mTransactionsDbAdapter = transactionsDbAdapter;
+        mScheduledActionDbAdapter = scheduledActionDbAdapter;
+    }
+
+    /**
+     * Forecasts the balances of accounts at the end of each of the coming months
+     * @param accountUIDs GUIDs of the accounts
+     * @param months Number of months to forecast
+     * @param includeSubAccounts Whether the balance of an account includes its sub-accounts
+     * @return Forecast balances
+     */
+    public Forecast forecastMonths(@NonNull List<String> accountUIDs, int months, boolean includeSubAccounts) {
+        long[] times = new long[months];
+        LocalDate firstOfMonth = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i < months; i++) {
+            times[i] = firstOfMonth.plusMonths(i + 1).toDate().getTime() - 1;
+        }
+        return forecast(accountUIDs, times, includeSubAccounts);
+    }
+
+    /**
+     * Forecasts the balances of accounts at the specified times
+     * @param accountUIDs GUIDs of the accounts
+     * @param times Times at which to compute the balances, in ascending order and later than now
+     * @param includeSubAccounts Whether the balance of an account includes its sub-accounts
+     * @return Forecast balances
+     */
+    public Forecast forecast(@NonNull List<String> accountUIDs, @NonNull long[] times, boolean includeSubAccounts) {
+        long now = System.currentTimeMillis();
+        Forecast forecast = new Forecast(times);
+        if (times.length == 0 || accountUIDs.isEmpty())
+            return forecast;
+        long horizon = times[times.length - 1];
+
+        //the accounts whose splits count towards the balance of each forecast account
+        Map<String, List<ForecastAccount>> accountsBySplitAccount = new HashMap<>();
+        List<ForecastAccount> forecastAccounts = new ArrayList<>(accountUIDs.size());
+        SplitsDbAdapter splitsDbAdapter = mTransactionsDbAdapter.getSplitDbAdapter();
+        for (String accountUID : accountUIDs) {
+            ForecastAccount account = new ForecastAccount(accountUID, times.length);
+            forecastAccounts.add(account);
+            addSplitAccount(accountsBySplitAccount, accountUID, account);
+            if (includeSubAccounts) {
+                for (String descendantUID : mAccountsDbAdapter.getDescendantAccountUIDs(accountUID, null, null)) {
+                    if (account.mCurrencyCode.equals(mAccountsDbAdapter.getAccountCurrencyCode(descendantUID)))
+                        addSplitAccount(accountsBySplitAccount, descendantUID, account);
+                }
+            }
+            account.mBalance.add(splitsDbAdapter.computeSplitBalance(account.mSplitAccountUIDs,
+                    account.mCurrencyCode, account.mHasDebitNormalBalance, -1, now));
+        }
+
+        addRecordedTransactions(accountsBySplitAccount, times, now, horizon);
+        addScheduledTransactions(accountsBySplitAccount, times, horizon);
+
+        for (ForecastAccount account : forecastAccounts) {
+            Money[] balances = new Money[times.length];
+            for (int i = 0; i < times.length; i++) {
+                account.mBalance.add(account.mChanges[i].toMoney());
+                balances[i] = account.mBalance.toMoney();
+            }
+            forecast.mBalances.put(account.mAccountUID, balances);
+        }
+        return forecast;
+    }
+
+    private void addSplitAccount(Map<String, List<ForecastAccount>> accountsBySplitAccount,
+                                 String splitAccountUID, ForecastAccount account) {
+        List<ForecastAccount> accounts = accountsBySplitAccount.get(splitAccountUID);
+        if (accounts == null) {
+            accounts = new ArrayList<>(1);
+            accountsBySplitAccount.put(splitAccountUID, accounts);
+        }
+        accounts.add(account);
+        account.mSplitAccountUIDs.add(splitAccountUID);
+    }
+
+    /**
+     * Adds the transactions which are recorded with a date later than now, with one query
+     */
+    private void addRecordedTransactions(Map<String, List<ForecastAccount>> accountsBySplitAccount,
+                                         long[] times, long now, long horizon) {
+        Cursor cursor = mTransactionsDbAdapter.getSplitDbAdapter().fetchSplitQuantities(
+                new ArrayList<>(accountsBySplitAccount.keySet()), now, horizon);
+        try {
+            while (cursor.moveToNext()) {
+                int index = getTimeIndex(times, cursor.getLong(1));
+                TransactionType type = TransactionType.valueOf(cursor.getString(2));
+                for (ForecastAccount account : accountsBySplitAccount.get(cursor.getString(0))) {
+                    account.addChange(index, type,
+                            new Money(cursor.getLong(3), cursor.getLong(4), account.mCurrencyCode));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Adds the runs of the scheduled transactions which have not been executed yet.
+     * Runs which are already due are counted as of now, since they will be executed soon
+     */
+    private void addScheduledTransactions(Map<String, List<ForecastAccount>> accountsBySplitAccount,
+                                          long[] times, long horizon) {
+        Cursor cursor = mTransactionsDbAdapter.fetchAllScheduledTransactions();
+        try {
+            int actionUIDColumn = cursor.getColumnIndexOrThrow(COLUMN_SCHEDULED_ACTION_UID);
+            while (cursor.moveToNext()) {
+                ScheduledAction scheduledAction = mScheduledActionDbAdapter.getRecord(cursor.getString(actionUIDColumn));
+                if (!scheduledAction.isEnabled() || scheduledAction.getRecurrence() == null)
+                    continue;
+                long until = scheduledAction.getEndTime() > 0
+                        ? Math.min(horizon, scheduledAction.getEndTime()) : horizon;
+                List<Long> runTimes = scheduledAction.computeMissedCountBasedExecutionTimes(until);
+                if (runTimes.isEmpty())
+                    continue;
+
+                Transaction template = mTransactionsDbAdapter.buildModelInstance(cursor);
+                for (Split split : template.getSplits()) {
+                    List<ForecastAccount> accounts = accountsBySplitAccount.get(split.getAccountUID());
+                    if (accounts == null)
+                        continue;
+                    for (ForecastAccount account : accounts) {
+                        Money amount = getAmountInCurrency(split, account.mCurrencyCode);
+                        if (amount == null)
+                            continue;
+                        for (long runTime : runTimes) {
+                            account.addChange(getTimeIndex(times, runTime), split.getType(), amount);
+                        }
+                    }
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the amount of the split in the currency of an account.
+     * Either the value or the quantity of a split is in the currency of its account
+     * @return Amount of the split, or {@code null} if neither is in the currency
+     */
+    private static Money getAmountInCurrency(Split split, String currencyCode) {
+        if (split.getQuantity() != null && split.getQuantity().getCommodity().getCurrencyCode().equals(currencyCode))
+            return split.getQuantity();
+        if (split.getValue().getCommodity().getCurrencyCode().equals(currencyCode))
+            return split.getValue();
+        return null;
+    }
+
+    /**
+     * Returns the index of the first time which is not earlier than {@code time}
+     */
+    private static int getTimeIndex(long[] times, long time) {
+        int index = Arrays.binarySearch(times, time);
+        return Math.max(0, index >= 0 ? index : -index - 1);
+    }
+
+    /**
+     * Account whose balance is forecast, and the changes to its balance up to each time
+     */
+    private class ForecastAccount {
+        final String mAccountUID;
+        final String mCurrencyCode;
+        final boolean mHasDebitNormalBalance;
+        final MoneyAccumulator mBalance;
+        final MoneyAccumulator[] mChanges;
+        final List<String> mSplitAccountUIDs = new ArrayList<>();
+
+        ForecastAccount(String accountUID, int timeCount) {
+            mAccountUID = accountUID;
+            mCurrencyCode = mAccountsDbAdapter.getAccountCurrencyCode(accountUID);
+            mHasDebitNormalBalance = mAccountsDbAdapter.getAccountType(accountUID).hasDebitNormalBalance();
+            mBalance = new MoneyAccumulator(mCurrencyCode);
+            mChanges = new MoneyAccumulator[timeCount];
+            for (int i = 0; i < timeCount; i++) {
+                mChanges[i] = new MoneyAccumulator(mCurrencyCode);
+            }
+        }
+
+        void addChange(int index, TransactionType type, Money amount) {
+            if ((type == TransactionType.DEBIT) == mHasDebitNormalBalance) {
+                mChanges[index].add(amount);
+            } else {
+                mChanges[index].subtract(amount);
+            }
+        }
+    }
+
+    /**
+     * Forecast balances of accounts, as a time series per account
+     */
+    public static class Forecast {
+        private final long[] mTimes;
+        private final Map<String, Money[]> mBalances = new LinkedHashMap<>();
+
+        Forecast(long[] times) {
+            mTimes = times;
+        }
+
+        /**
+         * Returns the times of the forecast balances
+         * @return Times in milliseconds since Epoch, in ascending order
+         */
+        public long[] getTimes() {
+            return mTimes;
+        }
+
+        /**
+         * Returns the GUIDs of the accounts in the forecast, in the order they were requested
+         * @return GUIDs of the accounts
+         */
+        public Set<String> getAccountUIDs() {
+            return Collections.unmodifiableSet(mBalances.keySet());
+        }
+
+        /**
+         * Returns the forecast balances of an account
+         * @param accountUID GUID of the account
+         * @return Balance of the account at each of the {@link #getTimes() times},
+         * or {@code null} if the account is not in the forecast
+         */
+        public Money[] getBalances(@NonNull String accountUID) {
+            return mBalances.get(accountUID);
+        }
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.service;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.util.Pair;
+
+import org.gnucash.android.db.DatabaseSchema;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.BooksDbAdapter;
+import org.gnucash.android.db.adapter.BudgetsDbAdapter;
+import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
+import org.gnucash.android.db.adapter.PricesDbAdapter;
+import org.gnucash.android.db.adapter.SplitsDbAdapter;
+import org.gnucash.android.model.Budget;
+import org.gnucash.android.model.BudgetAmount;
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.joda.time.LocalDate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the amounts spent against budgets, for the current period and each period of the budget.
+ * <p>The splits of all the accounts of a budget are summed up for all periods with one query.
+ * The results are cached until the data of the book changes, as found by its
+ * {@link org.gnucash.android.db.adapter.DatabaseAdapter#getDataVersion() data version},
+ * or until the day changes.</p>
+ */
+public class BudgetEvaluator {
+
+    /**
+     * Number of periods shown for budgets which do not specify their number of periods
+     */
+    private static final int DEFAULT_NUMBER_OF_PERIODS = 12;
+
+    private static BudgetEvaluator sInstance;
+
+    private final String mBookUID;
+    private final BudgetsDbAdapter mBudgetsDbAdapter;
+    private final AccountsDbAdapter mAccountsDbAdapter;
+
+    private long mDataVersion = -1;
+    private List<String> mBudgetUIDs;
+    private final Map<String, BudgetProgress> mProgressCache = new HashMap<>();
+
+    /**
+     * Returns the evaluator of the budgets of the active book
+     * @return Budget evaluator
+     */
+    public static synchronized BudgetEvaluator getInstance() {
+        String bookUID = BooksDbAdapter.getInstance().getActiveBookUID();
+        if (sInstance == null || !sInstance.mBookUID.equals(bookUID)) {
+            sInstance = new BudgetEvaluator(bookUID, BudgetsDbAdapter.getInstance(), AccountsDbAdapter.getInstance());
+        }
+        return sInstance;
+    }
+
+    public BudgetEvaluator(@NonNull String bookUID, @NonNull BudgetsDbAdapter budgetsDbAdapter,
+                           @NonNull AccountsDbAdapter accountsDbAdapter) {
+        mBookUID = bookUID;
+        mBudgetsDbAdapter = budgetsDbAdapter;
+        mAccountsDbAdapter = accountsDbAdapter;
+    }
+
+    /**
+     * Returns the progress of all budgets, ordered by name
+     * @return Progress of the budgets
+     */
+    public synchronized List<BudgetProgress> evaluateAll() {
+        checkDataVersion();
+        if (mBudgetUIDs == null) {
+            List<String> budgetUIDs = new ArrayList<>();
+            Cursor cursor = mBudgetsDbAdapter.fetchAllRecords(null, null,
+                    DatabaseSchema.BudgetEntry.COLUMN_NAME + " ASC");
+            try {
+                while (cursor.moveToNext()) {
+                    Budget budget = mBudgetsDbAdapter.buildModelInstance(cursor);
+                    budgetUIDs.add(budget.getUID());
+                    if (!isCurrent(mProgressCache.get(budget.getUID())))
+                        mProgressCache.put(budget.getUID(), computeProgress(budget));
+                }
+            } finally {
+                cursor.close();
+            }
+            mBudgetUIDs = budgetUIDs;
+        }
+
+        List<BudgetProgress> progressList = new ArrayList<>(mBudgetUIDs.size());
+        for (String budgetUID : mBudgetUIDs) {
+            progressList.add(evaluateCurrent(budgetUID));
+        }
+        return progressList;
+    }
+
+    /**
+     * Returns the progress of a budget
+     * @param budgetUID GUID of the budget
+     * @return Progress of the budget
+     * @throws IllegalArgumentException if the budget does not exist
+     */
+    public synchronized BudgetProgress evaluate(@NonNull String budgetUID) {
+        checkDataVersion();
+        return evaluateCurrent(budgetUID);
+    }
+
+    private BudgetProgress evaluateCurrent(String budgetUID) {
+        BudgetProgress progress = mProgressCache.get(budgetUID);
+        if (!isCurrent(progress)) {
+            progress = computeProgress(mBudgetsDbAdapter.getRecord(budgetUID));
+            mProgressCache.put(budgetUID, progress);
+        }
+        return progress;
+    }
+
+    /**
+     * Discards the cached results if the data has changed since they were computed
+     */
+    private void checkDataVersion() {
+        long dataVersion = mBudgetsDbAdapter.getDataVersion();
+        if (dataVersion != mDataVersion) {
+            mProgressCache.clear();
+            mBudgetUIDs = null;
+            mDataVersion = dataVersion;
+        }
+    }
+
+    /**
+     * Checks that the progress was computed for the current periods.
+     * The periods of a budget are relative to the current day
+     */
+    private static boolean isCurrent(BudgetProgress progress) {
+        return progress != null && progress.mEvaluationDate.equals(LocalDate.now())
+                && progress.mCurrentPeriodStart == progress.mBudget.getStartofCurrentPeriod()
+                && progress.mCurrentPeriodEnd == progress.mBudget.getEndOfCurrentPeriod();
+    }
+
+    /**
+     * Computes the amounts spent in the accounts of a budget, in the current period and in each period
+     * @param budget Budget to evaluate
+     * @return Progress of the budget
+     */
+    BudgetProgress computeProgress(@NonNull Budget budget) {
+        //todo: refactor getNumberOfPeriods into budget
+        int budgetPeriods = (int) budget.getNumberOfPeriods();
+        budgetPeriods = budgetPeriods == 0 ? DEFAULT_NUMBER_OF_PERIODS : budgetPeriods;
+        int periods = budget.getRecurrence().getNumberOfPeriods(budgetPeriods);
+
+        //range 0 is the current period, range n is the period number n
+        long[] startTimes = new long[periods + 1];
+        long[] endTimes = new long[periods + 1];
+        startTimes[0] = budget.getStartofCurrentPeriod();
+        endTimes[0] = budget.getEndOfCurrentPeriod();
+        String[] periodLabels = new String[periods + 1];
+        for (int periodNum = 1; periodNum <= periods; periodNum++) {
+            startTimes[periodNum] = budget.getStartOfPeriod(periodNum);
+            endTimes[periodNum] = budget.getEndOfPeriod(periodNum);
+            periodLabels[periodNum] = budget.getRecurrence().getTextOfCurrentPeriod(periodNum);
+        }
+
+        List<BudgetAmount> budgetAmounts = budget.getCompactedBudgetAmounts();
+        Set<String> budgetAccountUIDs = new LinkedHashSet<>();
+        for (BudgetAmount budgetAmount : budgetAmounts) {
+            budgetAccountUIDs.add(budgetAmount.getAccountUID());
+        }
+        Map<String, BigDecimal[]> sumsByAccount = computeSums(budgetAccountUIDs, startTimes, endTimes);
+
+        List<AmountProgress> amountProgressList = new ArrayList<>(budgetAmounts.size());
+        BigDecimal spentAmountValue = BigDecimal.ZERO;
+        for (BudgetAmount budgetAmount : budgetAmounts) {
+            String accountUID = budgetAmount.getAccountUID();
+            Commodity commodity = CommoditiesDbAdapter.getInstance().getCommodity(
+                    mAccountsDbAdapter.getAccountCurrencyCode(accountUID));
+            BigDecimal[] sums = sumsByAccount.get(accountUID);
+            Money[] spentAmounts = new Money[sums.length];
+            for (int i = 0; i < sums.length; i++) {
+                spentAmounts[i] = new Money(sums[i], commodity);
+            }
+            spentAmountValue = spentAmountValue.add(spentAmounts[0].asBigDecimal());
+            amountProgressList.add(new AmountProgress(budgetAmount,
+                    mAccountsDbAdapter.getAccountName(accountUID),
+                    mAccountsDbAdapter.getAccountFullName(accountUID), spentAmounts));
+        }
+
+        Money budgetTotal = budget.getAmountSum();
+        double progress = 0;
+        if (budgetTotal.asBigDecimal().signum() != 0) {
+            progress = spentAmountValue.divide(budgetTotal.asBigDecimal(),
+                    budgetTotal.getCommodity().getSmallestFractionDigits(), RoundingMode.HALF_EVEN)
+                    .doubleValue();
+        }
+        return new BudgetProgress(budget, startTimes[0], endTimes[0],
+                new Money(spentAmountValue, budgetTotal.getCommodity()), progress,
+                Collections.unmodifiableList(amountProgressList), periodLabels);
+    }
+
+    /**
+     * Sums up the splits of the accounts, including their sub-accounts, in the time ranges.
+     * The sums have the sign of the balance of each account, and are in its currency
+     * @return Sums of each account, one per time range
+     */
+    private Map<String, BigDecimal[]> computeSums(Set<String> budgetAccountUIDs, long[] startTimes, long[] endTimes) {
+        Map<String, List<String>> budgetAccountsBySplitAccount = new HashMap<>();
+        Map<String, BigDecimal[]> sumsByAccount = new HashMap<>();
+        for (String accountUID : budgetAccountUIDs) {
+            BigDecimal[] sums = new BigDecimal[startTimes.length];
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] = BigDecimal.ZERO;
+            }
+            sumsByAccount.put(accountUID, sums);
+
+            List<String> splitAccountUIDs = mAccountsDbAdapter.getDescendantAccountUIDs(accountUID, null, null);
+            splitAccountUIDs.add(accountUID);
+            for (String splitAccountUID : splitAccountUIDs) {
+                List<String> budgetAccounts = budgetAccountsBySplitAccount.get(splitAccountUID);
+                if (budgetAccounts == null) {
+                    budgetAccounts = new ArrayList<>(1);
+                    budgetAccountsBySplitAccount.put(splitAccountUID, budgetAccounts);
+                }
+                budgetAccounts.add(accountUID);
+            }
+        }
+        if (budgetAccountUIDs.isEmpty())
+            return sumsByAccount;
+
+        SplitsDbAdapter splitsDbAdapter = SplitsDbAdapter.getInstance();
+        Map<String, BigDecimal> conversionRates = new HashMap<>();
+        Cursor cursor = splitsDbAdapter.fetchSplitSums(
+                new ArrayList<>(budgetAccountsBySplitAccount.keySet()), startTimes, endTimes);
+        try {
+            while (cursor.moveToNext()) {
+                String currencyCode = cursor.getString(1);
+                long denominator = cursor.getLong(2);
+                if (currencyCode.equals("XXX"))
+                    continue; // ignore custom currency
+                for (String accountUID : budgetAccountsBySplitAccount.get(cursor.getString(0))) {
+                    BigDecimal rate = getConversionRate(conversionRates, currencyCode,
+                            mAccountsDbAdapter.getAccountCurrencyCode(accountUID));
+                    if (rate == null)
+                        continue; // no price exists, just ignore it
+                    boolean hasDebitNormalBalance = mAccountsDbAdapter.getAccountType(accountUID).hasDebitNormalBalance();
+                    BigDecimal[] sums = sumsByAccount.get(accountUID);
+                    for (int i = 0; i < sums.length; i++) {
+                        long numerator = cursor.getLong(3 + i);
+                        if (numerator == 0)
+                            continue;
+                        BigDecimal amount = Money.getBigDecimal(hasDebitNormalBalance ? numerator : -numerator, denominator);
+                        sums[i] = sums[i].add(amount.multiply(rate));
+                    }
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return sumsByAccount;
+    }
+
+    /**
+     * Returns the rate to convert amounts from one currency to another, from the latest price
+     * @return Conversion rate, or {@code null} if there is no price for the currencies
+     */
+    private BigDecimal getConversionRate(Map<String, BigDecimal> conversionRates, String fromCurrencyCode,
+                                         String toCurrencyCode) {
+        if (fromCurrencyCode.equals(toCurrencyCode))
+            return BigDecimal.ONE;
+        String key = fromCurrencyCode + "/" + toCurrencyCode;
+        if (conversionRates.containsKey(key))
+            return conversionRates.get(key);
+
+        CommoditiesDbAdapter commoditiesDbAdapter = CommoditiesDbAdapter.getInstance();
+        Pair<Long, Long> price = PricesDbAdapter.getInstance().getPrice(
+                commoditiesDbAdapter.getCommodityUID(fromCurrencyCode),
+                commoditiesDbAdapter.getCommodityUID(toCurrencyCode));
+        BigDecimal rate = null;
+        if (price.first > 0 && price.second > 0) {
+            rate = new BigDecimal(price.first).divide(new BigDecimal(price.second), 12, RoundingMode.HALF_EVEN);
+        }
+        conversionRates.put(key, rate);
+        return rate;
+    }
+
+    /**
+     * Amounts spent against a budget, ready to be displayed
+     */
+    public static class BudgetProgress {
+        private final Budget mBudget;
+        private final LocalDate mEvaluationDate = LocalDate.now();
+        private final long mCurrentPeriodStart;
+        private final long mCurrentPeriodEnd;
+        private final Money mSpentAmount;
+        private final double mProgress;
+        private final List<AmountProgress> mAmountProgressList;
+        private final String[] mPeriodLabels;
+
+        BudgetProgress(Budget budget, long currentPeriodStart, long currentPeriodEnd, Money spentAmount,
+                       double progress, List<AmountProgress> amountProgressList, String[] periodLabels) {
+            mBudget = budget;
+            mCurrentPeriodStart = currentPeriodStart;
+            mCurrentPeriodEnd = currentPeriodEnd;
+            mSpentAmount = spentAmount;
+            mProgress = progress;
+            mAmountProgressList = amountProgressList;
+            mPeriodLabels = periodLabels;
+        }
+
+        public Budget getBudget() {
+            return mBudget;
+        }
+
+        /**
+         * Returns the amount spent in all the accounts of the budget in the current period
+         * @return Spent amount
+         */
+        public Money getSpentAmount() {
+            return mSpentAmount;
+        }
+
+        /**
+         * Returns the ratio of the spent amount to the budgeted amount in the current period
+         * @return Progress of the budget, 1 when the whole budget is spent
+         */
+        public double getProgress() {
+            return mProgress;
+        }
+
+        /**
+         * Returns the progress of each of the compacted budget amounts
+         * @return Progress of the budget amounts
+         * @see Budget#getCompactedBudgetAmounts()
+         */
+        public List<AmountProgress> getAmountProgressList() {
+            return mAmountProgressList;
+        }
+
+        /**
+         * Returns the number of periods for which the spent amounts are computed
+         * @return Number of periods
+         */
+        public int getNumberOfPeriods() {
+            return mPeriodLabels.length - 1;
+        }
+
+        /**
+         * Returns the label of a period of the budget
+         * @param periodNum Number of the period, starting at 1
+         * @return Label of the period
+         */
+        public String getPeriodLabel(int periodNum) {
+            return mPeriodLabels[periodNum];
+        }
+    }
+
+    /**
+     * Amounts spent against a budget amount, in the currency of its account
+     */
+    public static class AmountProgress {
+        private final BudgetAmount mBudgetAmount;
+        private final String mAccountName;
+        private final String mAccountFullName;
+        private final Money[] mSpentAmounts;
+
+        AmountProgress(BudgetAmount budgetAmount, String accountName, String accountFullName, Money[] spentAmounts) {
+            mBudgetAmount = budgetAmount;
+            mAccountName = accountName;
+            mAccountFullName = accountFullName;
+            mSpentAmounts = spentAmounts;
+        }
+
+        public BudgetAmount getBudgetAmount() {
+            return mBudgetAmount;
+        }
+
+        public String getAccountName() {
+            return mAccountName;
+        }
+
+        public String getAccountFullName() {
+            return mAccountFullName;
+        }
+
+        /**
+         * Returns the amount spent in the account, including its sub-accounts, in the current period
+         * @return Spent amount
+         */
+        public Money getSpentAmount() {
+            return mSpentAmounts[0];
+        }
+
+        /**
+         * Returns the amount spent in the account, including its sub-accounts, in a period of the budget
+         * @param periodNum Number of the period, starting at 1
+         * @return Spent amount
+         */
+        public Money getSpentAmount(int periodNum) {
+            return mSpentAmounts[periodNum];
+        }
+    }
+}
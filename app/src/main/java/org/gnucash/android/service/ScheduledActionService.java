@@ -16,23 +16,27 @@
 
 package org.gnucash.android.service;
 
+import android.app.AlarmManager;
+import android.app.PendingIntent;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.database.sqlite.SQLiteDatabase;
 import android.support.annotation.NonNull;
 import android.support.annotation.VisibleForTesting;
 import android.support.v4.app.JobIntentService;
+import android.support.v7.preference.PreferenceManager;
 import android.util.Log;
 
 import com.crashlytics.android.Crashlytics;
 
 import org.gnucash.android.app.GnuCashApplication;
-import org.gnucash.android.db.DatabaseHelper;
+import org.gnucash.android.db.BookContext;
+import org.gnucash.android.db.BookContextCache;
 import org.gnucash.android.db.DatabaseSchema;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
 import org.gnucash.android.db.adapter.DatabaseAdapter;
-import org.gnucash.android.db.adapter.RecurrenceDbAdapter;
 import org.gnucash.android.db.adapter.ScheduledActionDbAdapter;
 import org.gnucash.android.db.adapter.SplitsDbAdapter;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
@@ -41,6 +45,8 @@ import org.gnucash.android.export.ExportParams;
 import org.gnucash.android.model.Book;
 import org.gnucash.android.model.ScheduledAction;
 import org.gnucash.android.model.Transaction;
+import org.gnucash.android.receivers.PeriodicJobReceiver;
+import org.gnucash.android.ui.homescreen.WidgetConfigurationActivity;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
@@ -52,11 +58,11 @@ import java.util.concurrent.ExecutionException;
  * Service for running scheduled events.
  *
  * <p>It's run every time the <code>enqueueWork</code> is called. It goes
- * through all scheduled event entries in the the database and executes them.</p>
+ * through the books and executes the scheduled actions which are due, as found by their next run time.</p>
  *
- * <p>Scheduled runs of the service should be achieved using an
- * {@link android.app.AlarmManager}, with
- * {@link org.gnucash.android.receivers.PeriodicJobReceiver} as an intermediary.</p>
+ * <p>Scheduled runs of the service are achieved using an {@link android.app.AlarmManager}, with
+ * {@link org.gnucash.android.receivers.PeriodicJobReceiver} as an intermediary. After each run,
+ * the alarm is set for the earliest next run time across all books.</p>
  *
  * @author Ngewi Fet <ngewif@gmail.com>
  */
@@ -65,6 +71,22 @@ public class ScheduledActionService extends JobIntentService {
     private static final String LOG_TAG = "ScheduledActionService";
     private static final int JOB_ID = 1001;
 
+    /**
+     * Key of the time for which the alarm of the service is set
+     */
+    private static final String PREFERENCE_NEXT_ALARM_KEY = "scheduled_actions_next_alarm";
+
+    /**
+     * Minimum delay between runs of the service, so that actions which are due but
+     * could not be executed are not retried in a tight loop
+     */
+    private static final long MIN_ALARM_DELAY = AlarmManager.INTERVAL_FIFTEEN_MINUTES;
+
+    /**
+     * Maximum number of transactions generated from a scheduled action which are kept in memory before saving
+     */
+    private static final int BULK_INSERT_CHUNK_SIZE = 500;
+
 
     public static void enqueueWork(Context context) {
         Intent intent = new Intent(context, ScheduledActionService.class);
@@ -77,25 +99,84 @@ public class ScheduledActionService extends JobIntentService {
 
         BooksDbAdapter booksDbAdapter = BooksDbAdapter.getInstance();
         List<Book> books = booksDbAdapter.getAllRecords();
+        BookContextCache bookContexts = GnuCashApplication.getBookContexts();
+        long nextRunTime = -1;
+        boolean actionsProcessed = false;
         for (Book book : books) { //// TODO: 20.04.2017 Retrieve only the book UIDs with new method
-            DatabaseHelper dbHelper = new DatabaseHelper(GnuCashApplication.getAppContext(), book.getUID());
-            SQLiteDatabase db = dbHelper.getWritableDatabase();
-            RecurrenceDbAdapter recurrenceDbAdapter = new RecurrenceDbAdapter(db);
-            ScheduledActionDbAdapter scheduledActionDbAdapter = new ScheduledActionDbAdapter(db, recurrenceDbAdapter);
-
-            List<ScheduledAction> scheduledActions = scheduledActionDbAdapter.getAllEnabledScheduledActions();
-            Log.i(LOG_TAG, String.format("Processing %d total scheduled actions for Book: %s",
-                    scheduledActions.size(), book.getDisplayName()));
-            processScheduledActions(scheduledActions, db);
-
-            //close all databases except the currently active database
-            if (!db.getPath().equals(GnuCashApplication.getActiveDb().getPath()))
-                db.close();
+            //reuses the open database of the book if it was used recently
+            BookContext bookContext = bookContexts.acquire(book.getUID());
+            try {
+                ScheduledActionDbAdapter scheduledActionDbAdapter = bookContext.getScheduledActionDbAdapter();
+                List<ScheduledAction> scheduledActions =
+                        scheduledActionDbAdapter.getDueScheduledActions(System.currentTimeMillis());
+                Log.i(LOG_TAG, String.format("Processing %d due scheduled actions for Book: %s",
+                        scheduledActions.size(), book.getDisplayName()));
+                processScheduledActions(scheduledActions, bookContext.getDb());
+                actionsProcessed |= !scheduledActions.isEmpty();
+
+                long bookNextRunTime = scheduledActionDbAdapter.getNextRunTime();
+                if (bookNextRunTime >= 0 && (nextRunTime < 0 || bookNextRunTime < nextRunTime))
+                    nextRunTime = bookNextRunTime;
+            } finally {
+                bookContexts.release(bookContext);
+            }
         }
+        scheduleAlarm(GnuCashApplication.getAppContext(), nextRunTime);
+        //the scheduled transactions are not reported to the widgets of their accounts
+        if (actionsProcessed)
+            WidgetConfigurationActivity.updateAllWidgets(this);
 
         Log.i(LOG_TAG, "Completed service @ " + java.text.DateFormat.getDateTimeInstance().format(new Date()));
     }
 
+    /**
+     * Makes sure the service runs no later than at the specified time.
+     * <p>The alarm is only moved if it is set for a later time, or not set at all.
+     * Call this after saving a scheduled action, with its next run time</p>
+     * @param context Application context
+     * @param time Time in milliseconds since Epoch, or -1 for no run
+     * @see ScheduledAction#computeNextRunTime()
+     */
+    public static void requestRunAt(Context context, long time) {
+        if (time < 0)
+            return;
+        long alarmTime = PreferenceManager.getDefaultSharedPreferences(context).getLong(PREFERENCE_NEXT_ALARM_KEY, -1);
+        if (alarmTime < 0 || time < alarmTime)
+            scheduleAlarm(context, time);
+    }
+
+    /**
+     * Sets the alarm which starts the service for the next due scheduled action across all books,
+     * or cancels it if no scheduled action is due anymore
+     * @param context Application context
+     * @param time Time in milliseconds since Epoch when the next scheduled action is due, or -1 if there is none
+     */
+    static void scheduleAlarm(Context context, long time) {
+        Intent alarmIntent = new Intent(context, PeriodicJobReceiver.class);
+        alarmIntent.setAction(PeriodicJobReceiver.ACTION_SCHEDULED_ACTIONS);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+
+        if (time < 0) {
+            PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, alarmIntent,
+                    PendingIntent.FLAG_NO_CREATE);
+            if (pendingIntent != null) {
+                alarmManager.cancel(pendingIntent);
+                pendingIntent.cancel();
+            }
+            preferences.edit().remove(PREFERENCE_NEXT_ALARM_KEY).apply();
+            Log.i(LOG_TAG, "No scheduled actions are due anymore");
+            return;
+        }
+
+        //actions which are due but could not be executed (e.g. with a missing template) are retried later
+        time = Math.max(time, System.currentTimeMillis() + MIN_ALARM_DELAY);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, alarmIntent, 0);
+        alarmManager.set(AlarmManager.RTC_WAKEUP, time, pendingIntent);
+        preferences.edit().putLong(PREFERENCE_NEXT_ALARM_KEY, time).apply();
+        Log.i(LOG_TAG, "Next scheduled action run @ " + java.text.DateFormat.getDateTimeInstance().format(new Date(time)));
+    }
+
     /**
      * Process scheduled actions and execute any pending actions
      * @param scheduledActions List of scheduled actions
@@ -115,6 +196,7 @@ public class ScheduledActionService extends JobIntentService {
                     || !scheduledAction.isEnabled()     // of if schedule is disabled
                     || (totalPlannedExecutions > 0 && executionCount >= totalPlannedExecutions)) { //limit was set and we reached or exceeded it
                 Log.i(LOG_TAG, "Skipping scheduled action: " + scheduledAction.toString());
+                saveNextRunTime(scheduledAction, db);
                 continue;
             }
 
@@ -152,11 +234,42 @@ public class ScheduledActionService extends JobIntentService {
                     scheduledAction.getLastRunTime());
             contentValues.put(DatabaseSchema.ScheduledActionEntry.COLUMN_EXECUTION_COUNT,
                     scheduledAction.getExecutionCount());
+            ScheduledActionDbAdapter.putNextRunTime(contentValues, scheduledAction);
             db.update(DatabaseSchema.ScheduledActionEntry.TABLE_NAME, contentValues,
                     DatabaseSchema.ScheduledActionEntry.COLUMN_UID + "=?", new String[]{scheduledAction.getUID()});
+        } else {
+            // e.g. a backup without new transactions to export is due again at its next period, not right away
+            saveNextRunTime(scheduledAction, scheduledAction.computeNextRunTimeAfterSkip(System.currentTimeMillis()), db);
         }
     }
 
+    /**
+     * Saves the time at which the scheduled action is next due.
+     * <p>This is also done for actions which were not executed, since the next run time may
+     * depend on the current time (e.g. weekly schedules without days of the week)</p>
+     * @param scheduledAction Scheduled action
+     * @param db Database of the book of the scheduled action
+     */
+    private static void saveNextRunTime(ScheduledAction scheduledAction, SQLiteDatabase db) {
+        saveNextRunTime(scheduledAction, scheduledAction.computeNextRunTime(), db);
+    }
+
+    /**
+     * Saves the time at which the scheduled action is next due
+     * @param scheduledAction Scheduled action
+     * @param nextRunTime Next run time in milliseconds since Epoch, or -1 if the action will not run again
+     * @param db Database of the book of the scheduled action
+     */
+    private static void saveNextRunTime(ScheduledAction scheduledAction, long nextRunTime, SQLiteDatabase db) {
+        ContentValues contentValues = new ContentValues();
+        if (nextRunTime < 0)
+            contentValues.putNull(DatabaseSchema.ScheduledActionEntry.COLUMN_NEXT_RUN_AT);
+        else
+            contentValues.put(DatabaseSchema.ScheduledActionEntry.COLUMN_NEXT_RUN_AT, nextRunTime);
+        db.update(DatabaseSchema.ScheduledActionEntry.TABLE_NAME, contentValues,
+                DatabaseSchema.ScheduledActionEntry.COLUMN_UID + "=?", new String[]{scheduledAction.getUID()});
+    }
+
     /**
      * Executes scheduled backups for a given scheduled action.
      * The backup will be executed only once, even if multiple schedules were missed
@@ -235,28 +348,31 @@ public class ScheduledActionService extends JobIntentService {
         //if the end time is in the future, we execute all schedules until now (current time)
         //if there is no end time, we execute all schedules until now
         long endTime = scheduledAction.getEndTime() > 0 ? Math.min(scheduledAction.getEndTime(), now) : now;
-        int totalPlannedExecutions = scheduledAction.getTotalPlannedExecutionCount();
-        List<Transaction> transactions = new ArrayList<>();
 
-        int previousExecutionCount = scheduledAction.getExecutionCount(); // We'll modify it
         //we may be executing scheduled action significantly after scheduled time (depending on when Android fires the alarm)
-        //so compute the actual transaction time from pre-known values
-        long transactionTime = scheduledAction.computeNextCountBasedScheduledExecutionTime();
-        while (transactionTime <= endTime) {
-            Transaction recurringTrxn = new Transaction(trxnTemplate, true);
-            recurringTrxn.setTime(transactionTime);
-            transactions.add(recurringTrxn);
-            recurringTrxn.setScheduledActionUID(scheduledAction.getUID());
-            scheduledAction.setExecutionCount(++executionCount); //required for computingNextScheduledExecutionTime
-
-            if (totalPlannedExecutions > 0 && executionCount >= totalPlannedExecutions)
-                break; //if we hit the total planned executions set, then abort
-            transactionTime = scheduledAction.computeNextCountBasedScheduledExecutionTime();
+        //so compute the actual transaction times from pre-known values, all at once
+        List<Long> transactionTimes = scheduledAction.computeMissedCountBasedExecutionTimes(endTime);
+        List<Transaction> transactions = new ArrayList<>(Math.min(transactionTimes.size(), BULK_INSERT_CHUNK_SIZE));
+        db.beginTransaction();
+        try {
+            for (long transactionTime : transactionTimes) {
+                Transaction recurringTrxn = new Transaction(trxnTemplate, true);
+                recurringTrxn.setTime(transactionTime);
+                recurringTrxn.setScheduledActionUID(scheduledAction.getUID());
+                transactions.add(recurringTrxn);
+                ++executionCount;
+
+                //a schedule missed for a long time may generate many transactions, so they are saved in chunks
+                if (transactions.size() == BULK_INSERT_CHUNK_SIZE) {
+                    transactionsDbAdapter.bulkAddRecords(transactions, DatabaseAdapter.UpdateMethod.insert);
+                    transactions.clear();
+                }
+            }
+            transactionsDbAdapter.bulkAddRecords(transactions, DatabaseAdapter.UpdateMethod.insert);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
-
-        transactionsDbAdapter.bulkAddRecords(transactions, DatabaseAdapter.UpdateMethod.insert);
-        // Be nice and restore the parameter's original state to avoid confusing the callers
-        scheduledAction.setExecutionCount(previousExecutionCount);
         return executionCount;
     }
 }
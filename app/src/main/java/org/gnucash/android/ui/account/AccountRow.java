@@ -0,0 +1,231 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.ui.account;
+
+import android.database.Cursor;
+import android.graphics.Color;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.gnucash.android.db.DatabaseSchema.AccountEntry;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.model.BudgetAmount;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.service.BudgetEvaluator;
+import org.gnucash.android.service.BudgetEvaluator.AmountProgress;
+import org.gnucash.android.service.BudgetEvaluator.BudgetProgress;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything displayed for an account in the accounts list, computed before the list is shown
+ * so that binding a row does not access the database.
+ * <p>Rows are immutable. They are compared with {@link #equals(Object)} to find the rows which
+ * changed between two loads of the list.</p>
+ */
+public class AccountRow {
+
+    /**
+     * Budget progress of accounts which are not in exactly one budget
+     */
+    public static final int NO_BUDGET = -1;
+
+    private final long mId;
+    private final String mUID;
+    private final String mName;
+    private final String mFullName;
+    private final int mSubAccountCount;
+    private final Money mBalance;
+    private final boolean mFavorite;
+    private final boolean mPlaceholder;
+    private final int mColor;
+    private final int mBudgetProgress;
+
+    AccountRow(long id, @NonNull String uid, String name, String fullName, int subAccountCount,
+               @NonNull Money balance, boolean favorite, boolean placeholder, int color, int budgetProgress) {
+        mId = id;
+        mUID = uid;
+        mName = name;
+        mFullName = fullName;
+        mSubAccountCount = subAccountCount;
+        mBalance = balance;
+        mFavorite = favorite;
+        mPlaceholder = placeholder;
+        mColor = color;
+        mBudgetProgress = budgetProgress;
+    }
+
+    /**
+     * Builds the rows of the accounts of a cursor, in the order of the cursor.
+     * <p>The balances and sub-account counts of all the accounts are computed with one query each,
+     * and the budget progress is taken from the {@link BudgetEvaluator}, which caches it.
+     * It must not be called on the main thread.</p>
+     * @param cursor Cursor to accounts, with all the columns of the accounts table
+     * @return Rows of the accounts
+     */
+    public static List<AccountRow> buildRows(@NonNull Cursor cursor) {
+        List<String> accountUIDs = new ArrayList<>(cursor.getCount());
+        int uidColumn = cursor.getColumnIndexOrThrow(AccountEntry.COLUMN_UID);
+        for (cursor.moveToPosition(-1); cursor.moveToNext(); ) {
+            accountUIDs.add(cursor.getString(uidColumn));
+        }
+        if (accountUIDs.isEmpty())
+            return Collections.emptyList();
+
+        AccountsDbAdapter accountsDbAdapter = AccountsDbAdapter.getInstance();
+        Map<String, Money> balances = accountsDbAdapter.getAccountBalances(accountUIDs);
+        Map<String, Integer> subAccountCounts = accountsDbAdapter.getSubAccountCounts(accountUIDs);
+        Map<String, Integer> budgetProgress = loadBudgetProgress();
+
+        List<AccountRow> rows = new ArrayList<>(accountUIDs.size());
+        for (cursor.moveToPosition(-1); cursor.moveToNext(); ) {
+            String accountUID = cursor.getString(uidColumn);
+            String colorCode = cursor.getString(cursor.getColumnIndexOrThrow(AccountEntry.COLUMN_COLOR_CODE));
+            Integer subAccountCount = subAccountCounts.get(accountUID);
+            Integer progress = budgetProgress.get(accountUID);
+            Money balance = balances.get(accountUID);
+            rows.add(new AccountRow(
+                    cursor.getLong(cursor.getColumnIndexOrThrow(AccountEntry._ID)),
+                    accountUID,
+                    cursor.getString(cursor.getColumnIndexOrThrow(AccountEntry.COLUMN_NAME)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(AccountEntry.COLUMN_FULL_NAME)),
+                    subAccountCount == null ? 0 : subAccountCount,
+                    balance == null ? Money.getZeroInstance() : balance,
+                    cursor.getInt(cursor.getColumnIndexOrThrow(AccountEntry.COLUMN_FAVORITE)) == 1,
+                    cursor.getInt(cursor.getColumnIndexOrThrow(AccountEntry.COLUMN_PLACEHOLDER)) == 1,
+                    colorCode == null ? Color.TRANSPARENT : Color.parseColor(colorCode),
+                    progress == null ? NO_BUDGET : progress));
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the progress, in percent, of the budget of the accounts which are in exactly one budget
+     */
+    private static Map<String, Integer> loadBudgetProgress() {
+        Map<String, Integer> budgetProgress = new HashMap<>();
+        Map<String, Integer> budgetCounts = new HashMap<>();
+        for (BudgetProgress progress : BudgetEvaluator.getInstance().evaluateAll()) {
+            for (AmountProgress amountProgress : progress.getAmountProgressList()) {
+                BudgetAmount budgetAmount = amountProgress.getBudgetAmount();
+                String accountUID = budgetAmount.getAccountUID();
+                Integer count = budgetCounts.get(accountUID);
+                budgetCounts.put(accountUID, count == null ? 1 : count + 1);
+
+                BigDecimal amount = budgetAmount.getAmount().asBigDecimal();
+                int percent = amount.signum() == 0 ? 0 : amountProgress.getSpentAmount().asBigDecimal()
+                        .multiply(new BigDecimal(100)).divide(amount, 0, RoundingMode.DOWN).intValue();
+                budgetProgress.put(accountUID, percent);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : budgetCounts.entrySet()) {
+            if (entry.getValue() != 1)
+                budgetProgress.remove(entry.getKey());
+        }
+        return budgetProgress;
+    }
+
+    /**
+     * Returns the database ID of the account
+     * @return Record ID
+     */
+    public long getId() {
+        return mId;
+    }
+
+    public String getUID() {
+        return mUID;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public String getFullName() {
+        return mFullName;
+    }
+
+    /**
+     * Returns the number of direct sub-accounts of the account, including hidden ones
+     * @return Number of sub-accounts
+     */
+    public int getSubAccountCount() {
+        return mSubAccountCount;
+    }
+
+    /**
+     * Returns the balance of the account including its sub-accounts
+     * @return Balance of the account
+     */
+    public Money getBalance() {
+        return mBalance;
+    }
+
+    public boolean isFavorite() {
+        return mFavorite;
+    }
+
+    public boolean isPlaceholder() {
+        return mPlaceholder;
+    }
+
+    /**
+     * Returns the color of the account
+     * @return Color, {@link Color#TRANSPARENT} if the account has none
+     */
+    public int getColor() {
+        return mColor;
+    }
+
+    /**
+     * Returns the part of the budget of the account which is spent in the current period
+     * @return Progress in percent, or {@link #NO_BUDGET} if the account is not in exactly one budget
+     */
+    public int getBudgetProgress() {
+        return mBudgetProgress;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AccountRow other = (AccountRow) o;
+        return mId == other.mId
+                && mSubAccountCount == other.mSubAccountCount
+                && mFavorite == other.mFavorite
+                && mPlaceholder == other.mPlaceholder
+                && mColor == other.mColor
+                && mBudgetProgress == other.mBudgetProgress
+                && mUID.equals(other.mUID)
+                && equal(mName, other.mName)
+                && equal(mFullName, other.mFullName)
+                && mBalance.equals(other.mBalance);
+    }
+
+    private static boolean equal(@Nullable Object a, @Nullable Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public int hashCode() {
+        return mUID.hashCode();
+    }
+}
@@ -62,6 +62,7 @@ import org.gnucash.android.ui.common.BaseDrawerActivity;
 import org.gnucash.android.ui.common.FormActivity;
 import org.gnucash.android.ui.common.Refreshable;
 import org.gnucash.android.ui.common.UxArgument;
+import org.gnucash.android.ui.transaction.TransactionSearchActivity;
 import org.gnucash.android.ui.transaction.TransactionsActivity;
 import org.gnucash.android.ui.util.TaskDelegate;
 import org.gnucash.android.ui.wizard.FirstRunWizardActivity;
@@ -421,6 +422,10 @@ public class AccountsActivity extends BaseDrawerActivity implements OnAccountCli
             case android.R.id.home:
                 return super.onOptionsItemSelected(item);
 
+            case R.id.menu_search_transactions:
+                startActivity(new Intent(this, TransactionSearchActivity.class));
+                return true;
+
 		default:
 			return false;
 		}
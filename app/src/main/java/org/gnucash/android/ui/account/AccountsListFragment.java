@@ -23,16 +23,16 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.res.Configuration;
 import android.database.Cursor;
-import android.graphics.Color;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager.LoaderCallbacks;
+import android.support.v4.content.AsyncTaskLoader;
 import android.support.v4.content.Loader;
 import android.support.v4.view.MenuItemCompat;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.PopupMenu;
@@ -51,21 +51,18 @@ import android.widget.TextView;
 
 import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
-import org.gnucash.android.db.DatabaseCursorLoader;
 import org.gnucash.android.db.DatabaseSchema;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
-import org.gnucash.android.db.adapter.BudgetsDbAdapter;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
 import org.gnucash.android.model.Account;
-import org.gnucash.android.model.Budget;
-import org.gnucash.android.model.Money;
 import org.gnucash.android.ui.common.FormActivity;
 import org.gnucash.android.ui.common.Refreshable;
 import org.gnucash.android.ui.common.UxArgument;
-import org.gnucash.android.ui.util.AccountBalanceTask;
-import org.gnucash.android.ui.util.CursorRecyclerAdapter;
+import org.gnucash.android.ui.transaction.TransactionsActivity;
 import org.gnucash.android.ui.util.widget.EmptyRecyclerView;
 import org.gnucash.android.util.BackupManager;
 
+import java.util.Collections;
 import java.util.List;
 
 import butterknife.BindView;
@@ -78,7 +75,7 @@ import butterknife.ButterKnife;
  */
 public class AccountsListFragment extends Fragment implements
         Refreshable,
-        LoaderCallbacks<Cursor>,
+        LoaderCallbacks<AccountsListFragment.AccountRows>,
         android.support.v7.widget.SearchView.OnQueryTextListener,
         android.support.v7.widget.SearchView.OnCloseListener {
 
@@ -197,7 +194,7 @@ public class AccountsListFragment extends Fragment implements
 
 
         // specify an adapter (see also next example)
-        mAccountRecyclerAdapter = new AccountRecyclerAdapter(null);
+        mAccountRecyclerAdapter = new AccountRecyclerAdapter();
         mRecyclerView.setAdapter(mAccountRecyclerAdapter);
 
     }
@@ -302,8 +299,8 @@ public class AccountsListFragment extends Fragment implements
     }
 
     /**
-     * Refreshes the list by restarting the {@link DatabaseCursorLoader} associated
-     * with the ListView
+     * Refreshes the list by restarting the {@link AccountRowsLoader} associated
+     * with the list. Only the rows which changed are updated
      */
     @Override
     public void refresh() {
@@ -316,16 +313,6 @@ public class AccountsListFragment extends Fragment implements
         outState.putSerializable(STATE_DISPLAY_MODE, mDisplayMode);
     }
 
-    /**
-     * Closes any open database adapters used by the list
-     */
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (mAccountRecyclerAdapter != null)
-            mAccountRecyclerAdapter.swapCursor(null);
-    }
-
     /**
      * Opens a new activity for creating or editing an account.
      * If the <code>accountId</code> &lt; 1, then create else edit the account.
@@ -340,29 +327,29 @@ public class AccountsListFragment extends Fragment implements
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+    public Loader<AccountRows> onCreateLoader(int id, Bundle args) {
         Log.d(TAG, "Creating the accounts loader");
         Bundle arguments = getArguments();
         String accountUID = arguments == null ? null : arguments.getString(UxArgument.PARENT_ACCOUNT_UID);
+        List<AccountRow> displayedRows = mAccountRecyclerAdapter.getAccountRows();
 
         if (mCurrentFilter != null){
-            return new AccountsCursorLoader(getActivity(), mCurrentFilter);
+            return new AccountRowsLoader(getActivity(), mCurrentFilter, displayedRows);
         } else {
-            return new AccountsCursorLoader(this.getActivity(), accountUID, mDisplayMode);
+            return new AccountRowsLoader(this.getActivity(), accountUID, mDisplayMode, displayedRows);
         }
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loaderCursor, Cursor cursor) {
-        Log.d(TAG, "Accounts loader finished. Swapping in cursor");
-        mAccountRecyclerAdapter.swapCursor(cursor);
-        mAccountRecyclerAdapter.notifyDataSetChanged();
+    public void onLoadFinished(Loader<AccountRows> loader, AccountRows accountRows) {
+        Log.d(TAG, "Accounts loader finished. Updating the rows");
+        mAccountRecyclerAdapter.setAccountRows(accountRows);
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> arg0) {
+    public void onLoaderReset(Loader<AccountRows> loader) {
         Log.d(TAG, "Resetting the accounts loader");
-        mAccountRecyclerAdapter.swapCursor(null);
+        mAccountRecyclerAdapter.setAccountRows(null);
     }
 
     @Override
@@ -395,29 +382,54 @@ public class AccountsListFragment extends Fragment implements
     }
 
     /**
-     * Extends {@link DatabaseCursorLoader} for loading of {@link Account} from the
-     * database asynchronously.
+     * Rows of the accounts list, with the changes from the rows which were displayed when they were loaded
+     */
+    static class AccountRows {
+        final List<AccountRow> mRows;
+        final List<AccountRow> mPreviousRows;
+        final DiffUtil.DiffResult mDiff;
+
+        AccountRows(List<AccountRow> rows, List<AccountRow> previousRows, DiffUtil.DiffResult diff) {
+            mRows = rows;
+            mPreviousRows = previousRows;
+            mDiff = diff;
+        }
+    }
+
+    /**
+     * Loads the rows of the accounts list asynchronously, see {@link AccountRow#buildRows(Cursor)}.
      * <p>By default it loads only top-level accounts (accounts which have no parent or have GnuCash ROOT account as parent.
      * By submitting a parent account ID in the constructor parameter, it will load child accounts of that parent.</p>
+     * <p>The rows are compared to the previously displayed ones in the background too,
+     * so that the list only updates the rows which changed.</p>
      * <p>Class must be static because the Android loader framework requires it to be so</p>
      * @author Ngewi Fet <ngewif@gmail.com>
      */
-    private static final class AccountsCursorLoader extends DatabaseCursorLoader {
+    private static final class AccountRowsLoader extends AsyncTaskLoader<AccountRows> {
         private String mParentAccountUID = null;
         private String mFilter;
         private DisplayMode mDisplayMode = DisplayMode.TOP_LEVEL;
 
+        /**
+         * Rows which were last delivered, against which the new rows are compared
+         */
+        private volatile List<AccountRow> mPreviousRows;
+        private AccountRows mAccountRows;
+
         /**
          * Initializes the loader to load accounts from the database.
          * If the <code>parentAccountId <= 0</code> then only top-level accounts are loaded.
          * Else only the child accounts of the <code>parentAccountId</code> will be loaded
          * @param context Application context
          * @param parentAccountUID GUID of the parent account
+         * @param displayedRows Rows currently displayed
          */
-        public AccountsCursorLoader(Context context, String parentAccountUID, DisplayMode displayMode) {
+        public AccountRowsLoader(Context context, String parentAccountUID, DisplayMode displayMode,
+                                 List<AccountRow> displayedRows) {
             super(context);
             this.mParentAccountUID = parentAccountUID;
             this.mDisplayMode = displayMode;
+            mPreviousRows = displayedRows;
         }
 
         /**
@@ -425,53 +437,146 @@ public class AccountsListFragment extends Fragment implements
          * Only accounts whose name match the filter will be loaded.
          * @param context Application context
          * @param filter Account name filter string
+         * @param displayedRows Rows currently displayed
          */
-        public AccountsCursorLoader(Context context, String filter){
+        public AccountRowsLoader(Context context, String filter, List<AccountRow> displayedRows){
             super(context);
             mFilter = filter;
+            mPreviousRows = displayedRows;
         }
 
         @Override
-        public Cursor loadInBackground() {
-            mDatabaseAdapter = AccountsDbAdapter.getInstance();
+        public AccountRows loadInBackground() {
+            AccountsDbAdapter accountsDbAdapter = AccountsDbAdapter.getInstance();
             Cursor cursor;
 
             if (mFilter != null){
-                cursor = ((AccountsDbAdapter)mDatabaseAdapter)
+                cursor = accountsDbAdapter
                         .fetchAccounts(DatabaseSchema.AccountEntry.COLUMN_HIDDEN + "= 0 AND "
-                                + DatabaseSchema.AccountEntry.COLUMN_NAME + " LIKE '%" + mFilter + "%'",
-                                null, null);
+                                + DatabaseSchema.AccountEntry.COLUMN_NAME + " LIKE ? ESCAPE '\\'",
+                                new String[]{"%" + DatabaseAdapter.escapeLikePattern(mFilter) + "%"}, null);
             } else {
                 if (mParentAccountUID != null && mParentAccountUID.length() > 0)
-                    cursor = ((AccountsDbAdapter) mDatabaseAdapter).fetchSubAccounts(mParentAccountUID);
+                    cursor = accountsDbAdapter.fetchSubAccounts(mParentAccountUID);
                 else {
                     switch (this.mDisplayMode){
                         case RECENT:
-                            cursor = ((AccountsDbAdapter) mDatabaseAdapter).fetchRecentAccounts(10);
+                            cursor = accountsDbAdapter.fetchRecentAccounts(10);
                             break;
                         case FAVORITES:
-                            cursor = ((AccountsDbAdapter) mDatabaseAdapter).fetchFavoriteAccounts();
+                            cursor = accountsDbAdapter.fetchFavoriteAccounts();
                             break;
                         case TOP_LEVEL:
                         default:
-                            cursor = ((AccountsDbAdapter) mDatabaseAdapter).fetchTopLevelAccounts();
+                            cursor = accountsDbAdapter.fetchTopLevelAccounts();
                             break;
                     }
                 }
 
             }
 
-            if (cursor != null)
-                registerContentObserver(cursor);
-            return cursor;
+            final List<AccountRow> rows;
+            try {
+                rows = AccountRow.buildRows(cursor);
+            } finally {
+                cursor.close();
+            }
+
+            final List<AccountRow> previousRows = mPreviousRows;
+            DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                @Override
+                public int getOldListSize() {
+                    return previousRows.size();
+                }
+
+                @Override
+                public int getNewListSize() {
+                    return rows.size();
+                }
+
+                @Override
+                public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                    return previousRows.get(oldItemPosition).getUID().equals(rows.get(newItemPosition).getUID());
+                }
+
+                @Override
+                public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                    return previousRows.get(oldItemPosition).equals(rows.get(newItemPosition));
+                }
+            });
+            return new AccountRows(rows, previousRows, diff);
+        }
+
+        @Override
+        public void deliverResult(AccountRows accountRows) {
+            mAccountRows = accountRows;
+            mPreviousRows = accountRows.mRows;
+            if (isStarted()) {
+                super.deliverResult(accountRows);
+            }
+        }
+
+        @Override
+        protected void onStartLoading() {
+            if (mAccountRows != null) {
+                deliverResult(mAccountRows);
+            }
+            if (takeContentChanged() || mAccountRows == null) {
+                forceLoad();
+            }
+        }
+
+        @Override
+        protected void onStopLoading() {
+            cancelLoad();
+        }
+
+        @Override
+        protected void onReset() {
+            super.onReset();
+            onStopLoading();
+            mAccountRows = null;
         }
     }
 
 
-    class AccountRecyclerAdapter extends CursorRecyclerAdapter<AccountRecyclerAdapter.AccountViewHolder> {
+    class AccountRecyclerAdapter extends RecyclerView.Adapter<AccountRecyclerAdapter.AccountViewHolder> {
 
-        public AccountRecyclerAdapter(Cursor cursor){
-           super(cursor);
+        private List<AccountRow> mAccountRows = Collections.emptyList();
+
+        /**
+         * Returns the rows currently displayed
+         * @return Account rows
+         */
+        List<AccountRow> getAccountRows() {
+            return mAccountRows;
+        }
+
+        /**
+         * Displays new rows. If they were compared to the rows currently displayed,
+         * only the rows which changed are updated
+         * @param accountRows Rows loaded in the background, or null to clear the list
+         */
+        void setAccountRows(AccountRows accountRows) {
+            if (accountRows == null) {
+                mAccountRows = Collections.emptyList();
+                notifyDataSetChanged();
+                return;
+            }
+            if (accountRows.mRows == mAccountRows)
+                return;
+            List<AccountRow> displayedRows = mAccountRows;
+            mAccountRows = accountRows.mRows;
+            if (accountRows.mPreviousRows == displayedRows) {
+                accountRows.mDiff.dispatchUpdatesTo(this);
+            } else {
+                notifyDataSetChanged();
+            }
+        }
+
+        @Override
+        public int getItemCount() {
+            return mAccountRows.size();
         }
 
         @Override
@@ -483,13 +588,13 @@ public class AccountsListFragment extends Fragment implements
         }
 
         @Override
-        public void onBindViewHolderCursor(final AccountViewHolder holder, final Cursor cursor) {
-            final String accountUID = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.AccountEntry.COLUMN_UID));
-            mAccountsDbAdapter = AccountsDbAdapter.getInstance();
-            holder.accoundId = mAccountsDbAdapter.getID(accountUID);
+        public void onBindViewHolder(final AccountViewHolder holder, int position) {
+            AccountRow accountRow = mAccountRows.get(position);
+            final String accountUID = accountRow.getUID();
+            holder.accoundId = accountRow.getId();
 
-            holder.accountName.setText(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.AccountEntry.COLUMN_NAME)));
-            int subAccountCount = mAccountsDbAdapter.getSubAccountCount(accountUID);
+            holder.accountName.setText(accountRow.getName());
+            int subAccountCount = accountRow.getSubAccountCount();
             if (subAccountCount > 0) {
                 holder.description.setVisibility(View.VISIBLE);
                 String text = getResources().getQuantityString(R.plurals.label_sub_accounts, subAccountCount, subAccountCount);
@@ -497,19 +602,14 @@ public class AccountsListFragment extends Fragment implements
             } else
                 holder.description.setVisibility(View.GONE);
 
-            // add a summary of transactions to the account view
-
-                // Make sure the balance task is truly multithread
-            new AccountBalanceTask(holder.accountBalance).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, accountUID);
+            TransactionsActivity.displayBalance(holder.accountBalance, accountRow.getBalance());
 
-            String accountColor = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.AccountEntry.COLUMN_COLOR_CODE));
-            int colorCode = accountColor == null ? Color.TRANSPARENT : Color.parseColor(accountColor);
-            holder.colorStripView.setBackgroundColor(colorCode);
+            holder.colorStripView.setBackgroundColor(accountRow.getColor());
 
-            boolean isPlaceholderAccount = mAccountsDbAdapter.isPlaceholderAccount(accountUID);
-            if (isPlaceholderAccount) {
+            if (accountRow.isPlaceholder()) {
                 holder.createTransaction.setVisibility(View.GONE);
             } else {
+                holder.createTransaction.setVisibility(View.VISIBLE);
                 holder.createTransaction.setOnClickListener(new View.OnClickListener() {
 
                     @Override
@@ -523,21 +623,16 @@ public class AccountsListFragment extends Fragment implements
                 });
             }
 
-            List<Budget> budgets = BudgetsDbAdapter.getInstance().getAccountBudgets(accountUID);
             //TODO: include fetch only active budgets
-            if (budgets.size() == 1){
-                Budget budget = budgets.get(0);
-                Money balance = mAccountsDbAdapter.getAccountBalance(accountUID, budget.getStartofCurrentPeriod(), budget.getEndOfCurrentPeriod());
-                double budgetProgress = balance.divide(budget.getAmount(accountUID)).asBigDecimal().doubleValue() * 100;
-
+            if (accountRow.getBudgetProgress() != AccountRow.NO_BUDGET){
                 holder.budgetIndicator.setVisibility(View.VISIBLE);
-                holder.budgetIndicator.setProgress((int) budgetProgress);
+                holder.budgetIndicator.setProgress(accountRow.getBudgetProgress());
             } else {
                 holder.budgetIndicator.setVisibility(View.GONE);
             }
 
 
-            if (mAccountsDbAdapter.isFavoriteAccount(accountUID)){
+            if (accountRow.isFavorite()){
                 holder.favoriteStatus.setImageResource(R.drawable.ic_star_black_24dp);
             } else {
                 holder.favoriteStatus.setImageResource(R.drawable.ic_star_border_black_24dp);
@@ -555,8 +650,7 @@ public class AccountsListFragment extends Fragment implements
                     int drawableResource = !isFavoriteAccount ?
                             R.drawable.ic_star_black_24dp : R.drawable.ic_star_border_black_24dp;
                     holder.favoriteStatus.setImageResource(drawableResource);
-                    if (mDisplayMode == DisplayMode.FAVORITES)
-                        refresh();
+                    refresh();
                 }
             });
 
@@ -45,11 +45,13 @@ import com.github.mikephil.charting.data.BarEntry;
 
 import org.gnucash.android.R;
 import org.gnucash.android.db.DatabaseSchema;
-import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.BudgetsDbAdapter;
 import org.gnucash.android.model.Budget;
 import org.gnucash.android.model.BudgetAmount;
 import org.gnucash.android.model.Money;
+import org.gnucash.android.service.BudgetEvaluator;
+import org.gnucash.android.service.BudgetEvaluator.AmountProgress;
+import org.gnucash.android.service.BudgetEvaluator.BudgetProgress;
 import org.gnucash.android.ui.common.FormActivity;
 import org.gnucash.android.ui.common.Refreshable;
 import org.gnucash.android.ui.common.UxArgument;
@@ -186,12 +188,12 @@ public class BudgetDetailFragment extends Fragment implements Refreshable {
 
 
     public class BudgetAmountAdapter extends RecyclerView.Adapter<BudgetAmountAdapter.BudgetAmountViewHolder>{
-        private List<BudgetAmount> mBudgetAmounts;
-        private Budget mBudget;
+        private List<AmountProgress> mAmountProgressList;
+        private BudgetProgress mBudgetProgress;
 
         public BudgetAmountAdapter(){
-            mBudget = mBudgetsDbAdapter.getRecord(mBudgetUID);
-            mBudgetAmounts = mBudget.getCompactedBudgetAmounts();
+            mBudgetProgress = BudgetEvaluator.getInstance().evaluate(mBudgetUID);
+            mAmountProgressList = mBudgetProgress.getAmountProgressList();
         }
 
         @Override
@@ -202,15 +204,14 @@ public class BudgetDetailFragment extends Fragment implements Refreshable {
 
         @Override
         public void onBindViewHolder(BudgetAmountViewHolder holder, final int position) {
-            BudgetAmount budgetAmount = mBudgetAmounts.get(position);
+            final AmountProgress amountProgress = mAmountProgressList.get(position);
+            final BudgetAmount budgetAmount = amountProgress.getBudgetAmount();
             Money projectedAmount = budgetAmount.getAmount();
-            AccountsDbAdapter accountsDbAdapter = AccountsDbAdapter.getInstance();
 
-            holder.budgetAccount.setText(accountsDbAdapter.getAccountFullName(budgetAmount.getAccountUID()));
+            holder.budgetAccount.setText(amountProgress.getAccountFullName());
             holder.budgetAmount.setText(projectedAmount.formattedString());
 
-            Money spentAmount = accountsDbAdapter.getAccountBalance(budgetAmount.getAccountUID(),
-                    mBudget.getStartofCurrentPeriod(), mBudget.getEndOfCurrentPeriod());
+            Money spentAmount = amountProgress.getSpentAmount();
 
             holder.budgetSpent.setText(spentAmount.abs().formattedString());
             holder.budgetLeft.setText(projectedAmount.subtract(spentAmount.abs()).formattedString());
@@ -226,13 +227,13 @@ public class BudgetDetailFragment extends Fragment implements Refreshable {
             holder.budgetSpent.setTextColor(BudgetsActivity.getBudgetProgressColor(1 - budgetProgress));
             holder.budgetLeft.setTextColor(BudgetsActivity.getBudgetProgressColor(1 - budgetProgress));
 
-            generateChartData(holder.budgetChart, budgetAmount);
+            generateChartData(holder.budgetChart, amountProgress);
 
             holder.itemView.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
                     Intent intent = new Intent(getActivity(), TransactionsActivity.class);
-                    intent.putExtra(UxArgument.SELECTED_ACCOUNT_UID, mBudgetAmounts.get(position).getAccountUID());
+                    intent.putExtra(UxArgument.SELECTED_ACCOUNT_UID, budgetAmount.getAccountUID());
                     startActivityForResult(intent, 0x10);
                 }
             });
@@ -241,34 +242,27 @@ public class BudgetDetailFragment extends Fragment implements Refreshable {
         /**
          * Generate the chart data for the chart
          * @param barChart View where to display the chart
-         * @param budgetAmount BudgetAmount to visualize
+         * @param amountProgress Spent amounts of the budget amount to visualize
          */
-        public void generateChartData(BarChart barChart, BudgetAmount budgetAmount) {
+        public void generateChartData(BarChart barChart, AmountProgress amountProgress) {
             // FIXME: 25.10.15 chart is broken
 
-            AccountsDbAdapter accountsDbAdapter = AccountsDbAdapter.getInstance();
-
+            final BudgetAmount budgetAmount = amountProgress.getBudgetAmount();
             List<BarEntry> barEntries = new ArrayList<>();
             List<String> xVals = new ArrayList<>();
 
-            //todo: refactor getNumberOfPeriods into budget
-            int budgetPeriods = (int) mBudget.getNumberOfPeriods();
-            budgetPeriods = budgetPeriods == 0 ? 12 : budgetPeriods;
-            int periods = mBudget.getRecurrence().getNumberOfPeriods(budgetPeriods); //// FIXME: 15.08.2016 why do we need number of periods
-
+            int periods = mBudgetProgress.getNumberOfPeriods();
             for (int periodNum = 1; periodNum <= periods; periodNum++) {
-                BigDecimal amount = accountsDbAdapter.getAccountBalance(budgetAmount.getAccountUID(),
-                        mBudget.getStartOfPeriod(periodNum), mBudget.getEndOfPeriod(periodNum))
-                        .asBigDecimal();
+                BigDecimal amount = amountProgress.getSpentAmount(periodNum).asBigDecimal();
 
-                if (amount.equals(BigDecimal.ZERO))
+                if (amount.signum() == 0)
                     continue;
 
                 barEntries.add(new BarEntry(amount.floatValue(), periodNum));
-                xVals.add(mBudget.getRecurrence().getTextOfCurrentPeriod(periodNum));
+                xVals.add(mBudgetProgress.getPeriodLabel(periodNum));
             }
 
-            String label = accountsDbAdapter.getAccountName(budgetAmount.getAccountUID());
+            String label = amountProgress.getAccountName();
             BarDataSet barDataSet = new BarDataSet(barEntries, label);
 
             BarData barData = new BarData(xVals, barDataSet);
@@ -289,7 +283,7 @@ public class BudgetDetailFragment extends Fragment implements Refreshable {
 
         @Override
         public int getItemCount() {
-            return mBudgetAmounts.size();
+            return mAmountProgressList.size();
         }
 
         class BudgetAmountViewHolder extends RecyclerView.ViewHolder {
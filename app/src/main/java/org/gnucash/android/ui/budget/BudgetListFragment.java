@@ -20,13 +20,13 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.Configuration;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
 import android.support.v4.app.FragmentTransaction;
 import android.support.v4.app.LoaderManager;
+import android.support.v4.content.AsyncTaskLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.GridLayoutManager;
@@ -45,22 +45,19 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import org.gnucash.android.R;
-import org.gnucash.android.db.DatabaseCursorLoader;
-import org.gnucash.android.db.DatabaseSchema;
-import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.BudgetsDbAdapter;
 import org.gnucash.android.model.Budget;
-import org.gnucash.android.model.BudgetAmount;
 import org.gnucash.android.model.Commodity;
 import org.gnucash.android.model.Money;
+import org.gnucash.android.service.BudgetEvaluator;
+import org.gnucash.android.service.BudgetEvaluator.BudgetProgress;
 import org.gnucash.android.ui.common.FormActivity;
 import org.gnucash.android.ui.common.Refreshable;
 import org.gnucash.android.ui.common.UxArgument;
-import org.gnucash.android.ui.util.CursorRecyclerAdapter;
 import org.gnucash.android.ui.util.widget.EmptyRecyclerView;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.List;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
@@ -69,7 +66,7 @@ import butterknife.ButterKnife;
  * Budget list fragment
  */
 public class BudgetListFragment extends Fragment implements Refreshable,
-        LoaderManager.LoaderCallbacks<Cursor> {
+        LoaderManager.LoaderCallbacks<List<BudgetProgress>> {
 
     private static final String LOG_TAG = "BudgetListFragment";
     private static final int REQUEST_EDIT_BUDGET = 0xB;
@@ -106,7 +103,7 @@ public class BudgetListFragment extends Fragment implements Refreshable,
         super.onActivityCreated(savedInstanceState);
 
         mBudgetsDbAdapter = BudgetsDbAdapter.getInstance();
-        mBudgetRecyclerAdapter = new BudgetRecyclerAdapter(null);
+        mBudgetRecyclerAdapter = new BudgetRecyclerAdapter();
 
         mRecyclerView.setAdapter(mBudgetRecyclerAdapter);
 
@@ -114,22 +111,21 @@ public class BudgetListFragment extends Fragment implements Refreshable,
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        Log.d(LOG_TAG, "Creating the accounts loader");
-        return new BudgetsCursorLoader(getActivity());
+    public Loader<List<BudgetProgress>> onCreateLoader(int id, Bundle args) {
+        Log.d(LOG_TAG, "Creating the budgets loader");
+        return new BudgetProgressLoader(getActivity());
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loaderCursor, Cursor cursor) {
-        Log.d(LOG_TAG, "Budget loader finished. Swapping in cursor");
-        mBudgetRecyclerAdapter.swapCursor(cursor);
-        mBudgetRecyclerAdapter.notifyDataSetChanged();
+    public void onLoadFinished(Loader<List<BudgetProgress>> loader, List<BudgetProgress> budgets) {
+        Log.d(LOG_TAG, "Budget loader finished. Swapping in budgets");
+        mBudgetRecyclerAdapter.setBudgets(budgets);
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> arg0) {
-        Log.d(LOG_TAG, "Resetting the accounts loader");
-        mBudgetRecyclerAdapter.swapCursor(null);
+    public void onLoaderReset(Loader<List<BudgetProgress>> loader) {
+        Log.d(LOG_TAG, "Resetting the budgets loader");
+        mBudgetRecyclerAdapter.setBudgets(null);
     }
 
     @Override
@@ -171,22 +167,22 @@ public class BudgetListFragment extends Fragment implements Refreshable,
 
     /**
      * Launches the FormActivity for editing the budget
-     * @param budgetId Db record Id of the budget
+     * @param budgetUID GUID of the budget
      */
-    private void editBudget(long budgetId){
+    private void editBudget(String budgetUID){
         Intent addAccountIntent = new Intent(getActivity(), FormActivity.class);
         addAccountIntent.setAction(Intent.ACTION_INSERT_OR_EDIT);
         addAccountIntent.putExtra(UxArgument.FORM_TYPE, FormActivity.FormType.BUDGET.name());
-        addAccountIntent.putExtra(UxArgument.BUDGET_UID, mBudgetsDbAdapter.getUID(budgetId));
+        addAccountIntent.putExtra(UxArgument.BUDGET_UID, budgetUID);
         startActivityForResult(addAccountIntent, REQUEST_EDIT_BUDGET);
     }
 
     /**
      * Delete the budget from the database
-     * @param budgetId Database record ID
+     * @param budgetUID GUID of the budget
      */
-    private void deleteBudget(long budgetId){
-        BudgetsDbAdapter.getInstance().deleteRecord(budgetId);
+    private void deleteBudget(String budgetUID){
+        mBudgetsDbAdapter.deleteRecord(budgetUID);
         refresh();
     }
 
@@ -197,24 +193,36 @@ public class BudgetListFragment extends Fragment implements Refreshable,
         }
     }
 
-    class BudgetRecyclerAdapter extends CursorRecyclerAdapter<BudgetRecyclerAdapter.BudgetViewHolder>{
+    class BudgetRecyclerAdapter extends RecyclerView.Adapter<BudgetRecyclerAdapter.BudgetViewHolder>{
 
-        public BudgetRecyclerAdapter(Cursor cursor) {
-            super(cursor);
+        private List<BudgetProgress> mBudgets = Collections.emptyList();
+
+        /**
+         * Sets the budgets to be displayed
+         * @param budgets Progress of the budgets, computed in the background
+         */
+        public void setBudgets(@Nullable List<BudgetProgress> budgets) {
+            mBudgets = budgets == null ? Collections.<BudgetProgress>emptyList() : budgets;
+            notifyDataSetChanged();
         }
 
         @Override
-        public void onBindViewHolderCursor(BudgetViewHolder holder, Cursor cursor) {
-            final Budget budget = mBudgetsDbAdapter.buildModelInstance(cursor);
-            holder.budgetId = mBudgetsDbAdapter.getID(budget.getUID());
+        public int getItemCount() {
+            return mBudgets.size();
+        }
+
+        @Override
+        public void onBindViewHolder(BudgetViewHolder holder, int position) {
+            BudgetProgress budgetProgress = mBudgets.get(position);
+            final Budget budget = budgetProgress.getBudget();
+            holder.budgetUID = budget.getUID();
 
             holder.budgetName.setText(budget.getName());
 
-            AccountsDbAdapter accountsDbAdapter = AccountsDbAdapter.getInstance();
             String accountString;
             int numberOfAccounts = budget.getNumberOfAccounts();
             if (numberOfAccounts == 1){
-                accountString = accountsDbAdapter.getAccountFullName(budget.getBudgetAmounts().get(0).getAccountUID());
+                accountString = budgetProgress.getAmountProgressList().get(0).getAccountFullName();
             } else {
                 accountString = numberOfAccounts + " budgeted accounts";
             }
@@ -223,25 +231,16 @@ public class BudgetListFragment extends Fragment implements Refreshable,
             holder.budgetRecurrence.setText(budget.getRecurrence().getRepeatString() + " - "
                     + budget.getRecurrence().getDaysLeftInCurrentPeriod() + " days left");
 
-            BigDecimal spentAmountValue = BigDecimal.ZERO;
-            for (BudgetAmount budgetAmount : budget.getCompactedBudgetAmounts()) {
-                Money balance = accountsDbAdapter.getAccountBalance(budgetAmount.getAccountUID(),
-                        budget.getStartofCurrentPeriod(), budget.getEndOfCurrentPeriod());
-                spentAmountValue = spentAmountValue.add(balance.asBigDecimal());
-            }
-
             Money budgetTotal = budget.getAmountSum();
             Commodity commodity = budgetTotal.getCommodity();
-            String usedAmount = commodity.getSymbol() + spentAmountValue + " of "
+            String usedAmount = commodity.getSymbol() + budgetProgress.getSpentAmount().asBigDecimal() + " of "
                     + budgetTotal.formattedString();
             holder.budgetAmount.setText(usedAmount);
 
-            double budgetProgress = spentAmountValue.divide(budgetTotal.asBigDecimal(),
-                    commodity.getSmallestFractionDigits(), RoundingMode.HALF_EVEN)
-                    .doubleValue();
-            holder.budgetIndicator.setProgress((int) (budgetProgress * 100));
+            double budgetProgressValue = budgetProgress.getProgress();
+            holder.budgetIndicator.setProgress((int) (budgetProgressValue * 100));
 
-            holder.budgetAmount.setTextColor(BudgetsActivity.getBudgetProgressColor(1 - budgetProgress));
+            holder.budgetAmount.setTextColor(BudgetsActivity.getBudgetProgressColor(1 - budgetProgressValue));
 
             holder.itemView.setOnClickListener(new View.OnClickListener() {
                 @Override
@@ -266,7 +265,7 @@ public class BudgetListFragment extends Fragment implements Refreshable,
             @BindView(R.id.options_menu)        ImageView optionsMenu;
             @BindView(R.id.budget_indicator)    ProgressBar budgetIndicator;
             @BindView(R.id.budget_recurrence)   TextView budgetRecurrence;
-            long budgetId;
+            String budgetUID;
 
             public BudgetViewHolder(View itemView) {
                 super(itemView);
@@ -289,11 +288,11 @@ public class BudgetListFragment extends Fragment implements Refreshable,
             public boolean onMenuItemClick(MenuItem item) {
                 switch (item.getItemId()){
                     case R.id.context_menu_edit_budget:
-                        editBudget(budgetId);
+                        editBudget(budgetUID);
                         return true;
 
                     case R.id.context_menu_delete:
-                        deleteBudget(budgetId);
+                        deleteBudget(budgetUID);
                         return true;
 
                     default:
@@ -304,24 +303,49 @@ public class BudgetListFragment extends Fragment implements Refreshable,
     }
 
     /**
-     * Loads Budgets asynchronously from the database
+     * Loads the budgets and computes their progress asynchronously
      */
-    private static class BudgetsCursorLoader extends DatabaseCursorLoader {
+    private static class BudgetProgressLoader extends AsyncTaskLoader<List<BudgetProgress>> {
 
-        /**
-         * Constructor
-         * Initializes the content observer
-         *
-         * @param context Application context
-         */
-        public BudgetsCursorLoader(Context context) {
+        private List<BudgetProgress> mBudgets;
+
+        public BudgetProgressLoader(Context context) {
             super(context);
         }
 
         @Override
-        public Cursor loadInBackground() {
-            mDatabaseAdapter = BudgetsDbAdapter.getInstance();
-            return mDatabaseAdapter.fetchAllRecords(null, null, DatabaseSchema.BudgetEntry.COLUMN_NAME + " ASC");
+        public List<BudgetProgress> loadInBackground() {
+            return BudgetEvaluator.getInstance().evaluateAll();
+        }
+
+        @Override
+        public void deliverResult(List<BudgetProgress> budgets) {
+            mBudgets = budgets;
+            if (isStarted()) {
+                super.deliverResult(budgets);
+            }
+        }
+
+        @Override
+        protected void onStartLoading() {
+            if (mBudgets != null) {
+                deliverResult(mBudgets);
+            }
+            if (takeContentChanged() || mBudgets == null) {
+                forceLoad();
+            }
+        }
+
+        @Override
+        protected void onStopLoading() {
+            cancelLoad();
+        }
+
+        @Override
+        protected void onReset() {
+            super.onReset();
+            onStopLoading();
+            mBudgets = null;
         }
     }
 }
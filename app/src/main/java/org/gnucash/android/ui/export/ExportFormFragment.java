@@ -64,6 +64,7 @@ import org.gnucash.android.export.ExportParams;
 import org.gnucash.android.export.Exporter;
 import org.gnucash.android.model.BaseModel;
 import org.gnucash.android.model.ScheduledAction;
+import org.gnucash.android.service.ScheduledActionService;
 import org.gnucash.android.ui.common.UxArgument;
 import org.gnucash.android.ui.settings.BackupPreferenceFragment;
 import org.gnucash.android.ui.settings.dialog.OwnCloudDialogFragment;
@@ -332,6 +333,7 @@ public class ExportFormFragment extends Fragment implements
 			scheduledAction.setTag(exportParameters.toCsv());
 			scheduledAction.setActionUID(BaseModel.generateUID());
 			ScheduledActionDbAdapter.getInstance().addRecord(scheduledAction, DatabaseAdapter.UpdateMethod.insert);
+			ScheduledActionService.requestRunAt(getActivity(), scheduledAction.computeNextRunTime());
 		}
 
 		int position = mDestinationSpinner.getSelectedItemPosition();
@@ -27,6 +27,9 @@ import android.content.SharedPreferences.Editor;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.widget.SimpleCursorAdapter;
 import android.support.v7.preference.PreferenceManager;
@@ -49,6 +52,7 @@ import org.gnucash.android.db.adapter.BooksDbAdapter;
 import org.gnucash.android.model.Account;
 import org.gnucash.android.model.Book;
 import org.gnucash.android.model.Money;
+import org.gnucash.android.model.Split;
 import org.gnucash.android.receivers.TransactionAppWidgetProvider;
 import org.gnucash.android.ui.account.AccountsActivity;
 import org.gnucash.android.ui.common.FormActivity;
@@ -57,7 +61,17 @@ import org.gnucash.android.ui.settings.PreferenceActivity;
 import org.gnucash.android.ui.transaction.TransactionsActivity;
 import org.gnucash.android.util.QualifiedAccountNameCursorAdapter;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.prefs.Preferences;
 
 import butterknife.BindView;
@@ -69,6 +83,15 @@ import butterknife.ButterKnife;
  * @author Ngewi Fet <ngewif@gmail.com>
  */
 public class WidgetConfigurationActivity extends Activity {
+	/**
+	 * Single thread on which the widgets are updated
+	 */
+	private static ExecutorService sUpdateExecutor;
+	private static final Object sPendingUpdateLock = new Object();
+	private static final Set<String> sPendingAccountUIDs = new HashSet<>();
+	private static boolean sAllWidgetsPending;
+	private static boolean sUpdateScheduled;
+
 	private AccountsDbAdapter mAccountsDbAdapter;
     private int mAppWidgetId;
 	
@@ -220,6 +243,7 @@ public class WidgetConfigurationActivity extends Activity {
 		context.getSharedPreferences("widget:" + appWidgetId, MODE_PRIVATE).edit()
 				.clear()
 				.apply();
+		WidgetStateStore.remove(context, appWidgetId);
 	}
 
 	/**
@@ -245,7 +269,9 @@ public class WidgetConfigurationActivity extends Activity {
 	/**
 	 * Updates the widget with id <code>appWidgetId</code> with information from the 
 	 * account with record ID <code>accountId</code>
-     * If the account has been deleted, then a notice is posted in the widget
+     * If the account has been deleted, then a notice is posted in the widget.
+	 * <p>The balance is only computed again if the account may have changed since it was last displayed,
+	 * see {@link WidgetStateStore}</p>
 	 * @param appWidgetId ID of the widget to be updated
 	 */
 	public static void updateWidget(final Context context, int appWidgetId) {
@@ -291,11 +317,15 @@ public class WidgetConfigurationActivity extends Activity {
 				R.layout.widget_4x1);
 		views.setTextViewText(R.id.account_name, account.getName());
 
-		Money accountBalance = accountsDbAdapter.getAccountBalance(accountUID, -1, System.currentTimeMillis());
-
 		if (hideAccountBalance) {
 			views.setViewVisibility(R.id.transactions_summary, View.GONE);
 		} else {
+			long dataVersion = accountsDbAdapter.getDataVersion();
+			Money accountBalance = WidgetStateStore.getBalance(context, appWidgetId, accountUID, dataVersion);
+			if (accountBalance == null) {
+				accountBalance = accountsDbAdapter.getAccountBalance(accountUID, -1, System.currentTimeMillis());
+				WidgetStateStore.putBalance(context, appWidgetId, accountUID, dataVersion, accountBalance);
+			}
 			views.setTextViewText(R.id.transactions_summary,
 					accountBalance.formattedString(Locale.getDefault()));
 			int color = accountBalance.isNegative() ? R.color.debit_red : R.color.credit_green;
@@ -332,24 +362,163 @@ public class WidgetConfigurationActivity extends Activity {
 	}
 
 	/**
-	 * Updates all widgets belonging to the application
+	 * Updates all widgets belonging to the application.
+	 * <p>Widgets whose book did not change since they were last updated are redrawn
+	 * without computing their balance again</p>
 	 * @param context Application context
 	 */
 	public static void updateAllWidgets(final Context context){
 		Log.i("WidgetConfiguration", "Updating all widgets");
-		AppWidgetManager widgetManager = AppWidgetManager.getInstance(context);
-		ComponentName componentName = new ComponentName(context, TransactionAppWidgetProvider.class);
-		final int[] appWidgetIds = widgetManager.getAppWidgetIds(componentName);
+		scheduleUpdate(context, null);
+	}
+
+	/**
+	 * Updates the widgets which display one of the accounts, or one of their ancestors,
+	 * in the active book. This should be called after writes which only changed the splits
+	 * of these accounts, instead of {@link #updateAllWidgets(Context)}.
+	 * <p>Other writes which may change a balance, like editing an account, must call
+	 * {@link #updateAllWidgets(Context)}, since the balances of the widgets which are not
+	 * updated here are kept at the new data version of the book</p>
+	 * @param context Application context
+	 * @param accountUIDs GUIDs of the accounts whose balance changed
+	 */
+	public static void updateWidgets(final Context context, @NonNull Collection<String> accountUIDs){
+		if (accountUIDs.isEmpty())
+			return;
+		scheduleUpdate(context, accountUIDs);
+	}
+
+	/**
+	 * Updates the widgets which display the account, or one of the ancestors, of any of the splits
+	 * @param context Application context
+	 * @param splits Splits which were added, changed or deleted
+	 * @see #updateWidgets(Context, Collection)
+	 */
+	public static void updateWidgetsForSplits(final Context context, @NonNull Collection<Split> splits){
+		Set<String> accountUIDs = new HashSet<>();
+		for (Split split : splits) {
+			accountUIDs.add(split.getAccountUID());
+		}
+		updateWidgets(context, accountUIDs);
+	}
+
+	/**
+	 * Queues an update of the widgets on the widget thread.
+	 * <p>Updates requested while another one is pending are merged into it,
+	 * so that a burst of writes updates each widget once</p>
+	 * @param accountUIDs GUIDs of the accounts whose balance changed, or {@code null} to update all widgets
+	 */
+	private static void scheduleUpdate(Context context, @Nullable Collection<String> accountUIDs){
+		final Context appContext = context.getApplicationContext();
+		synchronized (sPendingUpdateLock) {
+			if (accountUIDs == null)
+				sAllWidgetsPending = true;
+			else
+				sPendingAccountUIDs.addAll(accountUIDs);
+
+			if (sUpdateScheduled)
+				return;
+			sUpdateScheduled = true;
+		}
 
 		//update widgets asynchronously so as not to block method which called the update
 		//inside the computation of the account balance
-		new Thread(new Runnable() {
+		getUpdateExecutor().execute(new Runnable() {
 			@Override
 			public void run() {
-				for (final int widgetId : appWidgetIds) {
-					updateWidget(context, widgetId);
+				boolean allWidgets;
+				Set<String> accountUIDs;
+				synchronized (sPendingUpdateLock) {
+					allWidgets = sAllWidgetsPending;
+					accountUIDs = new HashSet<>(sPendingAccountUIDs);
+					sAllWidgetsPending = false;
+					sPendingAccountUIDs.clear();
+					sUpdateScheduled = false;
 				}
+				updateWidgetsNow(appContext, allWidgets ? null : accountUIDs);
 			}
-		}).start();
+		});
+	}
+
+	private static synchronized ExecutorService getUpdateExecutor(){
+		if (sUpdateExecutor == null) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+					10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(@NonNull Runnable runnable) {
+							Thread thread = new Thread(runnable, "WidgetUpdater");
+							thread.setPriority(Thread.NORM_PRIORITY - 1);
+							return thread;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+			sUpdateExecutor = executor;
+		}
+		return sUpdateExecutor;
+	}
+
+	/**
+	 * Updates the widgets affected by changes to accounts. Called on the widget thread
+	 * @param accountUIDs GUIDs of the accounts whose balance changed in the active book,
+	 *                    or {@code null} to update all widgets
+	 */
+	private static void updateWidgetsNow(Context context, @Nullable Set<String> accountUIDs){
+		AppWidgetManager widgetManager = AppWidgetManager.getInstance(context);
+		ComponentName componentName = new ComponentName(context, TransactionAppWidgetProvider.class);
+		int[] appWidgetIds = widgetManager.getAppWidgetIds(componentName);
+		if (appWidgetIds.length == 0)
+			return;
+
+		if (accountUIDs == null) {
+			for (int widgetId : appWidgetIds) {
+				updateWidget(context, widgetId);
+			}
+			return;
+		}
+
+		String activeBookUID = BooksDbAdapter.getInstance().getActiveBookUID();
+		for (int widgetId : selectAffectedWidgets(context, appWidgetIds, activeBookUID,
+				AccountsDbAdapter.getInstance(), accountUIDs)) {
+			updateWidget(context, widgetId);
+		}
+	}
+
+	/**
+	 * Selects the widgets which display one of the changed accounts of a book, or one of their ancestors.
+	 * <p>The balance snapshots of the other widgets of the book are kept valid at the current
+	 * data version of the book, since the changes did not affect their balance</p>
+	 * @param appWidgetIds IDs of all the widgets
+	 * @param bookUID GUID of the book of the changed accounts
+	 * @param accountsDbAdapter Accounts adapter of the book
+	 * @param accountUIDs GUIDs of the accounts whose balance changed
+	 * @return IDs of the widgets which have to be updated
+	 */
+	//made public static for testing. Do not call this method directly
+	@VisibleForTesting
+	public static List<Integer> selectAffectedWidgets(Context context, int[] appWidgetIds, @NonNull String bookUID,
+													  AccountsDbAdapter accountsDbAdapter, Set<String> accountUIDs){
+		//the balance of an account includes its sub-accounts
+		Set<String> affectedAccountUIDs = new HashSet<>();
+		for (String accountUID : accountUIDs) {
+			String currentUID = accountUID;
+			while (currentUID != null && affectedAccountUIDs.add(currentUID)) {
+				currentUID = accountsDbAdapter.getParentAccountUID(currentUID);
+			}
+		}
+
+		long dataVersion = accountsDbAdapter.getDataVersion();
+		List<Integer> affectedWidgetIds = new ArrayList<>();
+		for (int widgetId : appWidgetIds) {
+			loadOldPreferences(context, widgetId);
+			SharedPreferences preferences = context.getSharedPreferences("widget:" + widgetId, MODE_PRIVATE);
+			if (!bookUID.equals(preferences.getString(UxArgument.BOOK_UID, null)))
+				continue;
+			if (affectedAccountUIDs.contains(preferences.getString(UxArgument.SELECTED_ACCOUNT_UID, null)))
+				affectedWidgetIds.add(widgetId);
+			else
+				WidgetStateStore.keepBalance(context, widgetId, dataVersion);
+		}
+		return affectedWidgetIds;
 	}
 }
@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.ui.homescreen;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.joda.time.LocalDate;
+
+import java.math.BigDecimal;
+
+/**
+ * Store of the balances last displayed by the homescreen widgets.
+ * <p>A balance snapshot is valid at the data version of the book at which it was computed,
+ * see {@link org.gnucash.android.db.adapter.DatabaseAdapter#getDataVersion()}, and until the end of
+ * the day on which it was computed, since the widgets only count transactions up to the current time.
+ * Widgets are then redrawn without scanning the splits of their account again.</p>
+ * <p>The data version changes with every write to the book. When a write is known not to affect
+ * the account of a widget, its snapshot is kept valid at the new version with
+ * {@link #keepBalance(Context, int, long)}, so that it is not dropped by unrelated writes.</p>
+ */
+public class WidgetStateStore {
+
+    private static final String KEY_ACCOUNT_UID = "balance_account_uid";
+    private static final String KEY_DATA_VERSION = "balance_data_version";
+    private static final String KEY_DAY = "balance_day";
+    private static final String KEY_AMOUNT = "balance_amount";
+    private static final String KEY_CURRENCY = "balance_currency";
+
+    private static SharedPreferences getPreferences(Context context, int appWidgetId) {
+        return context.getSharedPreferences("widget_state:" + appWidgetId, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns the balance snapshot of a widget, if it is still valid
+     * @param context Application context
+     * @param appWidgetId ID of the widget
+     * @param accountUID GUID of the account displayed by the widget
+     * @param dataVersion Current data version of the book of the account
+     * @return Balance of the account, or {@code null} if it has to be computed again
+     */
+    @Nullable
+    public static Money getBalance(Context context, int appWidgetId, @NonNull String accountUID, long dataVersion) {
+        return getBalance(context, appWidgetId, accountUID, dataVersion, LocalDate.now());
+    }
+
+    /**
+     * Returns the balance snapshot of a widget, if it is still valid on the specified day
+     * @param context Application context
+     * @param appWidgetId ID of the widget
+     * @param accountUID GUID of the account displayed by the widget
+     * @param dataVersion Current data version of the book of the account
+     * @param today Current day
+     * @return Balance of the account, or {@code null} if it has to be computed again
+     */
+    //made public for testing. Call {@link #getBalance(Context, int, String, long)} instead
+    @VisibleForTesting
+    @Nullable
+    public static Money getBalance(Context context, int appWidgetId, @NonNull String accountUID,
+                                   long dataVersion, @NonNull LocalDate today) {
+        SharedPreferences preferences = getPreferences(context, appWidgetId);
+        if (!accountUID.equals(preferences.getString(KEY_ACCOUNT_UID, null))
+                || preferences.getLong(KEY_DATA_VERSION, -1) != dataVersion
+                || !today.toString().equals(preferences.getString(KEY_DAY, null)))
+            return null;
+
+        String amount = preferences.getString(KEY_AMOUNT, null);
+        String currencyCode = preferences.getString(KEY_CURRENCY, null);
+        if (amount == null || currencyCode == null)
+            return null;
+        return new Money(new BigDecimal(amount), Commodity.getInstance(currencyCode));
+    }
+
+    /**
+     * Saves the balance snapshot of a widget
+     * @param context Application context
+     * @param appWidgetId ID of the widget
+     * @param accountUID GUID of the account displayed by the widget
+     * @param dataVersion Data version of the book at which the balance was computed
+     * @param balance Balance of the account
+     */
+    public static void putBalance(Context context, int appWidgetId, @NonNull String accountUID,
+                                  long dataVersion, @NonNull Money balance) {
+        getPreferences(context, appWidgetId).edit()
+                .putString(KEY_ACCOUNT_UID, accountUID)
+                .putLong(KEY_DATA_VERSION, dataVersion)
+                .putString(KEY_DAY, LocalDate.now().toString())
+                .putString(KEY_AMOUNT, balance.asBigDecimal().toPlainString())
+                .putString(KEY_CURRENCY, balance.getCommodity().getCurrencyCode())
+                .apply();
+    }
+
+    /**
+     * Keeps the balance snapshot of a widget valid at a new data version of its book.
+     * <p>This must only be called if the writes since the snapshot was computed, or last kept,
+     * did not change the balance of the account of the widget. A snapshot of a previous day
+     * is not kept.</p>
+     * @param context Application context
+     * @param appWidgetId ID of the widget
+     * @param dataVersion Current data version of the book of the account
+     */
+    public static void keepBalance(Context context, int appWidgetId, long dataVersion) {
+        SharedPreferences preferences = getPreferences(context, appWidgetId);
+        if (preferences.getString(KEY_AMOUNT, null) == null
+                || preferences.getLong(KEY_DATA_VERSION, -1) == dataVersion
+                || !LocalDate.now().toString().equals(preferences.getString(KEY_DAY, null)))
+            return;
+        preferences.edit()
+                .putLong(KEY_DATA_VERSION, dataVersion)
+                .apply();
+    }
+
+    /**
+     * Removes the state of a widget, e.g. when the widget is deleted
+     * @param context Application context
+     * @param appWidgetId ID of the widget
+     */
+    public static void remove(Context context, int appWidgetId) {
+        getPreferences(context, appWidgetId).edit()
+                .clear()
+                .apply();
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.ui.report.linechart;
+
+import android.graphics.Color;
+import android.os.Bundle;
+import android.view.Menu;
+import android.view.MenuItem;
+
+import com.github.mikephil.charting.charts.LineChart;
+import com.github.mikephil.charting.components.Legend;
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
+import com.github.mikephil.charting.highlight.Highlight;
+import com.github.mikephil.charting.utils.LargeValueFormatter;
+
+import org.gnucash.android.R;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.AccountType;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.service.BalanceForecaster;
+import org.gnucash.android.ui.report.BaseReportFragment;
+import org.gnucash.android.ui.report.ReportType;
+import org.joda.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import butterknife.BindView;
+
+/**
+ * Line chart of the balances of the asset and liability accounts, projected into the future
+ * with the scheduled transactions
+ */
+public class ForecastLineChartFragment extends BaseReportFragment {
+
+    private static final int FORECAST_INTERVAL_COUNT = 12;
+    private static final int ANIMATION_DURATION = 3000;
+    private static final int NO_DATA_BAR_COUNTS = 5;
+    private static final List<AccountType> ACCOUNT_TYPES = Arrays.asList(
+            AccountType.CASH, AccountType.BANK, AccountType.ASSET, AccountType.CREDIT, AccountType.LIABILITY);
+    private static final int[] COLORS = {
+            Color.parseColor("#68F1AF"), Color.parseColor("#1469EB"), Color.parseColor("#EE8600"),
+            Color.parseColor("#B304AD"), Color.parseColor("#cc1f09"),
+    };
+
+    private AccountsDbAdapter mAccountsDbAdapter = AccountsDbAdapter.getInstance();
+    private boolean mChartDataPresent = true;
+
+    @BindView(R.id.line_chart) LineChart mChart;
+
+    @Override
+    public int getLayoutResource() {
+        return R.layout.fragment_line_chart;
+    }
+
+    @Override
+    public int getTitle() {
+        return R.string.title_forecast_report;
+    }
+
+    @Override
+    public ReportType getReportType() {
+        return ReportType.LINE_CHART;
+    }
+
+    @Override
+    public boolean requiresAccountTypeOptions() {
+        return false;
+    }
+
+    @Override
+    public boolean requiresTimeRangeOptions() {
+        return false;
+    }
+
+    @Override
+    public void onActivityCreated(Bundle savedInstanceState) {
+        super.onActivityCreated(savedInstanceState);
+
+        mChart.setOnChartValueSelectedListener(this);
+        mChart.setDescription("");
+        mChart.getXAxis().setDrawGridLines(false);
+        mChart.getAxisRight().setEnabled(false);
+        mChart.getAxisLeft().enableGridDashedLine(4.0f, 4.0f, 0);
+        mChart.getAxisLeft().setValueFormatter(new LargeValueFormatter(mCommodity.getSymbol()));
+
+        Legend legend = mChart.getLegend();
+        legend.setPosition(Legend.LegendPosition.BELOW_CHART_CENTER);
+        legend.setTextSize(16);
+        legend.setForm(Legend.LegendForm.CIRCLE);
+    }
+
+    /**
+     * Returns the forecast balances of the accounts of each type, summed up per type
+     * @return a {@code LineData} instance with one data set per account type
+     */
+    private LineData getData() {
+        List<String> xValues = new ArrayList<>();
+        long[] times = new long[FORECAST_INTERVAL_COUNT];
+        LocalDate intervalStart = getIntervalStart(LocalDate.now());
+        for (int i = 0; i < FORECAST_INTERVAL_COUNT; i++) {
+            LocalDate nextIntervalStart = getNextIntervalStart(intervalStart);
+            times[i] = nextIntervalStart.toDate().getTime() - 1;
+            switch (mGroupInterval) {
+                case QUARTER:
+                    xValues.add("Q" + (intervalStart.getMonthOfYear() / 3 + 1) + intervalStart.toString(" yy"));
+                    break;
+                case YEAR:
+                    xValues.add(intervalStart.toString("yyyy"));
+                    break;
+                case MONTH:
+                default:
+                    xValues.add(intervalStart.toString("MMM YY"));
+            }
+            intervalStart = nextIntervalStart;
+        }
+
+        List<List<String>> accountUIDsByType = new ArrayList<>(ACCOUNT_TYPES.size());
+        List<String> accountUIDs = new ArrayList<>();
+        for (int i = 0; i < ACCOUNT_TYPES.size(); i++) {
+            accountUIDsByType.add(new ArrayList<String>());
+        }
+        for (Account account : mAccountsDbAdapter.getSimpleAccountList()) {
+            int typeIndex = ACCOUNT_TYPES.indexOf(account.getAccountType());
+            if (typeIndex >= 0 && account.getCommodity().equals(mCommodity)) {
+                accountUIDsByType.get(typeIndex).add(account.getUID());
+                accountUIDs.add(account.getUID());
+            }
+        }
+
+        //each account is forecast on its own, so that sub-accounts are not counted twice
+        BalanceForecaster.Forecast forecast = new BalanceForecaster().forecast(accountUIDs, times, false);
+
+        List<LineDataSet> dataSets = new ArrayList<>();
+        boolean hasBalances = false;
+        for (int typeIndex = 0; typeIndex < ACCOUNT_TYPES.size(); typeIndex++) {
+            List<String> typeAccountUIDs = accountUIDsByType.get(typeIndex);
+            if (typeAccountUIDs.isEmpty())
+                continue;
+            float[] totals = new float[times.length];
+            for (String accountUID : typeAccountUIDs) {
+                Money[] balances = forecast.getBalances(accountUID);
+                for (int i = 0; i < times.length; i++) {
+                    totals[i] += (float) balances[i].asDouble();
+                }
+            }
+            List<Entry> entries = new ArrayList<>(times.length);
+            for (int i = 0; i < times.length; i++) {
+                entries.add(new Entry(totals[i], i));
+                hasBalances |= totals[i] != 0;
+            }
+            LineDataSet set = new LineDataSet(entries, ACCOUNT_TYPES.get(typeIndex).toString());
+            set.setLineWidth(2);
+            set.setColor(COLORS[typeIndex]);
+            set.setCircleColor(COLORS[typeIndex]);
+            dataSets.add(set);
+        }
+
+        if (!hasBalances) {
+            mChartDataPresent = false;
+            return getEmptyData();
+        }
+        mChartDataPresent = true;
+        return new LineData(xValues, dataSets);
+    }
+
+    private LocalDate getIntervalStart(LocalDate date) {
+        switch (mGroupInterval) {
+            case QUARTER:
+                return date.withDayOfMonth(1).withMonthOfYear((date.getMonthOfYear() - 1) / 3 * 3 + 1);
+            case YEAR:
+                return date.withDayOfYear(1);
+            case MONTH:
+            default:
+                return date.withDayOfMonth(1);
+        }
+    }
+
+    private LocalDate getNextIntervalStart(LocalDate intervalStart) {
+        switch (mGroupInterval) {
+            case QUARTER:
+                return intervalStart.plusMonths(3);
+            case YEAR:
+                return intervalStart.plusYears(1);
+            case MONTH:
+            default:
+                return intervalStart.plusMonths(1);
+        }
+    }
+
+    /**
+     * Returns a data object that represents situation when no user data available
+     * @return a {@code LineData} instance for situation when no user data available
+     */
+    private LineData getEmptyData() {
+        List<String> xValues = new ArrayList<>();
+        List<Entry> yValues = new ArrayList<>();
+        for (int i = 0; i < NO_DATA_BAR_COUNTS; i++) {
+            xValues.add("");
+            yValues.add(new Entry(i % 2 == 0 ? 5f : 4.5f, i));
+        }
+        LineDataSet set = new LineDataSet(yValues, getResources().getString(R.string.label_chart_no_data));
+        set.setDrawFilled(true);
+        set.setDrawValues(false);
+        set.setColor(NO_DATA_COLOR);
+        set.setFillColor(NO_DATA_COLOR);
+
+        return new LineData(xValues, Collections.singletonList(set));
+    }
+
+    @Override
+    protected void generateReport() {
+        mChart.setData(getData());
+    }
+
+    @Override
+    protected void displayReport() {
+        if (!mChartDataPresent) {
+            mChart.getAxisLeft().setAxisMaxValue(10);
+            mChart.getAxisLeft().setDrawLabels(false);
+            mChart.getXAxis().setDrawLabels(false);
+            mChart.setTouchEnabled(false);
+            mSelectedValueTextView.setText(getResources().getString(R.string.label_chart_no_data));
+        } else {
+            mChart.animateX(ANIMATION_DURATION);
+        }
+        mChart.invalidate();
+    }
+
+    @Override
+    public void onPrepareOptionsMenu(Menu menu) {
+        // hide chart specific menu items which do not apply to forecasts
+        menu.findItem(R.id.menu_toggle_average_lines).setVisible(false);
+        menu.findItem(R.id.menu_order_by_size).setVisible(false);
+        menu.findItem(R.id.menu_toggle_labels).setVisible(false);
+        menu.findItem(R.id.menu_percentage_mode).setVisible(false);
+        menu.findItem(R.id.menu_group_other_slice).setVisible(false);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.isCheckable())
+            item.setChecked(!item.isChecked());
+        switch (item.getItemId()) {
+            case R.id.menu_toggle_legend:
+                mChart.getLegend().setEnabled(!mChart.getLegend().isEnabled());
+                mChart.invalidate();
+                return true;
+
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    @Override
+    public void onValueSelected(Entry e, int dataSetIndex, Highlight h) {
+        if (e == null) return;
+        String label = mChart.getData().getXVals().get(e.getXIndex());
+        String accountType = mChart.getData().getDataSetByIndex(dataSetIndex).getLabel();
+        mSelectedValueTextView.setText(String.format("%s %s - %.2f", accountType, label, e.getVal()));
+    }
+}
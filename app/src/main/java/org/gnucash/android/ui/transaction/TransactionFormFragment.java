@@ -22,9 +22,11 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.Configuration;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.inputmethodservice.KeyboardView;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
 import android.support.v4.widget.SimpleCursorAdapter;
 import android.support.v7.app.ActionBar;
@@ -59,6 +61,7 @@ import com.codetroopers.betterpickers.recurrencepicker.RecurrencePickerDialogFra
 import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.DatabaseSchema;
+import org.gnucash.android.db.WriteBehindQueue;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
 import org.gnucash.android.db.adapter.DatabaseAdapter;
@@ -73,6 +76,7 @@ import org.gnucash.android.model.ScheduledAction;
 import org.gnucash.android.model.Split;
 import org.gnucash.android.model.Transaction;
 import org.gnucash.android.model.TransactionType;
+import org.gnucash.android.service.ScheduledActionService;
 import org.gnucash.android.ui.common.FormActivity;
 import org.gnucash.android.ui.common.UxArgument;
 import org.gnucash.android.ui.homescreen.WidgetConfigurationActivity;
@@ -83,6 +87,7 @@ import org.gnucash.android.ui.util.RecurrenceViewClickListener;
 import org.gnucash.android.ui.util.widget.CalculatorEditText;
 import org.gnucash.android.ui.util.widget.TransactionTypeSwitch;
 import org.gnucash.android.util.QualifiedAccountNameCursorAdapter;
+import org.gnucash.android.util.SuggestionTrie;
 
 import java.math.BigDecimal;
 import java.text.DateFormat;
@@ -104,8 +109,19 @@ public class TransactionFormFragment extends Fragment implements
         CalendarDatePickerDialogFragment.OnDateSetListener, RadialTimePickerDialogFragment.OnTimeSetListener,
         RecurrencePickerDialogFragment.OnRecurrenceSetListener, OnTransferFundsListener {
 
+    private static final String LOG_TAG = "TransactionFormFragment";
+
     private static final int REQUEST_SPLIT_EDITOR = 0x11;
 
+    /**
+     * Columns of the cursor of description suggestions
+     */
+    private static final String[] SUGGESTION_COLUMNS = new String[]{
+            DatabaseSchema.TransactionEntry._ID,
+            DatabaseSchema.TransactionEntry.COLUMN_DESCRIPTION,
+            DatabaseSchema.TransactionEntry.COLUMN_UID,
+            DatabaseSchema.TransactionEntry.COLUMN_TIMESTAMP};
+
     /**
 	 * Transactions database adapter
 	 */
@@ -231,6 +247,11 @@ public class TransactionFormFragment extends Fragment implements
 
     private String mAccountUID;
 
+    /**
+     * Descriptions used in the account, loaded when the user first types in the description
+     */
+    private SuggestionTrie mSuggestionTrie;
+
     private List<Split> mSplitsList = new ArrayList<>();
 
     private boolean mEditMode = false;
@@ -242,6 +263,11 @@ public class TransactionFormFragment extends Fragment implements
      */
     private boolean onSaveAttempt = false;
 
+    /**
+     * Flag which is set while the transaction is being written in the background, to ignore further saves
+     */
+    private boolean mSaveInProgress = false;
+
     /**
      * Split quantity which will be set from the funds transfer dialog
      */
@@ -422,14 +448,25 @@ public class TransactionFormFragment extends Fragment implements
         adapter.setFilterQueryProvider(new FilterQueryProvider() {
             @Override
             public Cursor runQuery(CharSequence name) {
-                return mTransactionsDbAdapter.fetchTransactionSuggestions(name == null ? "" : name.toString(), mAccountUID);
+                //filtering runs in the background, the suggestions are loaded for the first character typed
+                if (mSuggestionTrie == null)
+                    mSuggestionTrie = mTransactionsDbAdapter.getTransactionSuggestions(mAccountUID);
+                MatrixCursor cursor = new MatrixCursor(SUGGESTION_COLUMNS);
+                int id = 0;
+                for (SuggestionTrie.Suggestion suggestion : mSuggestionTrie.getSuggestions(name == null ? "" : name.toString())) {
+                    cursor.addRow(new Object[]{id++, suggestion.getDescription(),
+                            suggestion.getTransactionUID(), suggestion.getLastUsed()});
+                }
+                return cursor;
             }
         });
 
         mDescriptionEditText.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> adapterView, View view, int position, long id) {
-                mTransaction = new Transaction(mTransactionsDbAdapter.getRecord(id), true);
+                Cursor cursor = (Cursor) adapterView.getItemAtPosition(position);
+                String transactionUID = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.TransactionEntry.COLUMN_UID));
+                mTransaction = new Transaction(mTransactionsDbAdapter.getRecord(transactionUID), true);
                 mTransaction.setTime(System.currentTimeMillis());
                 //we check here because next method will modify it and we want to catch user-modification
                 boolean amountEntered = mAmountEditText.isInputModified();
@@ -846,76 +883,107 @@ public class TransactionFormFragment extends Fragment implements
         }
 
         Transaction transaction = extractTransactionFromView();
+        // widgets of the accounts which the transaction is removed from are updated too
+        final List<Split> affectedSplits = new ArrayList<>();
         if (mEditMode) { //if editing an existing transaction
             transaction.setUID(mTransaction.getUID());
+            affectedSplits.addAll(mTransaction.getSplits());
         }
 
         mTransaction = transaction;
-        mAccountsDbAdapter.beginTransaction();
-
-        try {
-            // 1) mTransactions may be existing or non-existing
-            // 2) when mTransactions exists in the db, the splits may exist or not exist in the db
-            // So replace is chosen.
-            mTransactionsDbAdapter.addRecord(mTransaction, DatabaseAdapter.UpdateMethod.replace);
-
-            if (mSaveTemplateCheckbox.isChecked()) {//template is automatically checked when a transaction is scheduled
-                if (!mEditMode) { //means it was new transaction, so a new template
-                    Transaction templateTransaction = new Transaction(mTransaction, true);
-                    templateTransaction.setTemplate(true);
-                    mTransactionsDbAdapter.addRecord(templateTransaction, DatabaseAdapter.UpdateMethod.replace);
-                    scheduleRecurringTransaction(templateTransaction.getUID());
-                } else
-                    scheduleRecurringTransaction(mTransaction.getUID());
-            } else {
-                String scheduledActionUID = getArguments().getString(UxArgument.SCHEDULED_ACTION_UID);
-                if (scheduledActionUID != null){ //we were editing a schedule and it was turned off
-                    ScheduledActionDbAdapter.getInstance().deleteRecord(scheduledActionUID);
+        mSaveInProgress = true;
+
+        // the form is read here, while the database is only written by the background writer
+        final TransactionsDbAdapter transactionsDbAdapter = mTransactionsDbAdapter;
+        final Transaction savedTransaction = transaction;
+        final boolean editMode = mEditMode;
+        final boolean saveTemplate = mSaveTemplateCheckbox.isChecked();
+        final Recurrence recurrence = saveTemplate ? RecurrenceParser.parse(mEventRecurrence) : null;
+        final String scheduledActionUID = getArguments().getString(UxArgument.SCHEDULED_ACTION_UID);
+        final Context appContext = getActivity().getApplicationContext();
+
+        WriteBehindQueue.WriteOperation saveOperation = new WriteBehindQueue.TransactionWriteOperation(savedTransaction) {
+            @Override
+            protected void writeTransaction() {
+                // 1) mTransactions may be existing or non-existing
+                // 2) when mTransactions exists in the db, the splits may exist or not exist in the db
+                // So replace is chosen.
+                transactionsDbAdapter.addRecord(savedTransaction, DatabaseAdapter.UpdateMethod.replace);
+
+                if (saveTemplate) {//template is automatically checked when a transaction is scheduled
+                    if (!editMode) { //means it was new transaction, so a new template
+                        Transaction templateTransaction = new Transaction(savedTransaction, true);
+                        templateTransaction.setTemplate(true);
+                        transactionsDbAdapter.addRecord(templateTransaction, DatabaseAdapter.UpdateMethod.replace);
+                        scheduleRecurringTransaction(templateTransaction.getUID(), recurrence, scheduledActionUID);
+                    } else
+                        scheduleRecurringTransaction(savedTransaction.getUID(), recurrence, scheduledActionUID);
+                } else {
+                    if (scheduledActionUID != null){ //we were editing a schedule and it was turned off
+                        ScheduledActionDbAdapter.getInstance().deleteRecord(scheduledActionUID);
+                    }
                 }
             }
+        };
 
-            mAccountsDbAdapter.setTransactionSuccessful();
-        }
-        finally {
-            mAccountsDbAdapter.endTransaction();
-        }
+        GnuCashApplication.getWriteBehindQueue().enqueue(DatabaseSchema.TransactionEntry.TABLE_NAME + ":" + transaction.getUID(),
+                saveOperation, new WriteBehindQueue.OnWriteCompleteListener() {
+            @Override
+            public void onWriteComplete(@Nullable Exception error) {
+                mSaveInProgress = false;
+                if (error != null) {
+                    Log.e(LOG_TAG, "Error saving transaction", error);
+                    if (isAdded())
+                        Toast.makeText(appContext, R.string.toast_error_saving_transaction, Toast.LENGTH_LONG).show();
+                    return;
+                }
+
+                if (saveTemplate && recurrence != null) {
+                    Toast.makeText(appContext, scheduledActionUID == null
+                            ? R.string.toast_scheduled_recurring_transaction
+                            : R.string.toast_updated_transaction_recurring_schedule, Toast.LENGTH_SHORT).show();
+                }
 
-        //update widgets, if any
-		WidgetConfigurationActivity.updateAllWidgets(getActivity().getApplicationContext());
+                //update widgets, if any. The splits include the imbalance split added by the save
+                affectedSplits.addAll(savedTransaction.getSplits());
+                WidgetConfigurationActivity.updateWidgetsForSplits(appContext, affectedSplits);
 
-		finish(Activity.RESULT_OK);
+                if (isAdded())
+                    finish(Activity.RESULT_OK);
+            }
+        });
 	}
 
     /**
-     * Schedules a recurring transaction (if necessary) after the transaction has been saved
+     * Schedules a recurring transaction (if necessary) after the transaction has been saved.
+     * <p>This is called by the background writer, as part of saving the transaction</p>
+     * @param transactionUID GUID of the template transaction
+     * @param recurrence Recurrence set in the form, or {@code null} if the transaction does not recur
+     * @param scheduledActionUID GUID of the scheduled action being edited, or {@code null} for a new schedule
      * @see #saveNewTransaction()
      */
-    private void scheduleRecurringTransaction(String transactionUID) {
+    private static void scheduleRecurringTransaction(String transactionUID, @Nullable Recurrence recurrence,
+                                                     @Nullable String scheduledActionUID) {
         ScheduledActionDbAdapter scheduledActionDbAdapter = ScheduledActionDbAdapter.getInstance();
 
-        Recurrence recurrence = RecurrenceParser.parse(mEventRecurrence);
-
         ScheduledAction scheduledAction = new ScheduledAction(ScheduledAction.ActionType.TRANSACTION);
         scheduledAction.setRecurrence(recurrence);
 
-        String scheduledActionUID = getArguments().getString(UxArgument.SCHEDULED_ACTION_UID);
-
         if (scheduledActionUID != null) { //if we are editing an existing schedule
             if (recurrence == null){
                 scheduledActionDbAdapter.deleteRecord(scheduledActionUID);
             } else {
                 scheduledAction.setUID(scheduledActionUID);
                 scheduledActionDbAdapter.updateRecurrenceAttributes(scheduledAction);
-                Toast.makeText(getActivity(), R.string.toast_updated_transaction_recurring_schedule, Toast.LENGTH_SHORT).show();
             }
         } else {
             if (recurrence != null) {
                 scheduledAction.setActionUID(transactionUID);
                 scheduledActionDbAdapter.addRecord(scheduledAction, DatabaseAdapter.UpdateMethod.replace);
-                Toast.makeText(getActivity(), R.string.toast_scheduled_recurring_transaction, Toast.LENGTH_SHORT).show();
             }
         }
-
+        ScheduledActionService.requestRunAt(GnuCashApplication.getAppContext(),
+                scheduledActionDbAdapter.getNextRunTime());
     }
 
 
@@ -943,6 +1011,9 @@ public class TransactionFormFragment extends Fragment implements
                 return true;
 
 		case R.id.menu_save:
+            if (mSaveInProgress){ //the transaction is being written in the background
+                return true;
+            }
             if (canSave()){
                 saveNewTransaction();
             } else {
@@ -0,0 +1,253 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.ui.transaction;
+
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.support.v4.app.LoaderManager;
+import android.support.v4.content.Loader;
+import android.support.v4.view.MenuItemCompat;
+import android.support.v7.app.ActionBar;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.support.v7.widget.Toolbar;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import org.gnucash.android.R;
+import org.gnucash.android.db.DatabaseCursorLoader;
+import org.gnucash.android.db.DatabaseSchema;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.ui.common.UxArgument;
+import org.gnucash.android.ui.passcode.PasscodeLockActivity;
+import org.gnucash.android.ui.util.CursorRecyclerAdapter;
+import org.gnucash.android.ui.util.widget.EmptyRecyclerView;
+
+import butterknife.BindView;
+import butterknife.ButterKnife;
+
+/**
+ * Activity for searching the transactions of the active book by their description, notes and split memos
+ */
+public class TransactionSearchActivity extends PasscodeLockActivity implements
+        LoaderManager.LoaderCallbacks<Cursor>, SearchView.OnQueryTextListener {
+
+    /**
+     * Maximum number of transactions listed for a search
+     */
+    private static final int MAX_RESULTS = 200;
+
+    private static final String STATE_QUERY = "search_query";
+
+    @BindView(R.id.toolbar) Toolbar mToolbar;
+    @BindView(R.id.transaction_recycler_view) EmptyRecyclerView mRecyclerView;
+    @BindView(R.id.empty_view) TextView mEmptyView;
+
+    private SearchResultsAdapter mSearchResultsAdapter;
+    private String mQuery = "";
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_transaction_search);
+        ButterKnife.bind(this);
+
+        setSupportActionBar(mToolbar);
+        ActionBar actionBar = getSupportActionBar();
+        assert actionBar != null;
+        actionBar.setDisplayHomeAsUpEnabled(true);
+        actionBar.setTitle(R.string.menu_search_transactions);
+
+        if (savedInstanceState != null)
+            mQuery = savedInstanceState.getString(STATE_QUERY, "");
+
+        mSearchResultsAdapter = new SearchResultsAdapter(null);
+        mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        mRecyclerView.setEmptyView(mEmptyView);
+        mRecyclerView.setAdapter(mSearchResultsAdapter);
+
+        getSupportLoaderManager().initLoader(0, null, this);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.global_actions, menu);
+        menu.findItem(R.id.menu_search_transactions).setVisible(false);
+        MenuItem searchItem = menu.findItem(R.id.menu_search);
+        SearchView searchView = (SearchView) MenuItemCompat.getActionView(searchItem);
+        searchView.setQueryHint(getString(R.string.menu_search_transactions));
+        MenuItemCompat.expandActionView(searchItem);
+        MenuItemCompat.setOnActionExpandListener(searchItem, new MenuItemCompat.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                finish();
+                return true;
+            }
+        });
+        searchView.setQuery(mQuery, false);
+        searchView.setOnQueryTextListener(this);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case android.R.id.home:
+                finish();
+                return true;
+
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_QUERY, mQuery);
+    }
+
+    @Override
+    public boolean onQueryTextSubmit(String query) {
+        //the results are already shown while typing
+        return true;
+    }
+
+    @Override
+    public boolean onQueryTextChange(String newText) {
+        if (newText.equals(mQuery))
+            return true;
+        mQuery = newText;
+        getSupportLoaderManager().restartLoader(0, null, this);
+        return true;
+    }
+
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        return new SearchCursorLoader(this, mQuery);
+    }
+
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+        mSearchResultsAdapter.swapCursor(cursor);
+    }
+
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
+        mSearchResultsAdapter.swapCursor(null);
+    }
+
+    /**
+     * Opens the details of a transaction, within the account which is shown for it in lists
+     */
+    private void openTransaction(String transactionUID, String accountUID) {
+        Intent intent = new Intent(this, TransactionDetailActivity.class);
+        intent.putExtra(UxArgument.SELECTED_TRANSACTION_UID, transactionUID);
+        intent.putExtra(UxArgument.SELECTED_ACCOUNT_UID, accountUID);
+        startActivity(intent);
+    }
+
+    class SearchResultsAdapter extends CursorRecyclerAdapter<SearchResultsAdapter.ViewHolder> {
+
+        SearchResultsAdapter(Cursor cursor) {
+            super(cursor);
+        }
+
+        @Override
+        public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            View v = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.cardview_compact_transaction, parent, false);
+            return new ViewHolder(v);
+        }
+
+        @Override
+        public void onBindViewHolderCursor(ViewHolder holder, Cursor cursor) {
+            holder.primaryText.setText(cursor.getString(
+                    cursor.getColumnIndexOrThrow(DatabaseSchema.TransactionEntry.COLUMN_DESCRIPTION)));
+
+            long dateMillis = cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseSchema.TransactionEntry.COLUMN_TIMESTAMP));
+            holder.secondaryText.setText(TransactionsActivity.getPrettyDateFormat(TransactionSearchActivity.this, dateMillis));
+
+            final String transactionUID = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseSchema.TransactionEntry.COLUMN_UID));
+            final String accountUID = cursor.getString(
+                    cursor.getColumnIndexOrThrow(DatabaseSchema.TransactionSummaryEntry.COLUMN_ACCOUNT_UID));
+            if (accountUID == null) {
+                holder.transactionAmount.setText("");
+                holder.itemView.setOnClickListener(null);
+                return;
+            }
+            Money amount = new Money(
+                    cursor.getLong(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.SEARCH_COLUMN_AMOUNT_NUM)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.SEARCH_COLUMN_AMOUNT_DENOM)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.SEARCH_COLUMN_AMOUNT_CURRENCY)));
+            TransactionsActivity.displayBalance(holder.transactionAmount, amount);
+            holder.itemView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    openTransaction(transactionUID, accountUID);
+                }
+            });
+        }
+
+        class ViewHolder extends RecyclerView.ViewHolder {
+            @BindView(R.id.primary_text)        TextView primaryText;
+            @BindView(R.id.secondary_text)      TextView secondaryText;
+            @BindView(R.id.transaction_amount)  TextView transactionAmount;
+            @BindView(R.id.options_menu)        ImageView optionsMenu;
+
+            ViewHolder(View itemView) {
+                super(itemView);
+                ButterKnife.bind(this, itemView);
+                primaryText.setTextSize(18);
+                optionsMenu.setVisibility(View.GONE);
+            }
+        }
+    }
+
+    /**
+     * Searches the transactions asynchronously
+     */
+    private static class SearchCursorLoader extends DatabaseCursorLoader {
+        private final String mQuery;
+
+        SearchCursorLoader(Context context, String query) {
+            super(context);
+            mQuery = query;
+        }
+
+        @Override
+        public Cursor loadInBackground() {
+            TransactionsDbAdapter transactionsDbAdapter = TransactionsDbAdapter.getInstance();
+            mDatabaseAdapter = transactionsDbAdapter;
+            Cursor cursor = transactionsDbAdapter.searchTransactions(mQuery, MAX_RESULTS);
+            registerContentObserver(cursor);
+            return cursor;
+        }
+    }
+}
@@ -19,11 +19,16 @@ package org.gnucash.android.ui.transaction;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.Configuration;
+import android.database.ContentObserver;
 import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.DataSetObserver;
+import android.database.MergeCursor;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager.LoaderCallbacks;
+import android.support.v4.content.AsyncTaskLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
@@ -43,11 +48,11 @@ import android.widget.TextView;
 
 import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
-import org.gnucash.android.db.DatabaseCursorLoader;
 import org.gnucash.android.db.DatabaseSchema;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.DatabaseAdapter;
 import org.gnucash.android.db.adapter.SplitsDbAdapter;
+import org.gnucash.android.db.adapter.TransactionKey;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.model.Money;
 import org.gnucash.android.model.Split;
@@ -62,6 +67,8 @@ import org.gnucash.android.ui.util.CursorRecyclerAdapter;
 import org.gnucash.android.ui.util.widget.EmptyRecyclerView;
 import org.gnucash.android.util.BackupManager;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import butterknife.BindView;
@@ -150,16 +157,26 @@ public class TransactionsListFragment extends Fragment implements
      */
     @Override
 	public void refresh(String accountUID){
-		mAccountUID = accountUID;
-		refresh();
+		if (accountUID.equals(mAccountUID)) {
+			refresh();
+		} else {
+			mAccountUID = accountUID;
+			getLoaderManager().restartLoader(0, null, this);
+		}
 	}
 
     /**
-     * Reload the list of transactions and recompute account balances
+     * Reload the list of transactions and recompute account balances.
+     * <p>Only the pages of transactions which changed are loaded again</p>
      */
     @Override
 	public void refresh(){
-		getLoaderManager().restartLoader(0, null, this);
+		Loader<Cursor> loader = getLoaderManager().getLoader(0);
+		if (loader == null) {
+			getLoaderManager().initLoader(0, null, this);
+		} else {
+			loader.onContentChanged();
+		}
 	}
 	
 	@Override
@@ -206,7 +223,7 @@ public class TransactionsListFragment extends Fragment implements
 	@Override
 	public Loader<Cursor> onCreateLoader(int arg0, Bundle arg1) {
 		Log.d(LOG_TAG, "Creating transactions loader");
-		return new TransactionsCursorLoader(getActivity(), mAccountUID);
+		return new TransactionPagesLoader(getActivity(), mAccountUID);
 	}
 
 	@Override
@@ -223,25 +240,254 @@ public class TransactionsListFragment extends Fragment implements
 	}
 
 	/**
-	 * {@link DatabaseCursorLoader} for loading transactions asynchronously from the database
-	 * @author Ngewi Fet <ngewif@gmail.com>
+	 * Loads the transactions of an account asynchronously, in pages of {@link #PAGE_SIZE} transactions.
+	 * <p>Only the first page is loaded at first, the next ones are loaded with {@link #loadNextPage()}
+	 * while the list is scrolled. Each page is delimited by the key of its last transaction, so loading
+	 * a page seeks to it in the timestamp index instead of counting all the transactions of the account.</p>
+	 * <p>When the content changes, the version of every loaded page is checked and only the pages which
+	 * changed are loaded again. The cursors of the other pages are kept.</p>
 	 */
-	protected static class TransactionsCursorLoader extends DatabaseCursorLoader {
-		private String accountUID;
-		
-		public TransactionsCursorLoader(Context context, String accountUID) {
-			super(context);			
-			this.accountUID = accountUID;
+	protected static class TransactionPagesLoader extends AsyncTaskLoader<Cursor> {
+		/**
+		 * Number of transactions loaded at once
+		 */
+		static final int PAGE_SIZE = 100;
+
+		private final String mAccountUID;
+
+		/**
+		 * Cursor last delivered. Its pages are the ones currently loaded
+		 */
+		private volatile PagedCursor mCursor;
+
+		private volatile boolean mNextPageRequested = false;
+
+		public TransactionPagesLoader(Context context, String accountUID) {
+			super(context);
+			mAccountUID = accountUID;
 		}
-		
+
+		/**
+		 * Requests the page after the last loaded one, if there is one and it is not being loaded yet
+		 */
+		public void loadNextPage() {
+			if (mNextPageRequested || mCursor == null || !mCursor.hasNextPage())
+				return;
+			mNextPageRequested = true;
+			onContentChanged();
+		}
+
 		@Override
 		public Cursor loadInBackground() {
-			mDatabaseAdapter = TransactionsDbAdapter.getInstance();
-			Cursor c = ((TransactionsDbAdapter) mDatabaseAdapter).fetchAllTransactionsForAccount(accountUID);
-			if (c != null)
-				registerContentObserver(c);
-			return c;
-		}		
+			TransactionsDbAdapter transactionsDbAdapter = TransactionsDbAdapter.getInstance();
+			PagedCursor loadedCursor = mCursor;
+			List<Page> loadedPages = loadedCursor == null ? Collections.<Page>emptyList() : loadedCursor.mPages;
+			List<Page> pages = new ArrayList<>(loadedPages.size() + 1);
+
+			if (loadedPages.isEmpty()) {
+				pages.add(loadPage(transactionsDbAdapter, null));
+			} else {
+				for (Page page : loadedPages) {
+					String version = transactionsDbAdapter.getTransactionPageVersion(mAccountUID, page.mStartAfter, page.mEndAt);
+					if (version.equals(page.mVersion)) {
+						pages.add(page);
+					} else if (page.mEndAt == null) {
+						pages.add(loadPage(transactionsDbAdapter, page.mStartAfter));
+					} else {
+						Cursor cursor = transactionsDbAdapter.fetchTransactionPageForAccount(
+								mAccountUID, page.mStartAfter, page.mEndAt, PAGE_SIZE);
+						cursor.getCount(); //fill the cursor window in the background
+						pages.add(new Page(page.mStartAfter, page.mEndAt, version, cursor));
+					}
+				}
+			}
+
+			Page lastPage = pages.get(pages.size() - 1);
+			if (mNextPageRequested && lastPage.mEndAt != null) {
+				pages.add(loadPage(transactionsDbAdapter, lastPage.mEndAt));
+			}
+			return new PagedCursor(pages);
+		}
+
+		/**
+		 * Loads the next {@link #PAGE_SIZE} transactions after a key
+		 */
+		private Page loadPage(TransactionsDbAdapter transactionsDbAdapter, @Nullable TransactionKey startAfter) {
+			Cursor cursor = transactionsDbAdapter.fetchTransactionPageForAccount(mAccountUID, startAfter, null, PAGE_SIZE);
+			TransactionKey endAt = null;
+			if (cursor.getCount() == PAGE_SIZE && cursor.moveToLast()) {
+				endAt = TransactionKey.fromCursor(cursor);
+			}
+			String version = transactionsDbAdapter.getTransactionPageVersion(mAccountUID, startAfter, endAt);
+			return new Page(startAfter, endAt, version, cursor);
+		}
+
+		@Override
+		public void deliverResult(Cursor data) {
+			PagedCursor pagedCursor = (PagedCursor) data;
+			if (isReset()) {
+				closePages(pagedCursor, null);
+				return;
+			}
+
+			PagedCursor oldCursor = mCursor;
+			mCursor = pagedCursor;
+			mNextPageRequested = false;
+
+			if (isStarted()) {
+				super.deliverResult(data);
+			}
+
+			closePages(oldCursor, pagedCursor);
+		}
+
+		@Override
+		public void onCanceled(Cursor data) {
+			super.onCanceled(data);
+			closePages((PagedCursor) data, mCursor);
+		}
+
+		@Override
+		protected void onStartLoading() {
+			if (mCursor != null) {
+				deliverResult(mCursor);
+			}
+			if (takeContentChanged() || mCursor == null) {
+				forceLoad();
+			}
+		}
+
+		@Override
+		protected void onStopLoading() {
+			cancelLoad();
+		}
+
+		@Override
+		protected void onReset() {
+			super.onReset();
+			onStopLoading();
+			closePages(mCursor, null);
+			mCursor = null;
+		}
+
+		/**
+		 * Closes a paged cursor, and the cursors of its pages which are not shared with another paged cursor.
+		 * <p>Closing the paged cursor releases its observers from the cursors of the shared pages</p>
+		 */
+		private static void closePages(@Nullable PagedCursor cursor, @Nullable PagedCursor keptCursor) {
+			if (cursor == null || cursor == keptCursor)
+				return;
+			cursor.close();
+			for (Page page : cursor.mPages) {
+				if (keptCursor == null || !keptCursor.mPages.contains(page))
+					page.mCursor.close();
+			}
+		}
+
+		/**
+		 * Transactions listed after the end of the previous page, up to and including a key
+		 */
+		private static class Page {
+			/**
+			 * Key of the last transaction of the previous page, null for the first page
+			 */
+			final TransactionKey mStartAfter;
+			/**
+			 * Key of the last transaction of the page, null if the page goes to the end of the list
+			 */
+			final TransactionKey mEndAt;
+			final String mVersion;
+			final Cursor mCursor;
+
+			Page(TransactionKey startAfter, TransactionKey endAt, String version, Cursor cursor) {
+				mStartAfter = startAfter;
+				mEndAt = endAt;
+				mVersion = version;
+				mCursor = cursor;
+			}
+		}
+
+		/**
+		 * Cursor over the transactions of the loaded pages
+		 */
+		private static class PagedCursor extends MergeCursor {
+			private final List<Page> mPages;
+
+			PagedCursor(List<Page> pages) {
+				super(getCursors(pages));
+				mPages = pages;
+			}
+
+			private static Cursor[] getCursors(List<Page> pages) {
+				Cursor[] cursors = new Cursor[pages.size()];
+				for (int i = 0; i < cursors.length; i++) {
+					cursors[i] = new PageCursor(pages.get(i).mCursor);
+				}
+				return cursors;
+			}
+
+			boolean hasNextPage() {
+				return mPages.get(mPages.size() - 1).mEndAt != null;
+			}
+		}
+
+		/**
+		 * Cursor of a page within one paged cursor.
+		 * <p>The cursor of a page is shared by the paged cursors loaded one after another. Closing this
+		 * only unregisters the observers added through it, such as the one of the {@link MergeCursor},
+		 * and leaves the cursor of the page open</p>
+		 */
+		private static class PageCursor extends CursorWrapper {
+			private final List<DataSetObserver> mDataSetObservers = new ArrayList<>();
+			private final List<ContentObserver> mContentObservers = new ArrayList<>();
+			private boolean mClosed = false;
+
+			PageCursor(Cursor cursor) {
+				super(cursor);
+			}
+
+			@Override
+			public void registerDataSetObserver(DataSetObserver observer) {
+				super.registerDataSetObserver(observer);
+				mDataSetObservers.add(observer);
+			}
+
+			@Override
+			public void unregisterDataSetObserver(DataSetObserver observer) {
+				if (mDataSetObservers.remove(observer))
+					super.unregisterDataSetObserver(observer);
+			}
+
+			@Override
+			public void registerContentObserver(ContentObserver observer) {
+				super.registerContentObserver(observer);
+				mContentObservers.add(observer);
+			}
+
+			@Override
+			public void unregisterContentObserver(ContentObserver observer) {
+				if (mContentObservers.remove(observer))
+					super.unregisterContentObserver(observer);
+			}
+
+			@Override
+			public void close() {
+				mClosed = true;
+				for (DataSetObserver observer : mDataSetObservers) {
+					super.unregisterDataSetObserver(observer);
+				}
+				mDataSetObservers.clear();
+				for (ContentObserver observer : mContentObservers) {
+					super.unregisterContentObserver(observer);
+				}
+				mContentObservers.clear();
+			}
+
+			@Override
+			public boolean isClosed() {
+				return mClosed || super.isClosed();
+			}
+		}
 	}
 
 	public class TransactionRecyclerAdapter extends CursorRecyclerAdapter<TransactionRecyclerAdapter.ViewHolder>{
@@ -266,6 +512,16 @@ public class TransactionsListFragment extends Fragment implements
 			return mUseCompactView ? ITEM_TYPE_COMPACT : ITEM_TYPE_FULL;
 		}
 
+		@Override
+		public void onBindViewHolder(ViewHolder holder, int position) {
+			super.onBindViewHolder(holder, position);
+			if (position >= getItemCount() - TransactionPagesLoader.PAGE_SIZE / 4) {
+				Loader<Cursor> loader = getLoaderManager().getLoader(0);
+				if (loader != null)
+					((TransactionPagesLoader) loader).loadNextPage();
+			}
+		}
+
 		@Override
 		public void onBindViewHolderCursor(ViewHolder holder, Cursor cursor) {
 			holder.transactionId = cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseSchema.TransactionEntry._ID));
@@ -356,8 +612,9 @@ public class TransactionsListFragment extends Fragment implements
 				switch (item.getItemId()) {
 					case R.id.context_menu_delete:
 						BackupManager.backupActiveBook();
+						List<Split> deletedSplits = SplitsDbAdapter.getInstance().getSplitsForTransaction(transactionId);
 						mTransactionsDbAdapter.deleteRecord(transactionId);
-						WidgetConfigurationActivity.updateAllWidgets(getActivity());
+						WidgetConfigurationActivity.updateWidgetsForSplits(getActivity(), deletedSplits);
 						refresh();
 						return true;
 
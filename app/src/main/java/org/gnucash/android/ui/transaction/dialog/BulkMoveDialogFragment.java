@@ -38,6 +38,8 @@ import org.gnucash.android.ui.homescreen.WidgetConfigurationActivity;
 import org.gnucash.android.ui.transaction.TransactionsActivity;
 import org.gnucash.android.util.QualifiedAccountNameCursorAdapter;
 
+import java.util.Arrays;
+
 /**
  * Dialog fragment for moving transactions from one account to another
  * @author Ngewi Fet <ngewif@gmail.com>
@@ -166,7 +168,7 @@ public class BulkMoveDialogFragment extends DialogFragment {
 					trxnAdapter.moveTransaction(trxnAdapter.getUID(trxnId), srcAccountUID, dstAccountUID);
 				}
 
-				WidgetConfigurationActivity.updateAllWidgets(getActivity());
+				WidgetConfigurationActivity.updateWidgets(getActivity(), Arrays.asList(srcAccountUID, dstAccountUID));
 				((Refreshable) getTargetFragment()).refresh();
 				dismiss();
 			}
@@ -26,7 +26,9 @@ import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.DatabaseAdapter;
+import org.gnucash.android.db.adapter.SplitsDbAdapter;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.model.Split;
 import org.gnucash.android.model.Transaction;
 import org.gnucash.android.ui.common.Refreshable;
 import org.gnucash.android.ui.common.UxArgument;
@@ -77,13 +79,15 @@ public class TransactionsDeleteConfirmationDialogFragment extends DialogFragment
                                     if (preserveOpeningBalances) {
                                         transactionsDbAdapter.bulkAddRecords(openingBalances, DatabaseAdapter.UpdateMethod.insert);
                                     }
+                                    WidgetConfigurationActivity.updateAllWidgets(getActivity());
                                 } else {
+                                    List<Split> deletedSplits = SplitsDbAdapter.getInstance().getSplitsForTransaction(rowId);
                                     transactionsDbAdapter.deleteRecord(rowId);
+                                    WidgetConfigurationActivity.updateWidgetsForSplits(getActivity(), deletedSplits);
                                 }
                                 if (getTargetFragment() instanceof Refreshable) {
                                     ((Refreshable) getTargetFragment()).refresh();
                                 }
-                                WidgetConfigurationActivity.updateAllWidgets(getActivity());
                             }
                         }
                 )
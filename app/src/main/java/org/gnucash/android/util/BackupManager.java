@@ -29,6 +29,7 @@ import com.crashlytics.android.Crashlytics;
 
 import org.gnucash.android.app.GnuCashApplication;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
+import org.gnucash.android.export.ExportCompression;
 import org.gnucash.android.export.ExportFormat;
 import org.gnucash.android.export.ExportParams;
 import org.gnucash.android.export.Exporter;
@@ -37,16 +38,14 @@ import org.gnucash.android.model.Book;
 import org.gnucash.android.receivers.PeriodicJobReceiver;
 import org.gnucash.android.ui.settings.PreferenceActivity;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 
 
 /**
@@ -56,6 +55,12 @@ public class BackupManager {
     private static final String LOG_TAG = "BackupManager";
     public static final String KEY_BACKUP_FILE = "book_backup_file_key";
 
+    /**
+     * Compression level of backups.
+     * Backups run in the background on every service run, so favour speed over size.
+     */
+    private static final int BACKUP_COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+
     /**
      * Perform an automatic backup of all books in the database.
      * This method is run every time the service is executed
@@ -72,14 +77,9 @@ public class BackupManager {
                 continue;
             }
 
-            try (BufferedOutputStream bufferedOutputStream =
-                    new BufferedOutputStream(context.getContentResolver().openOutputStream(Uri.parse(backupFile)))){
-                GZIPOutputStream gzipOutputStream = new GZIPOutputStream(bufferedOutputStream);
-                OutputStreamWriter writer = new OutputStreamWriter(gzipOutputStream);
-                ExportParams params = new ExportParams(ExportFormat.XML);
-                new GncXmlExporter(params).generateExport(writer);
-                writer.close();
-            } catch (IOException ex) {
+            try {
+                writeBackup(context.getContentResolver().openOutputStream(Uri.parse(backupFile)));
+            } catch (IOException | Exporter.ExporterException ex) {
                 Log.e(LOG_TAG, "Auto backup failed for book " + bookUID);
                 ex.printStackTrace();
                 Crashlytics.logException(ex);
@@ -114,13 +114,7 @@ public class BackupManager {
                 outputStream = new FileOutputStream(backupFile);
             }
 
-            BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(outputStream);
-            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(bufferedOutputStream);
-            OutputStreamWriter writer = new OutputStreamWriter(gzipOutputStream);
-
-            ExportParams params = new ExportParams(ExportFormat.XML);
-            new GncXmlExporter(params).generateExport(writer);
-            writer.close();
+            writeBackup(outputStream);
             return true;
         } catch (IOException | Exporter.ExporterException e) {
             Crashlytics.logException(e);
@@ -129,6 +123,22 @@ public class BackupManager {
         }
     }
 
+    /**
+     * Streams a gzipped XML backup of the active book to {@code outputStream}.
+     * <p>The backup is written directly to the destination, without a copy in the cache directory.
+     * The stream is closed afterwards.</p>
+     * @param outputStream Destination of the backup
+     * @throws Exporter.ExporterException if the backup could not be written
+     */
+    private static void writeBackup(OutputStream outputStream) throws Exporter.ExporterException {
+        ExportParams params = new ExportParams(ExportFormat.XML);
+        params.setCompression(ExportCompression.GZIP);
+        params.setCompressionLevel(BACKUP_COMPRESSION_LEVEL);
+        GncXmlExporter exporter = new GncXmlExporter(params);
+        exporter.setIndentOutput(false);
+        exporter.generateExport(outputStream);
+    }
+
     /**
      * Returns the full path of a file to make database backup of the specified book.
      * Backups are done in XML format and are Gzipped (with ".gnca" extension).
@@ -0,0 +1,216 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gnucash.android.util;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefix tree of the transaction descriptions used in an account, for autocompletion.
+ * <p>Every node keeps the best ranked suggestions below it, so that looking up a prefix only
+ * walks down the characters of the prefix. Suggestions are ranked by how often they were used,
+ * with the weight of a use halving every {@link #RECENCY_HALF_LIFE} milliseconds.</p>
+ * <p>The descriptions are compared in their normalized form, see {@link #normalize(String)}</p>
+ */
+public class SuggestionTrie {
+
+    /**
+     * Number of suggestions returned for a prefix by default
+     */
+    public static final int DEFAULT_MAX_SUGGESTIONS = 5;
+
+    /**
+     * Time after which the weight of the uses of a description is halved: 30 days
+     */
+    public static final long RECENCY_HALF_LIFE = 30L * 24 * 60 * 60 * 1000;
+
+    private final Node mRoot = new Node();
+    private final int mMaxSuggestions;
+    private final long mReferenceTime;
+    private int mSize;
+
+    /**
+     * Creates an empty trie
+     * @param maxSuggestions Maximum number of suggestions returned for a prefix
+     * @param referenceTime Time against which the recency of the suggestions is ranked, usually now
+     */
+    public SuggestionTrie(int maxSuggestions, long referenceTime) {
+        mMaxSuggestions = maxSuggestions;
+        mReferenceTime = referenceTime;
+    }
+
+    /**
+     * Normalizes a description, the way it is stored with the transactions for the suggestions:
+     * leading and trailing spaces are removed and ASCII letters are converted to lower case
+     * @param description Description of a transaction
+     * @return Normalized description
+     */
+    public static String normalize(@NonNull String description) {
+        int start = 0;
+        int end = description.length();
+        while (start < end && description.charAt(start) == ' ')
+            start++;
+        while (end > start && description.charAt(end - 1) == ' ')
+            end--;
+        return toLowerCaseAscii(description.substring(start, end));
+    }
+
+    private static String toLowerCaseAscii(String text) {
+        StringBuilder builder = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (builder == null)
+                    builder = new StringBuilder(text);
+                builder.setCharAt(i, (char) (c + ('a' - 'A')));
+            }
+        }
+        return builder == null ? text : builder.toString();
+    }
+
+    /**
+     * Adds a suggestion to the trie. Each normalized description should only be added once
+     * @param suggestion Suggestion to add
+     */
+    public void add(@NonNull Suggestion suggestion) {
+        suggestion.mScore = suggestion.mUseCount
+                * Math.pow(0.5, Math.max(0, mReferenceTime - suggestion.mLastUsed) / (double) RECENCY_HALF_LIFE);
+        Node node = mRoot;
+        node.offer(suggestion, mMaxSuggestions);
+        for (int i = 0; i < suggestion.mNormalizedDescription.length(); i++) {
+            char c = suggestion.mNormalizedDescription.charAt(i);
+            Node child = node.mChildren == null ? null : node.mChildren.get(c);
+            if (child == null) {
+                child = new Node();
+                if (node.mChildren == null)
+                    node.mChildren = new HashMap<>(4);
+                node.mChildren.put(c, child);
+            }
+            node = child;
+            node.offer(suggestion, mMaxSuggestions);
+        }
+        mSize++;
+    }
+
+    /**
+     * Returns the best ranked suggestions which start with a prefix
+     * @param prefix Text typed by the user. Leading spaces are ignored, and ASCII letters are case-insensitive
+     * @return Suggestions, the best ranked first
+     */
+    public List<Suggestion> getSuggestions(@NonNull String prefix) {
+        int start = 0;
+        while (start < prefix.length() && prefix.charAt(start) == ' ')
+            start++;
+        String normalizedPrefix = toLowerCaseAscii(prefix.substring(start));
+
+        Node node = mRoot;
+        for (int i = 0; i < normalizedPrefix.length() && node != null; i++) {
+            node = node.mChildren == null ? null : node.mChildren.get(normalizedPrefix.charAt(i));
+        }
+        if (node == null || node.mSuggestions == null)
+            return Collections.emptyList();
+        return Collections.unmodifiableList(node.mSuggestions);
+    }
+
+    /**
+     * Returns the number of descriptions in the trie
+     * @return Number of suggestions
+     */
+    public int size() {
+        return mSize;
+    }
+
+    private static class Node {
+        Map<Character, Node> mChildren;
+        /**
+         * Best ranked suggestions below this node, the best first
+         */
+        List<Suggestion> mSuggestions;
+
+        void offer(Suggestion suggestion, int maxSuggestions) {
+            if (mSuggestions == null)
+                mSuggestions = new ArrayList<>(1);
+            int index = mSuggestions.size();
+            while (index > 0 && suggestion.isRankedBefore(mSuggestions.get(index - 1)))
+                index--;
+            if (index >= maxSuggestions)
+                return;
+            mSuggestions.add(index, suggestion);
+            if (mSuggestions.size() > maxSuggestions)
+                mSuggestions.remove(maxSuggestions);
+        }
+    }
+
+    /**
+     * Description which was used for transactions in an account
+     */
+    public static class Suggestion {
+        private final String mDescription;
+        private final String mNormalizedDescription;
+        private final String mTransactionUID;
+        private final long mLastUsed;
+        private final int mUseCount;
+        private double mScore;
+
+        /**
+         * Creates a suggestion
+         * @param description Description as it was last used
+         * @param normalizedDescription Normalized description, see {@link #normalize(String)}
+         * @param transactionUID GUID of the most recent transaction with the description
+         * @param lastUsed Time of the most recent transaction with the description
+         * @param useCount Number of times the description was used
+         */
+        public Suggestion(@NonNull String description, @NonNull String normalizedDescription,
+                          @NonNull String transactionUID, long lastUsed, int useCount) {
+            mDescription = description;
+            mNormalizedDescription = normalizedDescription;
+            mTransactionUID = transactionUID;
+            mLastUsed = lastUsed;
+            mUseCount = useCount;
+        }
+
+        public String getDescription() {
+            return mDescription;
+        }
+
+        /**
+         * Returns the GUID of the most recent transaction with the description.
+         * It serves as template when the suggestion is picked
+         * @return GUID of the transaction
+         */
+        public String getTransactionUID() {
+            return mTransactionUID;
+        }
+
+        public long getLastUsed() {
+            return mLastUsed;
+        }
+
+        public int getUseCount() {
+            return mUseCount;
+        }
+
+        boolean isRankedBefore(Suggestion other) {
+            if (mScore != other.mScore)
+                return mScore > other.mScore;
+            return mLastUsed > other.mLastUsed;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.gnucash.android.R;
+import org.gnucash.android.app.BookSettings;
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.adapter.BooksDbAdapter;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.gnucash.android.ui.settings.PreferenceActivity;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests that the settings snapshot of the open book follows changes of the preferences
+ */
+@RunWith(RobolectricTestRunner.class) //package is required so that resources can be found in dev mode
+@Config(sdk = 21, packageName = "org.gnucash.android", shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class BookSettingsTest {
+
+    private Context mContext;
+    private SharedPreferences mBookPreferences;
+
+    @Before
+    public void setUp() {
+        mContext = GnuCashApplication.getAppContext();
+        mBookPreferences = PreferenceActivity.getActiveBookSharedPreferences();
+    }
+
+    @Test
+    public void snapshot_shouldBelongToActiveBook() {
+        assertThat(GnuCashApplication.getBookSettings().getBookUID())
+                .isEqualTo(BooksDbAdapter.getInstance().getActiveBookUID());
+    }
+
+    @Test
+    public void changingPreferences_shouldRefreshSnapshot() {
+        BookSettings before = GnuCashApplication.getBookSettings();
+        boolean doubleEntry = before.isDoubleEntryEnabled();
+
+        mBookPreferences.edit()
+                .putBoolean(mContext.getString(R.string.key_use_double_entry), !doubleEntry)
+                .commit();
+        assertThat(GnuCashApplication.isDoubleEntryEnabled()).isEqualTo(!doubleEntry);
+        // a snapshot is never changed
+        assertThat(before.isDoubleEntryEnabled()).isEqualTo(doubleEntry);
+
+        mBookPreferences.edit()
+                .putBoolean(mContext.getString(R.string.key_use_double_entry), doubleEntry)
+                .commit();
+        assertThat(GnuCashApplication.isDoubleEntryEnabled()).isEqualTo(doubleEntry);
+    }
+
+    @Test
+    public void unsetPreference_shouldReturnDefaultValue() {
+        String key = mContext.getString(R.string.key_save_opening_balances);
+        mBookPreferences.edit().remove(key).commit();
+        assertThat(GnuCashApplication.shouldSaveOpeningBalances(false)).isFalse();
+        assertThat(GnuCashApplication.shouldSaveOpeningBalances(true)).isTrue();
+
+        mBookPreferences.edit().putBoolean(key, true).commit();
+        assertThat(GnuCashApplication.shouldSaveOpeningBalances(false)).isTrue();
+    }
+
+    @Test
+    public void settingDefaultCurrency_shouldRefreshSnapshot() {
+        String currencyCode = GnuCashApplication.getDefaultCurrencyCode();
+
+        GnuCashApplication.setDefaultCurrencyCode("JPY");
+        assertThat(GnuCashApplication.getBookSettings().getDefaultCurrencyCode()).isEqualTo("JPY");
+
+        GnuCashApplication.setDefaultCurrencyCode(currencyCode);
+        assertThat(GnuCashApplication.getDefaultCurrencyCode()).isEqualTo(currencyCode);
+    }
+}
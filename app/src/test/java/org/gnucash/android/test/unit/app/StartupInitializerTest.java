@@ -0,0 +1,193 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.app;
+
+import org.gnucash.android.app.StartupInitializer;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the ordering and the readiness gate of the application initialization
+ */
+@RunWith(RobolectricTestRunner.class) //package is required so that resources can be found in dev mode
+@Config(sdk = 21, packageName = "org.gnucash.android", shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class StartupInitializerTest {
+
+    private static Runnable record(final List<String> log, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                log.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void phases_shouldRunAfterTheirDependencies() {
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch slowPhase = new CountDownLatch(1);
+        StartupInitializer startup = new StartupInitializer()
+                .addBlockingPhase("book", record(log, "book"))
+                .addBackgroundPhase("crash_reporting", new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            slowPhase.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        log.add("crash_reporting");
+                    }
+                })
+                .addBackgroundPhase("user_voice", record(log, "user_voice"))
+                .addBackgroundPhase("database", record(log, "database"), "book", "crash_reporting")
+                .addBackgroundPhase("warm_up", record(log, "warm_up"), "database");
+
+        startup.start();
+        assertThat(log).startsWith("book");
+        assertThat(startup.isReady()).isFalse();
+
+        slowPhase.countDown();
+        startup.awaitReady();
+        assertThat(startup.isReady()).isTrue();
+        assertThat(log).containsOnly("book", "crash_reporting", "user_voice", "database", "warm_up");
+        assertThat(log.indexOf("database")).isGreaterThan(log.indexOf("crash_reporting"));
+        assertThat(log.indexOf("warm_up")).isGreaterThan(log.indexOf("database"));
+        assertThat(startup.getPhaseTimings().keySet()).containsOnly("book", "crash_reporting", "user_voice", "database", "warm_up");
+        assertThat(startup.getReadyDuration()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    public void failedPhase_shouldSkipDependentsAndFailTheGate() {
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        StartupInitializer startup = new StartupInitializer()
+                .addBackgroundPhase("database", new Runnable() {
+                    @Override
+                    public void run() {
+                        throw new IllegalStateException("cannot open database");
+                    }
+                })
+                .addBackgroundPhase("warm_up", record(log, "warm_up"), "database")
+                .addBackgroundPhase("user_voice", record(log, "user_voice"));
+        startup.start();
+
+        try {
+            startup.awaitReady();
+            fail("The failure of a phase should be reported");
+        } catch (IllegalStateException e) {
+            assertThat(e.getCause()).hasMessage("cannot open database");
+        }
+        assertThat(log).containsExactly("user_voice");
+    }
+
+    @Test
+    public void awaitPhases_shouldNotWaitForOtherPhases() {
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch slowPhase = new CountDownLatch(1);
+        StartupInitializer startup = new StartupInitializer()
+                .addBlockingPhase("book", record(log, "book"))
+                .addBackgroundPhase("stetho", new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            slowPhase.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        log.add("stetho");
+                    }
+                })
+                .addBackgroundPhase("database", record(log, "database"), "book");
+        startup.start();
+
+        startup.awaitPhases("database");
+        assertThat(log).containsOnly("book", "database");
+        assertThat(startup.isReady()).isFalse();
+
+        slowPhase.countDown();
+        startup.awaitReady();
+        assertThat(log).contains("stetho");
+    }
+
+    @Test
+    public void awaitPhases_shouldOnlyFailForFailedDependencies() {
+        StartupInitializer startup = new StartupInitializer()
+                .addBackgroundPhase("user_voice", new Runnable() {
+                    @Override
+                    public void run() {
+                        throw new IllegalStateException("cannot reach server");
+                    }
+                })
+                .addBackgroundPhase("database", record(new ArrayList<String>(), "database"))
+                .addBackgroundPhase("feedback", record(new ArrayList<String>(), "feedback"), "user_voice");
+        startup.start();
+
+        startup.awaitPhases("database");
+        try {
+            startup.awaitPhases("feedback");
+            fail("The failure of a dependency should be reported");
+        } catch (IllegalStateException e) {
+            assertThat(e.getCause()).hasMessage("cannot reach server");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void awaitPhases_shouldNotAcceptUnknownPhase() {
+        StartupInitializer startup = new StartupInitializer()
+                .addBackgroundPhase("database", record(new ArrayList<String>(), "database"));
+        startup.start();
+        startup.awaitPhases("book");
+    }
+
+    @Test
+    public void awaitReady_shouldNotBlockPhases() {
+        final StartupInitializer startup = new StartupInitializer();
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        startup.addBackgroundPhase("database", new Runnable() {
+            @Override
+            public void run() {
+                startup.awaitReady(); //e.g. an adapter used during a migration
+                log.add("database");
+            }
+        });
+        startup.start();
+        startup.awaitReady();
+        assertThat(log).containsExactly("database");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void phase_shouldNotDependOnUnknownPhase() {
+        new StartupInitializer().addBackgroundPhase("database", record(new ArrayList<String>(), "database"), "book");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void blockingPhase_shouldNotDependOnBackgroundPhase() {
+        List<String> log = new ArrayList<>();
+        new StartupInitializer()
+                .addBackgroundPhase("database", record(log, "database"))
+                .addBlockingPhase("book", record(log, "book"), "database");
+    }
+}
@@ -58,6 +58,7 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -350,6 +351,43 @@ public class AccountsDbAdapterTest{
         assertThat(balance).isEqualTo(expectedBalance);
     }
 
+    @Test
+    public void accountBalances_shouldMatchBalanceOfEachAccount(){
+        Account parent = new Account("Parent", Commodity.USD);
+        parent.setAccountType(AccountType.EXPENSE);
+        Account child = new Account("Child", Commodity.USD);
+        child.setAccountType(AccountType.EXPENSE);
+        child.setParentUID(parent.getUID());
+        Account transferAcct = new Account("Transfer", Commodity.USD);
+        mAccountsDbAdapter.addRecord(parent);
+        mAccountsDbAdapter.addRecord(child);
+        mAccountsDbAdapter.addRecord(transferAcct);
+
+        Transaction transaction = new Transaction("Groceries");
+        Split split = new Split(new Money("12.50", "USD"), parent.getUID());
+        split.setType(TransactionType.DEBIT);
+        transaction.addSplit(split);
+        split = new Split(new Money("7.25", "USD"), child.getUID());
+        split.setType(TransactionType.DEBIT);
+        transaction.addSplit(split);
+        transaction.addSplit(new Split(new Money("19.75", "USD"), transferAcct.getUID()));
+        mTransactionsDbAdapter.addRecord(transaction);
+
+        List<String> accountUIDs = new ArrayList<>();
+        accountUIDs.add(parent.getUID());
+        accountUIDs.add(child.getUID());
+        accountUIDs.add(transferAcct.getUID());
+        Map<String, Money> balances = mAccountsDbAdapter.getAccountBalances(accountUIDs);
+        for (String accountUID : accountUIDs) {
+            assertThat(balances.get(accountUID)).isEqualTo(mAccountsDbAdapter.getAccountBalance(accountUID));
+        }
+        assertThat(balances.get(parent.getUID())).isEqualTo(new Money("19.75", "USD"));
+
+        Map<String, Integer> subAccountCounts = mAccountsDbAdapter.getSubAccountCounts(accountUIDs);
+        assertThat(subAccountCounts.get(parent.getUID())).isEqualTo(1);
+        assertThat(subAccountCounts).doesNotContainKey(child.getUID());
+    }
+
     /**
      * Test creating an account hierarchy by specifying fully qualified name
      */
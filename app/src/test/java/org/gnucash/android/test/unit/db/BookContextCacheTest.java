@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.db;
+
+import android.content.ComponentCallbacks2;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.BookContext;
+import org.gnucash.android.db.BookContextCache;
+import org.gnucash.android.model.BaseModel;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests the reuse and eviction of open book contexts
+ */
+@RunWith(RobolectricTestRunner.class) //package is required so that resources can be found in dev mode
+@Config(sdk = 21, packageName = "org.gnucash.android", shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class BookContextCacheTest {
+
+    private BookContextCache mBookContexts;
+
+    private String mFirstBookUID;
+    private String mSecondBookUID;
+    private String mThirdBookUID;
+
+    @Before
+    public void setUp() {
+        mBookContexts = new BookContextCache(GnuCashApplication.getAppContext(), 2);
+        mFirstBookUID = BaseModel.generateUID();
+        mSecondBookUID = BaseModel.generateUID();
+        mThirdBookUID = BaseModel.generateUID();
+    }
+
+    @Test
+    public void acquiringRecentBook_shouldReuseContext() {
+        BookContext first = mBookContexts.acquire(mFirstBookUID);
+        mBookContexts.release(first);
+        BookContext second = mBookContexts.acquire(mSecondBookUID);
+        mBookContexts.release(second);
+
+        BookContext context = mBookContexts.acquire(mFirstBookUID);
+        assertThat(context).isSameAs(first);
+        assertThat(context.isClosed()).isFalse();
+        assertThat(context.getDb().isOpen()).isTrue();
+        assertThat(context.getAccountsDbAdapter().isOpen()).isTrue();
+        mBookContexts.release(context);
+    }
+
+    @Test
+    public void leastRecentlyUsedContext_shouldBeClosed() {
+        BookContext first = mBookContexts.acquire(mFirstBookUID);
+        mBookContexts.release(first);
+        BookContext second = mBookContexts.acquire(mSecondBookUID);
+        mBookContexts.release(second);
+        BookContext third = mBookContexts.acquire(mThirdBookUID);
+        mBookContexts.release(third);
+
+        assertThat(mBookContexts.size()).isEqualTo(2);
+        assertThat(first.isClosed()).isTrue();
+        assertThat(second.isClosed()).isFalse();
+        assertThat(third.isClosed()).isFalse();
+
+        BookContext reopened = mBookContexts.acquire(mFirstBookUID);
+        assertThat(reopened).isNotSameAs(first);
+        assertThat(reopened.isClosed()).isFalse();
+        mBookContexts.release(reopened);
+    }
+
+    @Test
+    public void contextInUse_shouldNotBeEvicted() {
+        BookContext first = mBookContexts.acquire(mFirstBookUID);
+        BookContext second = mBookContexts.acquire(mSecondBookUID);
+        mBookContexts.release(second);
+        BookContext third = mBookContexts.acquire(mThirdBookUID);
+        mBookContexts.release(third);
+
+        assertThat(first.isClosed()).isFalse();
+        assertThat(second.isClosed()).isTrue();
+        assertThat(mBookContexts.acquire(mFirstBookUID)).isSameAs(first);
+        mBookContexts.release(first);
+
+        mBookContexts.evictAll();
+        assertThat(first.isClosed()).isFalse();
+        assertThat(third.isClosed()).isTrue();
+        assertThat(mBookContexts.size()).isEqualTo(1);
+
+        mBookContexts.release(first);
+        assertThat(first.isClosed()).isFalse(); //still cached
+        mBookContexts.evictAll();
+        assertThat(first.isClosed()).isTrue();
+        assertThat(mBookContexts.size()).isZero();
+    }
+
+    @Test
+    public void evictingContextInUse_shouldCloseItOnRelease() {
+        BookContext first = mBookContexts.acquire(mFirstBookUID);
+        mBookContexts.evict(mFirstBookUID);
+        assertThat(first.isClosed()).isFalse();
+        assertThat(mBookContexts.size()).isZero();
+
+        mBookContexts.release(first);
+        assertThat(first.isClosed()).isTrue();
+    }
+
+    @Test
+    public void trimMemory_shouldKeepActiveBookOpen() {
+        BookContextCache bookContexts = GnuCashApplication.getBookContexts();
+        String activeBookUID = GnuCashApplication.getBooksDbAdapter().getActiveBookUID();
+        BookContext other = bookContexts.acquire(mFirstBookUID);
+        bookContexts.release(other);
+        assertThat(other.isClosed()).isFalse();
+
+        GnuCashApplication application = (GnuCashApplication) RuntimeEnvironment.application;
+        application.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+
+        assertThat(other.isClosed()).isTrue();
+        assertThat(bookContexts.size()).isEqualTo(1);
+        BookContext active = bookContexts.acquire(activeBookUID);
+        assertThat(active.getDb()).isSameAs(GnuCashApplication.getActiveDb());
+        bookContexts.release(active);
+        assertThat(GnuCashApplication.getActiveDb().isOpen()).isTrue();
+    }
+
+    @After
+    public void tearDown() {
+        mBookContexts.evictAll();
+        for (String bookUID : new String[]{mFirstBookUID, mSecondBookUID, mThirdBookUID}) {
+            GnuCashApplication.getAppContext().deleteDatabase(bookUID);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.db;
+
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
+import org.gnucash.android.db.adapter.RecurrenceDbAdapter;
+import org.gnucash.android.db.adapter.SplitsDbAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.PeriodType;
+import org.gnucash.android.model.Recurrence;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for adding records with multi-row statements
+ */
+@RunWith(RobolectricTestRunner.class) //package is required so that resources can be found in dev mode
+@Config(sdk = 21, packageName = "org.gnucash.android", shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class BulkInsertTest {
+
+    private AccountsDbAdapter mAccountsDbAdapter;
+    private TransactionsDbAdapter mTransactionsDbAdapter;
+    private SplitsDbAdapter mSplitsDbAdapter;
+
+    private Account mAlphaAccount;
+    private Account mBravoAccount;
+
+    @Before
+    public void setUp() throws Exception {
+        mSplitsDbAdapter = SplitsDbAdapter.getInstance();
+        mTransactionsDbAdapter = TransactionsDbAdapter.getInstance();
+        mAccountsDbAdapter = AccountsDbAdapter.getInstance();
+
+        mAlphaAccount = new Account("Alpha");
+        mBravoAccount = new Account("Bravo");
+        mAccountsDbAdapter.addRecord(mAlphaAccount);
+        mAccountsDbAdapter.addRecord(mBravoAccount);
+    }
+
+    /**
+     * Enough records for several full multi-row statements and a partial one
+     */
+    @Test
+    public void bulkInsert_shouldAddAllRecordsWithTheirValues() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            Transaction transaction = new Transaction("Bulk " + i);
+            transaction.setTime(1500000000000L + i * 1000L);
+            Split split = new Split(new Money(BigDecimal.valueOf(i + 1), Commodity.DEFAULT_COMMODITY), mAlphaAccount.getUID());
+            // alternate null and non-null values to check that bindings do not leak between rows
+            if (i % 2 == 0)
+                split.setMemo("Memo " + i);
+            transaction.addSplit(split);
+            transaction.addSplit(split.createPair(mBravoAccount.getUID()));
+            transactions.add(transaction);
+        }
+
+        long inserted = mTransactionsDbAdapter.bulkAddRecords(transactions, DatabaseAdapter.UpdateMethod.insert);
+
+        assertThat(inserted).isEqualTo(150);
+        assertThat(mTransactionsDbAdapter.getRecordsCount()).isEqualTo(150);
+        assertThat(mSplitsDbAdapter.getRecordsCount()).isEqualTo(300);
+        for (Transaction transaction : transactions) {
+            Transaction saved = mTransactionsDbAdapter.getRecord(transaction.getUID());
+            assertThat(saved.getDescription()).isEqualTo(transaction.getDescription());
+            assertThat(saved.getTimeMillis()).isEqualTo(transaction.getTimeMillis());
+            assertThat(saved.getSplits()).hasSize(2);
+            assertThat(saved.getSplits()).containsAll(transaction.getSplits());
+        }
+    }
+
+    /**
+     * Records added with multi-row statements should be the same as those added one by one
+     */
+    @Test
+    public void multiRowInsert_shouldMatchSingleRowInsert() {
+        final int count = 250;
+        CommoditiesDbAdapter commoditiesDbAdapter = CommoditiesDbAdapter.getInstance();
+        long initialCount = commoditiesDbAdapter.getRecordsCount();
+
+        List<Commodity> loopCommodities = createCommodities("LOOP", count);
+        for (Commodity commodity : loopCommodities) {
+            commoditiesDbAdapter.addRecord(commodity, DatabaseAdapter.UpdateMethod.insert);
+        }
+        List<Commodity> bulkCommodities = createCommodities("BULK", count);
+        long inserted = commoditiesDbAdapter.bulkAddRecords(bulkCommodities, DatabaseAdapter.UpdateMethod.insert);
+
+        assertThat(inserted).isEqualTo(count);
+        assertThat(commoditiesDbAdapter.getRecordsCount()).isEqualTo(initialCount + 2 * count);
+        for (int i = 0; i < count; i++) {
+            Commodity loop = commoditiesDbAdapter.getRecord(loopCommodities.get(i).getUID());
+            Commodity bulk = commoditiesDbAdapter.getRecord(bulkCommodities.get(i).getUID());
+            assertThat(bulk.getFullname()).isEqualTo(loop.getFullname().replace("LOOP", "BULK"));
+            assertThat(bulk.getMnemonic()).isEqualTo(loop.getMnemonic().replace("LOOP", "BULK"));
+            assertThat(bulk.getCusip()).isEqualTo(loop.getCusip().replace("LOOP", "BULK"));
+            assertThat(bulk.getSmallestFraction()).isEqualTo(loop.getSmallestFraction());
+        }
+    }
+
+    /**
+     * Adapters without multi-row bindings should add the records one statement per row
+     */
+    @Test
+    public void bulkInsert_withoutMultiRowBindings_shouldAddRecordsOneByOne() {
+        RecurrenceDbAdapter recurrenceDbAdapter = RecurrenceDbAdapter.getInstance();
+        long initialCount = recurrenceDbAdapter.getRecordsCount();
+        List<Recurrence> recurrences = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            Recurrence recurrence = new Recurrence(PeriodType.WEEK);
+            recurrence.setMultiplier(i + 1);
+            recurrences.add(recurrence);
+        }
+
+        long inserted = recurrenceDbAdapter.bulkAddRecords(recurrences, DatabaseAdapter.UpdateMethod.insert);
+
+        assertThat(inserted).isEqualTo(120);
+        assertThat(recurrenceDbAdapter.getRecordsCount()).isEqualTo(initialCount + 120);
+        for (Recurrence recurrence : recurrences) {
+            assertThat(recurrenceDbAdapter.getRecord(recurrence.getUID()).getMultiplier())
+                    .isEqualTo(recurrence.getMultiplier());
+        }
+    }
+
+    private static List<Commodity> createCommodities(String prefix, int count) {
+        List<Commodity> commodities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Commodity commodity = new Commodity(prefix + " commodity " + i, prefix + i, 100);
+            commodity.setCusip(prefix + i);
+            commodities.add(commodity);
+        }
+        return commodities;
+    }
+
+    @After
+    public void tearDown() {
+        mAccountsDbAdapter.deleteAllRecords();
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.db;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.BookDbHelper;
+import org.gnucash.android.db.DatabaseHelper;
+import org.gnucash.android.db.ReadConnectionPool;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.BooksDbAdapter;
+import org.gnucash.android.db.adapter.SplitsDbAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.Book;
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stress tests for concurrent reads and writes through the read connection pool
+ */
+@RunWith(RobolectricTestRunner.class) //package is required so that resources can be found in dev mode
+@Config(sdk = 21, packageName = "org.gnucash.android", shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class ReadConnectionPoolTest {
+
+    private static final int READER_COUNT = 4;
+    private static final int BATCH_COUNT = 10;
+    private static final int BATCH_SIZE = 20;
+
+    private DatabaseHelper mDatabaseHelper;
+    private AccountsDbAdapter mAccountsDbAdapter;
+    private TransactionsDbAdapter mTransactionsDbAdapter;
+
+    private Account mAlphaAccount;
+    private Account mBravoAccount;
+
+    @Before
+    public void setUp() throws Exception {
+        BookDbHelper bookDbHelper = new BookDbHelper(GnuCashApplication.getAppContext());
+        BooksDbAdapter booksDbAdapter = new BooksDbAdapter(bookDbHelper.getWritableDatabase());
+        Book testBook = new Book("testRootAccountUID");
+        booksDbAdapter.addRecord(testBook);
+        mDatabaseHelper = new DatabaseHelper(GnuCashApplication.getAppContext(), testBook.getUID());
+        SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
+
+        SplitsDbAdapter splitsDbAdapter = new SplitsDbAdapter(db);
+        mTransactionsDbAdapter = new TransactionsDbAdapter(db, splitsDbAdapter);
+        mAccountsDbAdapter = new AccountsDbAdapter(db, mTransactionsDbAdapter);
+
+        ReadConnectionPool readConnectionPool = mDatabaseHelper.getReadConnectionPool();
+        assertThat(readConnectionPool).isNotNull();
+        splitsDbAdapter.setReadConnectionPool(readConnectionPool);
+        mTransactionsDbAdapter.setReadConnectionPool(readConnectionPool);
+        mAccountsDbAdapter.setReadConnectionPool(readConnectionPool);
+
+        mAlphaAccount = new Account("Alpha", Commodity.getInstance("USD"));
+        mBravoAccount = new Account("Bravo", Commodity.getInstance("USD"));
+        mAccountsDbAdapter.addRecord(mAlphaAccount);
+        mAccountsDbAdapter.addRecord(mBravoAccount);
+    }
+
+    @Test
+    public void readConnections_shouldBeReadOnly() {
+        ReadConnectionPool readConnectionPool = mDatabaseHelper.getReadConnectionPool();
+        for (int i = 0; i < readConnectionPool.getSize(); i++) {
+            SQLiteDatabase db = readConnectionPool.getReadableDatabase();
+            assertThat(db).isNotNull();
+            assertThat(db.isReadOnly()).isTrue();
+        }
+    }
+
+    @Test
+    public void readsInTransaction_shouldSeeUncommittedChanges() {
+        mTransactionsDbAdapter.beginTransaction();
+        try {
+            mTransactionsDbAdapter.addRecord(createTransaction("Uncommitted"));
+            assertThat(mTransactionsDbAdapter.getRecordsCount()).isEqualTo(1);
+            assertThat(mTransactionsDbAdapter.getTransactionsCount(mAlphaAccount.getUID())).isEqualTo(1);
+        } finally {
+            mTransactionsDbAdapter.endTransaction();
+        }
+        assertThat(mTransactionsDbAdapter.getRecordsCount()).isZero();
+    }
+
+    /**
+     * Readers querying through the views while a writer commits batches of
+     * transactions should neither fail nor see partially committed batches
+     */
+    @Test
+    public void concurrentReadsDuringWrites_shouldSeeOnlyCommittedBatches() throws InterruptedException {
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch writerDone = new CountDownLatch(1);
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    for (int batch = 0; batch < BATCH_COUNT; batch++) {
+                        mTransactionsDbAdapter.beginTransaction();
+                        try {
+                            for (int i = 0; i < BATCH_SIZE; i++) {
+                                mTransactionsDbAdapter.addRecord(createTransaction("Batch " + batch + " #" + i));
+                            }
+                            mTransactionsDbAdapter.setTransactionSuccessful();
+                        } finally {
+                            mTransactionsDbAdapter.endTransaction();
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                } finally {
+                    writerDone.countDown();
+                }
+            }
+        });
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < READER_COUNT; r++) {
+            readers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        long lastCount = 0;
+                        do {
+                            long count = mTransactionsDbAdapter.getRecordsCount();
+                            assertThat(count % BATCH_SIZE).isZero();
+                            assertThat(count).isGreaterThanOrEqualTo(lastCount);
+                            lastCount = count;
+
+                            Money balance = mAccountsDbAdapter.getAccountBalance(mAlphaAccount.getUID());
+                            assertThat(balance.asBigDecimal().abs().remainder(BigDecimal.valueOf(BATCH_SIZE)))
+                                    .isEqualByComparingTo(BigDecimal.ZERO);
+                        } while (writerDone.getCount() > 0);
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            }));
+        }
+
+        writer.start();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        start.countDown();
+
+        writer.join(TimeUnit.MINUTES.toMillis(2));
+        for (Thread reader : readers) {
+            reader.join(TimeUnit.MINUTES.toMillis(1));
+        }
+
+        assertThat(errors).isEmpty();
+        assertThat(mTransactionsDbAdapter.getRecordsCount()).isEqualTo(BATCH_COUNT * BATCH_SIZE);
+        assertThat(mAccountsDbAdapter.getAccountBalance(mAlphaAccount.getUID()).asBigDecimal().abs())
+                .isEqualByComparingTo(BigDecimal.valueOf(BATCH_COUNT * BATCH_SIZE));
+    }
+
+    private Transaction createTransaction(String description) {
+        Transaction transaction = new Transaction(description);
+        Split split = new Split(new Money(BigDecimal.ONE, Commodity.getInstance("USD")), mAlphaAccount.getUID());
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(mBravoAccount.getUID()));
+        return transaction;
+    }
+
+    @After
+    public void tearDown() {
+        mDatabaseHelper.close();
+    }
+}
@@ -122,4 +122,51 @@ public class ScheduledActionDbAdapterTest {
         assertThat(scheduledActionFromDb.getTag()).isEqualTo(
                 scheduledAction.getTag());
     }
+
+    @Test
+    public void shouldFetchOnlyDueScheduledActions(){
+        long now = System.currentTimeMillis();
+        ScheduledAction dueAction = new ScheduledAction(ScheduledAction.ActionType.TRANSACTION);
+        dueAction.setActionUID(BaseModel.generateUID());
+        dueAction.setStartTime(now - 100000);
+        dueAction.setRecurrence(new Recurrence(PeriodType.WEEK));
+        mScheduledActionDbAdapter.addRecord(dueAction);
+
+        ScheduledAction futureAction = new ScheduledAction(ScheduledAction.ActionType.TRANSACTION);
+        futureAction.setActionUID(BaseModel.generateUID());
+        futureAction.setStartTime(now + 100000);
+        futureAction.setRecurrence(new Recurrence(PeriodType.WEEK));
+        mScheduledActionDbAdapter.addRecord(futureAction);
+
+        ScheduledAction disabledAction = new ScheduledAction(ScheduledAction.ActionType.TRANSACTION);
+        disabledAction.setActionUID(BaseModel.generateUID());
+        disabledAction.setStartTime(now - 100000);
+        disabledAction.setEnabled(false);
+        disabledAction.setRecurrence(new Recurrence(PeriodType.WEEK));
+        mScheduledActionDbAdapter.addRecord(disabledAction);
+
+        List<ScheduledAction> dueActions = mScheduledActionDbAdapter.getDueScheduledActions(now);
+        assertThat(dueActions).hasSize(1);
+        assertThat(dueActions.get(0).getUID()).isEqualTo(dueAction.getUID());
+        assertThat(mScheduledActionDbAdapter.getNextRunTime()).isEqualTo(now - 100000);
+
+        dueAction.setExecutionCount(1);
+        mScheduledActionDbAdapter.updateNextRunTime(dueAction);
+        assertThat(mScheduledActionDbAdapter.getDueScheduledActions(now)).isEmpty();
+        assertThat(mScheduledActionDbAdapter.getNextRunTime()).isEqualTo(now + 100000);
+    }
+
+    @Test
+    public void finishedScheduledActions_shouldNotBeDue(){
+        ScheduledAction scheduledAction = new ScheduledAction(ScheduledAction.ActionType.TRANSACTION);
+        scheduledAction.setActionUID(BaseModel.generateUID());
+        scheduledAction.setStartTime(System.currentTimeMillis() - 100000);
+        scheduledAction.setRecurrence(new Recurrence(PeriodType.DAY));
+        scheduledAction.setTotalPlannedExecutionCount(2);
+        scheduledAction.setExecutionCount(2);
+        mScheduledActionDbAdapter.addRecord(scheduledAction);
+
+        assertThat(mScheduledActionDbAdapter.getDueScheduledActions(Long.MAX_VALUE)).isEmpty();
+        assertThat(mScheduledActionDbAdapter.getNextRunTime()).isEqualTo(-1);
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.db;
+
+import android.database.sqlite.SQLiteDoneException;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.DatabaseSchema.AccountEntry;
+import org.gnucash.android.db.StatementCache;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.AccountType;
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the single-value lookups through cached statements
+ */
+@RunWith(RobolectricTestRunner.class) //package is required so that resources can be found in dev mode
+@Config(sdk = 21, packageName = "org.gnucash.android", shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class StatementCacheTest {
+
+    private AccountsDbAdapter mAccountsDbAdapter;
+    private Account mParentAccount;
+    private Account mChildAccount;
+
+    @Before
+    public void setUp() throws Exception {
+        mAccountsDbAdapter = AccountsDbAdapter.getInstance();
+        mParentAccount = new Account("Parent", Commodity.getInstance("EUR"));
+        mParentAccount.setAccountType(AccountType.EXPENSE);
+        mChildAccount = new Account("Child", Commodity.getInstance("EUR"));
+        mChildAccount.setParentUID(mParentAccount.getUID());
+        mAccountsDbAdapter.addRecord(mParentAccount);
+        mAccountsDbAdapter.addRecord(mChildAccount);
+    }
+
+    @Test
+    public void lookups_shouldReturnValuesOfRecord() {
+        long id = mAccountsDbAdapter.getID(mChildAccount.getUID());
+        assertThat(mAccountsDbAdapter.getUID(id)).isEqualTo(mChildAccount.getUID());
+        assertThat(mAccountsDbAdapter.getAccountCurrencyCode(mChildAccount.getUID())).isEqualTo("EUR");
+        assertThat(mAccountsDbAdapter.getAccountType(mParentAccount.getUID())).isEqualTo(AccountType.EXPENSE);
+        assertThat(mAccountsDbAdapter.getParentAccountUID(mChildAccount.getUID())).isEqualTo(mParentAccount.getUID());
+        assertThat(mAccountsDbAdapter.getAttribute(mChildAccount.getUID(), AccountEntry.COLUMN_NAME)).isEqualTo("Child");
+        assertThat(mAccountsDbAdapter.getAttribute(mChildAccount.getUID(), AccountEntry.COLUMN_DEFAULT_TRANSFER_ACCOUNT_UID)).isNull();
+        assertThat(mAccountsDbAdapter.getCommodityUID("EUR")).isEqualTo(Commodity.getInstance("EUR").getUID());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lookupOfMissingRecord_shouldThrowException() {
+        mAccountsDbAdapter.getID("non-existent-uid");
+    }
+
+    @Test
+    public void parentOfMissingAccount_shouldBeNull() {
+        assertThat(mAccountsDbAdapter.getParentAccountUID("non-existent-uid")).isNull();
+    }
+
+    @Test
+    public void cache_shouldBeBoundedAndUsableAfterClosing() {
+        StatementCache statementCache = new StatementCache(GnuCashApplication.getActiveDb(), 2);
+        String[] columns = {AccountEntry.COLUMN_NAME, AccountEntry.COLUMN_CURRENCY, AccountEntry.COLUMN_TYPE};
+        for (String column : columns) {
+            statementCache.queryForString("SELECT " + column + " FROM " + AccountEntry.TABLE_NAME
+                    + " WHERE " + AccountEntry.COLUMN_UID + " = ?", mParentAccount.getUID());
+        }
+        assertThat(statementCache.size()).isEqualTo(2);
+
+        statementCache.close();
+        assertThat(statementCache.size()).isZero();
+        assertThat(statementCache.queryForString("SELECT " + AccountEntry.COLUMN_NAME + " FROM " + AccountEntry.TABLE_NAME
+                + " WHERE " + AccountEntry.COLUMN_UID + " = ?", mParentAccount.getUID())).isEqualTo("Parent");
+        assertThat(statementCache.size()).isZero();
+    }
+
+    @Test
+    public void uncachedCache_shouldNotKeepStatements() {
+        StatementCache statementCache = StatementCache.createUncached(GnuCashApplication.getActiveDb());
+        assertThat(statementCache.queryForString("SELECT " + AccountEntry.COLUMN_NAME + " FROM " + AccountEntry.TABLE_NAME
+                + " WHERE " + AccountEntry.COLUMN_UID + " = ?", mParentAccount.getUID())).isEqualTo("Parent");
+        assertThat(statementCache.size()).isZero();
+
+        //adapters created for a single use are never closed, so they should not hold any statement
+        AccountsDbAdapter accountsDbAdapter = new AccountsDbAdapter(GnuCashApplication.getActiveDb());
+        assertThat(accountsDbAdapter.getAccountCurrencyCode(mChildAccount.getUID())).isEqualTo("EUR");
+    }
+
+    @Test(expected = SQLiteDoneException.class)
+    public void queryWithoutResult_shouldThrowDoneException() {
+        StatementCache statementCache = new StatementCache(GnuCashApplication.getActiveDb(), 2);
+        statementCache.queryForLong("SELECT " + AccountEntry._ID + " FROM " + AccountEntry.TABLE_NAME
+                + " WHERE " + AccountEntry.COLUMN_UID + " = ?", "non-existent-uid");
+    }
+
+    /**
+     * Repeated lookups should reuse one statement, and see the current values of the record
+     */
+    @Test
+    public void repeatedLookups_shouldReuseStatementAndReadCurrentValues() {
+        StatementCache statementCache = new StatementCache(GnuCashApplication.getActiveDb(), 2);
+        String sql = "SELECT " + AccountEntry.COLUMN_NAME + " FROM " + AccountEntry.TABLE_NAME
+                + " WHERE " + AccountEntry.COLUMN_UID + " = ?";
+        for (int i = 0; i < 10; i++) {
+            assertThat(statementCache.queryForString(sql, mChildAccount.getUID())).isEqualTo("Child");
+            assertThat(statementCache.queryForString(sql, mParentAccount.getUID())).isEqualTo("Parent");
+        }
+        assertThat(statementCache.size()).isEqualTo(1);
+
+        mAccountsDbAdapter.updateRecord(mChildAccount.getUID(), AccountEntry.COLUMN_NAME, "Renamed");
+        assertThat(statementCache.queryForString(sql, mChildAccount.getUID())).isEqualTo("Renamed");
+        assertThat(statementCache.size()).isEqualTo(1);
+    }
+
+    @After
+    public void tearDown() {
+        mAccountsDbAdapter.deleteAllRecords();
+    }
+}
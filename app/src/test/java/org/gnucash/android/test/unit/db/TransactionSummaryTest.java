@@ -0,0 +1,182 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.db;
+
+import android.database.Cursor;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.DatabaseSchema.AccountEntry;
+import org.gnucash.android.db.DatabaseSchema.TransactionSummaryEntry;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
+import org.gnucash.android.db.adapter.SplitsDbAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests that the transaction summaries behind {@code trans_extra_info} follow changes of the splits
+ */
+@RunWith(RobolectricTestRunner.class) //package is required so that resources can be found in dev mode
+@Config(sdk = 21, packageName = "org.gnucash.android", shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class TransactionSummaryTest {
+
+    private static final Commodity USD = Commodity.getInstance("USD");
+
+    private AccountsDbAdapter mAccountsDbAdapter;
+    private TransactionsDbAdapter mTransactionsDbAdapter;
+    private SplitsDbAdapter mSplitsDbAdapter;
+
+    private Account mAlphaAccount;
+    private Account mBravoAccount;
+
+    @Before
+    public void setUp() throws Exception {
+        mSplitsDbAdapter = SplitsDbAdapter.getInstance();
+        mTransactionsDbAdapter = TransactionsDbAdapter.getInstance();
+        mAccountsDbAdapter = AccountsDbAdapter.getInstance();
+
+        mAlphaAccount = new Account("Alpha", USD);
+        mBravoAccount = new Account("Bravo", USD);
+        mAccountsDbAdapter.addRecord(mAlphaAccount);
+        mAccountsDbAdapter.addRecord(mBravoAccount);
+    }
+
+    @Test
+    public void addingTransaction_shouldCreateSummary() {
+        Transaction transaction = createTransaction("10");
+        transaction.getSplits().get(0).setMemo("Memo");
+        mTransactionsDbAdapter.addRecord(transaction);
+
+        Summary summary = getSummary(transaction.getUID());
+        assertThat(summary).isNotNull();
+        assertThat(summary.splitCount).isEqualTo(2);
+        assertThat(summary.currencyCount).isEqualTo(1);
+        assertThat(summary.balance).isEqualTo(0);
+        // the account of the split without memo is preferred
+        assertThat(summary.accountUID).isEqualTo(mBravoAccount.getUID());
+        assertThat(mTransactionsDbAdapter.getNumCurrencies(transaction.getUID())).isEqualTo(1);
+    }
+
+    @Test
+    public void bulkAddingTransactions_shouldSummarizeEachTransactionOnce() {
+        Transaction first = createTransaction("10");
+        Transaction second = createTransaction("20");
+        long dataVersion = mTransactionsDbAdapter.getDataVersion();
+        mTransactionsDbAdapter.bulkAddRecords(Arrays.asList(first, second), DatabaseAdapter.UpdateMethod.insert);
+
+        assertThat(getSummary(first.getUID()).splitCount).isEqualTo(2);
+        assertThat(getSummary(second.getUID()).splitCount).isEqualTo(2);
+        assertThat(getSummary(second.getUID()).balance).isEqualTo(0);
+        // the version is increased per transaction, not per split
+        assertThat(mTransactionsDbAdapter.getDataVersion()).isEqualTo(dataVersion + 2);
+    }
+
+    @Test
+    public void changingSplits_shouldUpdateSummary() {
+        Transaction transaction = createTransaction("10");
+        mTransactionsDbAdapter.addRecord(transaction);
+
+        Split split = new Split(new Money(BigDecimal.ONE, USD), mAlphaAccount.getUID());
+        split.setTransactionUID(transaction.getUID());
+        mSplitsDbAdapter.addRecord(split);
+        Summary summary = getSummary(transaction.getUID());
+        assertThat(summary.splitCount).isEqualTo(3);
+        assertThat(summary.balance).isNotEqualTo(0);
+
+        mSplitsDbAdapter.deleteRecord(split.getUID());
+        summary = getSummary(transaction.getUID());
+        assertThat(summary.splitCount).isEqualTo(2);
+        assertThat(summary.balance).isEqualTo(0);
+
+        mTransactionsDbAdapter.addRecord(transaction, DatabaseAdapter.UpdateMethod.replace);
+        assertThat(getSummary(transaction.getUID()).splitCount).isEqualTo(2);
+    }
+
+    @Test
+    public void deletingTransaction_shouldDeleteSummary() {
+        Transaction transaction = createTransaction("10");
+        mTransactionsDbAdapter.addRecord(transaction);
+        assertThat(getSummary(transaction.getUID())).isNotNull();
+
+        mTransactionsDbAdapter.deleteRecord(transaction.getUID());
+        assertThat(getSummary(transaction.getUID())).isNull();
+    }
+
+    @Test
+    public void changingAccountCurrency_shouldUpdateCurrencyCount() {
+        Transaction transaction = createTransaction("10");
+        mTransactionsDbAdapter.addRecord(transaction);
+
+        mAccountsDbAdapter.updateRecord(mBravoAccount.getUID(), AccountEntry.COLUMN_CURRENCY, "EUR");
+        assertThat(getSummary(transaction.getUID()).currencyCount).isEqualTo(2);
+    }
+
+    private Transaction createTransaction(String amount) {
+        Transaction transaction = new Transaction("Summary");
+        transaction.setCommodity(USD);
+        Split split = new Split(new Money(amount, USD.getCurrencyCode()), mAlphaAccount.getUID());
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(mBravoAccount.getUID()));
+        return transaction;
+    }
+
+    private Summary getSummary(String transactionUID) {
+        Cursor cursor = GnuCashApplication.getActiveDb().query(TransactionSummaryEntry.TABLE_NAME,
+                new String[]{TransactionSummaryEntry.COLUMN_ACCOUNT_UID, TransactionSummaryEntry.COLUMN_BALANCE,
+                        TransactionSummaryEntry.COLUMN_SPLIT_COUNT, TransactionSummaryEntry.COLUMN_CURRENCY_COUNT},
+                TransactionSummaryEntry.COLUMN_TRANSACTION_UID + " = ?", new String[]{transactionUID},
+                null, null, null);
+        try {
+            if (!cursor.moveToFirst())
+                return null;
+            Summary summary = new Summary();
+            summary.accountUID = cursor.getString(0);
+            summary.balance = cursor.getDouble(1);
+            summary.splitCount = cursor.getInt(2);
+            summary.currencyCount = cursor.getInt(3);
+            return summary;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static class Summary {
+        String accountUID;
+        double balance;
+        int splitCount;
+        int currencyCount;
+    }
+
+    @After
+    public void tearDown() {
+        mAccountsDbAdapter.deleteAllRecords();
+    }
+}
@@ -15,17 +15,26 @@
  */
 package org.gnucash.android.test.unit.db;
 
+import android.database.Cursor;
+
 import org.assertj.core.data.Index;
+import org.gnucash.android.db.DatabaseSchema.TransactionEntry;
+import org.gnucash.android.db.DatabaseSchema.TransactionSummaryEntry;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
 import org.gnucash.android.db.adapter.SplitsDbAdapter;
+import org.gnucash.android.db.adapter.TransactionKey;
+import org.gnucash.android.db.adapter.TransactionPageIterator;
 import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.model.Account;
 import org.gnucash.android.model.Commodity;
 import org.gnucash.android.model.Money;
 import org.gnucash.android.model.Split;
 import org.gnucash.android.model.Transaction;
+import org.gnucash.android.model.TransactionSummary;
 import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
 import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.gnucash.android.util.SuggestionTrie;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -34,6 +43,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -143,6 +153,432 @@ public class TransactionsDbAdapterTest {
 		assertThat(savedBalance.getCommodity()).isEqualTo(secondSplitAmount.getCommodity());
 	}
 
+	@Test
+	public void pagedTransactions_shouldBeOrderedAndComplete(){
+		long time = System.currentTimeMillis();
+		for (int i = 0; i < 5; i++) {
+			Transaction transaction = new Transaction("Paged " + i);
+			// two transactions share each timestamp, so that pages are also split on the UID
+			transaction.setTime(time - (i / 2) * 1000);
+			Split split = new Split(new Money(BigDecimal.ONE, DEFAULT_CURRENCY), alphaAccount.getUID());
+			transaction.addSplit(split);
+			transaction.addSplit(split.createPair(bravoAccount.getUID()));
+			mTransactionsDbAdapter.addRecord(transaction);
+		}
+
+		TransactionPageIterator pages = mTransactionsDbAdapter.iterateTransactionPages(null, null, 2);
+		List<Transaction> pagedTransactions = new ArrayList<>();
+		int pageCount = 0;
+		while (pages.hasNext()) {
+			TransactionPageIterator.TransactionPage page = pages.next();
+			assertThat(page.getCount()).isLessThanOrEqualTo(2);
+			pagedTransactions.addAll(mTransactionsDbAdapter.getTransactions(page, null, null));
+			pageCount++;
+		}
+
+		assertThat(pageCount).isEqualTo(3);
+		assertThat(pagedTransactions).hasSize(5);
+		for (int i = 1; i < pagedTransactions.size(); i++) {
+			Transaction previous = pagedTransactions.get(i - 1);
+			Transaction current = pagedTransactions.get(i);
+			assertThat(previous.getTimeMillis()).isLessThanOrEqualTo(current.getTimeMillis());
+			if (previous.getTimeMillis() == current.getTimeMillis())
+				assertThat(previous.getUID().compareTo(current.getUID())).isNegative();
+		}
+		for (Transaction transaction : pagedTransactions) {
+			assertThat(transaction.getSplits()).hasSize(2);
+			assertThat(transaction).isEqualTo(mTransactionsDbAdapter.getRecord(transaction.getUID()));
+		}
+	}
+
+	/**
+	 * A page with fewer transactions than the page size is the last one, no further page is queried
+	 */
+	@Test
+	public void pagedTransactions_shouldFinishAfterShortPage(){
+		long time = System.currentTimeMillis();
+		for (int i = 0; i < 3; i++) {
+			Transaction transaction = new Transaction("Paged " + i);
+			transaction.setTime(time + i * 1000);
+			Split split = new Split(new Money(BigDecimal.ONE, DEFAULT_CURRENCY), alphaAccount.getUID());
+			transaction.addSplit(split);
+			transaction.addSplit(split.createPair(bravoAccount.getUID()));
+			mTransactionsDbAdapter.addRecord(transaction);
+		}
+
+		TransactionPageIterator pages = mTransactionsDbAdapter.iterateTransactionPages(null, null, 2);
+		assertThat(pages.next().getCount()).isEqualTo(2);
+		assertThat(pages.next().getCount()).isEqualTo(1);
+
+		// a transaction added after the short page was loaded is not looked for anymore
+		Transaction transaction = new Transaction("Later");
+		transaction.setTime(time + 10000);
+		Split split = new Split(new Money(BigDecimal.ONE, DEFAULT_CURRENCY), alphaAccount.getUID());
+		transaction.addSplit(split);
+		transaction.addSplit(split.createPair(bravoAccount.getUID()));
+		mTransactionsDbAdapter.addRecord(transaction);
+		assertThat(pages.hasNext()).isFalse();
+	}
+
+	@Test
+	public void accountTransactionPages_shouldBeOrderedAndOnlyChangeWhenAffected(){
+		long time = System.currentTimeMillis();
+		List<Transaction> transactions = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Transaction transaction = new Transaction("Listed " + i);
+			// two transactions share each timestamp, so that pages are also split on the ID
+			transaction.setTime(time - (i / 2) * 1000);
+			Split split = new Split(new Money(BigDecimal.ONE, DEFAULT_CURRENCY), alphaAccount.getUID());
+			transaction.addSplit(split);
+			transaction.addSplit(split.createPair(bravoAccount.getUID()));
+			mTransactionsDbAdapter.addRecord(transaction);
+			transactions.add(transaction);
+		}
+
+		String accountUID = alphaAccount.getUID();
+		List<String> listedUIDs = new ArrayList<>();
+		List<TransactionKey> pageEnds = new ArrayList<>();
+		TransactionKey startAfter = null;
+		while (true) {
+			Cursor cursor = mTransactionsDbAdapter.fetchTransactionPageForAccount(accountUID, startAfter, null, 2);
+			try {
+				while (cursor.moveToNext()) {
+					listedUIDs.add(cursor.getString(cursor.getColumnIndexOrThrow(TransactionEntry.COLUMN_UID)));
+				}
+				if (cursor.getCount() < 2)
+					break;
+				cursor.moveToLast();
+				startAfter = TransactionKey.fromCursor(cursor);
+				pageEnds.add(startAfter);
+			} finally {
+				cursor.close();
+			}
+		}
+		assertThat(listedUIDs).containsExactly(transactions.get(1).getUID(), transactions.get(0).getUID(),
+				transactions.get(3).getUID(), transactions.get(2).getUID(), transactions.get(4).getUID());
+		assertThat(pageEnds).hasSize(2);
+
+		String firstVersion = mTransactionsDbAdapter.getTransactionPageVersion(accountUID, null, pageEnds.get(0));
+		String secondVersion = mTransactionsDbAdapter.getTransactionPageVersion(accountUID, pageEnds.get(0), pageEnds.get(1));
+		String lastVersion = mTransactionsDbAdapter.getTransactionPageVersion(accountUID, pageEnds.get(1), null);
+
+		Transaction edited = transactions.get(2);
+		edited.setDescription("Edited");
+		mTransactionsDbAdapter.addRecord(edited);
+
+		assertThat(mTransactionsDbAdapter.getTransactionPageVersion(accountUID, null, pageEnds.get(0))).isEqualTo(firstVersion);
+		assertThat(mTransactionsDbAdapter.getTransactionPageVersion(accountUID, pageEnds.get(0), pageEnds.get(1))).isNotEqualTo(secondVersion);
+		assertThat(mTransactionsDbAdapter.getTransactionPageVersion(accountUID, pageEnds.get(1), null)).isEqualTo(lastVersion);
+
+		Cursor cursor = mTransactionsDbAdapter.fetchTransactionPageForAccount(accountUID, pageEnds.get(0), pageEnds.get(1), 2);
+		try {
+			assertThat(cursor.getCount()).isEqualTo(2);
+			cursor.moveToFirst();
+			assertThat(cursor.getString(cursor.getColumnIndexOrThrow(TransactionEntry.COLUMN_DESCRIPTION))).isEqualTo("Edited");
+		} finally {
+			cursor.close();
+		}
+
+		mTransactionsDbAdapter.deleteRecord(transactions.get(4).getUID());
+		assertThat(mTransactionsDbAdapter.getTransactionPageVersion(accountUID, pageEnds.get(1), null)).isNotEqualTo(lastVersion);
+	}
+
+	/**
+	 * Saving a transaction with many splits marks it as modified and not exported,
+	 * and an update of the splits replaces them in place
+	 */
+	@Test
+	public void savingTransactionWithSplits_shouldMarkTransactionAsNotExported(){
+		Transaction transaction = new Transaction("Batch");
+		transaction.setExported(true);
+		for (int i = 0; i < 10; i++) {
+			Split split = new Split(new Money(BigDecimal.valueOf(i + 1), DEFAULT_CURRENCY), alphaAccount.getUID());
+			transaction.addSplit(split);
+			transaction.addSplit(split.createPair(bravoAccount.getUID()));
+		}
+		mTransactionsDbAdapter.addRecord(transaction);
+
+		String uid = transaction.getUID();
+		assertThat(mTransactionsDbAdapter.getAttribute(uid, TransactionEntry.COLUMN_EXPORTED)).isEqualTo("0");
+		assertThat(mTransactionsDbAdapter.getAttribute(uid, TransactionEntry.COLUMN_MODIFIED_AT)).isNotNull();
+		assertThat(mSplitsDbAdapter.getSplitsForTransaction(uid)).hasSize(20);
+
+		transaction.getSplits().get(0).setMemo("updated");
+		transaction.setExported(true);
+		mTransactionsDbAdapter.addRecord(transaction, DatabaseAdapter.UpdateMethod.update);
+
+		assertThat(mTransactionsDbAdapter.getAttribute(uid, TransactionEntry.COLUMN_EXPORTED)).isEqualTo("0");
+		Transaction saved = mTransactionsDbAdapter.getRecord(uid);
+		assertThat(saved.getSplits()).hasSize(20);
+		assertThat(saved.getSplits()).contains(transaction.getSplits().get(0));
+	}
+
+	@Test
+	public void builtTransaction_shouldLoadSplitsWhenFirstNeeded(){
+		Transaction transaction = new Transaction("Lazy");
+		transaction.addSplit(new Split(mTestSplit, true));
+		transaction.addSplit(mTestSplit.createPair(bravoAccount.getUID()));
+		mTransactionsDbAdapter.addRecord(transaction);
+
+		Transaction saved = mTransactionsDbAdapter.getRecord(transaction.getUID());
+		assertThat(saved.isSplitsLoaded()).isFalse();
+		assertThat(saved.getSplits()).hasSize(2);
+		assertThat(saved.isSplitsLoaded()).isTrue();
+
+		// copies with a new GUID get the splits of the original transaction
+		Transaction copy = new Transaction(mTransactionsDbAdapter.getRecord(transaction.getUID()), true);
+		assertThat(copy.getSplits()).hasSize(2);
+		assertThat(copy.getSplits().get(0).getTransactionUID()).isEqualTo(copy.getUID());
+	}
+
+	@Test
+	public void transactionLists_shouldLoadSplitsOfAllTransactions(){
+		int count = SplitsDbAdapter.MAX_IN_ARGUMENTS + 10; //more than fit into one query
+		List<Transaction> transactions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Transaction transaction = new Transaction("Batch " + i);
+			Split split = new Split(new Money(BigDecimal.valueOf(i + 1), DEFAULT_CURRENCY), alphaAccount.getUID());
+			transaction.addSplit(split);
+			transaction.addSplit(split.createPair(bravoAccount.getUID()));
+			transactions.add(transaction);
+		}
+		mTransactionsDbAdapter.bulkAddRecords(transactions, DatabaseAdapter.UpdateMethod.insert);
+
+		List<Transaction> saved = mTransactionsDbAdapter.getAllTransactionsForAccount(alphaAccount.getUID());
+		assertThat(saved).hasSize(count);
+		for (Transaction transaction : saved) {
+			assertThat(transaction.isSplitsLoaded()).isTrue();
+			assertThat(transaction.getSplits()).hasSize(2);
+			assertThat(transaction.getSplits().get(0).getTransactionUID()).isEqualTo(transaction.getUID());
+		}
+		assertThat(mTransactionsDbAdapter.getAllTransactions()).hasSize(count);
+	}
+
+	@Test
+	public void transactionSummaries_shouldHaveHeaderFieldsAndSplitCount(){
+		Transaction transaction = new Transaction("Summary");
+		transaction.setNote("Note");
+		transaction.addSplit(new Split(mTestSplit, true));
+		transaction.addSplit(mTestSplit.createPair(bravoAccount.getUID()));
+		mTransactionsDbAdapter.addRecord(transaction);
+
+		List<TransactionSummary> summaries = mTransactionsDbAdapter.getTransactionSummaries(
+				TransactionEntry.COLUMN_DESCRIPTION + " = ?", new String[]{"Summary"}, null);
+		assertThat(summaries).hasSize(1);
+		TransactionSummary summary = summaries.get(0);
+		assertThat(summary.getUID()).isEqualTo(transaction.getUID());
+		assertThat(summary.getNote()).isEqualTo("Note");
+		assertThat(summary.getTimeMillis()).isEqualTo(transaction.getTimeMillis());
+		assertThat(summary.getCurrencyCode()).isEqualTo(transaction.getCurrencyCode());
+		assertThat(summary.isTemplate()).isFalse();
+		assertThat(summary.getSplitCount()).isEqualTo(2);
+	}
+
+	private Transaction addSearchableTransaction(String description, String note, String memo, long time){
+		Transaction transaction = new Transaction(description);
+		transaction.setNote(note);
+		transaction.setTime(time);
+		Split split = new Split(mTestSplit, true);
+		split.setMemo(memo);
+		transaction.addSplit(split);
+		transaction.addSplit(split.createPair(bravoAccount.getUID()));
+		mTransactionsDbAdapter.addRecord(transaction);
+		return transaction;
+	}
+
+	private List<String> searchTransactionUIDs(String query){
+		List<String> transactionUIDs = new ArrayList<>();
+		Cursor cursor = mTransactionsDbAdapter.searchTransactions(query, 10);
+		try {
+			while (cursor.moveToNext()) {
+				transactionUIDs.add(cursor.getString(cursor.getColumnIndexOrThrow(TransactionEntry.COLUMN_UID)));
+			}
+		} finally {
+			cursor.close();
+		}
+		return transactionUIDs;
+	}
+
+	@Test
+	public void searchTransactions_shouldMatchWordPrefixesMostRecentFirst(){
+		long now = System.currentTimeMillis();
+		Transaction groceries = addSearchableTransaction("Weekly Groceries", null, "milk and bread", now - 20000);
+		Transaction rent = addSearchableTransaction("Rent", "paid to landlord", null, now - 10000);
+		Transaction lunch = addSearchableTransaction("Lunch", null, "bread rolls", now);
+
+		assertThat(searchTransactionUIDs("groc")).containsExactly(groceries.getUID());
+		assertThat(searchTransactionUIDs("LANDLORD")).containsExactly(rent.getUID());
+		assertThat(searchTransactionUIDs("bread")).containsExactly(lunch.getUID(), groceries.getUID());
+		assertThat(searchTransactionUIDs("bread milk")).containsExactly(groceries.getUID());
+		assertThat(searchTransactionUIDs("")).isEmpty();
+		//the full-text query syntax is not interpreted
+		assertThat(searchTransactionUIDs("\"bread\" OR -rent*")).isEmpty();
+		assertThat(searchTransactionUIDs("'; DROP TABLE transactions; --")).isEmpty();
+	}
+
+	@Test
+	public void searchTransactions_shouldReturnAmountInListedAccount(){
+		Transaction transaction = addSearchableTransaction("Bookshop", null, null, System.currentTimeMillis());
+
+		Cursor cursor = mTransactionsDbAdapter.searchTransactions("bookshop", 10);
+		try {
+			assertThat(cursor.moveToFirst()).isTrue();
+			String accountUID = cursor.getString(cursor.getColumnIndexOrThrow(TransactionSummaryEntry.COLUMN_ACCOUNT_UID));
+			Money amount = new Money(
+					cursor.getLong(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.SEARCH_COLUMN_AMOUNT_NUM)),
+					cursor.getLong(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.SEARCH_COLUMN_AMOUNT_DENOM)),
+					cursor.getString(cursor.getColumnIndexOrThrow(TransactionsDbAdapter.SEARCH_COLUMN_AMOUNT_CURRENCY)));
+			assertThat(amount).isEqualTo(mTransactionsDbAdapter.getBalance(transaction.getUID(), accountUID));
+			assertThat(amount.isAmountZero()).isFalse();
+		} finally {
+			cursor.close();
+		}
+	}
+
+	@Test
+	public void searchTransactions_shouldFollowChangesToTransactions(){
+		Transaction transaction = addSearchableTransaction("Bakery", null, "croissant", System.currentTimeMillis());
+		assertThat(searchTransactionUIDs("bakery")).containsExactly(transaction.getUID());
+
+		transaction.setDescription("Butcher");
+		for (Split split : transaction.getSplits()) {
+			split.setMemo("sausages");
+		}
+		mTransactionsDbAdapter.addRecord(transaction);
+		assertThat(searchTransactionUIDs("bakery")).isEmpty();
+		assertThat(searchTransactionUIDs("croissant")).isEmpty();
+		assertThat(searchTransactionUIDs("butcher")).containsExactly(transaction.getUID());
+		assertThat(searchTransactionUIDs("sausages")).containsExactly(transaction.getUID());
+
+		mTransactionsDbAdapter.deleteRecord(transaction.getUID());
+		assertThat(searchTransactionUIDs("butcher")).isEmpty();
+	}
+
+	@Test
+	public void transactionSuggestions_shouldMatchPrefixLiterally(){
+		addSearchableTransaction("Joe's 100% cafe", null, null, System.currentTimeMillis());
+		addSearchableTransaction("Joe_s diner", null, null, System.currentTimeMillis());
+
+		Cursor cursor = mTransactionsDbAdapter.fetchTransactionSuggestions("Joe's 100%", alphaAccount.getUID());
+		assertThat(cursor.getCount()).isEqualTo(1);
+		cursor.close();
+
+		cursor = mTransactionsDbAdapter.fetchTransactionSuggestions("Joe_", alphaAccount.getUID());
+		assertThat(cursor.getCount()).isEqualTo(1);
+		cursor.close();
+	}
+
+	@Test
+	public void transactionSuggestions_shouldBeRankedPerAccount(){
+		long now = System.currentTimeMillis();
+		addSearchableTransaction("Coffee", null, null, now - 30000);
+		addSearchableTransaction("coffee ", null, null, now - 20000);
+		Transaction cake = addSearchableTransaction("Cake", null, null, now - 10000);
+		Transaction latestCoffee = addSearchableTransaction("COFFEE", null, null, now);
+
+		SuggestionTrie suggestionTrie = mTransactionsDbAdapter.getTransactionSuggestions(alphaAccount.getUID());
+		assertThat(suggestionTrie.size()).isEqualTo(2);
+		List<SuggestionTrie.Suggestion> suggestions = suggestionTrie.getSuggestions("c");
+		assertThat(suggestions).hasSize(2);
+		assertThat(suggestions.get(0).getDescription()).isEqualTo("COFFEE");
+		assertThat(suggestions.get(0).getTransactionUID()).isEqualTo(latestCoffee.getUID());
+		assertThat(suggestions.get(0).getUseCount()).isEqualTo(3);
+		assertThat(suggestions.get(1).getTransactionUID()).isEqualTo(cake.getUID());
+		assertThat(suggestionTrie.getSuggestions("ca")).hasSize(1);
+		//the suggestions are cached until the data changes
+		assertThat(mTransactionsDbAdapter.getTransactionSuggestions(alphaAccount.getUID())).isSameAs(suggestionTrie);
+
+		mTransactionsDbAdapter.deleteRecord(cake.getUID());
+		suggestionTrie = mTransactionsDbAdapter.getTransactionSuggestions(alphaAccount.getUID());
+		assertThat(suggestionTrie.getSuggestions("ca")).isEmpty();
+		assertThat(mTransactionsDbAdapter.getTransactionSuggestions(bravoAccount.getUID()).getSuggestions("coffee")).hasSize(1);
+	}
+
+	@Test
+	public void transactionSuggestions_shouldKeepRemainingUsesOfDeletedTransaction(){
+		long now = System.currentTimeMillis();
+		addSearchableTransaction("Coffee", null, null, now - 20000);
+		Transaction previousCoffee = addSearchableTransaction("coffee", null, null, now - 10000);
+		Transaction latestCoffee = addSearchableTransaction("COFFEE", null, null, now);
+
+		mTransactionsDbAdapter.deleteRecord(latestCoffee.getUID());
+
+		List<SuggestionTrie.Suggestion> suggestions = mTransactionsDbAdapter
+				.getTransactionSuggestions(alphaAccount.getUID()).getSuggestions("c");
+		assertThat(suggestions).hasSize(1);
+		assertThat(suggestions.get(0).getUseCount()).isEqualTo(2);
+		assertThat(suggestions.get(0).getDescription()).isEqualTo("coffee");
+		assertThat(suggestions.get(0).getTransactionUID()).isEqualTo(previousCoffee.getUID());
+	}
+
+	@Test
+	public void transactionSuggestions_shouldNotCountEditsAsNewUses(){
+		long now = System.currentTimeMillis();
+		addSearchableTransaction("Coffee", null, null, now - 10000);
+		Transaction latestCoffee = addSearchableTransaction("Coffee", null, null, now);
+
+		latestCoffee.setNote("with milk");
+		mTransactionsDbAdapter.addRecord(latestCoffee);
+		mTransactionsDbAdapter.addRecord(latestCoffee);
+
+		List<SuggestionTrie.Suggestion> suggestions = mTransactionsDbAdapter
+				.getTransactionSuggestions(alphaAccount.getUID()).getSuggestions("coffee");
+		assertThat(suggestions).hasSize(1);
+		assertThat(suggestions.get(0).getUseCount()).isEqualTo(2);
+		assertThat(suggestions.get(0).getTransactionUID()).isEqualTo(latestCoffee.getUID());
+	}
+
+	@Test
+	public void transactionSuggestions_shouldFollowRenamedDescription(){
+		long now = System.currentTimeMillis();
+		Transaction firstCoffee = addSearchableTransaction("Coffee", null, null, now - 20000);
+		Transaction latestCoffee = addSearchableTransaction("Coffee", null, null, now - 10000);
+		addSearchableTransaction("Tea", null, null, now);
+
+		latestCoffee.setDescription("Tea");
+		mTransactionsDbAdapter.addRecord(latestCoffee);
+
+		SuggestionTrie suggestionTrie = mTransactionsDbAdapter.getTransactionSuggestions(alphaAccount.getUID());
+		List<SuggestionTrie.Suggestion> coffee = suggestionTrie.getSuggestions("coffee");
+		assertThat(coffee).hasSize(1);
+		assertThat(coffee.get(0).getUseCount()).isEqualTo(1);
+		assertThat(coffee.get(0).getTransactionUID()).isEqualTo(firstCoffee.getUID());
+		List<SuggestionTrie.Suggestion> tea = suggestionTrie.getSuggestions("tea");
+		assertThat(tea).hasSize(1);
+		assertThat(tea.get(0).getUseCount()).isEqualTo(2);
+
+		firstCoffee.setDescription("Tea");
+		mTransactionsDbAdapter.addRecord(firstCoffee);
+		suggestionTrie = mTransactionsDbAdapter.getTransactionSuggestions(alphaAccount.getUID());
+		assertThat(suggestionTrie.getSuggestions("coffee")).isEmpty();
+		assertThat(suggestionTrie.getSuggestions("tea").get(0).getUseCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void transactionSuggestions_shouldFollowUpdatedAndMovedTransactions(){
+		long now = System.currentTimeMillis();
+		Transaction firstCoffee = addSearchableTransaction("Coffee", null, null, now - 10000);
+		Transaction latestCoffee = addSearchableTransaction("Coffee", null, null, now);
+
+		latestCoffee.setDescription("Tea");
+		mTransactionsDbAdapter.addRecord(latestCoffee, DatabaseAdapter.UpdateMethod.update);
+		SuggestionTrie suggestionTrie = mTransactionsDbAdapter.getTransactionSuggestions(alphaAccount.getUID());
+		List<SuggestionTrie.Suggestion> coffee = suggestionTrie.getSuggestions("coffee");
+		assertThat(coffee).hasSize(1);
+		assertThat(coffee.get(0).getUseCount()).isEqualTo(1);
+		assertThat(coffee.get(0).getTransactionUID()).isEqualTo(firstCoffee.getUID());
+		assertThat(suggestionTrie.getSuggestions("tea").get(0).getUseCount()).isEqualTo(1);
+
+		Account charlieAccount = new Account("Charlie");
+		mAccountsDbAdapter.addRecord(charlieAccount);
+		mTransactionsDbAdapter.moveTransaction(firstCoffee.getUID(), alphaAccount.getUID(), charlieAccount.getUID());
+		assertThat(mTransactionsDbAdapter.getTransactionSuggestions(alphaAccount.getUID())
+				.getSuggestions("coffee")).isEmpty();
+		coffee = mTransactionsDbAdapter.getTransactionSuggestions(charlieAccount.getUID()).getSuggestions("coffee");
+		assertThat(coffee).hasSize(1);
+		assertThat(coffee.get(0).getUseCount()).isEqualTo(1);
+	}
+
 	@After
 	public void tearDown() throws Exception {
 		mAccountsDbAdapter.deleteAllRecords();
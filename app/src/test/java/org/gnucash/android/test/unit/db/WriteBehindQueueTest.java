@@ -0,0 +1,309 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.db;
+
+import android.database.SQLException;
+import android.support.annotation.Nullable;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.WriteBehindQueue;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
+import org.gnucash.android.model.TransactionType;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for saving records in the background with the write-behind queue
+ */
+@RunWith(RobolectricTestRunner.class) //package is required so that resources can be found in dev mode
+@Config(sdk = 21, packageName = "org.gnucash.android", shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class WriteBehindQueueTest {
+
+    private WriteBehindQueue mWriteBehindQueue;
+    private AccountsDbAdapter mAccountsDbAdapter;
+    private TransactionsDbAdapter mTransactionsDbAdapter;
+
+    private Account mAlphaAccount;
+    private Account mBravoAccount;
+
+    private final List<String> mCompleted = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Exception> mErrors = Collections.synchronizedList(new ArrayList<Exception>());
+
+    @Before
+    public void setUp() throws Exception {
+        mWriteBehindQueue = new WriteBehindQueue(GnuCashApplication.getActiveDb());
+        mAccountsDbAdapter = AccountsDbAdapter.getInstance();
+        mTransactionsDbAdapter = TransactionsDbAdapter.getInstance();
+
+        mAlphaAccount = new Account("Alpha");
+        mBravoAccount = new Account("Bravo");
+        mAccountsDbAdapter.addRecord(mAlphaAccount);
+        mAccountsDbAdapter.addRecord(mBravoAccount);
+    }
+
+    @Test
+    public void writes_shouldBeExecutedInOrderOfSubmission() throws InterruptedException {
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        // hold the writer, so that the following writes accumulate into one batch
+        mWriteBehindQueue.enqueue(null, new WriteBehindQueue.WriteOperation() {
+            @Override
+            public void write() {
+                blocked.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                order.add(0);
+            }
+        }, listener("0"));
+        assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        for (int i = 1; i <= 5; i++) {
+            final int index = i;
+            mWriteBehindQueue.enqueue(null, new WriteBehindQueue.WriteOperation() {
+                @Override
+                public void write() {
+                    order.add(index);
+                }
+            }, listener(String.valueOf(i)));
+        }
+        assertThat(mWriteBehindQueue.getPendingCount()).isEqualTo(5);
+        assertThat(mWriteBehindQueue.isIdle()).isFalse();
+
+        release.countDown();
+        flush();
+
+        assertThat(order).containsExactly(0, 1, 2, 3, 4, 5);
+        assertThat(mCompleted).containsExactly("0", "1", "2", "3", "4", "5");
+        assertThat(mErrors).isEmpty();
+        assertThat(mWriteBehindQueue.isIdle()).isTrue();
+    }
+
+    @Test
+    public void pendingSavesOfSameRecord_shouldBeCoalesced() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        mWriteBehindQueue.enqueue(null, new WriteBehindQueue.WriteOperation() {
+            @Override
+            public void write() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, null);
+
+        Transaction transaction = createTransaction("First");
+        mWriteBehindQueue.saveRecord(mTransactionsDbAdapter, transaction, DatabaseAdapter.UpdateMethod.replace, listener("first"));
+        Transaction edited = new Transaction(transaction, false);
+        edited.setUID(transaction.getUID());
+        edited.setDescription("Edited");
+        mWriteBehindQueue.saveRecord(mTransactionsDbAdapter, edited, DatabaseAdapter.UpdateMethod.replace, listener("edited"));
+        assertThat(mWriteBehindQueue.getPendingCount()).isEqualTo(1);
+
+        release.countDown();
+        flush();
+
+        assertThat(mCompleted).containsExactly("first", "edited");
+        assertThat(mTransactionsDbAdapter.getRecordsCount()).isEqualTo(1);
+        assertThat(mTransactionsDbAdapter.getRecord(transaction.getUID()).getDescription()).isEqualTo("Edited");
+    }
+
+    @Test
+    public void failedWrite_shouldNotDiscardOtherWritesOfBatch() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        mWriteBehindQueue.enqueue(null, new WriteBehindQueue.WriteOperation() {
+            @Override
+            public void write() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, null);
+
+        Transaction before = createTransaction("Before");
+        Transaction after = createTransaction("After");
+        mWriteBehindQueue.saveRecord(mTransactionsDbAdapter, before, DatabaseAdapter.UpdateMethod.insert, listener("before"));
+        mWriteBehindQueue.enqueue(null, new WriteBehindQueue.WriteOperation() {
+            @Override
+            public void write() {
+                throw new IllegalStateException("Failed write");
+            }
+        }, listener("failed"));
+        mWriteBehindQueue.saveRecord(mTransactionsDbAdapter, after, DatabaseAdapter.UpdateMethod.insert, listener("after"));
+
+        release.countDown();
+        flush();
+
+        assertThat(mCompleted).containsExactly("before", "after");
+        assertThat(mErrors).hasSize(1);
+        assertThat(mErrors.get(0)).isInstanceOf(IllegalStateException.class);
+        assertThat(mTransactionsDbAdapter.getRecordsCount()).isEqualTo(2);
+        assertThat(mTransactionsDbAdapter.getRecord(before.getUID())).isNotNull();
+        assertThat(mTransactionsDbAdapter.getRecord(after.getUID())).isNotNull();
+    }
+
+    @Test
+    public void failedTransactionSave_shouldNotRollBackOtherWritesOfBatch() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        mWriteBehindQueue.enqueue(null, new WriteBehindQueue.WriteOperation() {
+            @Override
+            public void write() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, listener("blocking"));
+
+        Transaction before = createTransaction("Before");
+        Transaction after = createTransaction("After");
+        // the split of an account which does not exist violates the foreign key constraint
+        Transaction invalid = new Transaction("Invalid");
+        Split split = new Split(Money.createZeroInstance(mAlphaAccount.getCommodity().getCurrencyCode()), "missing-account");
+        invalid.addSplit(split);
+        invalid.addSplit(split.createPair(mBravoAccount.getUID()));
+
+        mWriteBehindQueue.saveRecord(mTransactionsDbAdapter, before, DatabaseAdapter.UpdateMethod.insert, listener("before"));
+        mWriteBehindQueue.saveRecord(mTransactionsDbAdapter, invalid, DatabaseAdapter.UpdateMethod.insert, listener("invalid"));
+        mWriteBehindQueue.saveRecord(mTransactionsDbAdapter, after, DatabaseAdapter.UpdateMethod.insert, listener("after"));
+
+        release.countDown();
+        flush();
+
+        assertThat(mCompleted).containsExactly("blocking", "before", "after");
+        assertThat(mErrors).hasSize(1);
+        assertThat(mErrors.get(0)).isInstanceOf(SQLException.class);
+        assertThat(mTransactionsDbAdapter.getRecordsCount()).isEqualTo(2);
+        assertThat(mTransactionsDbAdapter.getRecord(before.getUID())).isNotNull();
+        assertThat(mTransactionsDbAdapter.getRecord(after.getUID())).isNotNull();
+    }
+
+    @Test
+    public void unbalancedTransaction_shouldBeSavedAfterItsBatchFailed() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        mWriteBehindQueue.enqueue(null, new WriteBehindQueue.WriteOperation() {
+            @Override
+            public void write() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, null);
+
+        // the imbalance account and split are created within the batch, which is rolled back
+        Transaction unbalanced = new Transaction("Unbalanced");
+        Split split = new Split(new Money(BigDecimal.TEN, Commodity.DEFAULT_COMMODITY), mAlphaAccount.getUID());
+        split.setType(TransactionType.DEBIT);
+        unbalanced.addSplit(split);
+        mWriteBehindQueue.saveRecord(mTransactionsDbAdapter, unbalanced, DatabaseAdapter.UpdateMethod.insert, listener("unbalanced"));
+        mWriteBehindQueue.enqueue(null, new WriteBehindQueue.WriteOperation() {
+            @Override
+            public void write() {
+                throw new IllegalStateException("Failed write");
+            }
+        }, listener("failed"));
+
+        release.countDown();
+        flush();
+
+        assertThat(mCompleted).containsExactly("unbalanced");
+        assertThat(mErrors).hasSize(1);
+        assertThat(mErrors.get(0)).isInstanceOf(IllegalStateException.class);
+
+        String imbalanceAccountUID = mAccountsDbAdapter.getImbalanceAccountUID(Commodity.DEFAULT_COMMODITY);
+        assertThat(imbalanceAccountUID).isNotNull();
+        List<Split> splits = mTransactionsDbAdapter.getRecord(unbalanced.getUID()).getSplits();
+        assertThat(splits).hasSize(2);
+        assertThat(unbalanced.getSplits()).hasSize(2);
+        List<String> accountUIDs = new ArrayList<>();
+        for (Split savedSplit : splits) {
+            accountUIDs.add(savedSplit.getAccountUID());
+        }
+        assertThat(accountUIDs).containsOnly(mAlphaAccount.getUID(), imbalanceAccountUID);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void enqueueAfterShutdown_shouldThrowException() {
+        mWriteBehindQueue.shutdown();
+        mWriteBehindQueue.saveRecord(mTransactionsDbAdapter, createTransaction("Late"),
+                DatabaseAdapter.UpdateMethod.insert, null);
+    }
+
+    /**
+     * Waits for the writer and runs the listeners posted to the main thread
+     */
+    private void flush() {
+        mWriteBehindQueue.flush();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private WriteBehindQueue.OnWriteCompleteListener listener(final String name) {
+        return new WriteBehindQueue.OnWriteCompleteListener() {
+            @Override
+            public void onWriteComplete(@Nullable Exception error) {
+                if (error == null)
+                    mCompleted.add(name);
+                else
+                    mErrors.add(error);
+            }
+        };
+    }
+
+    private Transaction createTransaction(String description) {
+        Transaction transaction = new Transaction(description);
+        Split split = new Split(Money.createZeroInstance(mAlphaAccount.getCommodity().getCurrencyCode()), mAlphaAccount.getUID());
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(mBravoAccount.getUID()));
+        return transaction;
+    }
+
+    @After
+    public void tearDown() {
+        mWriteBehindQueue.shutdown();
+        mAccountsDbAdapter.deleteAllRecords();
+    }
+}
@@ -17,7 +17,9 @@ package org.gnucash.android.test.unit.export;
 
 import org.gnucash.android.R;
 import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
+import org.gnucash.android.export.ExportCompression;
 import org.gnucash.android.export.ExportFormat;
 import org.gnucash.android.export.ExportParams;
 import org.gnucash.android.export.Exporter;
@@ -33,9 +35,12 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.xml.sax.SAXException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.zip.Deflater;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -65,6 +70,29 @@ public class BackupTest {
 
     }
 
+    @Test
+    public void shouldStreamCompressedExportWithoutCacheFile() throws Exception {
+        ExportParams params = new ExportParams(ExportFormat.XML);
+        params.setCompression(ExportCompression.GZIP);
+        params.setCompressionLevel(Deflater.BEST_SPEED);
+        Exporter exporter = new GncXmlExporter(params);
+        assertThat(exporter.supportsStreaming()).isTrue();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertThat(exporter.generateExport(outputStream)).isTrue();
+
+        byte[] backup = outputStream.toByteArray();
+        assertThat(backup[0]).isEqualTo((byte) 0x1f); //gzip magic number
+        assertThat(backup[1]).isEqualTo((byte) 0x8b);
+        File cacheDir = new File(GnuCashApplication.getAppContext().getCacheDir(), ExportFormat.XML.name());
+        assertThat(cacheDir.listFiles()).isEmpty();
+
+        long accountCount = AccountsDbAdapter.getInstance().getRecordsCount();
+        String bookUID = GncXmlImporter.parse(new ByteArrayInputStream(backup));
+        BooksDbAdapter.getInstance().setActive(bookUID);
+        assertThat(AccountsDbAdapter.getInstance().getRecordsCount()).isEqualTo(accountCount);
+    }
+
     /**
      * Loads the default accounts from file resource
      */
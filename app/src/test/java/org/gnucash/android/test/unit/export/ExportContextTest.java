@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.export;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.BookDbHelper;
+import org.gnucash.android.db.DatabaseHelper;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.BooksDbAdapter;
+import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
+import org.gnucash.android.export.ExportContext;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.AccountType;
+import org.gnucash.android.model.Book;
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class) //package is required so that resources can be found in dev mode
+@Config(sdk = 21,
+        packageName = "org.gnucash.android",
+        shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class ExportContextTest {
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() throws Exception {
+        BookDbHelper bookDbHelper = new BookDbHelper(GnuCashApplication.getAppContext());
+        BooksDbAdapter booksDbAdapter = new BooksDbAdapter(bookDbHelper.getWritableDatabase());
+        Book testBook = new Book("testRootAccountUID");
+        booksDbAdapter.addRecord(testBook);
+        DatabaseHelper databaseHelper =
+                new DatabaseHelper(GnuCashApplication.getAppContext(), testBook.getUID());
+        mDb = databaseHelper.getWritableDatabase();
+    }
+
+    @Test
+    public void shouldLookUpAccountsByIdAndUID() {
+        AccountsDbAdapter accountsDbAdapter = new AccountsDbAdapter(mDb);
+        Account parent = new Account("Expenses", Commodity.getInstance("EUR"));
+        parent.setAccountType(AccountType.EXPENSE);
+        Account child = new Account("Food", Commodity.getInstance("EUR"));
+        child.setAccountType(AccountType.EXPENSE);
+        child.setParentUID(parent.getUID());
+        accountsDbAdapter.addRecord(parent);
+        accountsDbAdapter.addRecord(child);
+
+        ExportContext exportContext = new ExportContext(mDb, new CommoditiesDbAdapter(mDb));
+
+        ExportContext.AccountInfo account = exportContext.getAccount(child.getUID());
+        assertThat(account).isNotNull();
+        assertThat(account.getName()).isEqualTo("Food");
+        assertThat(account.getFullName()).isEqualTo(accountsDbAdapter.getAccountFullName(child.getUID()));
+        assertThat(account.getCurrencyCode()).isEqualTo("EUR");
+        assertThat(account.getAccountType()).isEqualTo(AccountType.EXPENSE);
+        assertThat(exportContext.getAccount(accountsDbAdapter.getID(child.getUID()))).isSameAs(account);
+        assertThat(exportContext.getAccount("nonexistent")).isNull();
+    }
+
+    @Test
+    public void shouldLookUpCommoditiesByCodeAndUID() {
+        ExportContext exportContext = new ExportContext(mDb, new CommoditiesDbAdapter(mDb));
+
+        Commodity commodity = exportContext.getCommodity("USD");
+        assertThat(commodity).isNotNull();
+        assertThat(commodity.getCurrencyCode()).isEqualTo("USD");
+        assertThat(exportContext.getCommodityByUID(commodity.getUID())).isSameAs(commodity);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.export;
+
+import org.gnucash.android.export.xml.GncXmlHelper;
+import org.gnucash.android.export.xml.GncXmlSerializer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the specialized serializer used for generating GnuCash XML
+ */
+public class GncXmlSerializerTest {
+
+    @Test
+    public void shouldEscapeTextAndAttributes() throws IOException {
+        StringWriter writer = new StringWriter();
+        GncXmlSerializer serializer = new GncXmlSerializer();
+        serializer.setOutput(writer);
+        serializer.startTag(null, GncXmlHelper.TAG_SLOT_VALUE);
+        serializer.attribute(null, GncXmlHelper.ATTR_KEY_TYPE, "a\"b<c");
+        serializer.text("Fish & \"Chips\" <3");
+        serializer.endTag(null, GncXmlHelper.TAG_SLOT_VALUE);
+        serializer.flush();
+
+        assertThat(writer.toString())
+                .isEqualTo("<slot:value type=\"a&quot;b&lt;c\">Fish &amp; \"Chips\" &lt;3</slot:value>");
+    }
+
+    @Test
+    public void shouldIndentNestedElementsOnlyWhenEnabled() throws IOException {
+        StringWriter writer = new StringWriter();
+        GncXmlSerializer serializer = new GncXmlSerializer();
+        serializer.setFeature(GncXmlSerializer.FEATURE_INDENT_OUTPUT, true);
+        serializer.setOutput(writer);
+        serializer.startTag(null, GncXmlHelper.TAG_TRN_SPLIT);
+        serializer.startTag(null, GncXmlHelper.TAG_SPLIT_MEMO).text("memo").endTag(null, GncXmlHelper.TAG_SPLIT_MEMO);
+        serializer.startTag(null, GncXmlHelper.TAG_SPLIT_SLOTS).endTag(null, GncXmlHelper.TAG_SPLIT_SLOTS);
+        serializer.endTag(null, GncXmlHelper.TAG_TRN_SPLIT);
+        serializer.flush();
+
+        assertThat(writer.toString()).isEqualTo("\n<trn:split>"
+                + "\n  <split:memo>memo</split:memo>"
+                + "\n  <split:slots />"
+                + "\n</trn:split>");
+
+        writer = new StringWriter();
+        serializer = new GncXmlSerializer();
+        serializer.setOutput(writer);
+        serializer.startTag(null, GncXmlHelper.TAG_TRN_SPLIT);
+        serializer.startTag(null, GncXmlHelper.TAG_SPLIT_MEMO).text("memo").endTag(null, GncXmlHelper.TAG_SPLIT_MEMO);
+        serializer.endTag(null, GncXmlHelper.TAG_TRN_SPLIT);
+        serializer.flush();
+
+        assertThat(writer.toString()).isEqualTo("<trn:split><split:memo>memo</split:memo></trn:split>");
+    }
+
+    @Test
+    public void shouldFormatDatesLikeHelper() throws IOException {
+        long[] times = {0, 1500000000000L, 1451606399999L, 1459468800000L};
+        for (long time : times) {
+            StringWriter writer = new StringWriter();
+            GncXmlSerializer serializer = new GncXmlSerializer();
+            serializer.setOutput(writer);
+            serializer.textDate(time);
+            serializer.flush();
+            assertThat(writer.toString()).isEqualTo(GncXmlHelper.formatDate(time));
+
+            writer = new StringWriter();
+            serializer.setOutput(writer);
+            serializer.textDay(time);
+            serializer.flush();
+            assertThat(writer.toString()).isEqualTo(GncXmlHelper.DATE_FORMATTER.format(time));
+        }
+    }
+
+    @Test
+    public void shouldFormatAmounts() throws IOException {
+        StringWriter writer = new StringWriter();
+        GncXmlSerializer serializer = new GncXmlSerializer();
+        serializer.setOutput(writer);
+        serializer.textAmount(true, 4590, 100).text(" ");
+        serializer.textAmount(false, 0, 1).text(" ");
+        serializer.textAmount(false, Long.MAX_VALUE, 1000000);
+        serializer.flush();
+
+        assertThat(writer.toString()).isEqualTo("-4590/100 0/1 " + Long.MAX_VALUE + "/1000000");
+    }
+}
@@ -39,6 +39,7 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.util.List;
 
@@ -77,6 +78,21 @@ public class OfxExporterTest {
         assertThat(exporter.generateExport()).isEmpty();
     }
 
+    /**
+     * When there aren't new or modified transactions, streaming the OFX export
+     * should report that there was nothing to export.
+     */
+    @Test
+    public void testWithNoTransactionsToExport_shouldNotStreamExport() throws Exception {
+        ExportParams exportParameters = new ExportParams(ExportFormat.OFX);
+        exportParameters.setExportStartTime(TimestampHelper.getTimestampFromEpochZero());
+        exportParameters.setExportTarget(ExportParams.ExportTarget.SD_CARD);
+        exportParameters.setDeleteTransactionsAfterExport(false);
+        OfxExporter exporter = new OfxExporter(exportParameters, mDb);
+        assertThat(exporter.supportsStreaming()).isTrue();
+        assertThat(exporter.generateExport(new ByteArrayOutputStream())).isFalse();
+    }
+
     /**
      * Test that OFX files are generated
      */
@@ -16,6 +16,7 @@
 package org.gnucash.android.test.unit.export;
 
 import android.database.sqlite.SQLiteDatabase;
+import android.os.CancellationSignal;
 import android.support.annotation.NonNull;
 
 import org.gnucash.android.app.GnuCashApplication;
@@ -23,8 +24,11 @@ import org.gnucash.android.db.BookDbHelper;
 import org.gnucash.android.db.DatabaseHelper;
 import org.gnucash.android.db.adapter.AccountsDbAdapter;
 import org.gnucash.android.db.adapter.BooksDbAdapter;
+import org.gnucash.android.db.adapter.SplitsDbAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
 import org.gnucash.android.export.ExportFormat;
 import org.gnucash.android.export.ExportParams;
+import org.gnucash.android.export.Exporter;
 import org.gnucash.android.export.qif.QifExporter;
 import org.gnucash.android.model.Account;
 import org.gnucash.android.model.Book;
@@ -49,6 +53,7 @@ import java.util.List;
 import java.util.zip.ZipFile;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 @RunWith(RobolectricTestRunner.class) //package is required so that resources can be found in dev mode
 @Config(sdk = 21,
@@ -183,6 +188,118 @@ public class QifExporterTest {
         assertThat(fileContent.contains(expectedMemo));
     }
 
+    /**
+     * Test that a cancelled export stops, leaves no files behind and does not mark transactions as exported
+     */
+    @Test
+    public void cancelledExport_shouldNotLeaveFilesOrMarkTransactionsAsExported(){
+        AccountsDbAdapter accountsDbAdapter = new AccountsDbAdapter(mDb);
+
+        Account account = new Account("Basic Account");
+        Transaction transaction = new Transaction("One transaction");
+        transaction.addSplit(new Split(Money.createZeroInstance("EUR"), account.getUID()));
+        account.addTransaction(transaction);
+
+        accountsDbAdapter.addRecord(account);
+
+        ExportParams exportParameters = new ExportParams(ExportFormat.QIF);
+        exportParameters.setExportStartTime(TimestampHelper.getTimestampFromEpochZero());
+        exportParameters.setExportTarget(ExportParams.ExportTarget.SD_CARD);
+        exportParameters.setDeleteTransactionsAfterExport(false);
+
+        CancellationSignal cancellationSignal = new CancellationSignal();
+        cancellationSignal.cancel();
+        QifExporter qifExporter = new QifExporter(exportParameters, mDb);
+        qifExporter.setCancellationSignal(cancellationSignal);
+        try {
+            qifExporter.generateExport();
+            fail("Export should have been cancelled");
+        } catch (Exporter.ExportCancelledException e) {
+            qifExporter.discardExport();
+        }
+
+        File cacheDir = new File(GnuCashApplication.getAppContext().getCacheDir(), ExportFormat.QIF.name());
+        assertThat(cacheDir.listFiles()).isNullOrEmpty();
+        TransactionsDbAdapter transactionsDbAdapter = new TransactionsDbAdapter(mDb, new SplitsDbAdapter(mDb));
+        assertThat(transactionsDbAdapter.getRecord(transaction.getUID()).isExported()).isFalse();
+    }
+
+    /**
+     * Test that the progress listener is notified until all transactions have been exported
+     */
+    @Test
+    public void generateExport_shouldReportProgress(){
+        AccountsDbAdapter accountsDbAdapter = new AccountsDbAdapter(mDb);
+
+        Account account = new Account("Basic Account");
+        for (int i = 0; i < 3; i++) {
+            Transaction transaction = new Transaction("Transaction " + i);
+            transaction.addSplit(new Split(Money.createZeroInstance("EUR"), account.getUID()));
+            account.addTransaction(transaction);
+        }
+
+        accountsDbAdapter.addRecord(account);
+
+        ExportParams exportParameters = new ExportParams(ExportFormat.QIF);
+        exportParameters.setExportStartTime(TimestampHelper.getTimestampFromEpochZero());
+        exportParameters.setExportTarget(ExportParams.ExportTarget.SD_CARD);
+        exportParameters.setDeleteTransactionsAfterExport(false);
+
+        final long[] lastProgress = {-1, -1};
+        QifExporter qifExporter = new QifExporter(exportParameters, mDb);
+        qifExporter.setProgressListener(new Exporter.ProgressListener() {
+            @Override
+            public void onExportProgress(long progress, long total) {
+                assertThat(progress).isGreaterThanOrEqualTo(lastProgress[0]);
+                lastProgress[0] = progress;
+                lastProgress[1] = total;
+            }
+        });
+        qifExporter.generateExport();
+
+        assertThat(lastProgress[0]).isEqualTo(3);
+        assertThat(lastProgress[1]).isEqualTo(3);
+    }
+
+    /**
+     * Test that the progress total only counts the transactions which are exported
+     */
+    @Test
+    public void generateExport_shouldReportTotalOfExportedTransactions(){
+        AccountsDbAdapter accountsDbAdapter = new AccountsDbAdapter(mDb);
+
+        Account account = new Account("Basic Account");
+        for (int i = 0; i < 2; i++) {
+            Transaction transaction = new Transaction("Transaction " + i);
+            transaction.addSplit(new Split(Money.createZeroInstance("EUR"), account.getUID()));
+            account.addTransaction(transaction);
+        }
+        Transaction template = new Transaction("Template");
+        template.setTemplate(true);
+        template.addSplit(new Split(Money.createZeroInstance("EUR"), account.getUID()));
+        account.addTransaction(template);
+
+        accountsDbAdapter.addRecord(account);
+
+        ExportParams exportParameters = new ExportParams(ExportFormat.QIF);
+        exportParameters.setExportStartTime(TimestampHelper.getTimestampFromEpochZero());
+        exportParameters.setExportTarget(ExportParams.ExportTarget.SD_CARD);
+        exportParameters.setDeleteTransactionsAfterExport(false);
+
+        final long[] startTotal = {-1};
+        QifExporter qifExporter = new QifExporter(exportParameters, mDb);
+        qifExporter.setProgressListener(new Exporter.ProgressListener() {
+            @Override
+            public void onExportProgress(long progress, long total) {
+                if (startTotal[0] < 0)
+                    startTotal[0] = total;
+            }
+        });
+        qifExporter.generateExport();
+
+        assertThat(startTotal[0]).isEqualTo(2);
+    }
+
     @NonNull
     public String readFileContent(File file) throws IOException {
         StringBuilder fileContentsBuilder = new StringBuilder();
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.model;
+
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.MoneyAccumulator;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for summing money amounts with the {@link MoneyAccumulator}
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, packageName = "org.gnucash.android", shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class MoneyAccumulatorTest {
+
+    private static final String CURRENCY_CODE = "EUR";
+
+    @Test
+    public void sum_shouldEqualSumOfMoneyAdditions() {
+        List<Money> amounts = createAmounts(1000);
+        Money expected = Money.createZeroInstance(CURRENCY_CODE);
+        MoneyAccumulator accumulator = new MoneyAccumulator(CURRENCY_CODE);
+        for (int i = 0; i < amounts.size(); i++) {
+            if (i % 3 == 0) {
+                expected = expected.subtract(amounts.get(i));
+                accumulator.subtract(amounts.get(i));
+            } else {
+                expected = expected.add(amounts.get(i));
+                accumulator.add(amounts.get(i));
+            }
+        }
+        assertThat(accumulator.toMoney()).isEqualTo(expected);
+
+        accumulator.reset();
+        assertThat(accumulator.toMoney().isAmountZero()).isTrue();
+    }
+
+    @Test
+    public void amountsWithMoreDecimals_shouldBeRoundedAfterEachAddition() {
+        Money quantity = new Money(15, 1000, CURRENCY_CODE);
+        MoneyAccumulator accumulator = new MoneyAccumulator(CURRENCY_CODE);
+        accumulator.add(new Money("0.01", CURRENCY_CODE)).add(quantity);
+        assertThat(accumulator.toMoney()).isEqualTo(new Money("0.01", CURRENCY_CODE).add(quantity));
+        accumulator.add(quantity);
+        assertThat(accumulator.toMoney().toPlainString()).isEqualTo("0.04");
+    }
+
+    @Test
+    public void overflowingSum_shouldFallBackToBigDecimal() {
+        Money max = new Money(Long.MAX_VALUE, 100, CURRENCY_CODE);
+        MoneyAccumulator accumulator = new MoneyAccumulator(CURRENCY_CODE);
+        accumulator.add(max).add(max);
+        assertThat(accumulator.toMoney().asBigDecimal()).isEqualTo(max.asBigDecimal().multiply(new BigDecimal(2)));
+
+        accumulator.subtract(max);
+        assertThat(accumulator.toMoney()).isEqualTo(max);
+        assertThat(accumulator.toMoney().getNumerator()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test(expected = Money.CurrencyMismatchException.class)
+    public void addingOtherCurrency_shouldThrowException() {
+        new MoneyAccumulator(CURRENCY_CODE).add(new Money("1", "USD"));
+    }
+
+    /**
+     * The sum should be the same as with {@link BigDecimal}s rounded to the commodity,
+     * also when the accumulator is reused after a reset
+     */
+    @Test
+    public void reusedAccumulator_shouldEqualBigDecimalSum() {
+        List<Money> amounts = createAmounts(10000);
+        Commodity commodity = Commodity.getInstance(CURRENCY_CODE);
+        BigDecimal decimalSum = BigDecimal.ZERO;
+        for (Money amount : amounts) {
+            decimalSum = decimalSum.add(amount.asBigDecimal())
+                    .setScale(commodity.getSmallestFractionDigits(), BigDecimal.ROUND_HALF_EVEN);
+        }
+
+        MoneyAccumulator accumulator = new MoneyAccumulator(commodity);
+        for (int run = 0; run < 2; run++) {
+            accumulator.reset();
+            for (Money amount : amounts) {
+                accumulator.add(amount);
+            }
+            assertThat(accumulator.toMoney().asBigDecimal()).isEqualTo(decimalSum);
+        }
+    }
+
+    private static List<Money> createAmounts(int count) {
+        Random random = new Random(42);
+        List<Money> amounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            amounts.add(new Money(random.nextInt(1000000) - 500000, 100, CURRENCY_CODE));
+        }
+        return amounts;
+    }
+}
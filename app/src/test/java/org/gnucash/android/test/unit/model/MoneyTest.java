@@ -168,6 +168,38 @@ public class MoneyTest{
 		assertEquals("9.75", some.asString());
 	}
 
+	@Test
+	public void additionOverflowingLong_shouldFallBackToBigDecimal(){
+		Money max = new Money(Long.MAX_VALUE, 100, CURRENCY_CODE);
+		Money sum = max.add(new Money("0.01", CURRENCY_CODE));
+		assertThat(sum.asBigDecimal()).isEqualTo(new BigDecimal("92233720368547758.08"));
+		assertThat(sum.subtract(new Money("0.01", CURRENCY_CODE))).isEqualTo(max);
+
+		Money min = new Money(Long.MIN_VALUE, 100, CURRENCY_CODE);
+		assertThat(min.negate().asBigDecimal()).isEqualTo(new BigDecimal("92233720368547758.08"));
+		assertThat(min.abs()).isEqualTo(min.negate());
+		assertThat(min.compareTo(max)).isLessThan(0);
+	}
+
+	@Test
+	public void operationsOnDifferentScales_shouldRoundLikeBigDecimal(){
+		Money quantity = new Money(15, 1000, CURRENCY_CODE); //0.015 is more precise than the currency
+		assertThat(new Money("0.01", CURRENCY_CODE).add(quantity).toPlainString()).isEqualTo("0.02");
+		assertThat(new Money("0.02", CURRENCY_CODE).add(quantity).toPlainString()).isEqualTo("0.04");
+		assertThat(quantity.negate().toPlainString()).isEqualTo("-0.02");
+	}
+
+	@Test
+	public void equalAmounts_shouldHaveEqualHashCodes(){
+		Money fromFraction = new Money(1575, 100, CURRENCY_CODE);
+		Money sum = new Money("15", CURRENCY_CODE).add(new Money("0.75", CURRENCY_CODE));
+		assertThat(fromFraction).isEqualTo(mMoneyInEur);
+		assertThat(sum).isEqualTo(mMoneyInEur);
+		assertThat(fromFraction.hashCode()).isEqualTo(mHashcode);
+		assertThat(sum.hashCode()).isEqualTo(mHashcode);
+		assertThat(sum.compareTo(fromFraction)).isZero();
+	}
+
 	public void validateImmutability(){
 		assertEquals(mHashcode, mMoneyInEur.hashCode());
 		assertEquals(amountString, mMoneyInEur.toPlainString());
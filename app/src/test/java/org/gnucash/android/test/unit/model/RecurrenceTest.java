@@ -22,6 +22,9 @@ import org.joda.time.DateTime;
 import org.junit.Test;
 
 import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -84,4 +87,75 @@ public class RecurrenceTest {
 
         assertThat(recurrence.getCount()).isEqualTo(-1);
     }
+
+    @Test
+    public void weeklyOccurrences_shouldIncludeEachDayOfWeekSet() {
+        Recurrence recurrence = new Recurrence(PeriodType.WEEK);
+        recurrence.setByDays(Arrays.asList(Calendar.THURSDAY, Calendar.MONDAY));
+        long start = new DateTime(2016, 6, 8, 9, 0).getMillis(); // Wednesday
+
+        List<Long> occurrences = recurrence.getOccurrences(start, 0, Long.MAX_VALUE, 4);
+        assertThat(occurrences).containsExactly(
+                new DateTime(2016, 6, 9, 9, 0).getMillis(),
+                new DateTime(2016, 6, 13, 9, 0).getMillis(),
+                new DateTime(2016, 6, 16, 9, 0).getMillis(),
+                new DateTime(2016, 6, 20, 9, 0).getMillis());
+
+        recurrence.setMultiplier(2);
+        occurrences = recurrence.getOccurrences(start, 0, Long.MAX_VALUE, 4);
+        assertThat(occurrences).containsExactly(
+                new DateTime(2016, 6, 9, 9, 0).getMillis(),
+                new DateTime(2016, 6, 20, 9, 0).getMillis(),
+                new DateTime(2016, 6, 23, 9, 0).getMillis(),
+                new DateTime(2016, 7, 4, 9, 0).getMillis());
+
+        assertThat(recurrence.getOccurrences(start, 2, Long.MAX_VALUE, 2)).containsExactly(
+                new DateTime(2016, 6, 23, 9, 0).getMillis(),
+                new DateTime(2016, 7, 4, 9, 0).getMillis());
+    }
+
+    /**
+     * Monthly occurrences are computed from the start, so a short month does not move
+     * the day of the month of the following occurrences
+     */
+    @Test
+    public void monthlyOccurrences_shouldKeepDayOfMonthOfStart() {
+        Recurrence recurrence = new Recurrence(PeriodType.MONTH);
+        long start = new DateTime(2016, 1, 31, 12, 0).getMillis();
+
+        assertThat(recurrence.getOccurrences(start, 0, Long.MAX_VALUE, 4)).containsExactly(
+                start,
+                new DateTime(2016, 2, 29, 12, 0).getMillis(),
+                new DateTime(2016, 3, 31, 12, 0).getMillis(),
+                new DateTime(2016, 4, 30, 12, 0).getMillis());
+        assertThat(recurrence.getOccurrences(start, 2, Long.MAX_VALUE, 1))
+                .containsExactly(new DateTime(2016, 3, 31, 12, 0).getMillis());
+    }
+
+    @Test
+    public void occurrencesBetween_shouldExcludeStartOfWindow() {
+        Recurrence recurrence = new Recurrence(PeriodType.MONTH);
+        long start = new DateTime(2015, 8, 15, 12, 0).getMillis();
+        long after = new DateTime(2015, 10, 15, 12, 0).getMillis();
+        long until = new DateTime(2016, 1, 15, 12, 0).getMillis();
+
+        assertThat(recurrence.getOccurrencesBetween(start, after, until, Integer.MAX_VALUE)).containsExactly(
+                new DateTime(2015, 11, 15, 12, 0).getMillis(),
+                new DateTime(2015, 12, 15, 12, 0).getMillis(),
+                until);
+        assertThat(recurrence.getOccurrencesBetween(start, after, until, 1))
+                .containsExactly(new DateTime(2015, 11, 15, 12, 0).getMillis());
+    }
+
+    @Test
+    public void dailyOccurrencesOfYear_shouldBeExpandedInOnePass() {
+        Recurrence recurrence = new Recurrence(PeriodType.DAY);
+        long start = new DateTime(2015, 1, 1, 9, 0).getMillis();
+        long until = new DateTime(2015, 12, 31, 9, 0).getMillis();
+
+        List<Long> occurrences = recurrence.getOccurrencesBetween(start, start - 1, until, Integer.MAX_VALUE);
+        assertThat(occurrences).hasSize(365);
+        assertThat(occurrences.get(0)).isEqualTo(start);
+        assertThat(occurrences.get(364)).isEqualTo(until);
+    }
 }
@@ -196,6 +196,43 @@ public class ScheduledActionTest {
         assertThat(scheduledAction.computeNextTimeBasedScheduledExecutionTime()).isGreaterThan(now);
     }
 
+    @Test
+    public void computingNextRunTime_shouldConsiderLimitsOfSchedule() {
+        ScheduledAction scheduledAction = new ScheduledAction(ScheduledAction.ActionType.TRANSACTION);
+        Recurrence recurrence = new Recurrence(PeriodType.MONTH);
+        DateTime startDate = new DateTime(2015, 8, 15, 12, 0);
+        recurrence.setPeriodStart(new Timestamp(startDate.getMillis()));
+        scheduledAction.setRecurrence(recurrence);
+        assertThat(scheduledAction.computeNextRunTime()).isEqualTo(startDate.getMillis());
+
+        scheduledAction.setExecutionCount(2);
+        assertThat(scheduledAction.computeNextRunTime()).isEqualTo(new DateTime(2015, 10, 15, 12, 0).getMillis());
+
+        scheduledAction.setEndTime(new DateTime(2015, 10, 1, 12, 0).getMillis());
+        assertThat(scheduledAction.computeNextRunTime()).isEqualTo(-1);
+
+        scheduledAction.setEndTime(0);
+        scheduledAction.setTotalPlannedExecutionCount(2);
+        assertThat(scheduledAction.computeNextRunTime()).isEqualTo(-1);
+
+        scheduledAction.setTotalPlannedExecutionCount(0);
+        scheduledAction.setEnabled(false);
+        assertThat(scheduledAction.computeNextRunTime()).isEqualTo(-1);
+    }
+
+    @Test
+    public void computingNextRunTimeOfBackup_shouldUseLastRun() {
+        ScheduledAction scheduledAction = new ScheduledAction(ScheduledAction.ActionType.BACKUP);
+        Recurrence recurrence = new Recurrence(PeriodType.DAY);
+        DateTime startDate = new DateTime(2016, 6, 6, 9, 0);
+        recurrence.setPeriodStart(new Timestamp(startDate.getMillis()));
+        scheduledAction.setRecurrence(recurrence);
+        assertThat(scheduledAction.computeNextRunTime()).isEqualTo(startDate.getMillis());
+
+        scheduledAction.setLastRun(new DateTime(2017, 4, 12, 10, 30).getMillis());
+        assertThat(scheduledAction.computeNextRunTime()).isEqualTo(new DateTime(2017, 4, 13, 10, 30).getMillis());
+    }
+
     private long getTimeInMillis(int year, int month, int day) {
         Calendar calendar = Calendar.getInstance();
         calendar.set(year, month, day);
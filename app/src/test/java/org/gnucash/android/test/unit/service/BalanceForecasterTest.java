@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.service;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
+import org.gnucash.android.db.adapter.ScheduledActionDbAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.AccountType;
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.PeriodType;
+import org.gnucash.android.model.Recurrence;
+import org.gnucash.android.model.ScheduledAction;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
+import org.gnucash.android.model.TransactionType;
+import org.gnucash.android.service.BalanceForecaster;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the forecast of account balances with scheduled transactions
+ */
+@RunWith(RobolectricTestRunner.class) //package is required so that resources can be found in dev mode
+@Config(sdk = 21, packageName = "org.gnucash.android",
+        shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class BalanceForecasterTest {
+
+    private Account mBaseAccount;
+    private Account mChildAccount;
+    private Account mTransferAccount;
+
+    private TransactionsDbAdapter mTransactionsDbAdapter;
+    private ScheduledActionDbAdapter mScheduledActionDbAdapter;
+
+    @Before
+    public void setUp() {
+        new CommoditiesDbAdapter(GnuCashApplication.getActiveDb()); //initializes commodity static values
+        mBaseAccount = createAccount("Base Account", null);
+        mChildAccount = createAccount("Child Account", mBaseAccount.getUID());
+        mTransferAccount = createAccount("Transfer Account", null);
+        AccountsDbAdapter accountsDbAdapter = AccountsDbAdapter.getInstance();
+        accountsDbAdapter.addRecord(mBaseAccount);
+        accountsDbAdapter.addRecord(mChildAccount);
+        accountsDbAdapter.addRecord(mTransferAccount);
+
+        mTransactionsDbAdapter = TransactionsDbAdapter.getInstance();
+        mScheduledActionDbAdapter = ScheduledActionDbAdapter.getInstance();
+    }
+
+    private Account createAccount(String name, String parentUID) {
+        Account account = new Account(name);
+        account.setAccountType(AccountType.BANK);
+        account.setCommodity(Commodity.DEFAULT_COMMODITY);
+        account.setParentUID(parentUID);
+        return account;
+    }
+
+    private Transaction createTransaction(String accountUID, int amount, long time, boolean isTemplate) {
+        Transaction transaction = new Transaction("Transaction");
+        transaction.setCommodity(Commodity.DEFAULT_COMMODITY);
+        transaction.setTime(time);
+        transaction.setTemplate(isTemplate);
+        Split split = new Split(new Money(new BigDecimal(amount), Commodity.DEFAULT_COMMODITY), accountUID);
+        split.setType(TransactionType.DEBIT);
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(mTransferAccount.getUID()));
+        mTransactionsDbAdapter.addRecord(transaction, DatabaseAdapter.UpdateMethod.insert);
+        return transaction;
+    }
+
+    @Test
+    public void forecast_shouldAddScheduledAndFutureTransactions() {
+        LocalDate firstOfMonth = LocalDate.now().withDayOfMonth(1);
+        createTransaction(mBaseAccount.getUID(), 100, System.currentTimeMillis() - 86400000L, false);
+        createTransaction(mBaseAccount.getUID(), 20,
+                firstOfMonth.plusMonths(2).plusDays(1).toDate().getTime(), false);
+
+        Transaction template = createTransaction(mBaseAccount.getUID(), 10, 0, true);
+        ScheduledAction scheduledAction = new ScheduledAction(ScheduledAction.ActionType.TRANSACTION);
+        scheduledAction.setActionUID(template.getUID());
+        scheduledAction.setRecurrence(new Recurrence(PeriodType.MONTH));
+        scheduledAction.setStartTime(firstOfMonth.plusMonths(1).plusDays(1).toDate().getTime());
+        scheduledAction.setTotalPlannedExecutionCount(3);
+        mScheduledActionDbAdapter.addRecord(scheduledAction, DatabaseAdapter.UpdateMethod.insert);
+
+        long transactionCount = mTransactionsDbAdapter.getRecordsCount();
+        BalanceForecaster.Forecast forecast = new BalanceForecaster()
+                .forecastMonths(Collections.singletonList(mBaseAccount.getUID()), 6, false);
+
+        assertThat(forecast.getTimes()).hasSize(6);
+        assertThat(forecast.getAccountUIDs()).containsExactly(mBaseAccount.getUID());
+        Money[] balances = forecast.getBalances(mBaseAccount.getUID());
+        int[] expectedBalances = {100, 110, 140, 150, 150, 150};
+        for (int i = 0; i < expectedBalances.length; i++) {
+            assertThat(balances[i].asBigDecimal().intValue()).isEqualTo(expectedBalances[i]);
+        }
+        //nothing is persisted
+        assertThat(mTransactionsDbAdapter.getRecordsCount()).isEqualTo(transactionCount);
+    }
+
+    @Test
+    public void forecastWithSubAccounts_shouldIncludeTheirBalances() {
+        long yesterday = System.currentTimeMillis() - 86400000L;
+        createTransaction(mBaseAccount.getUID(), 100, yesterday, false);
+        createTransaction(mChildAccount.getUID(), 5, yesterday, false);
+
+        BalanceForecaster forecaster = new BalanceForecaster();
+        Money[] balances = forecaster.forecastMonths(Collections.singletonList(mBaseAccount.getUID()), 1, true)
+                .getBalances(mBaseAccount.getUID());
+        assertThat(balances[0].asBigDecimal().intValue()).isEqualTo(105);
+
+        balances = forecaster.forecastMonths(Collections.singletonList(mBaseAccount.getUID()), 1, false)
+                .getBalances(mBaseAccount.getUID());
+        assertThat(balances[0].asBigDecimal().intValue()).isEqualTo(100);
+    }
+
+    @After
+    public void tearDown() {
+        mScheduledActionDbAdapter.deleteAllRecords();
+        mTransactionsDbAdapter.deleteAllRecords();
+        AccountsDbAdapter.getInstance().deleteAllRecords();
+    }
+}
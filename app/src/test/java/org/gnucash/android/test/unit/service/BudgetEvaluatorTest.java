@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.service;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.BudgetsDbAdapter;
+import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.Budget;
+import org.gnucash.android.model.BudgetAmount;
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.PeriodType;
+import org.gnucash.android.model.Recurrence;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
+import org.gnucash.android.model.TransactionType;
+import org.gnucash.android.service.BudgetEvaluator;
+import org.gnucash.android.service.BudgetEvaluator.AmountProgress;
+import org.gnucash.android.service.BudgetEvaluator.BudgetProgress;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the computation of the amounts spent against budgets
+ */
+@RunWith(RobolectricTestRunner.class) //package is required so that resources can be found in dev mode
+@Config(sdk = 21, packageName = "org.gnucash.android",
+        shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class BudgetEvaluatorTest {
+
+    private Account mAccount;
+    private Account mTransferAccount;
+
+    private AccountsDbAdapter mAccountsDbAdapter;
+    private TransactionsDbAdapter mTransactionsDbAdapter;
+    private BudgetsDbAdapter mBudgetsDbAdapter;
+
+    @Before
+    public void setUp() {
+        new CommoditiesDbAdapter(GnuCashApplication.getActiveDb()); //initializes commodity static values
+        mAccountsDbAdapter = AccountsDbAdapter.getInstance();
+        mTransactionsDbAdapter = TransactionsDbAdapter.getInstance();
+        mBudgetsDbAdapter = BudgetsDbAdapter.getInstance();
+
+        mAccount = new Account("Groceries");
+        mTransferAccount = new Account("Wallet");
+        mAccountsDbAdapter.addRecord(mAccount);
+        mAccountsDbAdapter.addRecord(mTransferAccount);
+    }
+
+    private void createTransaction(int amount) {
+        Transaction transaction = new Transaction("Shopping");
+        transaction.setCommodity(Commodity.DEFAULT_COMMODITY);
+        Split split = new Split(new Money(new BigDecimal(amount), Commodity.DEFAULT_COMMODITY), mAccount.getUID());
+        split.setType(TransactionType.DEBIT);
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(mTransferAccount.getUID()));
+        mTransactionsDbAdapter.addRecord(transaction, DatabaseAdapter.UpdateMethod.insert);
+    }
+
+    private Budget createBudget(int amount) {
+        Budget budget = new Budget("Food", new Recurrence(PeriodType.MONTH));
+        budget.addBudgetAmount(new BudgetAmount(
+                new Money(new BigDecimal(amount), Commodity.DEFAULT_COMMODITY), mAccount.getUID()));
+        mBudgetsDbAdapter.addRecord(budget);
+        return budget;
+    }
+
+    @Test
+    public void evaluate_shouldMatchAccountBalanceInCurrentPeriod() {
+        createTransaction(30);
+        createTransaction(20);
+        Budget budget = createBudget(200);
+
+        BudgetProgress progress = BudgetEvaluator.getInstance().evaluate(budget.getUID());
+
+        Money balance = mAccountsDbAdapter.getAccountBalance(mAccount.getUID(),
+                budget.getStartofCurrentPeriod(), budget.getEndOfCurrentPeriod());
+        assertThat(progress.getSpentAmount().asBigDecimal()).isEqualByComparingTo(balance.asBigDecimal());
+        assertThat(progress.getSpentAmount().asBigDecimal()).isEqualByComparingTo("50");
+        assertThat(progress.getProgress()).isEqualTo(0.25);
+
+        List<AmountProgress> amountProgressList = progress.getAmountProgressList();
+        assertThat(amountProgressList).hasSize(1);
+        assertThat(amountProgressList.get(0).getAccountFullName())
+                .isEqualTo(mAccountsDbAdapter.getAccountFullName(mAccount.getUID()));
+        assertThat(amountProgressList.get(0).getSpentAmount().asBigDecimal()).isEqualByComparingTo("50");
+        assertThat(progress.getNumberOfPeriods()).isGreaterThan(0);
+    }
+
+    @Test
+    public void evaluate_shouldBeCachedUntilDataChanges() {
+        createTransaction(30);
+        Budget budget = createBudget(100);
+
+        BudgetEvaluator evaluator = BudgetEvaluator.getInstance();
+        List<BudgetProgress> progressList = evaluator.evaluateAll();
+        assertThat(progressList).hasSize(1);
+        BudgetProgress progress = progressList.get(0);
+        assertThat(evaluator.evaluate(budget.getUID())).isSameAs(progress);
+
+        long dataVersion = mBudgetsDbAdapter.getDataVersion();
+        createTransaction(10);
+        assertThat(mBudgetsDbAdapter.getDataVersion()).isGreaterThan(dataVersion);
+
+        BudgetProgress newProgress = evaluator.evaluate(budget.getUID());
+        assertThat(newProgress).isNotSameAs(progress);
+        assertThat(newProgress.getSpentAmount().asBigDecimal()).isEqualByComparingTo("40");
+    }
+
+    @After
+    public void tearDown() {
+        mBudgetsDbAdapter.deleteAllRecords();
+        mTransactionsDbAdapter.deleteAllRecords();
+        mAccountsDbAdapter.deleteAllRecords();
+    }
+}
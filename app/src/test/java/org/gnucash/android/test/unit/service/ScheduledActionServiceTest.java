@@ -427,6 +427,35 @@ public class ScheduledActionServiceTest {
         assertThat(backupFolder.listFiles()).hasSize(0);
     }
 
+    /**
+     * Tests that a scheduled backup without new transactions to export is due again
+     * at its next period, instead of being retried right away.
+     */
+    @Test
+    public void scheduledBackups_withoutNewTransactions_shouldBeDueAtNextPeriod() {
+        ScheduledAction scheduledBackup = new ScheduledAction(ScheduledAction.ActionType.BACKUP);
+        scheduledBackup.setStartTime(LocalDateTime.now().minusDays(15).toDate().getTime());
+        scheduledBackup.setLastRun(LocalDateTime.now().minusDays(2).toDate().getTime());
+        long previousLastRun = scheduledBackup.getLastRunTime();
+        scheduledBackup.setExecutionCount(1);
+        scheduledBackup.setRecurrence(new Recurrence(PeriodType.DAY));
+        ExportParams backupParams = new ExportParams(ExportFormat.QIF);
+        backupParams.setExportTarget(ExportParams.ExportTarget.SD_CARD);
+        scheduledBackup.setTag(backupParams.toCsv());
+        ScheduledActionDbAdapter scheduledActionDbAdapter = ScheduledActionDbAdapter.getInstance();
+        scheduledActionDbAdapter.addRecord(scheduledBackup, DatabaseAdapter.UpdateMethod.insert);
+        assertThat(scheduledActionDbAdapter.getNextRunTime()).isLessThan(System.currentTimeMillis());
+
+        long now = System.currentTimeMillis();
+        ScheduledActionService.processScheduledActions(Collections.singletonList(scheduledBackup), mDb);
+
+        assertThat(scheduledBackup.getExecutionCount()).isEqualTo(1);
+        assertThat(scheduledBackup.getLastRunTime()).isEqualTo(previousLastRun);
+        assertThat(scheduledActionDbAdapter.getNextRunTime())
+                .isGreaterThan(now)
+                .isLessThanOrEqualTo(LocalDateTime.now().plusDays(1).toDate().getTime());
+    }
+
     /**
      * Sets the transaction modified timestamp directly in the database.
      *
@@ -0,0 +1,218 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.ui;
+
+import android.content.Context;
+
+import org.gnucash.android.app.GnuCashApplication;
+import org.gnucash.android.db.adapter.AccountsDbAdapter;
+import org.gnucash.android.db.adapter.BooksDbAdapter;
+import org.gnucash.android.db.adapter.CommoditiesDbAdapter;
+import org.gnucash.android.db.adapter.DatabaseAdapter;
+import org.gnucash.android.db.adapter.TransactionsDbAdapter;
+import org.gnucash.android.model.Account;
+import org.gnucash.android.model.Commodity;
+import org.gnucash.android.model.Money;
+import org.gnucash.android.model.Split;
+import org.gnucash.android.model.Transaction;
+import org.gnucash.android.model.TransactionType;
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.gnucash.android.ui.homescreen.WidgetConfigurationActivity;
+import org.gnucash.android.ui.homescreen.WidgetStateStore;
+import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the validity of the balance snapshots of the homescreen widgets
+ */
+@RunWith(RobolectricTestRunner.class) //package is required so that resources can be found in dev mode
+@Config(sdk = 21, packageName = "org.gnucash.android",
+        shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class WidgetStateStoreTest {
+
+    private static final int WIDGET_ID = 1;
+    private static final int CHILD_WIDGET_ID = 2;
+    private static final int PARENT_WIDGET_ID = 3;
+    private static final int UNRELATED_WIDGET_ID = 4;
+    private static final int OTHER_BOOK_WIDGET_ID = 5;
+
+    private Context mContext;
+    private AccountsDbAdapter mAccountsDbAdapter;
+    private TransactionsDbAdapter mTransactionsDbAdapter;
+
+    private Account mParentAccount;
+    private Account mChildAccount;
+    private Account mUnrelatedAccount;
+    private Account mTransferAccount;
+
+    private Money mBalance;
+
+    @Before
+    public void setUp() {
+        new CommoditiesDbAdapter(GnuCashApplication.getActiveDb()); //initializes commodity static values
+        mContext = RuntimeEnvironment.application;
+        mAccountsDbAdapter = AccountsDbAdapter.getInstance();
+        mTransactionsDbAdapter = TransactionsDbAdapter.getInstance();
+
+        mParentAccount = new Account("Expenses");
+        mChildAccount = new Account("Groceries");
+        mChildAccount.setParentUID(mParentAccount.getUID());
+        mUnrelatedAccount = new Account("Savings");
+        mTransferAccount = new Account("Wallet");
+        mAccountsDbAdapter.addRecord(mParentAccount);
+        mAccountsDbAdapter.addRecord(mChildAccount);
+        mAccountsDbAdapter.addRecord(mUnrelatedAccount);
+        mAccountsDbAdapter.addRecord(mTransferAccount);
+
+        mBalance = new Money(new BigDecimal("12.50"), Commodity.DEFAULT_COMMODITY);
+    }
+
+    private void createTransaction(String accountUID, String transferAccountUID) {
+        Transaction transaction = new Transaction("Shopping");
+        transaction.setCommodity(Commodity.DEFAULT_COMMODITY);
+        Split split = new Split(new Money(new BigDecimal("10"), Commodity.DEFAULT_COMMODITY), accountUID);
+        split.setType(TransactionType.DEBIT);
+        transaction.addSplit(split);
+        transaction.addSplit(split.createPair(transferAccountUID));
+        mTransactionsDbAdapter.addRecord(transaction, DatabaseAdapter.UpdateMethod.insert);
+    }
+
+    @Test
+    public void snapshot_shouldBeValidForSameAccountVersionAndDay() {
+        WidgetStateStore.putBalance(mContext, WIDGET_ID, mChildAccount.getUID(), 7, mBalance);
+
+        Money balance = WidgetStateStore.getBalance(mContext, WIDGET_ID, mChildAccount.getUID(), 7);
+        assertThat(balance).isNotNull();
+        assertThat(balance.asBigDecimal()).isEqualByComparingTo("12.50");
+        assertThat(balance.getCommodity()).isEqualTo(Commodity.DEFAULT_COMMODITY);
+    }
+
+    @Test
+    public void snapshot_shouldBeInvalidAfterDataVersionChange() {
+        WidgetStateStore.putBalance(mContext, WIDGET_ID, mChildAccount.getUID(), 7, mBalance);
+
+        assertThat(WidgetStateStore.getBalance(mContext, WIDGET_ID, mChildAccount.getUID(), 8)).isNull();
+    }
+
+    @Test
+    public void snapshot_shouldBeInvalidOnNextDay() {
+        WidgetStateStore.putBalance(mContext, WIDGET_ID, mChildAccount.getUID(), 7, mBalance);
+
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        assertThat(WidgetStateStore.getBalance(mContext, WIDGET_ID, mChildAccount.getUID(), 7, tomorrow)).isNull();
+    }
+
+    @Test
+    public void snapshot_shouldBeInvalidAfterAccountChange() {
+        WidgetStateStore.putBalance(mContext, WIDGET_ID, mChildAccount.getUID(), 7, mBalance);
+
+        assertThat(WidgetStateStore.getBalance(mContext, WIDGET_ID, mParentAccount.getUID(), 7)).isNull();
+    }
+
+    @Test
+    public void keptSnapshot_shouldBeValidAtNewDataVersion() {
+        WidgetStateStore.putBalance(mContext, WIDGET_ID, mChildAccount.getUID(), 7, mBalance);
+        WidgetStateStore.keepBalance(mContext, WIDGET_ID, 9);
+
+        assertThat(WidgetStateStore.getBalance(mContext, WIDGET_ID, mChildAccount.getUID(), 7)).isNull();
+        Money balance = WidgetStateStore.getBalance(mContext, WIDGET_ID, mChildAccount.getUID(), 9);
+        assertThat(balance).isNotNull();
+        assertThat(balance.asBigDecimal()).isEqualByComparingTo("12.50");
+    }
+
+    @Test
+    public void keepBalance_shouldNotCreateSnapshot() {
+        WidgetStateStore.keepBalance(mContext, WIDGET_ID, 9);
+
+        assertThat(WidgetStateStore.getBalance(mContext, WIDGET_ID, mChildAccount.getUID(), 9)).isNull();
+    }
+
+    @Test
+    public void removedSnapshot_shouldBeInvalid() {
+        WidgetStateStore.putBalance(mContext, WIDGET_ID, mChildAccount.getUID(), 7, mBalance);
+        WidgetStateStore.remove(mContext, WIDGET_ID);
+
+        assertThat(WidgetStateStore.getBalance(mContext, WIDGET_ID, mChildAccount.getUID(), 7)).isNull();
+    }
+
+    @Test
+    public void targetedUpdate_shouldSelectWidgetsOfChangedAccountsAndAncestors() {
+        String bookUID = BooksDbAdapter.getInstance().getActiveBookUID();
+        WidgetConfigurationActivity.configureWidget(mContext, CHILD_WIDGET_ID, bookUID, mChildAccount.getUID(), false);
+        WidgetConfigurationActivity.configureWidget(mContext, PARENT_WIDGET_ID, bookUID, mParentAccount.getUID(), false);
+        WidgetConfigurationActivity.configureWidget(mContext, UNRELATED_WIDGET_ID, bookUID, mUnrelatedAccount.getUID(), false);
+        WidgetConfigurationActivity.configureWidget(mContext, OTHER_BOOK_WIDGET_ID, "other-book", mUnrelatedAccount.getUID(), false);
+
+        long dataVersion = mAccountsDbAdapter.getDataVersion();
+        WidgetStateStore.putBalance(mContext, CHILD_WIDGET_ID, mChildAccount.getUID(), dataVersion, mBalance);
+        WidgetStateStore.putBalance(mContext, PARENT_WIDGET_ID, mParentAccount.getUID(), dataVersion, mBalance);
+        WidgetStateStore.putBalance(mContext, UNRELATED_WIDGET_ID, mUnrelatedAccount.getUID(), dataVersion, mBalance);
+        WidgetStateStore.putBalance(mContext, OTHER_BOOK_WIDGET_ID, mUnrelatedAccount.getUID(), 3, mBalance);
+
+        createTransaction(mChildAccount.getUID(), mTransferAccount.getUID());
+        long newDataVersion = mAccountsDbAdapter.getDataVersion();
+        assertThat(newDataVersion).isNotEqualTo(dataVersion);
+
+        int[] appWidgetIds = {CHILD_WIDGET_ID, PARENT_WIDGET_ID, UNRELATED_WIDGET_ID, OTHER_BOOK_WIDGET_ID};
+        List<Integer> affectedWidgetIds = WidgetConfigurationActivity.selectAffectedWidgets(mContext,
+                appWidgetIds, bookUID, mAccountsDbAdapter,
+                new HashSet<>(Arrays.asList(mChildAccount.getUID(), mTransferAccount.getUID())));
+        assertThat(affectedWidgetIds).containsOnly(CHILD_WIDGET_ID, PARENT_WIDGET_ID);
+
+        //the widgets which are updated compute their balance again
+        assertThat(WidgetStateStore.getBalance(mContext, CHILD_WIDGET_ID, mChildAccount.getUID(), newDataVersion)).isNull();
+        assertThat(WidgetStateStore.getBalance(mContext, PARENT_WIDGET_ID, mParentAccount.getUID(), newDataVersion)).isNull();
+        //the unrelated write does not drop the snapshot of the other widget of the book
+        Money balance = WidgetStateStore.getBalance(mContext, UNRELATED_WIDGET_ID, mUnrelatedAccount.getUID(), newDataVersion);
+        assertThat(balance).isNotNull();
+        assertThat(balance.asBigDecimal()).isEqualByComparingTo("12.50");
+        //widgets of other books are not touched
+        assertThat(WidgetStateStore.getBalance(mContext, OTHER_BOOK_WIDGET_ID, mUnrelatedAccount.getUID(), 3)).isNotNull();
+    }
+
+    @Test
+    public void targetedUpdate_shouldSelectNothingForAccountsWithoutWidget() {
+        String bookUID = BooksDbAdapter.getInstance().getActiveBookUID();
+        WidgetConfigurationActivity.configureWidget(mContext, CHILD_WIDGET_ID, bookUID, mChildAccount.getUID(), false);
+
+        List<Integer> affectedWidgetIds = WidgetConfigurationActivity.selectAffectedWidgets(mContext,
+                new int[]{CHILD_WIDGET_ID}, bookUID, mAccountsDbAdapter,
+                Collections.singleton(mTransferAccount.getUID()));
+        assertThat(affectedWidgetIds).isEmpty();
+    }
+
+    @After
+    public void tearDown() {
+        for (int widgetId : new int[]{WIDGET_ID, CHILD_WIDGET_ID, PARENT_WIDGET_ID, UNRELATED_WIDGET_ID, OTHER_BOOK_WIDGET_ID}) {
+            WidgetConfigurationActivity.removeWidgetConfiguration(mContext, widgetId);
+        }
+        mTransactionsDbAdapter.deleteAllRecords();
+        mAccountsDbAdapter.deleteAllRecords();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gnucash.android.test.unit.util;
+
+import org.gnucash.android.test.unit.testutil.ShadowCrashlytics;
+import org.gnucash.android.test.unit.testutil.ShadowUserVoice;
+import org.gnucash.android.util.SuggestionTrie;
+import org.gnucash.android.util.SuggestionTrie.Suggestion;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, packageName = "org.gnucash.android", shadows = {ShadowCrashlytics.class, ShadowUserVoice.class})
+public class SuggestionTrieTest {
+
+    private static final long NOW = 1_500_000_000_000L;
+
+    private static Suggestion suggestion(String description, long lastUsed, int useCount) {
+        return new Suggestion(description, SuggestionTrie.normalize(description),
+                "uid-" + description, lastUsed, useCount);
+    }
+
+    private static List<String> descriptions(List<Suggestion> suggestions) {
+        List<String> descriptions = new ArrayList<>();
+        for (Suggestion suggestion : suggestions) {
+            descriptions.add(suggestion.getDescription());
+        }
+        return descriptions;
+    }
+
+    @Test
+    public void normalize_shouldTrimAndLowerCase() {
+        assertThat(SuggestionTrie.normalize("  Coffee Shop ")).isEqualTo("coffee shop");
+        assertThat(SuggestionTrie.normalize("")).isEmpty();
+    }
+
+    @Test
+    public void getSuggestions_shouldRankByFrequencyAndRecency() {
+        SuggestionTrie trie = new SuggestionTrie(SuggestionTrie.DEFAULT_MAX_SUGGESTIONS, NOW);
+        trie.add(suggestion("Salary", NOW - SuggestionTrie.RECENCY_HALF_LIFE, 2));
+        trie.add(suggestion("Sandwich", NOW, 3));
+        trie.add(suggestion("Savings", NOW - 4 * SuggestionTrie.RECENCY_HALF_LIFE, 10));
+        trie.add(suggestion("Rent", NOW, 12));
+
+        assertThat(trie.size()).isEqualTo(4);
+        assertThat(descriptions(trie.getSuggestions("sa"))).containsExactly("Sandwich", "Salary", "Savings");
+        assertThat(descriptions(trie.getSuggestions("sal"))).containsExactly("Salary");
+        assertThat(descriptions(trie.getSuggestions(""))).containsExactly("Rent", "Sandwich", "Salary", "Savings");
+    }
+
+    @Test
+    public void getSuggestions_shouldIgnoreCaseAndLeadingSpaces() {
+        SuggestionTrie trie = new SuggestionTrie(SuggestionTrie.DEFAULT_MAX_SUGGESTIONS, NOW);
+        trie.add(suggestion("Coffee Shop", NOW, 1));
+
+        assertThat(descriptions(trie.getSuggestions("  COFFEE s"))).containsExactly("Coffee Shop");
+        assertThat(trie.getSuggestions("coffee shops")).isEmpty();
+        assertThat(trie.getSuggestions("tea")).isEmpty();
+    }
+
+    @Test
+    public void getSuggestions_shouldBeLimited() {
+        SuggestionTrie trie = new SuggestionTrie(2, NOW);
+        trie.add(suggestion("Bus", NOW, 1));
+        trie.add(suggestion("Bakery", NOW, 3));
+        trie.add(suggestion("Books", NOW, 2));
+
+        assertThat(descriptions(trie.getSuggestions("b"))).containsExactly("Bakery", "Books");
+        assertThat(descriptions(trie.getSuggestions("bu"))).containsExactly("Bus");
+    }
+}